@@ -0,0 +1,85 @@
+#!/usr/bin/env bash
+#
+# Copyright and related rights waived via CC0
+#
+# You should have received a copy of the CC0 legalcode along with this
+# work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+#
+# Thin client of the resident TCK daemon (./gradlew tckDaemon), see docs/tck.md §1.
+#
+# Usage: tck-daemon-client.sh [--start] [--socket <path>] <command> [<property>=<value> ...]
+#
+#   tck-daemon-client.sh --start listCoordinates 'coordinates=io.netty:* !io.netty:netty-codec'
+#   tck-daemon-client.sh generateChangedCoordinatesMatrix baseCommit=origin/master newCommit=HEAD
+#   tck-daemon-client.sh extractLibraryTestParams coordinates=org.postgresql:postgresql
+#   tck-daemon-client.sh stop
+#
+# Output is the same as the one of the Gradle task with the same name: GitHub outputs and environment variables
+# are appended to $GITHUB_OUTPUT and $GITHUB_ENV, or printed as key=value when those are not set.
+# --start launches the daemon in the background when it is not running yet.
+# Needs socat or a netcat with Unix domain socket support (nc -U).
+
+set -euo pipefail
+
+repo_root="$(cd "$(dirname "${BASH_SOURCE[0]}")/../../.." && pwd)"
+socket="${TCK_DAEMON_SOCKET:-$repo_root/build/tck/daemon.sock}"
+start=false
+
+while [[ $# -gt 0 ]]; do
+    case "$1" in
+        --start) start=true; shift ;;
+        --socket) socket="$2"; shift 2 ;;
+        *) break ;;
+    esac
+done
+
+if [[ $# -lt 1 ]]; then
+    echo "Usage: $(basename "$0") [--start] [--socket <path>] <command> [<property>=<value> ...]" >&2
+    exit 2
+fi
+
+if [[ ! -S "$socket" ]]; then
+    if [[ "$start" != true ]]; then
+        echo "No TCK daemon is listening on $socket. Start it with './gradlew tckDaemon' or pass --start." >&2
+        exit 3
+    fi
+    mkdir -p "$(dirname "$socket")"
+    (cd "$repo_root" && nohup ./gradlew -q tckDaemon "-Ptck.daemon.socket=$socket" \
+        > "$(dirname "$socket")/daemon.log" 2>&1 &)
+    for _ in $(seq 1 600); do
+        [[ -S "$socket" ]] && break
+        sleep 0.2
+    done
+    if [[ ! -S "$socket" ]]; then
+        echo "TCK daemon did not start, see $(dirname "$socket")/daemon.log" >&2
+        exit 3
+    fi
+fi
+
+if command -v socat > /dev/null 2>&1; then
+    connect=(socat - "UNIX-CONNECT:$socket")
+else
+    connect=(nc -U "$socket")
+fi
+
+append() {
+    local variable="$1" line="$2"
+    if [[ -n "${!variable:-}" ]]; then
+        printf '%s\n' "$line" >> "${!variable}"
+    else
+        printf '%s\n' "$line"
+    fi
+}
+
+status=1
+while IFS= read -r line; do
+    case "$line" in
+        "out "*) printf '%s\n' "${line#out }" ;;
+        "github-output "*) append GITHUB_OUTPUT "${line#github-output }" ;;
+        "github-env "*) append GITHUB_ENV "${line#github-env }" ;;
+        "error "*) printf '%s\n' "${line#error }" >&2 ;;
+        "exit "*) status="${line#exit }" ;;
+    esac
+done < <(IFS=$'\t'; printf '%s\n' "$*" | "${connect[@]}")
+
+exit "$status"
@@ -0,0 +1,163 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.graalvm.internal.tck.utils.PathPrefixTrie;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+import org.gradle.process.ExecOperations;
+
+import javax.inject.Inject;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Lazily computes the coordinates changed between {@code baseCommit} and {@code newCommit} with {@code git diff}.
+ * Empty when no base commit is given.
+ * <p>
+ * Being a {@link ValueSource}, git only runs when a task reads the result, at most once per build, and the result is
+ * recomputed for every build, so it stays correct when the task graph is reused from the configuration cache.
+ * §TCK-test-harness.1
+ */
+public abstract class ChangedCoordinatesSource implements ValueSource<List<String>, ChangedCoordinatesSource.Params> {
+
+    public interface Params extends ValueSourceParameters {
+        Property<String> getBaseCommit();
+
+        Property<String> getNewCommit();
+
+        DirectoryProperty getRepoRoot();
+
+        DirectoryProperty getTckRoot();
+
+        Property<RepositoryIndexService> getRepositoryIndexService();
+    }
+
+    @Inject
+    protected abstract ExecOperations getExecOperations();
+
+    @Override
+    public List<String> obtain() {
+        Params params = getParameters();
+        String baseCommit = params.getBaseCommit().getOrNull();
+        if (baseCommit == null) {
+            return List.of();
+        }
+        Path repoRoot = params.getRepoRoot().get().getAsFile().toPath();
+        List<Path> changedFiles = diffFiles(getExecOperations(), repoRoot, baseCommit,
+                params.getNewCommit().getOrElse("HEAD"), "ACMRTD");
+        RepositoryIndex index = params.getRepositoryIndexService().get().getIndex();
+        return changedCoordinates(index, params.getTckRoot().get().getAsFile().toPath(),
+                repoRoot.resolve(".github").resolve("workflows"), changedFiles);
+    }
+
+    /**
+     * Files changed between two commits, resolved against the repository root.
+     */
+    static List<Path> diffFiles(ExecOperations execOperations, Path repoRoot, String baseCommit, String newCommit,
+                                String diffFilter) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        execOperations.exec(spec -> {
+            spec.setStandardOutput(baos);
+            spec.setWorkingDir(repoRoot.toFile());
+            spec.commandLine("git", "diff", "--name-only", "--diff-filter=" + diffFilter, baseCommit, newCommit);
+        });
+
+        return Arrays.stream(baos.toString(StandardCharsets.UTF_8).split("\\r?\\n"))
+                .filter(line -> !line.isBlank())
+                .map(repoRoot::resolve)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the strict coordinates whose metadata or test directory contains a changed file, in index order.
+     * Nothing is selected unless metadata, tests or the build logic changed.
+     */
+    static List<String> changedCoordinates(RepositoryIndex index, Path tckRoot, Path workflowsRoot,
+                                           List<Path> changedFiles) {
+        Map<String, List<Path>> changed = changedFiles.stream()
+                .collect(Collectors.groupingBy((Path path) -> {
+                    if (path.startsWith(tckRoot) || path.startsWith(workflowsRoot)) {
+                        return "logic";
+                    } else if (path.startsWith(index.getTestRoot())) {
+                        return "test";
+                    } else if (path.startsWith(index.getMetadataRoot())) {
+                        return "metadata";
+                    } else {
+                        return "other";
+                    }
+                }));
+
+        List<Path> changedMetadataFiles = changed.getOrDefault("metadata", Collections.emptyList());
+        List<Path> changedTestFiles = changed.getOrDefault("test", Collections.emptyList());
+        List<Path> changedLogicFiles = changed.getOrDefault("logic", Collections.emptyList());
+
+        // if we didn't change any of metadata, tests or logic we don't need to test anything
+        if (changedMetadataFiles.isEmpty() && changedTestFiles.isEmpty() && changedLogicFiles.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<String> allCoordinates = RepositoryIndex.matchingCoordinates(index.getArtifacts(), null, true);
+        PathPrefixTrie<String> metadataDirs = new PathPrefixTrie<>();
+        for (String c : allCoordinates) {
+            Path metadataDir = resolve(index, c).metadataDir();
+            if (metadataDir != null) {
+                metadataDirs.put(metadataDir, c);
+            }
+        }
+        Set<String> hits = new HashSet<>();
+        changedMetadataFiles.forEach(f -> hits.addAll(metadataDirs.valuesContaining(f)));
+
+        if (!changedTestFiles.isEmpty()) {
+            PathPrefixTrie<String> testDirs = new PathPrefixTrie<>();
+            for (String c : allCoordinates) {
+                if (!hits.contains(c)) {
+                    testDirs.put(testDir(index, c), c);
+                }
+            }
+            changedTestFiles.forEach(f -> hits.addAll(testDirs.valuesContaining(f)));
+        }
+
+        return allCoordinates.stream()
+                .filter(hits::contains)
+                .distinct()
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static RepositoryIndex.ResolvedCoordinate resolve(RepositoryIndex index, String coordinates) {
+        String[] parts = coordinates.split(":");
+        return index.resolve(parts[0], parts[1], parts[2])
+                .orElseThrow(() -> new RuntimeException("Missing metadata for " + coordinates));
+    }
+
+    /**
+     * The indexed test directory, or the conventional tests/src/&lt;group&gt;/&lt;artifact&gt;/&lt;version&gt;.
+     */
+    private static Path testDir(RepositoryIndex index, String coordinates) {
+        Path indexed = resolve(index, coordinates).testDir();
+        if (indexed != null) {
+            return indexed;
+        }
+        Path conventional = index.getTestRoot().resolve(coordinates.replace(':', '/'));
+        if (Files.isDirectory(conventional)) {
+            return conventional;
+        }
+        throw new RuntimeException("Missing test-directory for coordinates `" + coordinates + "`");
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.graalvm.internal.tck.utils.CoordinateUtils;
+import org.gradle.api.GradleException;
+import org.gradle.util.internal.VersionNumber;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled {@code -Pcoordinates} filter expression.
+ * <p>
+ * An expression is a whitespace separated list of terms:
+ * <ul>
+ *     <li>{@code group[:artifact[:version]]}, where every part may use the globs {@code *} and {@code ?}
+ *     (e.g. {@code io.netty:*}, {@code org.hibernate*:*:6.*}), and the version may also be a Maven style
+ *     range such as {@code [1.0,2.0)}, {@code [6.2,)} or {@code (,3.0]};</li>
+ *     <li>{@code all} or {@code any}, matching every coordinate;</li>
+ *     <li>{@code !term}, excluding everything the term matches;</li>
+ *     <li>{@code k/n}, keeping only the k-th of n shards of the selected coordinates.</li>
+ * </ul>
+ * The selection is the union of all positive terms (everything if there are none) minus all negated terms,
+ * in index order. It is evaluated in a single pass over the index, no matter how many terms there are.
+ * <p>
+ * Implements §TCK-test-harness.1 — coordinate filter grammar.
+ */
+public final class CoordinateFilter {
+
+    /**
+     * Cuts one shard out of the selected coordinates.
+     */
+    @FunctionalInterface
+    public interface ShardSelector {
+        List<String> select(List<String> coordinates, int index, int batches);
+    }
+
+    private final String expression;
+    private final List<Term> includes;
+    private final List<Term> excludes;
+    private final int[] shard;
+
+    private CoordinateFilter(String expression, List<Term> includes, List<Term> excludes, int[] shard) {
+        this.expression = expression;
+        this.includes = includes;
+        this.excludes = excludes;
+        this.shard = shard;
+    }
+
+    public static CoordinateFilter compile(String expression) {
+        String trimmed = expression == null ? "" : expression.trim();
+        List<Term> includes = new ArrayList<>();
+        List<Term> excludes = new ArrayList<>();
+        int[] shard = null;
+        for (String token : trimmed.isEmpty() ? new String[0] : trimmed.split("\\s+")) {
+            if (CoordinateUtils.isFractionalBatch(token)) {
+                if (shard != null) {
+                    throw new GradleException("Coordinate filter '" + trimmed + "' selects more than one shard");
+                }
+                shard = CoordinateUtils.parseFraction(token);
+            } else if (token.startsWith("!")) {
+                excludes.add(Term.parse(token.substring(1), trimmed));
+            } else {
+                includes.add(Term.parse(token, trimmed));
+            }
+        }
+        return new CoordinateFilter(trimmed, List.copyOf(includes), List.copyOf(excludes), shard);
+    }
+
+    /**
+     * Returns true if the expression contains a {@code k/n} shard term.
+     */
+    public static boolean isSharded(String expression) {
+        return compile(expression).isSharded();
+    }
+
+    public boolean isSharded() {
+        return shard != null;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * Returns true if the coordinates are selected by the include and exclude terms (the shard is not considered).
+     */
+    public boolean matches(String groupId, String artifactId, String version) {
+        return (includes.isEmpty() || anyMatches(includes, groupId, artifactId, version))
+                && !anyMatches(excludes, groupId, artifactId, version);
+    }
+
+    /**
+     * Evaluates the filter against the index.
+     * <p>
+     * {@code artifacts} looks up artifacts by group ID and artifact ID, where null matches every value. It is
+     * asked for a narrow set when every positive term names a literal group, so a filter on one library does
+     * not need the whole index. A {@code k/n} term is cut from the coordinates selected with the same
+     * {@code strict} flag, exactly like a plain {@code k/n} filter.
+     */
+    public List<String> resolve(BiFunction<String, String, List<RepositoryIndex.ArtifactIndex>> artifacts, boolean strict,
+                                ShardSelector shards) {
+        Set<String> results = new LinkedHashSet<>();
+        for (RepositoryIndex.ArtifactIndex artifact : candidates(artifacts)) {
+            List<Term> artifactIncludes = includes.stream()
+                    .filter(term -> term.matchesArtifact(artifact.groupId(), artifact.artifactId()))
+                    .toList();
+            if (!includes.isEmpty() && artifactIncludes.isEmpty()) {
+                continue;
+            }
+            List<Term> artifactExcludes = excludes.stream()
+                    .filter(term -> term.matchesArtifact(artifact.groupId(), artifact.artifactId()))
+                    .toList();
+            for (RepositoryIndex.IndexEntry entry : artifact.entries()) {
+                if (!strict && !artifact.hasMetadataDir(entry.metadataVersion())) {
+                    continue;
+                }
+                for (String version : entry.testedVersions()) {
+                    if (strict && !artifact.hasMetadataDir(version)) {
+                        continue;
+                    }
+                    boolean included = artifactIncludes.isEmpty()
+                            || artifactIncludes.stream().anyMatch(term -> term.matchesVersion(version));
+                    if (included && artifactExcludes.stream().noneMatch(term -> term.matchesVersion(version))) {
+                        results.add(artifact.key() + ":" + version);
+                    }
+                }
+            }
+        }
+        List<String> selected = new ArrayList<>(results);
+        return shard == null ? selected : shards.select(selected, shard[0], shard[1]);
+    }
+
+    private List<RepositoryIndex.ArtifactIndex> candidates(
+            BiFunction<String, String, List<RepositoryIndex.ArtifactIndex>> artifacts) {
+        if (includes.isEmpty() || includes.stream().anyMatch(term -> term.literalGroup() == null)) {
+            return artifacts.apply(null, null);
+        }
+        Map<String, RepositoryIndex.ArtifactIndex> byKey = new LinkedHashMap<>();
+        for (Term term : includes) {
+            for (RepositoryIndex.ArtifactIndex artifact : artifacts.apply(term.literalGroup(), term.literalArtifact())) {
+                byKey.putIfAbsent(artifact.key(), artifact);
+            }
+        }
+        List<RepositoryIndex.ArtifactIndex> result = new ArrayList<>(byKey.values());
+        // Keep index order, no matter in which order the terms were given.
+        result.sort(Comparator.comparing(RepositoryIndex.ArtifactIndex::groupId)
+                .thenComparing(RepositoryIndex.ArtifactIndex::artifactId));
+        return result;
+    }
+
+    private static boolean anyMatches(List<Term> terms, String groupId, String artifactId, String version) {
+        for (Term term : terms) {
+            if (term.matchesArtifact(groupId, artifactId) && term.matchesVersion(version)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * One {@code group[:artifact[:version]]} term. A null matcher matches every value.
+     */
+    private record Term(Matcher group, Matcher artifact, Matcher version) {
+
+        static Term parse(String token, String expression) {
+            String[] parts = token.split(":", -1);
+            if (parts.length > 3 || token.isEmpty()) {
+                throw new GradleException("Invalid term '" + token + "' in coordinate filter '" + expression
+                        + "'. Expected group[:artifact[:version]].");
+            }
+            // Like the plain group:artifact:version filter, "all" and "any" match every group.
+            String group = parts[0].equals("all") || parts[0].equals("any") ? "*" : parts[0];
+            return new Term(
+                    Matcher.of(group),
+                    parts.length > 1 ? Matcher.of(parts[1]) : null,
+                    parts.length > 2 ? versionMatcher(parts[2], token, expression) : null);
+        }
+
+        private static Matcher versionMatcher(String version, String token, String expression) {
+            if (version.startsWith("[") || version.startsWith("(")) {
+                try {
+                    return VersionRange.parse(version);
+                } catch (IllegalArgumentException e) {
+                    throw new GradleException("Invalid version range in term '" + token + "' of coordinate filter '"
+                            + expression + "': " + e.getMessage(), e);
+                }
+            }
+            return Matcher.of(version);
+        }
+
+        String literalGroup() {
+            return group instanceof Literal literal ? literal.value() : null;
+        }
+
+        String literalArtifact() {
+            return artifact instanceof Literal literal ? literal.value() : null;
+        }
+
+        boolean matchesArtifact(String groupId, String artifactId) {
+            return (group == null || group.matches(groupId)) && (artifact == null || artifact.matches(artifactId));
+        }
+
+        boolean matchesVersion(String value) {
+            return version == null || version.matches(value);
+        }
+    }
+
+    private interface Matcher {
+        boolean matches(String value);
+
+        /**
+         * Compiles one part of a term. Empty parts and a lone {@code *} match everything and compile to null.
+         */
+        static Matcher of(String part) {
+            if (part.isEmpty() || part.equals("*")) {
+                return null;
+            }
+            if (part.indexOf('*') < 0 && part.indexOf('?') < 0) {
+                return new Literal(part);
+            }
+            return new Glob(Pattern.compile(globToRegex(part)));
+        }
+
+        private static String globToRegex(String glob) {
+            StringBuilder regex = new StringBuilder();
+            StringBuilder literal = new StringBuilder();
+            for (char c : glob.toCharArray()) {
+                if (c == '*' || c == '?') {
+                    if (!literal.isEmpty()) {
+                        regex.append(Pattern.quote(literal.toString()));
+                        literal.setLength(0);
+                    }
+                    regex.append(c == '*' ? ".*" : ".");
+                } else {
+                    literal.append(c);
+                }
+            }
+            if (!literal.isEmpty()) {
+                regex.append(Pattern.quote(literal.toString()));
+            }
+            return regex.toString();
+        }
+    }
+
+    private record Literal(String value) implements Matcher {
+        @Override
+        public boolean matches(String candidate) {
+            return value.equals(candidate);
+        }
+    }
+
+    private record Glob(Pattern pattern) implements Matcher {
+        @Override
+        public boolean matches(String candidate) {
+            return pattern.matcher(candidate).matches();
+        }
+    }
+
+    /**
+     * A Maven style version range, compared with {@link VersionNumber}. A missing bound is unbounded.
+     */
+    private record VersionRange(VersionNumber lower, boolean lowerInclusive, VersionNumber upper,
+                                boolean upperInclusive) implements Matcher {
+
+        static VersionRange parse(String range) {
+            char open = range.charAt(0);
+            char close = range.charAt(range.length() - 1);
+            if (range.length() < 2 || close != ']' && close != ')') {
+                throw new IllegalArgumentException("'" + range + "' must end with ']' or ')'");
+            }
+            String body = range.substring(1, range.length() - 1);
+            int comma = body.indexOf(',');
+            if (comma < 0) {
+                if (open != '[' || close != ']' || body.isBlank()) {
+                    throw new IllegalArgumentException("a single version must be written as [version]");
+                }
+                VersionNumber exact = VersionNumber.parse(body.trim());
+                return new VersionRange(exact, true, exact, true);
+            }
+            if (body.indexOf(',', comma + 1) >= 0) {
+                throw new IllegalArgumentException("'" + range + "' has more than two bounds");
+            }
+            String lower = body.substring(0, comma).trim();
+            String upper = body.substring(comma + 1).trim();
+            return new VersionRange(
+                    lower.isEmpty() ? null : VersionNumber.parse(lower), open == '[',
+                    upper.isEmpty() ? null : VersionNumber.parse(upper), close == ']');
+        }
+
+        @Override
+        public boolean matches(String candidate) {
+            VersionNumber version = VersionNumber.parse(candidate);
+            if (lower != null) {
+                int comparison = compare(version, lower);
+                if (comparison < 0 || comparison == 0 && !lowerInclusive) {
+                    return false;
+                }
+            }
+            if (upper != null) {
+                int comparison = compare(version, upper);
+                return comparison < 0 || comparison == 0 && upperInclusive;
+            }
+            return true;
+        }
+
+        /**
+         * A bound without a qualifier ignores the qualifier of the version, so that {@code 4.1.100.Final}
+         * is within {@code [4.1.100,4.1.101)}.
+         */
+        private static int compare(VersionNumber version, VersionNumber bound) {
+            return bound.getQualifier() == null
+                    ? version.getBaseVersion().compareTo(bound)
+                    : version.compareTo(bound);
+        }
+    }
+}
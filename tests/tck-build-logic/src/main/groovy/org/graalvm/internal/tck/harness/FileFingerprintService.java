@@ -0,0 +1,65 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+/**
+ * Build-scoped holder of the {@link FileFingerprints} shared by task inputs and the result cache, so every test
+ * and metadata directory is hashed at most once per build and unchanged files are not read again across builds.
+ * The cached file hashes are written back when the build finishes.
+ */
+public abstract class FileFingerprintService implements BuildService<FileFingerprintService.Params>, AutoCloseable {
+    public static final String NAME = "tckFileFingerprints";
+
+    public interface Params extends BuildServiceParameters {
+        RegularFileProperty getCacheFile();
+    }
+
+    private volatile FileFingerprints fingerprints;
+
+    /**
+     * Returns the Merkle fingerprint of a directory, see {@link FileFingerprints#directory(Path, Set)}.
+     */
+    public String directory(Path directory, Set<String> excludedDirectories) {
+        return fingerprints().directory(directory, excludedDirectories);
+    }
+
+    /**
+     * Returns the content hash of a file.
+     */
+    public String file(Path file) {
+        return fingerprints().file(file);
+    }
+
+    private FileFingerprints fingerprints() {
+        FileFingerprints loaded = fingerprints;
+        if (loaded == null) {
+            synchronized (this) {
+                loaded = fingerprints;
+                if (loaded == null) {
+                    loaded = FileFingerprints.load(getParameters().getCacheFile().get().getAsFile().toPath());
+                    fingerprints = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public void close() {
+        FileFingerprints loaded = fingerprints;
+        if (loaded != null) {
+            loaded.save();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.gradle.api.GradleException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Content fingerprints of files and directory trees, with file hashes cached across Gradle invocations.
+ * <p>
+ * A directory's fingerprint is a Merkle hash over the sorted names and fingerprints of its children, so it only
+ * depends on relative paths and content: the same test project has the same fingerprint in every checkout. Empty
+ * directories do not contribute, like {@code @IgnoreEmptyDirectories} inputs.
+ * <p>
+ * File hashes are reused while a file's identity (inode), size and modification time are unchanged; only new or
+ * modified files are read. Like {@link RepositoryIndexSnapshot}, timestamps of files modified within the last two
+ * seconds are not trusted, because the file may still change within the same timestamp tick.
+ */
+public final class FileFingerprints {
+    private static final int MAGIC = 0x54434B46;
+    private static final int FORMAT_VERSION = 1;
+    private static final long RACY_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final byte FILE = 'F';
+    private static final byte DIRECTORY = 'D';
+
+    private record FileHash(String fileKey, long size, long modified, byte[] hash) {
+    }
+
+    private final Path cacheFile;
+    private final Map<String, FileHash> hashes;
+    private volatile boolean changed;
+
+    private FileFingerprints(Path cacheFile, Map<String, FileHash> hashes) {
+        this.cacheFile = cacheFile;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Loads the hashes cached in {@code cacheFile}; a missing, foreign or corrupt file starts an empty cache.
+     */
+    public static FileFingerprints load(Path cacheFile) {
+        return new FileFingerprints(cacheFile, read(cacheFile));
+    }
+
+    /**
+     * Returns the Merkle fingerprint of {@code directory}, skipping subdirectories whose name is in
+     * {@code excludedDirectories} at any depth. A missing directory has the fingerprint of an empty one.
+     */
+    public String directory(Path directory, Set<String> excludedDirectories) {
+        byte[] hash = Files.isDirectory(directory) ? directoryHash(directory, excludedDirectories) : null;
+        return HexFormat.of().formatHex(hash == null ? digest().digest() : hash);
+    }
+
+    /**
+     * Returns the SHA-256 of a file's content.
+     */
+    public String file(Path file) {
+        return HexFormat.of().formatHex(fileHash(file, attributes(file)));
+    }
+
+    /**
+     * Writes the cache back if new hashes were computed, dropping entries of files that no longer exist.
+     */
+    public synchronized void save() {
+        if (!changed) {
+            return;
+        }
+        hashes.keySet().removeIf(path -> !Files.exists(Path.of(path)));
+        write(cacheFile, new TreeMap<>(hashes));
+        changed = false;
+    }
+
+    /**
+     * Returns null for a directory without (non-excluded) files.
+     */
+    private byte[] directoryHash(Path directory, Set<String> excludedDirectories) {
+        TreeMap<String, Path> children = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            stream.forEach(child -> children.put(child.getFileName().toString(), child));
+        } catch (IOException e) {
+            throw new GradleException("Failed to list " + directory, e);
+        }
+        MessageDigest digest = digest();
+        boolean empty = true;
+        for (Map.Entry<String, Path> child : children.entrySet()) {
+            BasicFileAttributes attributes = attributes(child.getValue());
+            byte[] hash;
+            byte type;
+            if (attributes.isDirectory()) {
+                if (excludedDirectories.contains(child.getKey())) {
+                    continue;
+                }
+                hash = directoryHash(child.getValue(), excludedDirectories);
+                type = DIRECTORY;
+            } else if (attributes.isRegularFile()) {
+                hash = fileHash(child.getValue(), attributes);
+                type = FILE;
+            } else {
+                continue;
+            }
+            if (hash == null) {
+                continue;
+            }
+            byte[] name = child.getKey().getBytes(StandardCharsets.UTF_8);
+            digest.update(type);
+            digest.update(intBytes(name.length));
+            digest.update(name);
+            digest.update(hash);
+            empty = false;
+        }
+        return empty ? null : digest.digest();
+    }
+
+    private byte[] fileHash(Path file, BasicFileAttributes attributes) {
+        String path = file.toAbsolutePath().normalize().toString();
+        String fileKey = String.valueOf(attributes.fileKey());
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        FileHash cached = hashes.get(path);
+        if (cached != null && cached.size == size && cached.modified == modified && cached.fileKey.equals(fileKey)) {
+            return cached.hash;
+        }
+        MessageDigest digest = digest();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new GradleException("Failed to read " + file, e);
+        }
+        byte[] hash = digest.digest();
+        if (TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - modified >= RACY_WINDOW_NANOS) {
+            hashes.put(path, new FileHash(fileKey, size, modified, hash));
+            changed = true;
+        } else {
+            hashes.remove(path);
+        }
+        return hash;
+    }
+
+    private static BasicFileAttributes attributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new GradleException("Failed to read attributes of " + path, e);
+        }
+    }
+
+    private static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is unavailable", e);
+        }
+    }
+
+    private static byte[] intBytes(int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    private static Map<String, FileHash> read(Path cacheFile) {
+        Map<String, FileHash> hashes = new ConcurrentHashMap<>();
+        if (!Files.isRegularFile(cacheFile)) {
+            return hashes;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return hashes;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                String fileKey = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                byte[] hash = new byte[in.readUnsignedByte()];
+                in.readFully(hash);
+                hashes.put(path, new FileHash(fileKey, size, modified, hash));
+            }
+            return hashes;
+        } catch (IOException | RuntimeException e) {
+            return new ConcurrentHashMap<>();
+        }
+    }
+
+    private static void write(Path cacheFile, Map<String, FileHash> hashes) {
+        Path temporary = null;
+        try {
+            Files.createDirectories(cacheFile.toAbsolutePath().getParent());
+            temporary = Files.createTempFile(cacheFile.toAbsolutePath().getParent(), cacheFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                List<Map.Entry<String, FileHash>> entries = new ArrayList<>(hashes.entrySet());
+                out.writeInt(entries.size());
+                for (Map.Entry<String, FileHash> entry : entries) {
+                    FileHash hash = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(hash.fileKey);
+                    out.writeLong(hash.size);
+                    out.writeLong(hash.modified);
+                    out.writeByte(hash.hash.length);
+                    out.write(hash.hash);
+                }
+            }
+            try {
+                Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // Like the repository index snapshot, the cache is only an optimization; the next build rehashes.
+            try {
+                if (temporary != null) {
+                    Files.deleteIfExists(temporary);
+                }
+            } catch (IOException ignored) {
+                // best effort
+            }
+        }
+    }
+}
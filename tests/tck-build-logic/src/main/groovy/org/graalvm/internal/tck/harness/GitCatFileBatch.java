@@ -0,0 +1,109 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.gradle.api.GradleException;
+import org.gradle.process.ExecOperations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads many Git blobs with a single {@code git cat-file --batch} process.
+ * <p>
+ * Object names use the {@code <commit>:<path>} form of {@code git show}. All names are written to the
+ * process at once and the replies are read back in request order, so the cost no longer grows with one
+ * process per file.
+ */
+public final class GitCatFileBatch {
+
+    private GitCatFileBatch() {
+    }
+
+    /**
+     * Returns the content of every requested object in request order, or {@code null} for objects
+     * that do not exist (for example a file that was added or deleted between the two commits).
+     */
+    public static Map<String, String> read(ExecOperations execOperations, Collection<String> objectNames) {
+        List<String> requests = List.copyOf(new LinkedHashSet<>(objectNames));
+        if (requests.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        for (String request : requests) {
+            if (request.indexOf('\n') >= 0) {
+                throw new GradleException("Git object name must not contain a line break: " + request);
+            }
+        }
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        byte[] stdin = (String.join("\n", requests) + "\n").getBytes(StandardCharsets.UTF_8);
+        var result = execOperations.exec(spec -> {
+            spec.setIgnoreExitValue(true);
+            spec.setStandardInput(new ByteArrayInputStream(stdin));
+            spec.setStandardOutput(stdout);
+            spec.setErrorOutput(stderr);
+            spec.commandLine("git", "cat-file", "--batch");
+        });
+        if (result.getExitValue() != 0) {
+            throw new GradleException("git cat-file --batch failed with exit code " + result.getExitValue() + ": "
+                    + stderr.toString(StandardCharsets.UTF_8).trim());
+        }
+        return parse(requests, stdout.toByteArray());
+    }
+
+    /**
+     * Parses {@code git cat-file --batch} output. Every reply is either
+     * {@code <oid> <type> <size>\n<content>\n} or {@code <name> missing\n} (also {@code ambiguous}).
+     */
+    static Map<String, String> parse(List<String> requests, byte[] output) {
+        Map<String, String> blobs = new LinkedHashMap<>();
+        int position = 0;
+        for (String request : requests) {
+            int headerEnd = indexOf(output, (byte) '\n', position);
+            if (headerEnd < 0) {
+                throw new GradleException("Truncated git cat-file output while reading " + request);
+            }
+            String header = new String(output, position, headerEnd - position, StandardCharsets.UTF_8);
+            position = headerEnd + 1;
+            if (header.endsWith(" missing") || header.endsWith(" ambiguous")) {
+                blobs.put(request, null);
+                continue;
+            }
+            String[] parts = header.split(" ");
+            int size;
+            try {
+                size = Integer.parseInt(parts[parts.length - 1]);
+            } catch (NumberFormatException e) {
+                throw new GradleException("Unexpected git cat-file header for " + request + ": " + header, e);
+            }
+            if (parts.length != 3 || position + size > output.length) {
+                throw new GradleException("Unexpected git cat-file header for " + request + ": " + header);
+            }
+            blobs.put(request, "blob".equals(parts[1])
+                    ? new String(output, position, size, StandardCharsets.UTF_8)
+                    : null);
+            // Content is followed by a single line feed.
+            position += size + 1;
+        }
+        return blobs;
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
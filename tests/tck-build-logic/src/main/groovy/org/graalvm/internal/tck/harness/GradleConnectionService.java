@@ -0,0 +1,204 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.tooling.BuildException;
+import org.gradle.tooling.GradleConnectionException;
+import org.gradle.tooling.GradleConnector;
+import org.gradle.tooling.ProjectConnection;
+import org.gradle.tooling.model.build.BuildEnvironment;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Build-scoped pool of Gradle Tooling API connections used to run the per-coordinate builds under
+ * {@code tests/src} without starting a {@code ./gradlew} client for every invocation.
+ * <p>
+ * Builds run in long-lived Gradle daemons of the same Gradle installation as the current build; the Tooling API
+ * hands each build to an idle compatible daemon, so after {@link #warmUp(List) warm-up} consecutive coordinates skip
+ * both client and daemon startup. Idle connections are kept per project directory, up to
+ * {@link Params#getMaxIdleConnections()}; the least recently used ones are closed first.
+ * <p>
+ * Selected with {@code -Ptck.subbuildExecutor=toolingApi}; the default {@code exec} keeps running {@code ./gradlew}.
+ */
+public abstract class GradleConnectionService implements BuildService<GradleConnectionService.Params>, AutoCloseable {
+    public static final String NAME = "tckGradleConnections";
+    public static final String EXECUTOR_PROPERTY = "tck.subbuildExecutor";
+    public static final String EXEC_EXECUTOR = "exec";
+    public static final String TOOLING_API_EXECUTOR = "toolingApi";
+
+    public interface Params extends BuildServiceParameters {
+        /**
+         * Gradle installation that runs the sub-builds; when absent each build uses its own wrapper.
+         */
+        DirectoryProperty getGradleInstallation();
+
+        Property<Integer> getMaxIdleConnections();
+    }
+
+    private final Map<Path, ProjectConnection> idle = new LinkedHashMap<>(16, 0.75f, true);
+    private ExecutorService warmUpExecutor;
+    private boolean closed;
+
+    /**
+     * Whether the value of {@link #EXECUTOR_PROPERTY} selects the Tooling API.
+     */
+    public static boolean isSelected(String executor) {
+        if (executor == null || executor.isBlank() || executor.equals(EXEC_EXECUTOR)) {
+            return false;
+        }
+        if (executor.equals(TOOLING_API_EXECUTOR)) {
+            return true;
+        }
+        throw new GradleException("Unknown sub-build executor '" + executor + "'. Use '" + EXEC_EXECUTOR + "' or '"
+                + TOOLING_API_EXECUTOR + "'.");
+    }
+
+    /**
+     * Runs a build in {@code projectDir} with the arguments of a {@code ./gradlew} command line and returns its exit
+     * code: 0 on success, 1 if the build or the connection failed.
+     * <p>
+     * Arguments starting with {@code -} are passed as build arguments and must carry their value inline
+     * (e.g. {@code -Pname=value}); all others are task names.
+     */
+    public int run(Path projectDir, List<String> arguments, Map<String, String> environment,
+                   OutputStream stdout, OutputStream stderr) {
+        Invocation invocation = Invocation.of(arguments);
+        ProjectConnection connection = borrow(projectDir);
+        boolean reusable = true;
+        try {
+            connection.newBuild()
+                    .forTasks(invocation.tasks().toArray(new String[0]))
+                    .withArguments(invocation.arguments())
+                    .setEnvironmentVariables(environment)
+                    .setStandardOutput(stdout)
+                    .setStandardError(stderr)
+                    .run();
+            return 0;
+        } catch (BuildException e) {
+            // The build itself reported the failure on its output, like a non-zero ./gradlew exit.
+            return 1;
+        } catch (GradleConnectionException | IllegalStateException e) {
+            reusable = false;
+            PrintStream err = new PrintStream(stderr, true, StandardCharsets.UTF_8);
+            err.println("Tooling API build in " + projectDir + " failed: " + e.getMessage());
+            return 1;
+        } finally {
+            release(projectDir, connection, reusable);
+        }
+    }
+
+    /**
+     * A {@code ./gradlew} command line split into task names and build arguments.
+     */
+    record Invocation(List<String> tasks, List<String> arguments) {
+        static Invocation of(List<String> commandLine) {
+            List<String> tasks = new ArrayList<>();
+            List<String> arguments = new ArrayList<>();
+            for (String argument : commandLine) {
+                (argument.startsWith("-") ? arguments : tasks).add(argument);
+            }
+            return new Invocation(List.copyOf(tasks), List.copyOf(arguments));
+        }
+    }
+
+    /**
+     * Starts daemons in the background by connecting to the given builds, so the first coordinates do not wait for
+     * daemon startup. Asking for the build environment starts a daemon without configuring the build.
+     */
+    public synchronized void warmUp(List<Path> projectDirs) {
+        if (closed || projectDirs.isEmpty()) {
+            return;
+        }
+        if (warmUpExecutor == null) {
+            warmUpExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "tck-gradle-warm-up");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        for (Path projectDir : projectDirs) {
+            warmUpExecutor.execute(() -> {
+                ProjectConnection connection = borrow(projectDir);
+                boolean reusable = true;
+                try {
+                    connection.getModel(BuildEnvironment.class);
+                } catch (GradleConnectionException | IllegalStateException e) {
+                    reusable = false;
+                } finally {
+                    release(projectDir, connection, reusable);
+                }
+            });
+        }
+    }
+
+    private ProjectConnection borrow(Path projectDir) {
+        synchronized (this) {
+            if (closed) {
+                throw new GradleException("Gradle connections are already closed");
+            }
+            ProjectConnection connection = idle.remove(projectDir);
+            if (connection != null) {
+                return connection;
+            }
+        }
+        GradleConnector connector = GradleConnector.newConnector().forProjectDirectory(projectDir.toFile());
+        if (getParameters().getGradleInstallation().isPresent()) {
+            connector.useInstallation(getParameters().getGradleInstallation().get().getAsFile());
+        }
+        return connector.connect();
+    }
+
+    private void release(Path projectDir, ProjectConnection connection, boolean reusable) {
+        List<ProjectConnection> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (reusable && !closed) {
+                ProjectConnection previous = idle.put(projectDir, connection);
+                if (previous != null) {
+                    evicted.add(previous);
+                }
+                Iterator<ProjectConnection> eldest = idle.values().iterator();
+                while (idle.size() > getParameters().getMaxIdleConnections().getOrElse(8) && eldest.hasNext()) {
+                    evicted.add(eldest.next());
+                    eldest.remove();
+                }
+            } else {
+                evicted.add(connection);
+            }
+        }
+        evicted.forEach(ProjectConnection::close);
+    }
+
+    @Override
+    public void close() {
+        List<ProjectConnection> connections;
+        synchronized (this) {
+            closed = true;
+            connections = new ArrayList<>(idle.values());
+            idle.clear();
+            if (warmUpExecutor != null) {
+                warmUpExecutor.shutdownNow();
+            }
+        }
+        connections.forEach(ProjectConnection::close);
+    }
+}
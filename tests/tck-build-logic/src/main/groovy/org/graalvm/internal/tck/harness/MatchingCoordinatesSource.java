@@ -0,0 +1,53 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.graalvm.internal.tck.utils.CoordinateDurationHistory;
+import org.graalvm.internal.tck.utils.CoordinateUtils;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+
+import java.util.List;
+
+/**
+ * Lazily resolves a -Pcoordinates filter (see {@link CoordinateFilter}) against the repository index held by the
+ * build's {@link RepositoryIndexService}, so later directory lookups reuse the index files it parsed.
+ * <p>
+ * Being a {@link ValueSource}, the result is only computed when a task reads it and is recomputed for every
+ * build, so it stays correct when the task graph is reused from the configuration cache. §TCK-test-harness.1
+ */
+public abstract class MatchingCoordinatesSource implements ValueSource<List<String>, MatchingCoordinatesSource.Params> {
+
+    public interface Params extends ValueSourceParameters {
+        Property<String> getCoordinateFilter();
+
+        /**
+         * Whether tested versions must have a metadata directory of their own.
+         */
+        Property<Boolean> getStrict();
+
+        Property<RepositoryIndexService> getRepositoryIndexService();
+
+        Property<String> getShardStrategy();
+
+        RegularFileProperty getDurationHistoryFile();
+    }
+
+    @Override
+    public List<String> obtain() {
+        Params params = getParameters();
+        String filter = params.getCoordinateFilter().getOrElse("");
+        boolean strict = params.getStrict().getOrElse(false);
+        RepositoryIndexService index = params.getRepositoryIndexService().get();
+        return CoordinateFilter.compile(filter).resolve(index::getArtifacts, strict,
+                (coordinates, k, n) -> CoordinateUtils.computeBatchedCoordinates(coordinates, k, n,
+                        params.getShardStrategy().getOrNull(),
+                        () -> CoordinateDurationHistory.loadCosts(params.getDurationHistoryFile().get().getAsFile().toPath())));
+    }
+}
@@ -0,0 +1,429 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.graalvm.internal.tck.utils.ParallelUtils;
+import org.gradle.api.GradleException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Inverted index from Java types and packages to the metadata that covers them.
+ * <p>
+ * Every metadata version of every artifact ({@code group:artifact:metadata-version}) is indexed by
+ * <ul>
+ *     <li>the types it registers ({@code type} of reflection, JNI and serialization entries, including proxy interfaces),</li>
+ *     <li>the {@code condition.typeReached} values of all its entries, and</li>
+ *     <li>the {@code allowed-packages} prefixes of its index.json entry.</li>
+ * </ul>
+ * Postings are sorted coordinate ids, so a lookup is a few hash probes. The index is persisted next to the
+ * repository index snapshot together with a fingerprint of every indexed file and is only rebuilt when that
+ * fingerprint changes.
+ */
+public final class MetadataReverseIndex {
+    private static final int MAGIC = 0x54434B52;
+    private static final int FORMAT_VERSION = 1;
+    private static final String METADATA_FILE_NAME = "reachability-metadata.json";
+    private static final List<String> TYPE_SECTIONS = List.of("reflection", "jni", "serialization");
+    /**
+     * Files modified this recently may still change within the same timestamp tick, so an index built from them
+     * is not persisted.
+     */
+    private static final long RACY_WINDOW_MILLIS = 2000;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * What part of the metadata matched a query.
+     */
+    public enum MatchKind {
+        /** The metadata registers the queried type. */
+        TYPE,
+        /** The queried type is the {@code typeReached} condition of an entry. */
+        TYPE_REACHED,
+        /** The metadata registers at least one type of the queried package. */
+        PACKAGE,
+        /** An {@code allowed-packages} prefix of the metadata covers the queried type or package. */
+        ALLOWED_PACKAGE
+    }
+
+    /**
+     * @param coordinates {@code group:artifact:metadata-version}
+     * @param kind        what matched
+     * @param value       the indexed value that matched (type name or package prefix)
+     */
+    public record Match(String coordinates, MatchKind kind, String value) {
+    }
+
+    private final List<String> coordinates;
+    private final Map<String, int[]> types;
+    private final Map<String, int[]> typesReached;
+    private final Map<String, int[]> allowedPackages;
+    private final Map<String, int[]> packages;
+
+    private MetadataReverseIndex(List<String> coordinates, Map<String, int[]> types, Map<String, int[]> typesReached,
+                                 Map<String, int[]> allowedPackages) {
+        this.coordinates = coordinates;
+        this.types = types;
+        this.typesReached = typesReached;
+        this.allowedPackages = allowedPackages;
+        this.packages = packagePostings(types);
+    }
+
+    /**
+     * Returns all indexed coordinates ({@code group:artifact:metadata-version}) in sorted order.
+     */
+    public List<String> getCoordinates() {
+        return coordinates;
+    }
+
+    /**
+     * Returns the metadata that registers {@code className}, uses it as {@code typeReached}, or whose
+     * {@code allowed-packages} cover its package. Nested classes may be given with {@code $} as they
+     * appear in metadata.
+     */
+    public List<Match> findClass(String className) {
+        List<Match> matches = new ArrayList<>();
+        addMatches(matches, types.get(className), MatchKind.TYPE, className);
+        addMatches(matches, typesReached.get(className), MatchKind.TYPE_REACHED, className);
+        int lastDot = className.lastIndexOf('.');
+        if (lastDot > 0) {
+            addAllowedPackageMatches(matches, className.substring(0, lastDot));
+        }
+        return sorted(matches);
+    }
+
+    /**
+     * Returns the metadata that registers types of {@code packageName} or whose {@code allowed-packages}
+     * cover it.
+     */
+    public List<Match> findPackage(String packageName) {
+        List<Match> matches = new ArrayList<>();
+        addMatches(matches, packages.get(packageName), MatchKind.PACKAGE, packageName);
+        addAllowedPackageMatches(matches, packageName);
+        return sorted(matches);
+    }
+
+    private void addAllowedPackageMatches(List<Match> matches, String packageName) {
+        int end = packageName.length();
+        while (end > 0) {
+            String prefix = packageName.substring(0, end);
+            addMatches(matches, allowedPackages.get(prefix), MatchKind.ALLOWED_PACKAGE, prefix);
+            end = prefix.lastIndexOf('.');
+        }
+    }
+
+    private void addMatches(List<Match> matches, int[] postings, MatchKind kind, String value) {
+        if (postings == null) {
+            return;
+        }
+        for (int id : postings) {
+            matches.add(new Match(coordinates.get(id), kind, value));
+        }
+    }
+
+    private static List<Match> sorted(List<Match> matches) {
+        matches.sort(Comparator.comparing(Match::coordinates).thenComparing(Match::kind).thenComparing(Match::value));
+        return matches;
+    }
+
+    /**
+     * Returns the reverse index of {@code index}, reusing {@code cacheFile} when none of the indexed files changed
+     * and rewriting it otherwise.
+     */
+    public static MetadataReverseIndex load(RepositoryIndex index, Path cacheFile) {
+        List<Source> sources = sources(index);
+        long now = System.currentTimeMillis();
+        byte[] fingerprint = fingerprint(index.getMetadataRoot(), sources);
+        MetadataReverseIndex cached = read(cacheFile, fingerprint);
+        if (cached != null) {
+            return cached;
+        }
+        MetadataReverseIndex built = build(sources);
+        boolean racy = sources.stream().anyMatch(source -> now - source.modified < RACY_WINDOW_MILLIS);
+        if (!racy) {
+            built.write(cacheFile, fingerprint);
+        }
+        return built;
+    }
+
+    /**
+     * Builds the reverse index of {@code index} from the metadata files on disk.
+     */
+    public static MetadataReverseIndex build(RepositoryIndex index) {
+        return build(sources(index));
+    }
+
+    private static MetadataReverseIndex build(List<Source> sources) {
+        List<String> coordinates = sources.stream().map(Source::coordinates).toList();
+        // Metadata files are parsed in parallel; postings are then assigned in coordinate order.
+        List<ParsedMetadata> parsed = ParallelUtils.orderedMap(sources, MetadataReverseIndex::parse);
+        Map<String, TreeSet<Integer>> types = new HashMap<>();
+        Map<String, TreeSet<Integer>> typesReached = new HashMap<>();
+        Map<String, TreeSet<Integer>> allowedPackages = new HashMap<>();
+        for (int id = 0; id < sources.size(); id++) {
+            for (String allowedPackage : sources.get(id).allowedPackages) {
+                post(allowedPackages, allowedPackage, id);
+            }
+            for (String type : parsed.get(id).types) {
+                post(types, type, id);
+            }
+            for (String typeReached : parsed.get(id).typesReached) {
+                post(typesReached, typeReached, id);
+            }
+        }
+        return new MetadataReverseIndex(coordinates, postings(types), postings(typesReached), postings(allowedPackages));
+    }
+
+    private record ParsedMetadata(Set<String> types, Set<String> typesReached) {
+    }
+
+    private static ParsedMetadata parse(Source source) {
+        Set<String> types = new HashSet<>();
+        Set<String> typesReached = new HashSet<>();
+        if (source.size < 0) {
+            return new ParsedMetadata(types, typesReached);
+        }
+        JsonNode metadata;
+        try {
+            metadata = OBJECT_MAPPER.readTree(source.metadataFile.toFile());
+        } catch (IOException e) {
+            throw new GradleException("Failed to parse " + source.metadataFile, e);
+        }
+        for (Map.Entry<String, JsonNode> section : metadata.properties()) {
+            boolean typeSection = TYPE_SECTIONS.contains(section.getKey());
+            for (JsonNode entry : entries(section.getValue())) {
+                String typeReached = entry.path("condition").path("typeReached").asText(null);
+                if (typeReached != null) {
+                    typesReached.add(typeReached);
+                }
+                if (typeSection) {
+                    types.addAll(registeredTypes(entry.get("type")));
+                }
+            }
+        }
+        return new ParsedMetadata(types, typesReached);
+    }
+
+    private static Iterable<JsonNode> entries(JsonNode section) {
+        if (section.isArray()) {
+            return section;
+        }
+        // "foreign" groups its entry arrays one level deeper.
+        List<JsonNode> nested = new ArrayList<>();
+        if (section.isObject()) {
+            section.forEach(child -> {
+                if (child.isArray()) {
+                    child.forEach(nested::add);
+                }
+            });
+        }
+        return nested;
+    }
+
+    private static List<String> registeredTypes(JsonNode type) {
+        if (type == null) {
+            return List.of();
+        }
+        if (type.isTextual()) {
+            return List.of(type.asText());
+        }
+        List<String> proxyInterfaces = new ArrayList<>();
+        type.path("proxy").forEach(proxyInterface -> {
+            if (proxyInterface.isTextual()) {
+                proxyInterfaces.add(proxyInterface.asText());
+            }
+        });
+        return proxyInterfaces;
+    }
+
+    private static void post(Map<String, TreeSet<Integer>> postings, String key, int id) {
+        postings.computeIfAbsent(key, ignored -> new TreeSet<>()).add(id);
+    }
+
+    private static Map<String, int[]> postings(Map<String, TreeSet<Integer>> sets) {
+        Map<String, int[]> result = new HashMap<>(sets.size() * 2);
+        sets.forEach((key, ids) -> result.put(key, ids.stream().mapToInt(Integer::intValue).toArray()));
+        return result;
+    }
+
+    private static Map<String, int[]> packagePostings(Map<String, int[]> types) {
+        Map<String, TreeSet<Integer>> packages = new HashMap<>();
+        types.forEach((type, ids) -> {
+            int lastDot = type.lastIndexOf('.');
+            if (lastDot > 0) {
+                TreeSet<Integer> packageIds = packages.computeIfAbsent(type.substring(0, lastDot), ignored -> new TreeSet<>());
+                for (int id : ids) {
+                    packageIds.add(id);
+                }
+            }
+        });
+        return postings(packages);
+    }
+
+    /**
+     * One indexed metadata version. {@code size} is -1 when the metadata directory has no metadata file.
+     */
+    private record Source(String coordinates, List<String> allowedPackages, Path metadataFile, long size, long modified) {
+    }
+
+    private static List<Source> sources(RepositoryIndex index) {
+        Map<String, Source> sources = new TreeMap<>();
+        for (RepositoryIndex.ArtifactIndex artifact : index.getArtifacts()) {
+            for (RepositoryIndex.IndexEntry entry : artifact.entries()) {
+                String metadataVersion = entry.metadataVersion();
+                if (metadataVersion == null || !artifact.hasMetadataDir(metadataVersion)) {
+                    continue;
+                }
+                String coordinates = artifact.key() + ":" + metadataVersion;
+                Path metadataFile = index.getMetadataRoot().resolve(artifact.groupId()).resolve(artifact.artifactId())
+                        .resolve(metadataVersion).resolve(METADATA_FILE_NAME);
+                long size = -1;
+                long modified = 0;
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(metadataFile, BasicFileAttributes.class);
+                    size = attributes.size();
+                    modified = attributes.lastModifiedTime().toMillis();
+                } catch (NoSuchFileException e) {
+                    // Indexed by its allowed-packages only.
+                } catch (IOException e) {
+                    throw new GradleException("Failed to read attributes of " + metadataFile, e);
+                }
+                sources.putIfAbsent(coordinates, new Source(coordinates, entry.allowedPackages(), metadataFile, size, modified));
+            }
+        }
+        return List.copyOf(sources.values());
+    }
+
+    private static byte[] fingerprint(Path metadataRoot, List<Source> sources) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is unavailable", e);
+        }
+        StringBuilder line = new StringBuilder(metadataRoot.toAbsolutePath().toString()).append('\n');
+        for (Source source : sources) {
+            line.append(source.coordinates).append(' ').append(source.allowedPackages).append(' ')
+                    .append(source.size).append(' ').append(source.modified).append('\n');
+            digest.update(line.toString().getBytes(StandardCharsets.UTF_8));
+            line.setLength(0);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Reads the cached index; a missing, stale or corrupt cache yields {@code null}.
+     */
+    private static MetadataReverseIndex read(Path cacheFile, byte[] fingerprint) {
+        if (!Files.isRegularFile(cacheFile)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            byte[] cachedFingerprint = new byte[in.readUnsignedByte()];
+            in.readFully(cachedFingerprint);
+            if (!Arrays.equals(cachedFingerprint, fingerprint)) {
+                return null;
+            }
+            int count = in.readInt();
+            List<String> coordinates = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                coordinates.add(in.readUTF());
+            }
+            return new MetadataReverseIndex(List.copyOf(coordinates), readPostings(in), readPostings(in), readPostings(in));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void write(Path cacheFile, byte[] fingerprint) {
+        Path temporary = null;
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            temporary = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeByte(fingerprint.length);
+                out.write(fingerprint);
+                out.writeInt(coordinates.size());
+                for (String c : coordinates) {
+                    out.writeUTF(c);
+                }
+                writePostings(out, types);
+                writePostings(out, typesReached);
+                writePostings(out, allowedPackages);
+            }
+            try {
+                Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // The cache is only an optimization; the next lookup rebuilds it.
+            try {
+                if (temporary != null) {
+                    Files.deleteIfExists(temporary);
+                }
+            } catch (IOException ignored) {
+                // best effort
+            }
+        }
+    }
+
+    private static void writePostings(DataOutputStream out, Map<String, int[]> postings) throws IOException {
+        out.writeInt(postings.size());
+        for (Map.Entry<String, int[]> entry : new TreeMap<>(postings).entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().length);
+            for (int id : entry.getValue()) {
+                out.writeInt(id);
+            }
+        }
+    }
+
+    private static Map<String, int[]> readPostings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Map<String, int[]> postings = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String key = in.readUTF();
+            int[] ids = new int[in.readInt()];
+            for (int j = 0; j < ids.length; j++) {
+                ids[j] = in.readInt();
+            }
+            postings.put(key, ids);
+        }
+        return postings;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.gradle.api.GradleException;
+import org.gradle.util.internal.VersionNumber;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Resolves an arbitrary library version of one artifact to the index entry whose metadata fits it best.
+ * <p>
+ * Everything is precomputed once per artifact: a map of tested versions, the compiled {@code default-for}
+ * patterns, and all tested versions sorted by {@link VersionNumber} together with their entries. A lookup
+ * tries, in order:
+ * <ol>
+ *     <li>{@link Kind#TESTED}: the version is listed in {@code tested-versions};</li>
+ *     <li>{@link Kind#DEFAULT_FOR}: the version matches a {@code default-for} pattern (first entry in index order);</li>
+ *     <li>{@link Kind#LATEST}: the version is newer than every tested version and an entry is marked {@code latest};</li>
+ *     <li>{@link Kind#CLOSEST}: the entry of the closest tested version at or below it, found by binary search,
+ *     or of the oldest tested version when it is older than all of them.</li>
+ * </ol>
+ * Only entries whose metadata directory exists take part.
+ */
+public final class MetadataVersionResolver {
+
+    /**
+     * How a version was resolved.
+     */
+    public enum Kind {
+        TESTED,
+        DEFAULT_FOR,
+        LATEST,
+        CLOSEST
+    }
+
+    public record Resolution(RepositoryIndex.IndexEntry entry, Kind kind) {
+    }
+
+    private record DefaultFor(Pattern pattern, RepositoryIndex.IndexEntry entry) {
+    }
+
+    private final Map<String, RepositoryIndex.IndexEntry> tested = new HashMap<>();
+    private final List<DefaultFor> defaultFor = new ArrayList<>();
+    private final VersionNumber[] boundaries;
+    private final RepositoryIndex.IndexEntry[] boundaryEntries;
+    private final RepositoryIndex.IndexEntry latest;
+
+    private MetadataVersionResolver(RepositoryIndex.ArtifactIndex artifact) {
+        record Boundary(VersionNumber version, RepositoryIndex.IndexEntry entry) {
+        }
+        List<Boundary> sorted = new ArrayList<>();
+        RepositoryIndex.IndexEntry latestEntry = null;
+        for (RepositoryIndex.IndexEntry entry : artifact.entries()) {
+            if (!artifact.hasMetadataDir(entry.metadataVersion())) {
+                continue;
+            }
+            for (String version : entry.testedVersions()) {
+                tested.putIfAbsent(version, entry);
+                sorted.add(new Boundary(VersionNumber.parse(version), entry));
+            }
+            if (entry.defaultFor() != null) {
+                try {
+                    defaultFor.add(new DefaultFor(Pattern.compile(entry.defaultFor()), entry));
+                } catch (PatternSyntaxException e) {
+                    throw new GradleException("Invalid default-for pattern '" + entry.defaultFor() + "' in "
+                            + artifact.key() + " index.json", e);
+                }
+            }
+            if (entry.latest() && latestEntry == null) {
+                latestEntry = entry;
+            }
+        }
+        // Stable sort keeps index order for equal versions, so the first listing entry wins like entryForTestedVersion.
+        sorted.sort(Comparator.comparing(Boundary::version));
+        boundaries = sorted.stream().map(Boundary::version).toArray(VersionNumber[]::new);
+        boundaryEntries = sorted.stream().map(Boundary::entry).toArray(RepositoryIndex.IndexEntry[]::new);
+        latest = latestEntry;
+    }
+
+    public static MetadataVersionResolver of(RepositoryIndex.ArtifactIndex artifact) {
+        return new MetadataVersionResolver(artifact);
+    }
+
+    /**
+     * Returns the best entry for {@code version}, or empty if the artifact has no usable metadata at all.
+     */
+    public Optional<Resolution> resolve(String version) {
+        RepositoryIndex.IndexEntry exact = tested.get(version);
+        if (exact != null) {
+            return Optional.of(new Resolution(exact, Kind.TESTED));
+        }
+        for (DefaultFor candidate : defaultFor) {
+            if (candidate.pattern.matcher(version).matches()) {
+                return Optional.of(new Resolution(candidate.entry, Kind.DEFAULT_FOR));
+            }
+        }
+        if (boundaries.length == 0) {
+            return Optional.ofNullable(latest).map(entry -> new Resolution(entry, Kind.LATEST));
+        }
+        VersionNumber requested = VersionNumber.parse(version);
+        int floor = floorIndex(requested);
+        if (floor == boundaries.length - 1 && latest != null && requested.compareTo(boundaries[floor]) > 0) {
+            return Optional.of(new Resolution(latest, Kind.LATEST));
+        }
+        return Optional.of(new Resolution(boundaryEntries[Math.max(floor, 0)], Kind.CLOSEST));
+    }
+
+    /**
+     * Index of the last boundary that is not greater than {@code version}, or -1 if all are greater.
+     * Among equal boundaries the first one is returned.
+     */
+    private int floorIndex(VersionNumber version) {
+        int low = 0;
+        int high = boundaries.length - 1;
+        int result = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (boundaries[middle].compareTo(version) <= 0) {
+                result = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        while (result > 0 && boundaries[result - 1].compareTo(boundaries[result]) == 0) {
+            result--;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.graalvm.internal.tck.utils.NativeImageConfigUtils;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+import org.gradle.process.ExecOperations;
+
+import javax.inject.Inject;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lazily runs {@code native-image --version} of the GraalVM selected by {@code GRAALVM_HOME} or {@code JAVA_HOME}.
+ * <p>
+ * Absent when native-image cannot be run, so tasks that never build an image do not fail on it.
+ */
+public abstract class NativeImageVersionSource implements ValueSource<String, ValueSourceParameters.None> {
+
+    @Inject
+    protected abstract ExecOperations getExecOperations();
+
+    @Override
+    public String obtain() {
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        try {
+            int exitCode = getExecOperations().exec(spec -> {
+                spec.commandLine(NativeImageConfigUtils.nativeImageTool("native-image"), "--version");
+                spec.setStandardOutput(stdout);
+                spec.setErrorOutput(OutputStream.nullOutputStream());
+                spec.setIgnoreExitValue(true);
+            }).getExitValue();
+            return exitCode == 0 ? stdout.toString(StandardCharsets.UTF_8).trim() : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.gradle.api.GradleException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Where the result of a coordinate query goes: plain lines, GitHub step outputs and GitHub environment variables.
+ * <p>
+ * Queries write through this interface so the same code serves a Gradle task, which writes to the console and the
+ * files named by {@code GITHUB_OUTPUT} and {@code GITHUB_ENV}, and the {@link TckDaemon}, which sends everything
+ * to its client. §TCK-test-harness.1
+ */
+public interface QueryOutput {
+
+    void println(String line);
+
+    void githubOutput(String key, String value);
+
+    void githubEnv(String key, String value);
+
+    /**
+     * Writes lines to standard output and appends outputs and environment variables to the files named by
+     * {@code GITHUB_OUTPUT} and {@code GITHUB_ENV}, printing them as {@code key=value} when the variable is not set.
+     */
+    static QueryOutput console() {
+        return new QueryOutput() {
+            @Override
+            public void println(String line) {
+                System.out.println(line);
+            }
+
+            @Override
+            public void githubOutput(String key, String value) {
+                append("GITHUB_OUTPUT", key, value);
+            }
+
+            @Override
+            public void githubEnv(String key, String value) {
+                append("GITHUB_ENV", key, value);
+            }
+
+            private void append(String variable, String key, String value) {
+                String path = System.getenv(variable);
+                if (path == null || path.trim().isEmpty()) {
+                    System.out.println(key + "=" + value);
+                    return;
+                }
+                try {
+                    Files.writeString(Path.of(path), key + "=" + value + "\n", StandardCharsets.UTF_8,
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                } catch (IOException e) {
+                    throw new GradleException("Failed to write " + variable + " file " + path, e);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.graalvm.internal.tck.utils.ParallelUtils;
+import org.gradle.api.GradleException;
+import org.gradle.util.internal.VersionNumber;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Immutable, typed view of the metadata/&lt;groupId&gt;/&lt;artifactId&gt;/index.json files of the repository.
+ * Every index file is parsed exactly once; coordinate lookups (metadata directory, test directory,
+ * override flag, allowed packages, requires) are then served from memory.
+ */
+public final class RepositoryIndex {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String INDEX_FILE = "index.json";
+
+    private final Path metadataRoot;
+    private final Path testRoot;
+    private final List<ArtifactIndex> artifacts;
+    private final Map<String, ArtifactIndex> artifactsByKey;
+
+    public RepositoryIndex(Path metadataRoot, Path testRoot, List<ArtifactIndex> artifacts) {
+        this.metadataRoot = metadataRoot;
+        this.testRoot = testRoot;
+        List<ArtifactIndex> sorted = new ArrayList<>(artifacts);
+        sorted.sort(Comparator.comparing(ArtifactIndex::groupId).thenComparing(ArtifactIndex::artifactId));
+        this.artifacts = Collections.unmodifiableList(sorted);
+        Map<String, ArtifactIndex> byKey = new LinkedHashMap<>();
+        for (ArtifactIndex artifact : sorted) {
+            byKey.put(artifact.key(), artifact);
+        }
+        this.artifactsByKey = Collections.unmodifiableMap(byKey);
+    }
+
+    /**
+     * Parses every artifact-level index.json below the metadata root. Index files are read and parsed in
+     * parallel; the first read or parse failure fails the load.
+     */
+    public static RepositoryIndex load(Path metadataRoot, Path testRoot) {
+        List<ArtifactIndex> artifacts = ParallelUtils.orderedMap(listArtifactDirs(metadataRoot, null),
+                artifactDir -> loadArtifact(metadataRoot, testRoot,
+                        artifactDir.getParent().getFileName().toString(), artifactDir.getFileName().toString()));
+        return new RepositoryIndex(metadataRoot, testRoot, artifacts);
+    }
+
+    /**
+     * Parses metadata/&lt;groupId&gt;/&lt;artifactId&gt;/index.json.
+     *
+     * @return the parsed artifact index, or null if the artifact has no index file
+     */
+    public static ArtifactIndex loadArtifact(Path metadataRoot, Path testRoot, String groupId, String artifactId) {
+        Path artifactDir = metadataRoot.resolve(groupId).resolve(artifactId);
+        Path indexFile = artifactDir.resolve(INDEX_FILE);
+        if (!Files.isRegularFile(indexFile)) {
+            return null;
+        }
+        byte[] content;
+        try {
+            content = Files.readAllBytes(indexFile);
+        } catch (IOException e) {
+            throw new GradleException("Failed to read " + indexFile, e);
+        }
+        return new ArtifactIndex(
+                groupId,
+                artifactId,
+                parseEntries(indexFile, content),
+                subdirectoryNames(artifactDir),
+                subdirectoryNames(testRoot.resolve(groupId).resolve(artifactId))
+        );
+    }
+
+    /**
+     * Parses the entries of an index.json file whose content has already been read.
+     */
+    static List<IndexEntry> parseEntries(Path indexFile, byte[] content) {
+        JsonNode root;
+        try {
+            root = OBJECT_MAPPER.readTree(content);
+        } catch (IOException e) {
+            throw new GradleException("Failed to parse " + indexFile, e);
+        }
+        List<IndexEntry> entries = new ArrayList<>();
+        if (root != null && root.isArray()) {
+            for (JsonNode node : root) {
+                if (node.isObject()) {
+                    entries.add(IndexEntry.fromJson(node));
+                }
+            }
+        }
+        return List.copyOf(entries);
+    }
+
+    /**
+     * Lists metadata/&lt;groupId&gt;/&lt;artifactId&gt; directories that contain an index.json file, sorted by
+     * group and artifact. A null group ID matches every group; groups are then listed in parallel.
+     */
+    static List<Path> listArtifactDirs(Path metadataRoot, String groupId) {
+        List<Path> groupDirs = groupId != null ? List.of(metadataRoot.resolve(groupId)) : sortedSubdirectories(metadataRoot);
+        List<Path> artifactDirs = new ArrayList<>();
+        ParallelUtils.orderedMap(groupDirs, groupDir -> sortedSubdirectories(groupDir).stream()
+                        .filter(artifactDir -> Files.isRegularFile(artifactDir.resolve(INDEX_FILE)))
+                        .toList())
+                .forEach(artifactDirs::addAll);
+        return artifactDirs;
+    }
+
+    private static List<Path> sortedSubdirectories(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> children = Files.list(dir)) {
+            return children.filter(Files::isDirectory).sorted().collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new GradleException("Failed to list directory " + dir, e);
+        }
+    }
+
+    static Set<String> subdirectoryNames(Path dir) {
+        Set<String> names = sortedSubdirectories(dir).stream()
+                .map(path -> path.getFileName().toString())
+                .collect(Collectors.toCollection(TreeSet::new));
+        return Collections.unmodifiableSet(names);
+    }
+
+    public Path getMetadataRoot() {
+        return metadataRoot;
+    }
+
+    public Path getTestRoot() {
+        return testRoot;
+    }
+
+    /**
+     * Returns all indexed artifacts ordered by group ID and artifact ID.
+     */
+    public List<ArtifactIndex> getArtifacts() {
+        return artifacts;
+    }
+
+    /**
+     * Returns all indexed artifacts matching given group ID and artifact ID.
+     * null values match every possible value.
+     */
+    public List<ArtifactIndex> getArtifacts(String groupId, String artifactId) {
+        if (groupId != null && artifactId != null) {
+            return findArtifact(groupId, artifactId).map(List::of).orElse(List.of());
+        }
+        return artifacts.stream()
+                .filter(artifact -> groupId == null || groupId.equals(artifact.groupId()))
+                .filter(artifact -> artifactId == null || artifactId.equals(artifact.artifactId()))
+                .collect(Collectors.toList());
+    }
+
+    public Optional<ArtifactIndex> findArtifact(String groupId, String artifactId) {
+        return Optional.ofNullable(artifactsByKey.get(groupId + ":" + artifactId));
+    }
+
+    /**
+     * Returns the group:artifact:version coordinates of all tested versions of the given artifacts, in index order.
+     * A null version filter matches every version. Standard matching keeps versions whose 'metadata-version'
+     * directory exists; strict matching requires a metadata directory named exactly like the tested version.
+     */
+    public static List<String> matchingCoordinates(List<ArtifactIndex> artifacts, String versionFilter, boolean strict) {
+        Set<String> results = new LinkedHashSet<>();
+        for (ArtifactIndex artifact : artifacts) {
+            for (IndexEntry entry : artifact.entries()) {
+                if (!strict && !artifact.hasMetadataDir(entry.metadataVersion())) {
+                    continue;
+                }
+                for (String version : entry.testedVersions()) {
+                    if ((versionFilter == null || versionFilter.equals(version))
+                            && (!strict || artifact.hasMetadataDir(version))) {
+                        results.add(artifact.key() + ":" + version);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * Resolves full coordinates to the index entry that lists the version as tested.
+     */
+    public Optional<ResolvedCoordinate> resolve(String groupId, String artifactId, String version) {
+        return findArtifact(groupId, artifactId).flatMap(artifact -> artifact.resolve(version, metadataRoot, testRoot));
+    }
+
+    /**
+     * All index entries of one artifact together with the version directories that exist for it.
+     */
+    public record ArtifactIndex(
+            String groupId,
+            String artifactId,
+            List<IndexEntry> entries,
+            Set<String> metadataVersionDirs,
+            Set<String> testVersionDirs
+    ) {
+        public String key() {
+            return groupId + ":" + artifactId;
+        }
+
+        /**
+         * Returns the first entry whose tested-versions contain the given version.
+         */
+        public Optional<IndexEntry> entryForTestedVersion(String version) {
+            return entries.stream()
+                    .filter(entry -> entry.testedVersions().contains(version))
+                    .findFirst();
+        }
+
+        public Optional<IndexEntry> entryForMetadataVersion(String metadataVersion) {
+            return entries.stream()
+                    .filter(entry -> metadataVersion.equals(entry.metadataVersion()))
+                    .findFirst();
+        }
+
+        /**
+         * Returns the entry marked {@code latest}, or the one with the highest metadata version when none is marked.
+         */
+        public Optional<IndexEntry> latestEntry() {
+            return entries.stream()
+                    .filter(IndexEntry::latest)
+                    .findFirst()
+                    .or(() -> entries.stream().max(Comparator.comparing(
+                            entry -> VersionNumber.parse(Objects.toString(entry.metadataVersion(), "")))));
+        }
+
+        public boolean hasMetadataDir(String name) {
+            return name != null && metadataVersionDirs.contains(name);
+        }
+
+        public boolean hasTestDir(String name) {
+            return name != null && testVersionDirs.contains(name);
+        }
+
+        Optional<ResolvedCoordinate> resolve(String version, Path metadataRoot, Path testRoot) {
+            return entryForTestedVersion(version).map(entry -> new ResolvedCoordinate(
+                    groupId + ":" + artifactId + ":" + version,
+                    hasMetadataDir(entry.metadataVersion())
+                            ? metadataRoot.resolve(groupId).resolve(artifactId).resolve(entry.metadataVersion())
+                            : null,
+                    hasTestDir(entry.testDirectoryName())
+                            ? testRoot.resolve(groupId).resolve(artifactId).resolve(entry.testDirectoryName())
+                            : null,
+                    entry.override(),
+                    entry.allowedPackages(),
+                    entry.requires()
+            ));
+        }
+    }
+
+    /**
+     * The subset of an index.json entry that the harness needs for coordinate resolution.
+     */
+    public record IndexEntry(
+            String metadataVersion,
+            String testVersion,
+            List<String> testedVersions,
+            boolean latest,
+            boolean override,
+            String defaultFor,
+            List<String> allowedPackages,
+            List<String> requires,
+            boolean notForNativeImage
+    ) {
+        /**
+         * Test projects live under 'test-version' when present, otherwise under 'metadata-version'.
+         */
+        public String testDirectoryName() {
+            return testVersion != null ? testVersion : metadataVersion;
+        }
+
+        static IndexEntry fromJson(JsonNode node) {
+            return new IndexEntry(
+                    text(node, "metadata-version"),
+                    text(node, "test-version"),
+                    textList(node, "tested-versions"),
+                    bool(node, "latest"),
+                    bool(node, "override"),
+                    text(node, "default-for"),
+                    textList(node, "allowed-packages"),
+                    textList(node, "requires"),
+                    bool(node, "not-for-native-image")
+            );
+        }
+
+        private static String text(JsonNode node, String field) {
+            JsonNode value = node.get(field);
+            return value == null || value.isNull() ? null : value.asText();
+        }
+
+        private static boolean bool(JsonNode node, String field) {
+            JsonNode value = node.get(field);
+            if (value == null || value.isNull()) {
+                return false;
+            }
+            return value.isBoolean() ? value.booleanValue() : Boolean.parseBoolean(value.asText());
+        }
+
+        private static List<String> textList(JsonNode node, String field) {
+            JsonNode value = node.get(field);
+            if (value == null || !value.isArray()) {
+                return List.of();
+            }
+            List<String> values = new ArrayList<>(value.size());
+            value.forEach(element -> values.add(element.asText()));
+            return List.copyOf(values);
+        }
+    }
+
+    /**
+     * Everything the harness needs to run one coordinate. Directories are null when the index points to a
+     * directory that does not exist.
+     */
+    public record ResolvedCoordinate(
+            String coordinates,
+            Path metadataDir,
+            Path testDir,
+            boolean override,
+            List<String> allowedPackages,
+            List<String> requires
+    ) {
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Build-scoped holder of the {@link RepositoryIndex}.
+ * <p>
+ * Queries for a single artifact or group only parse the index files they touch; the first query that needs
+ * the whole repository loads every index file once and serves all later lookups from memory. When a snapshot
+ * file is configured, that load goes through {@link RepositoryIndexSnapshot} so only changed index files are
+ * parsed again across Gradle invocations.
+ */
+public abstract class RepositoryIndexService implements BuildService<RepositoryIndexService.Params> {
+    public static final String NAME = "tckRepositoryIndex";
+
+    public interface Params extends BuildServiceParameters {
+        DirectoryProperty getMetadataRoot();
+
+        DirectoryProperty getTestRoot();
+
+        /**
+         * Optional location of the persistent {@link RepositoryIndexSnapshot}.
+         */
+        RegularFileProperty getSnapshotFile();
+    }
+
+    private final Map<String, Optional<RepositoryIndex.ArtifactIndex>> artifacts = new ConcurrentHashMap<>();
+    private final Map<String, Optional<MetadataVersionResolver>> versionResolvers = new ConcurrentHashMap<>();
+    private volatile RepositoryIndex index;
+
+    private Path metadataRoot() {
+        return getParameters().getMetadataRoot().get().getAsFile().toPath();
+    }
+
+    private Path testRoot() {
+        return getParameters().getTestRoot().get().getAsFile().toPath();
+    }
+
+    /**
+     * Returns the index of the whole repository, parsing it on first use.
+     */
+    public RepositoryIndex getIndex() {
+        RepositoryIndex loaded = index;
+        if (loaded == null) {
+            synchronized (this) {
+                loaded = index;
+                if (loaded == null) {
+                    loaded = getParameters().getSnapshotFile().isPresent()
+                            ? RepositoryIndexSnapshot.load(metadataRoot(), testRoot(),
+                                    getParameters().getSnapshotFile().get().getAsFile().toPath())
+                            : RepositoryIndex.load(metadataRoot(), testRoot());
+                    index = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Drops everything read so far, so the next query sees the repository as it is on disk now.
+     * Long-lived callers use it after files changed; a snapshot, if configured, keeps the reload incremental.
+     */
+    public synchronized void invalidate() {
+        index = null;
+        artifacts.clear();
+        versionResolvers.clear();
+    }
+
+    public Optional<RepositoryIndex.ArtifactIndex> findArtifact(String groupId, String artifactId) {
+        RepositoryIndex loaded = index;
+        if (loaded != null) {
+            return loaded.findArtifact(groupId, artifactId);
+        }
+        return artifacts.computeIfAbsent(groupId + ":" + artifactId, key -> Optional.ofNullable(
+                RepositoryIndex.loadArtifact(metadataRoot(), testRoot(), groupId, artifactId)));
+    }
+
+    /**
+     * Returns the precompiled {@link MetadataVersionResolver} of an artifact, built on first use.
+     */
+    public Optional<MetadataVersionResolver> findVersionResolver(String groupId, String artifactId) {
+        return versionResolvers.computeIfAbsent(groupId + ":" + artifactId,
+                key -> findArtifact(groupId, artifactId).map(MetadataVersionResolver::of));
+    }
+
+    /**
+     * Returns all artifacts matching given group ID and artifact ID.
+     * null values match every possible value (null artifact ID matches all artifacts in given group).
+     */
+    public List<RepositoryIndex.ArtifactIndex> getArtifacts(String groupId, String artifactId) {
+        if (groupId == null || index != null) {
+            return getIndex().getArtifacts(groupId, artifactId);
+        }
+        if (artifactId != null) {
+            return findArtifact(groupId, artifactId).map(List::of).orElse(List.of());
+        }
+        List<RepositoryIndex.ArtifactIndex> result = new ArrayList<>();
+        for (Path artifactDir : RepositoryIndex.listArtifactDirs(metadataRoot(), groupId)) {
+            findArtifact(groupId, artifactDir.getFileName().toString()).ifPresent(result::add);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.graalvm.internal.tck.utils.ParallelUtils;
+import org.gradle.api.GradleException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Persistent binary snapshot of the {@link RepositoryIndex}.
+ * <p>
+ * Every artifact is stored together with the size, modification time and SHA-256 of its index.json and the
+ * modification times of its metadata and test directories. On load only index files whose size or modification
+ * time changed are read again, and only those whose content hash changed are parsed; an unchanged repository is
+ * restored without touching the JSON layer at all.
+ */
+public final class RepositoryIndexSnapshot {
+    private static final int MAGIC = 0x54434B49;
+    private static final int FORMAT_VERSION = 1;
+    /**
+     * Files modified this recently may still change within the same timestamp tick, so their timestamps are not
+     * trusted on the next load.
+     */
+    private static final long RACY_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final long UNTRUSTED = Long.MIN_VALUE;
+    private static final long MISSING = -1L;
+
+    private RepositoryIndexSnapshot() {
+    }
+
+    /**
+     * Returns the repository index, reusing every artifact whose fingerprints match the snapshot at
+     * {@code snapshotFile} and rewriting the snapshot if anything changed.
+     */
+    public static RepositoryIndex load(Path metadataRoot, Path testRoot, Path snapshotFile) {
+        Map<String, Fingerprinted> previous = read(snapshotFile, metadataRoot, testRoot);
+        long now = System.currentTimeMillis();
+        boolean changed = false;
+
+        List<Path> artifactDirs = RepositoryIndex.listArtifactDirs(metadataRoot, null);
+        List<Fingerprinted> cached = new ArrayList<>(artifactDirs.size());
+        for (Path artifactDir : artifactDirs) {
+            cached.add(previous.remove(artifactDir.getParent().getFileName() + ":" + artifactDir.getFileName()));
+        }
+        changed |= !previous.isEmpty();
+
+        // Stat, and where needed read and parse, every artifact in parallel.
+        List<Integer> positions = IntStream.range(0, artifactDirs.size()).boxed().toList();
+        List<Fingerprinted> current = ParallelUtils.orderedMap(positions, i -> refresh(cached.get(i), metadataRoot,
+                testRoot, artifactDirs.get(i).getParent().getFileName().toString(),
+                artifactDirs.get(i).getFileName().toString(), now));
+        for (int i = 0; i < current.size(); i++) {
+            changed |= current.get(i) != cached.get(i);
+        }
+
+        if (changed) {
+            write(snapshotFile, metadataRoot, testRoot, current);
+        }
+        return new RepositoryIndex(metadataRoot, testRoot, current.stream().map(Fingerprinted::artifact).toList());
+    }
+
+    private static Fingerprinted refresh(
+            Fingerprinted cached,
+            Path metadataRoot,
+            Path testRoot,
+            String groupId,
+            String artifactId,
+            long now
+    ) {
+        Path artifactDir = metadataRoot.resolve(groupId).resolve(artifactId);
+        Path indexFile = artifactDir.resolve("index.json");
+        Path testArtifactDir = testRoot.resolve(groupId).resolve(artifactId);
+
+        BasicFileAttributes indexAttributes = attributes(indexFile);
+        long indexSize = indexAttributes.size();
+        long indexModified = trustedModificationTime(indexAttributes, now);
+        long metadataDirModified = trustedModificationTime(attributesOrNull(artifactDir), now);
+        long testDirModified = trustedModificationTime(attributesOrNull(testArtifactDir), now);
+
+        boolean indexUnchanged = cached != null
+                && cached.indexModified != UNTRUSTED
+                && cached.indexModified == indexModified
+                && cached.indexSize == indexSize;
+        boolean metadataDirUnchanged = cached != null
+                && cached.metadataDirModified != UNTRUSTED
+                && cached.metadataDirModified == metadataDirModified;
+        boolean testDirUnchanged = cached != null
+                && cached.testDirModified != UNTRUSTED
+                && cached.testDirModified == testDirModified;
+        if (indexUnchanged && metadataDirUnchanged && testDirUnchanged) {
+            return cached;
+        }
+
+        byte[] indexHash = cached == null ? null : cached.indexHash;
+        List<RepositoryIndex.IndexEntry> entries = cached == null ? null : cached.artifact.entries();
+        if (!indexUnchanged) {
+            byte[] content;
+            try {
+                content = Files.readAllBytes(indexFile);
+            } catch (IOException e) {
+                throw new GradleException("Failed to read " + indexFile, e);
+            }
+            byte[] contentHash = sha256(content);
+            if (entries == null || !Arrays.equals(contentHash, indexHash)) {
+                entries = RepositoryIndex.parseEntries(indexFile, content);
+            }
+            indexHash = contentHash;
+        }
+
+        RepositoryIndex.ArtifactIndex artifact = new RepositoryIndex.ArtifactIndex(
+                groupId,
+                artifactId,
+                entries,
+                metadataDirUnchanged ? cached.artifact.metadataVersionDirs() : RepositoryIndex.subdirectoryNames(artifactDir),
+                testDirUnchanged ? cached.artifact.testVersionDirs() : RepositoryIndex.subdirectoryNames(testArtifactDir)
+        );
+        return new Fingerprinted(artifact, indexSize, indexModified, indexHash, metadataDirModified, testDirModified);
+    }
+
+    private static BasicFileAttributes attributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new GradleException("Failed to read attributes of " + path, e);
+        }
+    }
+
+    private static BasicFileAttributes attributesOrNull(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new GradleException("Failed to read attributes of " + path, e);
+        }
+    }
+
+    private static long trustedModificationTime(BasicFileAttributes attributes, long now) {
+        if (attributes == null) {
+            return MISSING;
+        }
+        long modified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        return TimeUnit.MILLISECONDS.toNanos(now) - modified < RACY_WINDOW_NANOS ? UNTRUSTED : modified;
+    }
+
+    private static byte[] sha256(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is unavailable", e);
+        }
+    }
+
+    /**
+     * Reads the snapshot; a missing, foreign or corrupt snapshot is treated as empty.
+     */
+    private static Map<String, Fingerprinted> read(Path snapshotFile, Path metadataRoot, Path testRoot) {
+        Map<String, Fingerprinted> artifacts = new HashMap<>();
+        if (!Files.isRegularFile(snapshotFile)) {
+            return artifacts;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+                    || !in.readUTF().equals(metadataRoot.toAbsolutePath().toString())
+                    || !in.readUTF().equals(testRoot.toAbsolutePath().toString())) {
+                return artifacts;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Fingerprinted artifact = readArtifact(in);
+                artifacts.put(artifact.artifact.key(), artifact);
+            }
+            return artifacts;
+        } catch (IOException | RuntimeException e) {
+            return new HashMap<>();
+        }
+    }
+
+    private static Fingerprinted readArtifact(DataInputStream in) throws IOException {
+        String groupId = in.readUTF();
+        String artifactId = in.readUTF();
+        long indexSize = in.readLong();
+        long indexModified = in.readLong();
+        byte[] indexHash = new byte[in.readUnsignedByte()];
+        in.readFully(indexHash);
+        long metadataDirModified = in.readLong();
+        long testDirModified = in.readLong();
+        Set<String> metadataVersionDirs = Collections.unmodifiableSet(new TreeSet<>(readStrings(in)));
+        Set<String> testVersionDirs = Collections.unmodifiableSet(new TreeSet<>(readStrings(in)));
+        int entryCount = in.readInt();
+        List<RepositoryIndex.IndexEntry> entries = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            entries.add(new RepositoryIndex.IndexEntry(
+                    readNullableString(in),
+                    readNullableString(in),
+                    readStrings(in),
+                    in.readBoolean(),
+                    in.readBoolean(),
+                    readNullableString(in),
+                    readStrings(in),
+                    readStrings(in),
+                    in.readBoolean()
+            ));
+        }
+        RepositoryIndex.ArtifactIndex artifact = new RepositoryIndex.ArtifactIndex(
+                groupId, artifactId, List.copyOf(entries), metadataVersionDirs, testVersionDirs);
+        return new Fingerprinted(artifact, indexSize, indexModified, indexHash, metadataDirModified, testDirModified);
+    }
+
+    private static void write(Path snapshotFile, Path metadataRoot, Path testRoot, List<Fingerprinted> artifacts) {
+        Path temporary = null;
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            temporary = Files.createTempFile(snapshotFile.getParent(), snapshotFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(metadataRoot.toAbsolutePath().toString());
+                out.writeUTF(testRoot.toAbsolutePath().toString());
+                out.writeInt(artifacts.size());
+                for (Fingerprinted artifact : artifacts) {
+                    writeArtifact(out, artifact);
+                }
+            }
+            try {
+                Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // The snapshot is only an optimization; the next build rebuilds it.
+            try {
+                if (temporary != null) {
+                    Files.deleteIfExists(temporary);
+                }
+            } catch (IOException ignored) {
+                // best effort
+            }
+        }
+    }
+
+    private static void writeArtifact(DataOutputStream out, Fingerprinted fingerprinted) throws IOException {
+        RepositoryIndex.ArtifactIndex artifact = fingerprinted.artifact;
+        out.writeUTF(artifact.groupId());
+        out.writeUTF(artifact.artifactId());
+        out.writeLong(fingerprinted.indexSize);
+        out.writeLong(fingerprinted.indexModified);
+        out.writeByte(fingerprinted.indexHash.length);
+        out.write(fingerprinted.indexHash);
+        out.writeLong(fingerprinted.metadataDirModified);
+        out.writeLong(fingerprinted.testDirModified);
+        writeStrings(out, artifact.metadataVersionDirs());
+        writeStrings(out, artifact.testVersionDirs());
+        out.writeInt(artifact.entries().size());
+        for (RepositoryIndex.IndexEntry entry : artifact.entries()) {
+            writeNullableString(out, entry.metadataVersion());
+            writeNullableString(out, entry.testVersion());
+            writeStrings(out, entry.testedVersions());
+            out.writeBoolean(entry.latest());
+            out.writeBoolean(entry.override());
+            writeNullableString(out, entry.defaultFor());
+            writeStrings(out, entry.allowedPackages());
+            writeStrings(out, entry.requires());
+            out.writeBoolean(entry.notForNativeImage());
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readUTF());
+        }
+        return List.copyOf(values);
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private record Fingerprinted(
+            RepositoryIndex.ArtifactIndex artifact,
+            long indexSize,
+            long indexModified,
+            byte[] indexHash,
+            long metadataDirModified,
+            long testDirModified
+    ) {
+    }
+}
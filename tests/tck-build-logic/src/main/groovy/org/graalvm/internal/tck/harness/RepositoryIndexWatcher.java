@@ -0,0 +1,123 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Tells a long-lived process when its cached {@link RepositoryIndex} may be stale.
+ * <p>
+ * Everything the index reads lives at most two levels below the metadata and test roots: {@code index.json} and
+ * the version directories of {@code <group>/<artifact>}. Those directories are watched, so a query only pays for
+ * a reload after something changed. If the file system cannot be watched (e.g. the inotify limit is reached), every
+ * poll reports a change and callers fall back to the incremental {@link RepositoryIndexSnapshot} refresh.
+ */
+public final class RepositoryIndexWatcher implements Closeable {
+
+    private static final int WATCHED_DEPTH = 2;
+
+    private record Watched(Path dir, int depth) {
+    }
+
+    private final Map<WatchKey, Watched> keys = new HashMap<>();
+    private WatchService watchService;
+
+    private RepositoryIndexWatcher() {
+    }
+
+    public static RepositoryIndexWatcher start(Path... roots) {
+        RepositoryIndexWatcher watcher = new RepositoryIndexWatcher();
+        try {
+            watcher.watchService = FileSystems.getDefault().newWatchService();
+            for (Path root : roots) {
+                watcher.register(root, 0);
+            }
+        } catch (IOException e) {
+            watcher.close();
+        }
+        return watcher;
+    }
+
+    public boolean isWatching() {
+        return watchService != null;
+    }
+
+    /**
+     * Returns true if anything below the roots changed since the last poll, or if changes cannot be observed.
+     */
+    public synchronized boolean pollChanged() {
+        if (watchService == null) {
+            return true;
+        }
+        boolean changed = false;
+        try {
+            WatchKey key;
+            while ((key = watchService.poll()) != null) {
+                Watched watched = keys.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed = true;
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        continue;
+                    }
+                    Path child = watched == null ? null : watched.dir().resolve((Path) event.context());
+                    if (child != null && event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                            && watched.depth() < WATCHED_DEPTH && Files.isDirectory(child)) {
+                        register(child, watched.depth() + 1);
+                    }
+                }
+                if (!key.reset()) {
+                    keys.remove(key);
+                }
+            }
+        } catch (IOException | ClosedWatchServiceException e) {
+            close();
+            return true;
+        }
+        return changed;
+    }
+
+    private void register(Path dir, int depth) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        keys.put(key, new Watched(dir, depth));
+        if (depth < WATCHED_DEPTH) {
+            try (Stream<Path> children = Files.list(dir)) {
+                for (Path child : children.filter(Files::isDirectory).toList()) {
+                    register(child, depth + 1);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+                // Nothing is watched any more either way.
+            }
+            watchService = null;
+            keys.clear();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.gradle.api.GradleException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Resident server answering coordinate queries over a Unix domain socket.
+ * <p>
+ * A client sends one request line, the command name followed by {@code key=value} arguments, all separated by tabs.
+ * The daemon answers with lines prefixed by their kind and closes the connection:
+ * <ul>
+ *     <li>{@code out <line>} for standard output;</li>
+ *     <li>{@code github-output <key>=<value>} and {@code github-env <key>=<value>} for GitHub step outputs and
+ *     environment variables;</li>
+ *     <li>{@code error <message>} when the command failed;</li>
+ *     <li>{@code exit <status>} as the last line, 0 on success.</li>
+ * </ul>
+ * Requests are served one at a time. Besides the registered commands, {@code ping} answers {@code pong} and
+ * {@code stop} shuts the daemon down; it also stops after being idle for the configured timeout.
+ * <p>
+ * Implements §TCK-test-harness.1 — resident TCK daemon.
+ */
+public final class TckDaemon {
+
+    /**
+     * Longest accepted socket path in bytes; the kernel limit ({@code sun_path}) is 108 on Linux and 104 on macOS.
+     */
+    public static final int MAX_SOCKET_PATH_LENGTH = 100;
+
+    /**
+     * A query served by the daemon.
+     */
+    @FunctionalInterface
+    public interface Command {
+        void run(Map<String, String> arguments, QueryOutput output) throws Exception;
+    }
+
+    private final Path socketPath;
+    private final Map<String, Command> commands;
+    private final Duration idleTimeout;
+    private final Runnable beforeRequest;
+    private final Consumer<String> log;
+
+    /**
+     * @param beforeRequest runs before every command, e.g. to drop cached state that changed on disk
+     * @param log receives one line per served request
+     */
+    public TckDaemon(Path socketPath, Map<String, Command> commands, Duration idleTimeout, Runnable beforeRequest,
+                     Consumer<String> log) {
+        this.socketPath = socketPath.toAbsolutePath();
+        this.commands = new LinkedHashMap<>(commands);
+        this.idleTimeout = idleTimeout;
+        this.beforeRequest = beforeRequest;
+        this.log = log;
+        if (this.socketPath.toString().getBytes(StandardCharsets.UTF_8).length > MAX_SOCKET_PATH_LENGTH) {
+            throw new GradleException("TCK daemon socket path " + this.socketPath + " is too long for a Unix domain "
+                    + "socket. Choose a shorter one with -Ptck.daemon.socket=<path>.");
+        }
+    }
+
+    public Path getSocketPath() {
+        return socketPath;
+    }
+
+    /**
+     * Serves requests until {@code stop} is received or the daemon was idle for the timeout.
+     */
+    public void serve() throws IOException {
+        prepareSocketPath();
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+             Selector selector = Selector.open()) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+            boolean running = true;
+            while (running) {
+                if (selector.select(idleTimeout.toMillis()) == 0) {
+                    log.accept("Idle for " + idleTimeout.toMinutes() + " minute(s), stopping.");
+                    break;
+                }
+                selector.selectedKeys().clear();
+                SocketChannel client = server.accept();
+                if (client == null) {
+                    continue;
+                }
+                try (client) {
+                    client.configureBlocking(true);
+                    running = handle(client);
+                } catch (IOException e) {
+                    // A client that went away must not take the daemon down.
+                    log.accept("Failed to serve request: " + e.getMessage());
+                }
+            }
+        } finally {
+            Files.deleteIfExists(socketPath);
+        }
+    }
+
+    /**
+     * Removes a socket file left behind by a daemon that died, but refuses to replace a running one.
+     */
+    private void prepareSocketPath() throws IOException {
+        Files.createDirectories(socketPath.getParent());
+        if (!Files.exists(socketPath)) {
+            return;
+        }
+        SocketChannel probe;
+        try {
+            probe = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+        } catch (IOException stale) {
+            Files.delete(socketPath);
+            return;
+        }
+        probe.close();
+        throw new GradleException("A TCK daemon is already listening on " + socketPath + ". Stop it with "
+                + "'tck-daemon-client.sh stop' first.");
+    }
+
+    /**
+     * Serves one connection and returns false if the daemon should stop.
+     */
+    private boolean handle(SocketChannel client) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(Channels.newOutputStream(client), StandardCharsets.UTF_8));
+        String request = reader.readLine();
+        if (request == null || request.isBlank()) {
+            return true;
+        }
+        List<String> parts = List.of(request.split("\t"));
+        String name = parts.get(0).trim();
+        long start = System.nanoTime();
+        int status = 0;
+        boolean running = true;
+        try {
+            Map<String, String> arguments = parseArguments(parts.subList(1, parts.size()));
+            QueryOutput output = new SocketOutput(writer);
+            switch (name) {
+                case "ping" -> output.println("pong");
+                case "stop" -> {
+                    output.println("Stopping TCK daemon.");
+                    running = false;
+                }
+                default -> {
+                    Command command = commands.get(name);
+                    if (command == null) {
+                        throw new GradleException("Unknown command '" + name + "'. Available commands: ping, stop, "
+                                + String.join(", ", commands.keySet()) + ".");
+                    }
+                    beforeRequest.run();
+                    command.run(arguments, output);
+                }
+            }
+        } catch (Exception e) {
+            status = 1;
+            String message = e.getMessage() == null ? e.toString() : e.getMessage();
+            for (String line : message.split("\\R")) {
+                writer.println("error " + line);
+            }
+        }
+        writer.println("exit " + status);
+        writer.flush();
+        log.accept(name + " finished with status " + status + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return running;
+    }
+
+    static Map<String, String> parseArguments(List<String> parts) {
+        Map<String, String> arguments = new LinkedHashMap<>();
+        for (String part : parts) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            int separator = part.indexOf('=');
+            if (separator <= 0) {
+                throw new GradleException("Invalid argument '" + part + "'. Expected key=value.");
+            }
+            arguments.put(part.substring(0, separator), part.substring(separator + 1));
+        }
+        return arguments;
+    }
+
+    private record SocketOutput(PrintWriter writer) implements QueryOutput {
+        @Override
+        public void println(String line) {
+            for (String single : line.split("\\R", -1)) {
+                writer.println("out " + single);
+            }
+        }
+
+        @Override
+        public void githubOutput(String key, String value) {
+            writer.println("github-output " + key + "=" + value);
+        }
+
+        @Override
+        public void githubEnv(String key, String value) {
+            writer.println("github-env " + key + "=" + value);
+        }
+    }
+}
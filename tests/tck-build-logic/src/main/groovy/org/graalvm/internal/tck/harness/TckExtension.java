@@ -7,19 +7,27 @@
 package org.graalvm.internal.tck.harness;
 
 import groovy.json.JsonSlurper;
+import org.graalvm.internal.tck.utils.CoordinateDurationHistory;
+import org.graalvm.internal.tck.utils.CoordinateFlakinessHistory;
+import org.graalvm.internal.tck.utils.CoordinatePeakRssHistory;
+import org.graalvm.internal.tck.utils.CoordinateResultCache;
+import org.graalvm.internal.tck.utils.CoordinateUtils;
+import org.graalvm.internal.tck.utils.FrameworkLayerPlanner;
 import org.gradle.api.Project;
 import org.gradle.api.file.Directory;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.FileSystemLocation;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
+import org.gradle.api.provider.ProviderFactory;
 import org.gradle.process.ExecOperations;
 import org.jetbrains.annotations.NotNull;
 
 import javax.inject.Inject;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
@@ -32,6 +40,9 @@ import static org.graalvm.internal.tck.Utils.*;
 
 public abstract class TckExtension {
     private static final List<String> REPO_ROOT_FILES = List.of("LICENSE", "metadata", "tests");
+    private static final String REPOSITORY_INDEX_SNAPSHOT = "tck/repository-index.bin";
+    private static final String METADATA_REVERSE_INDEX = "tck/metadata-reverse-index.bin";
+    private static final String FILE_FINGERPRINTS = "tck/file-fingerprints.bin";
 
     public abstract DirectoryProperty getRepoRoot();
 
@@ -49,9 +60,55 @@ public abstract class TckExtension {
 
     public abstract Property<@NotNull String> getScala3Version();
 
+    /**
+     * How fractional batches "k/n" are cut: "roundRobin" (default) or "duration".
+     */
+    public abstract Property<@NotNull String> getShardStrategy();
+
+    /**
+     * Per-coordinate durations recorded by coordinate runs and read by the "duration" shard strategy.
+     */
+    public abstract RegularFileProperty getDurationHistoryFile();
+
+    /**
+     * Per-coordinate native-image peak RSS recorded by coordinate runs and read by memory-aware admission.
+     */
+    public abstract RegularFileProperty getPeakRssHistoryFile();
+
+    /**
+     * Per-coordinate outcomes (pass, flaky, fail) recorded by coordinate runs with retries.
+     */
+    public abstract RegularFileProperty getFlakinessHistoryFile();
+
+    /**
+     * Libraries found flaky in {@link #getFlakinessHistoryFile()}, in the format of -Ptck.excludedCoordinatesFile.
+     */
+    public abstract RegularFileProperty getQuarantineFile();
+
+    /**
+     * Root of the local store of passing coordinate runs, see {@link CoordinateResultCache}.
+     */
+    public abstract DirectoryProperty getResultCacheDir();
+
+    /**
+     * Framework layers planned by {@code planFrameworkLayers}, see {@link FrameworkLayerPlanner}.
+     */
+    public abstract RegularFileProperty getFrameworkLayerPlanFile();
+
     @Inject
     public abstract ExecOperations getExecOperations();
 
+    @Inject
+    public abstract ProviderFactory getProviders();
+
+    private final Provider<RepositoryIndexService> repositoryIndexService;
+    private final Provider<GradleConnectionService> gradleConnectionService;
+    private final Provider<FileFingerprintService> fileFingerprintService;
+    private final Provider<String> nativeImageVersion;
+    private final Provider<RegularFile> repositoryIndexSnapshot;
+    private final Provider<RegularFile> metadataReverseIndexFile;
+    private MetadataReverseIndex metadataReverseIndex;
+
     public TckExtension(Project project) {
         getRepoRoot().value(project.getObjects().directoryProperty().value(project.getLayout().getProjectDirectory()).map(dir -> {
             Directory current = dir;
@@ -68,6 +125,131 @@ public abstract class TckExtension {
         getMetadataRoot().value(getRepoRoot().dir("metadata")).finalizeValueOnRead();
         getTestRoot().value(getRepoRoot().dir("tests/src")).finalizeValueOnRead();
         getTckRoot().value(getRepoRoot().dir("tests/tck-build-logic")).finalizeValueOnRead();
+        getShardStrategy().convention(getProviders().gradleProperty(CoordinateUtils.SHARD_STRATEGY_PROPERTY)
+                .orElse(CoordinateUtils.ROUND_ROBIN_SHARD_STRATEGY));
+        getDurationHistoryFile().convention(project.getLayout().getProjectDirectory()
+                .file(getProviders().gradleProperty(CoordinateDurationHistory.HISTORY_FILE_PROPERTY))
+                .orElse(project.getLayout().getBuildDirectory().file(CoordinateDurationHistory.DEFAULT_HISTORY_FILE)));
+        getPeakRssHistoryFile().convention(project.getLayout().getProjectDirectory()
+                .file(getProviders().gradleProperty(CoordinatePeakRssHistory.HISTORY_FILE_PROPERTY))
+                .orElse(project.getLayout().getBuildDirectory().file(CoordinatePeakRssHistory.DEFAULT_HISTORY_FILE)));
+        getFlakinessHistoryFile().convention(project.getLayout().getProjectDirectory()
+                .file(getProviders().gradleProperty(CoordinateFlakinessHistory.HISTORY_FILE_PROPERTY))
+                .orElse(project.getLayout().getBuildDirectory().file(CoordinateFlakinessHistory.DEFAULT_HISTORY_FILE)));
+        getQuarantineFile().convention(project.getLayout().getProjectDirectory()
+                .file(getProviders().gradleProperty(CoordinateFlakinessHistory.QUARANTINE_FILE_PROPERTY))
+                .orElse(project.getLayout().getBuildDirectory().file(CoordinateFlakinessHistory.DEFAULT_QUARANTINE_FILE)));
+        getResultCacheDir().convention(project.getLayout().getProjectDirectory()
+                .dir(getProviders().gradleProperty(CoordinateResultCache.CACHE_DIR_PROPERTY))
+                .orElse(project.getLayout().getBuildDirectory().dir(CoordinateResultCache.DEFAULT_CACHE_DIR)));
+        getFrameworkLayerPlanFile().convention(project.getLayout().getProjectDirectory()
+                .file(getProviders().gradleProperty(FrameworkLayerPlanner.PLAN_FILE_PROPERTY))
+                .orElse(project.getLayout().getBuildDirectory().file(FrameworkLayerPlanner.DEFAULT_PLAN_FILE)));
+        repositoryIndexSnapshot = project.getLayout().getBuildDirectory().file(REPOSITORY_INDEX_SNAPSHOT);
+        metadataReverseIndexFile = project.getLayout().getBuildDirectory().file(METADATA_REVERSE_INDEX);
+        repositoryIndexService = project.getGradle().getSharedServices().registerIfAbsent(
+                RepositoryIndexService.NAME,
+                RepositoryIndexService.class,
+                spec -> {
+                    spec.getParameters().getMetadataRoot().set(getMetadataRoot());
+                    spec.getParameters().getTestRoot().set(getTestRoot());
+                    spec.getParameters().getSnapshotFile().set(repositoryIndexSnapshot);
+                }
+        );
+        File gradleHome = project.getGradle().getGradleHomeDir();
+        gradleConnectionService = project.getGradle().getSharedServices().registerIfAbsent(
+                GradleConnectionService.NAME,
+                GradleConnectionService.class,
+                spec -> {
+                    if (gradleHome != null) {
+                        spec.getParameters().getGradleInstallation().set(gradleHome);
+                    }
+                    spec.getParameters().getMaxIdleConnections().set(8);
+                }
+        );
+        Provider<RegularFile> fileFingerprints = project.getLayout().getBuildDirectory().file(FILE_FINGERPRINTS);
+        fileFingerprintService = project.getGradle().getSharedServices().registerIfAbsent(
+                FileFingerprintService.NAME,
+                FileFingerprintService.class,
+                spec -> spec.getParameters().getCacheFile().set(fileFingerprints)
+        );
+        nativeImageVersion = getProviders().of(NativeImageVersionSource.class, spec -> { });
+    }
+
+    /**
+     * Build service that parses every metadata index.json at most once per build.
+     */
+    public Provider<RepositoryIndexService> getRepositoryIndexService() {
+        return repositoryIndexService;
+    }
+
+    /**
+     * Build service that runs per-coordinate builds through the Gradle Tooling API when
+     * {@code -Ptck.subbuildExecutor=toolingApi} is set.
+     */
+    public Provider<GradleConnectionService> getGradleConnectionService() {
+        return gradleConnectionService;
+    }
+
+    /**
+     * Build service that fingerprints test and metadata directories, see {@link FileFingerprints}.
+     */
+    public Provider<FileFingerprintService> getFileFingerprintService() {
+        return fileFingerprintService;
+    }
+
+    /**
+     * The {@code native-image --version} output, computed at most once per build and only when a task reads it.
+     */
+    public Provider<String> getNativeImageVersion() {
+        return nativeImageVersion;
+    }
+
+    /**
+     * Returns a lazy view of {@link #getMatchingCoordinates(String)} (or {@link #getMatchingCoordinatesStrict(String)})
+     * that is only computed when a task reads it. Fractional batches "k/n" are cut from all coordinates.
+     */
+    public Provider<List<String>> matchingCoordinates(Provider<String> coordinateFilter, boolean strict) {
+        return getProviders().of(MatchingCoordinatesSource.class, spec -> {
+            spec.getParameters().getCoordinateFilter().set(coordinateFilter);
+            spec.getParameters().getStrict().set(strict);
+            spec.getParameters().getRepositoryIndexService().set(repositoryIndexService);
+            spec.getParameters().getShardStrategy().set(getShardStrategy());
+            spec.getParameters().getDurationHistoryFile().set(getDurationHistoryFile());
+        });
+    }
+
+    /**
+     * Returns the k-th batch (1-based) out of n batches of the given coordinates, cut with the configured
+     * {@link #getShardStrategy() shard strategy}.
+     */
+    public List<String> getBatchedCoordinates(List<String> coordinates, int index, int batches) {
+        return CoordinateUtils.computeBatchedCoordinates(coordinates, index, batches, getShardStrategy().get(),
+                () -> CoordinateDurationHistory.loadCosts(toPath(getDurationHistoryFile())));
+    }
+
+    /**
+     * Returns the index from Java types, packages and allowed-packages prefixes to the metadata that covers them.
+     * The index is cached in the build directory and rebuilt only when metadata files change.
+     */
+    public synchronized MetadataReverseIndex getMetadataReverseIndex() {
+        if (metadataReverseIndex == null) {
+            metadataReverseIndex = MetadataReverseIndex.load(repositoryIndex().getIndex(), toPath(metadataReverseIndexFile));
+        }
+        return metadataReverseIndex;
+    }
+
+    /**
+     * Forgets the cached repository index and metadata reverse index, e.g. when a resident process notices that
+     * metadata or tests changed on disk.
+     */
+    public synchronized void invalidateRepositoryIndex() {
+        repositoryIndex().invalidate();
+        metadataReverseIndex = null;
+    }
+
+    private RepositoryIndexService repositoryIndex() {
+        return repositoryIndexService.get();
     }
 
     private static boolean isRootDir(Directory dir) {
@@ -97,7 +279,6 @@ public abstract class TckExtension {
     /**
      * Given full coordinates returns matching test directory
      */
-    @SuppressWarnings("unchecked")
     public Path getTestDir(String coordinates) {
         List<String> strings = splitCoordinates(coordinates);
         String groupId = strings.get(0);
@@ -108,44 +289,12 @@ public abstract class TckExtension {
         Objects.requireNonNull(version, "Version must be specified");
 
         // First, try to locate the test project via the metadata/<group>/<artifact>/index.json.
-        try {
-            Path metadataDir = metadataRoot()
-                    .resolve(groupId)
-                    .resolve(artifactId);
-
-            if (Files.exists(metadataDir)) {
-                List<Map<String, ?>> metadataIndex = (List<Map<String, ?>>) readIndexFile(metadataDir);
-
-                // Resolve the entry that declares support for the requested library version.
-                Optional<Map<String, ?>> matchingEntry = metadataIndex.stream()
-                        .filter(entry -> {
-                            Object testedVersions = entry.get("tested-versions");
-                            return testedVersions instanceof List<?> versions && versions.contains(version);
-                        })
-                        .findFirst();
-
-                if (matchingEntry.isPresent()) {
-                    Map<String, ?> entry = matchingEntry.get();
-
-                    // Determine the test version to use: 'test-version' if present, otherwise 'metadata-version'
-                    String testVersion;
-                    if (entry.containsKey("test-version")) {
-                        testVersion = (String) entry.get("test-version");
-                    } else {
-                        testVersion = (String) entry.get("metadata-version");
-                    }
-
-                    Path indexedTest = testRoot().resolve(groupId).resolve(artifactId).resolve(testVersion);
-
-                    if (Files.isDirectory(indexedTest)) {
-                        return indexedTest;
-                    }
-                    // Error: The index pointed to a specific test directory that is missing.
-                    throw new RuntimeException("Test directory specified in index.json (`" + indexedTest + "`) is missing for coordinates: " + coordinates);
-                }
-            }
-        } catch (Exception ignored) {
-            // Fall through to conventional lookup
+        Optional<RepositoryIndex.ArtifactIndex> artifact = repositoryIndex().findArtifact(groupId, artifactId);
+        Optional<String> indexedTestVersion = artifact
+                .flatMap(a -> a.entryForTestedVersion(version))
+                .map(RepositoryIndex.IndexEntry::testDirectoryName);
+        if (indexedTestVersion.isPresent() && artifact.get().hasTestDir(indexedTestVersion.get())) {
+            return testRoot().resolve(groupId).resolve(artifactId).resolve(indexedTestVersion.get());
         }
 
         // Fallback: conventional layout tests/src/<group>/<artifact>/<version>
@@ -164,39 +313,22 @@ public abstract class TckExtension {
      */
     @SuppressWarnings("unused")
     List<String> diffCoordinates(String baseCommit, String newCommit) {
-        Path workflowsRoot = repoRoot().resolve(".github").resolve("workflows");
-        Map<String, List<Path>> changed = diffFiles(baseCommit, newCommit, "ACMRTD").stream()
-                .collect(Collectors.groupingBy((Path path) -> {
-                    if (path.startsWith(tckRoot()) || path.startsWith(workflowsRoot)) {
-                        return "logic";
-                    } else if (path.startsWith(testRoot())) {
-                        return "test";
-                    } else if (path.startsWith(metadataRoot())) {
-                        return "metadata";
-                    } else {
-                        return "other";
-                    }
-                }));
-
-        List<Path> changedMetadataFiles = changed.getOrDefault("metadata", Collections.emptyList());
-        List<Path> changedTestFiles = changed.getOrDefault("test", Collections.emptyList());
-        List<Path> changedLogicFiles = changed.getOrDefault("logic", Collections.emptyList());
-
-        // if we didn't change any of metadata, tests or logic we don't need to test anything
-        if (changedMetadataFiles.isEmpty() && changedTestFiles.isEmpty() && changedLogicFiles.isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        List<String> changedCoordinates = getMatchingCoordinatesStrict("").stream().filter(c -> {
-            Path metadataDir = getMetadataDir(c);
-            if (changedMetadataFiles.stream().anyMatch(f -> f.startsWith(metadataDir))) {
-                return true;
-            }
-            Path testDir = getTestDir(c);
-            return changedTestFiles.stream().anyMatch(f -> f.startsWith(testDir));
-        }).distinct().collect(Collectors.toCollection(ArrayList::new));
+        return ChangedCoordinatesSource.changedCoordinates(repositoryIndex().getIndex(), tckRoot(),
+                repoRoot().resolve(".github").resolve("workflows"), diffFiles(baseCommit, newCommit, "ACMRTD"));
+    }
 
-        return changedCoordinates;
+    /**
+     * Returns a lazy view of {@link #diffCoordinates(String, String)} that runs git only when a task reads it; empty
+     * when {@code baseCommit} is not set.
+     */
+    public Provider<List<String>> changedCoordinates(Provider<String> baseCommit, Provider<String> newCommit) {
+        return getProviders().of(ChangedCoordinatesSource.class, spec -> {
+            spec.getParameters().getBaseCommit().set(baseCommit);
+            spec.getParameters().getNewCommit().set(newCommit);
+            spec.getParameters().getRepoRoot().set(getRepoRoot());
+            spec.getParameters().getTckRoot().set(getTckRoot());
+            spec.getParameters().getRepositoryIndexService().set(repositoryIndexService);
+        });
     }
 
     /**
@@ -218,24 +350,26 @@ public abstract class TckExtension {
      */
     @SuppressWarnings("unchecked")
     public List<Map<String, Object>> diffIndexTestedVersions(String baseCommit, String newCommit) {
-        return diffFiles(baseCommit, newCommit, "ACMRT").stream()
+        List<String> changedIndexFiles = diffFiles(baseCommit, newCommit, "ACMRT").stream()
                 .map(path -> repoRoot().relativize(path).toString().replace('\\', '/'))
-                .map(relativePath -> diffIndexTestedVersionsEntry(baseCommit, newCommit, relativePath))
+                .filter(relativePath -> indexPathToCoordinate(relativePath) != null)
+                .toList();
+        List<String> objectNames = new ArrayList<>(changedIndexFiles.size() * 2);
+        for (String relativePath : changedIndexFiles) {
+            objectNames.add(baseCommit + ":" + relativePath);
+            objectNames.add(newCommit + ":" + relativePath);
+        }
+        Map<String, String> blobs = GitCatFileBatch.read(getExecOperations(), objectNames);
+        return changedIndexFiles.stream()
+                .map(relativePath -> diffIndexTestedVersionsEntry(relativePath,
+                        blobs.get(baseCommit + ":" + relativePath),
+                        blobs.get(newCommit + ":" + relativePath)))
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
     private List<Path> diffFiles(String baseCommit, String newCommit, String diffFilter) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        getExecOperations().exec(spec -> {
-            spec.setStandardOutput(baos);
-            spec.commandLine("git", "diff", "--name-only", "--diff-filter=" + diffFilter, baseCommit, newCommit);
-        });
-
-        return Arrays.stream(baos.toString(StandardCharsets.UTF_8).split("\\r?\\n"))
-                .filter(line -> !line.isBlank())
-                .map(line -> repoRoot().resolve(line))
-                .collect(Collectors.toList());
+        return ChangedCoordinatesSource.diffFiles(getExecOperations(), repoRoot(), baseCommit, newCommit, diffFilter);
     }
 
     /**
@@ -260,14 +394,14 @@ public abstract class TckExtension {
     }
 
     @SuppressWarnings("unchecked")
-    private Map<String, Object> diffIndexTestedVersionsEntry(String baseCommit, String newCommit, String relativePath) {
+    private Map<String, Object> diffIndexTestedVersionsEntry(String relativePath, String baseJson, String headJson) {
         String coordinates = indexPathToCoordinate(relativePath);
         if (coordinates == null) {
             return null;
         }
 
-        List<Map<String, ?>> baseEntries = readJsonListFromCommit(baseCommit, relativePath);
-        List<Map<String, ?>> headEntries = readJsonListFromCommit(newCommit, relativePath);
+        List<Map<String, ?>> baseEntries = readJsonList(baseJson);
+        List<Map<String, ?>> headEntries = readJsonList(headJson);
 
         Map<String, Set<String>> baseByMetadataVersion = testedVersionsByMetadataVersion(baseEntries);
         Map<String, Set<String>> headByMetadataVersion = testedVersionsByMetadataVersion(headEntries);
@@ -301,19 +435,7 @@ public abstract class TckExtension {
     }
 
     @SuppressWarnings("unchecked")
-    private List<Map<String, ?>> readJsonListFromCommit(String commit, String relativePath) {
-        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
-        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
-        var result = getExecOperations().exec(spec -> {
-            spec.setIgnoreExitValue(true);
-            spec.setStandardOutput(stdout);
-            spec.setErrorOutput(stderr);
-            spec.commandLine("git", "show", commit + ":" + relativePath);
-        });
-        if (result.getExitValue() != 0) {
-            return Collections.emptyList();
-        }
-        String json = stdout.toString(StandardCharsets.UTF_8);
+    private List<Map<String, ?>> readJsonList(String json) {
         if (json == null || json.isBlank()) {
             return Collections.emptyList();
         }
@@ -358,47 +480,22 @@ public abstract class TckExtension {
     }
 
     /**
-     * Returns a set of all directories that match given group ID and artifact ID.
-     * null values match every possible value (null artifact ID matches all artifacts in given group).
+     * Returns metadata directory for given full coordinates. The version must be listed in tested-versions.
      *
-     * @return set of all directories that match given criteria
+     * @return path to metadata directory
      */
-    Set<String> getMatchingMetadataDirs(String groupId, String artifactId) {
-        Set<String> dirs = new LinkedHashSet<>();
-        Path root = metadataRoot();
-
-        try (Stream<Path> groupDirs = Files.list(root)) {
-            groupDirs.filter(Files::isDirectory).forEach(g -> {
-                String gName = g.getFileName().toString();
-                // Filter by group if provided
-                if (groupId != null && !groupId.equals(gName)) return;
-
-                try (Stream<Path> artifactDirs = Files.list(g)) {
-                    artifactDirs.filter(Files::isDirectory).forEach(a -> {
-                        String aName = a.getFileName().toString();
-                        // Filter by artifact if provided
-                        if (artifactId != null && !artifactId.equals(aName)) return;
-
-                        Path indexPath = a.resolve("index.json");
-                        if (Files.isRegularFile(indexPath)) {
-                            // Add this artifact directory
-                            dirs.add(a.toAbsolutePath().toString());
-                        }
-                    });
-                } catch (IOException ignored) {}
-            });
-        } catch (IOException ignored) {}
-
-        return dirs;
+    public Path getMetadataDir(String coordinates) {
+        return getMetadataDir(coordinates, false);
     }
 
     /**
-     * Returns metadata directory for given full coordinates
-     *
-     * @return path to metadata directory
+     * Returns metadata directory for given full coordinates.
+     * <p>
+     * With {@code closestMatch} a version that is not listed in any {@code tested-versions} still resolves:
+     * through {@code default-for}, the {@code latest} entry for newer versions, or the entry of the closest
+     * tested version (see {@link MetadataVersionResolver}).
      */
-    @SuppressWarnings("unchecked")
-    public Path getMetadataDir(String coordinates) {
+    public Path getMetadataDir(String coordinates, boolean closestMatch) {
         List<String> strings = splitCoordinates(coordinates);
         String groupId = strings.get(0);
         String artifactId = strings.get(1);
@@ -409,31 +506,57 @@ public abstract class TckExtension {
 
         // Resolve directly to metadata/<groupId>/<artifactId>/index.json without expanding "requires"
         Path artifactDir = metadataRoot().resolve(groupId).resolve(artifactId);
-        Path indexPath = artifactDir.resolve("index.json");
-        if (!Files.isRegularFile(indexPath)) {
-            throw new RuntimeException("Missing index.json for " + groupId + ":" + artifactId + " at " + indexPath);
+        RepositoryIndex.ArtifactIndex artifact = requireArtifact(groupId, artifactId);
+        Optional<RepositoryIndex.IndexEntry> entry = closestMatch
+                ? repositoryIndex().findVersionResolver(groupId, artifactId)
+                        .flatMap(resolver -> resolver.resolve(version))
+                        .map(MetadataVersionResolver.Resolution::entry)
+                : artifact.entryForTestedVersion(version);
+        if (entry.isEmpty()) {
+            throw new RuntimeException("Missing metadata for " + coordinates);
         }
-
-        List<Map<String, ?>> metadataIndex = (List<Map<String, ?>>) extractJsonFile(indexPath);
-        for (Map<String, ?> entry : metadataIndex) {
-            @SuppressWarnings("unchecked")
-            List<String> tv = (List<String>) entry.get("tested-versions");
-            if (tv != null && tv.contains(version)) {
-                String metaVersion = (String) entry.get("metadata-version");
-                Path result = artifactDir.resolve(metaVersion);
-                if (Files.isDirectory(result)) {
-                    return result;
-                }
-                throw new RuntimeException("Index.json for " + groupId + ":" + artifactId + " maps version " + version + " to missing dir " + result);
-            }
+        String metaVersion = entry.get().metadataVersion();
+        Path result = artifactDir.resolve(Objects.requireNonNullElse(metaVersion, ""));
+        if (artifact.hasMetadataDir(metaVersion)) {
+            return result;
         }
-        throw new RuntimeException("Missing metadata for " + coordinates);
+        throw new RuntimeException("Index.json for " + groupId + ":" + artifactId + " maps version " + version + " to missing dir " + result);
+    }
+
+    /**
+     * Returns the index.json entry data (metadata dir, test dir, override flag, allowed packages, requires)
+     * for given full coordinates.
+     */
+    public RepositoryIndex.ResolvedCoordinate resolveCoordinate(String coordinates) {
+        List<String> strings = splitCoordinates(coordinates);
+        String groupId = strings.get(0);
+        String artifactId = strings.get(1);
+        String version = strings.get(2);
+        Objects.requireNonNull(groupId, "Group ID must be specified");
+        Objects.requireNonNull(artifactId, "Artifact ID must be specified");
+        Objects.requireNonNull(version, "Version must be specified");
+
+        return requireArtifact(groupId, artifactId)
+                .resolve(version, metadataRoot(), testRoot())
+                .orElseThrow(() -> new RuntimeException("Missing metadata for " + coordinates));
+    }
+
+    /**
+     * Returns true if the index.json entry that lists the version as tested sets "override".
+     */
+    public boolean isOverride(String coordinates) {
+        return resolveCoordinate(coordinates).override();
+    }
+
+    private RepositoryIndex.ArtifactIndex requireArtifact(String groupId, String artifactId) {
+        return repositoryIndex().findArtifact(groupId, artifactId).orElseThrow(() -> new RuntimeException(
+                "Missing index.json for " + groupId + ":" + artifactId + " at "
+                        + metadataRoot().resolve(groupId).resolve(artifactId).resolve("index.json")));
     }
 
     /**
      * Returns batched tested-version lists for the given metadata coordinates.
      */
-    @SuppressWarnings("unchecked")
     public List<Map<String, Object>> testedVersionBatches(String coordinates, int batchSize) {
         if (batchSize <= 0) {
             throw new IllegalArgumentException("Batch size must be greater than zero");
@@ -447,119 +570,49 @@ public abstract class TckExtension {
         Objects.requireNonNull(artifactId, "Artifact ID must be specified");
         Objects.requireNonNull(metadataVersion, "Version must be specified");
 
-        Path indexPath = metadataRoot().resolve(groupId).resolve(artifactId).resolve("index.json");
-        if (!Files.isRegularFile(indexPath)) {
-            throw new RuntimeException("Missing index.json for " + groupId + ":" + artifactId + " at " + indexPath);
+        RepositoryIndex.ArtifactIndex artifact = requireArtifact(groupId, artifactId);
+        RepositoryIndex.IndexEntry entry = artifact.entryForMetadataVersion(metadataVersion)
+                .orElseThrow(() -> new RuntimeException("Missing metadata-version " + metadataVersion + " in "
+                        + metadataRoot().resolve(groupId).resolve(artifactId).resolve("index.json")));
+        if (entry.testedVersions().isEmpty()) {
+            throw new RuntimeException("Missing tested-versions for " + coordinates);
         }
 
-        List<Map<String, ?>> metadataIndex = (List<Map<String, ?>>) extractJsonFile(indexPath);
-        for (Map<String, ?> entry : metadataIndex) {
-            if (!metadataVersion.equals(entry.get("metadata-version"))) {
-                continue;
-            }
-
-            Object testedVersionsRaw = entry.get("tested-versions");
-            if (!(testedVersionsRaw instanceof List<?> testedVersions)) {
-                throw new RuntimeException("Missing tested-versions for " + coordinates);
-            }
-
-            List<String> versions = testedVersions.stream()
-                    .map(Object::toString)
-                    .toList();
-            int batchCount = Math.max(1, (versions.size() + batchSize - 1) / batchSize);
-            List<Map<String, Object>> batches = new ArrayList<>();
-            for (int batchIndex = 0; batchIndex < batchCount; batchIndex++) {
-                int fromIndex = batchIndex * batchSize;
-                int toIndex = Math.min(fromIndex + batchSize, versions.size());
-                Map<String, Object> batch = new LinkedHashMap<>();
-                batch.put("coordinates", coordinates);
-                batch.put("versions", new ArrayList<>(versions.subList(fromIndex, toIndex)));
-                batch.put("batch", (batchIndex + 1) + "/" + batchCount);
-                batches.add(batch);
-            }
-            return batches;
+        List<String> versions = entry.testedVersions();
+        int batchCount = Math.max(1, (versions.size() + batchSize - 1) / batchSize);
+        List<Map<String, Object>> batches = new ArrayList<>();
+        for (int batchIndex = 0; batchIndex < batchCount; batchIndex++) {
+            int fromIndex = batchIndex * batchSize;
+            int toIndex = Math.min(fromIndex + batchSize, versions.size());
+            Map<String, Object> batch = new LinkedHashMap<>();
+            batch.put("coordinates", coordinates);
+            batch.put("versions", new ArrayList<>(versions.subList(fromIndex, toIndex)));
+            batch.put("batch", (batchIndex + 1) + "/" + batchCount);
+            batches.add(batch);
         }
-
-        throw new RuntimeException("Missing metadata-version " + metadataVersion + " in " + indexPath);
+        return batches;
     }
 
     /**
-     * Returns all coordinates that match given coordinate filter.
+     * Returns all coordinates that match given coordinate filter, see {@link CoordinateFilter} for the grammar.
      * Standard version: Uses 'metadata-version' pointer for shared config folders.
      *
      * @return list of all coordinates that match given coordinate filter.
      */
-    @SuppressWarnings("unchecked")
     public List<String> getMatchingCoordinates(String coordinateFilter) {
-        List<String> parts = splitCoordinates(coordinateFilter);
-        String versionFilter = parts.get(2);
-
-        Set<String> results = new HashSet<>();
-        loadMatchingIndices(parts.get(0), parts.get(1)).forEach((fullDir, index) -> {
-            String g = fullDir.getParent().getFileName().toString();
-            String a = fullDir.getFileName().toString();
-
-            for (Map<String, ?> entry : index) {
-                List<String> tested = (List<String>) entry.get("tested-versions");
-                String metaVer = (String) entry.get("metadata-version");
-
-                if (tested == null || metaVer == null || !Files.isDirectory(fullDir.resolve(metaVer))) {
-                    continue;
-                }
-
-                tested.stream()
-                        .filter(v -> versionFilter == null || versionFilter.equals(v))
-                        .forEach(v -> results.add(g + ":" + a + ":" + v));
-            }
-        });
-        return new ArrayList<>(results);
+        return CoordinateFilter.compile(coordinateFilter)
+                .resolve(repositoryIndex()::getArtifacts, false, this::getBatchedCoordinates);
     }
 
     /**
-     * Returns all coordinates that match given coordinate filter.
+     * Returns all coordinates that match given coordinate filter, see {@link CoordinateFilter} for the grammar.
      * Strict version: Requires library version string to match directory name exactly.
      *
      * @return list of all coordinates that match given coordinate filter.
      */
-    @SuppressWarnings("unchecked")
     public List<String> getMatchingCoordinatesStrict(String coordinateFilter) {
-        List<String> parts = splitCoordinates(coordinateFilter);
-        String versionFilter = parts.get(2);
-
-        Set<String> results = new HashSet<>();
-        loadMatchingIndices(parts.get(0), parts.get(1)).forEach((fullDir, index) -> {
-            String g = fullDir.getParent().getFileName().toString();
-            String a = fullDir.getFileName().toString();
-
-            for (Map<String, ?> entry : index) {
-                List<String> tested = (List<String>) entry.get("tested-versions");
-                if (tested == null) continue;
-
-                tested.stream()
-                        .filter(v -> versionFilter == null || versionFilter.equals(v))
-                        .filter(v -> Files.isDirectory(fullDir.resolve(v)))
-                        .forEach(v -> results.add(g + ":" + a + ":" + v));
-            }
-        });
-        return new ArrayList<>(results);
-    }
-
-    /**
-     * Internal helper to load and group index.json files for matching directories.
-     */
-    private Map<Path, List<Map<String, ?>>> loadMatchingIndices(String groupId, String artifactId) {
-        Map<Path, List<Map<String, ?>>> indices = new HashMap<>();
-        for (String directory : getMatchingMetadataDirs(groupId, artifactId)) {
-            Path fullDir = metadataRoot().resolve(directory);
-            Path indexFile = fullDir.resolve("index.json");
-
-            @SuppressWarnings("unchecked")
-            List<Map<String, ?>> metadataIndex = (List<Map<String, ?>>) extractJsonFile(indexFile);
-            if (metadataIndex != null) {
-                indices.put(fullDir, metadataIndex);
-            }
-        }
-        return indices;
+        return CoordinateFilter.compile(coordinateFilter)
+                .resolve(repositoryIndex()::getArtifacts, true, this::getBatchedCoordinates);
     }
 
     /**
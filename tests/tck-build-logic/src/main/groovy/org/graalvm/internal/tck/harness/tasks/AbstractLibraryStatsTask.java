@@ -16,14 +16,17 @@ import org.gradle.process.ExecOperations;
 import org.gradle.process.ExecResult;
 import org.gradle.process.ExecSpec;
 import org.graalvm.internal.tck.Coordinates;
+import org.graalvm.internal.tck.harness.GradleConnectionService;
 import org.graalvm.internal.tck.stats.LibraryStatsModels;
 import org.graalvm.internal.tck.stats.LibraryStatsSchemaValidator;
 import org.graalvm.internal.tck.stats.LibraryStatsSupport;
+import org.graalvm.internal.tck.utils.NativeBuildOutput;
 import org.jetbrains.annotations.NotNull;
 
 import javax.inject.Inject;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -47,6 +50,24 @@ public abstract class AbstractLibraryStatsTask extends CoordinatesAwareTask {
     @Inject
     public abstract ExecOperations getExecOperations();
 
+    /**
+     * How the nested {@code ./gradlew} invocations run, see {@link AllCoordinatesExecTask#getSubbuildExecutor()}.
+     */
+    @Internal
+    public abstract Property<@NotNull String> getSubbuildExecutor();
+
+    @Internal
+    public abstract Property<@NotNull GradleConnectionService> getGradleConnectionService();
+
+    public AbstractLibraryStatsTask() {
+        if (tckExtension != null) {
+            getGradleConnectionService().convention(tckExtension.getGradleConnectionService());
+            usesService(tckExtension.getGradleConnectionService());
+        }
+        getSubbuildExecutor().convention(projectProperty(GradleConnectionService.EXECUTOR_PROPERTY)
+                .orElse(GradleConnectionService.EXEC_EXECUTOR));
+    }
+
     @Option(option = "coordinates", description = "Coordinate filter (group[:artifact[:version]] or k/n fractional batch)")
     public void setCoordinatesOption(String value) {
         getCoordinates().set(value);
@@ -57,8 +78,7 @@ public abstract class AbstractLibraryStatsTask extends CoordinatesAwareTask {
         if (optionValue != null) {
             return optionValue;
         }
-        Object property = getProject().findProperty("coordinates");
-        return property == null ? "" : property.toString();
+        return getCoordinateFilter().get();
     }
 
     protected List<String> resolveRequestedCoordinates() {
@@ -68,16 +88,7 @@ public abstract class AbstractLibraryStatsTask extends CoordinatesAwareTask {
         }
 
         String filter = effectiveCoordinateFilter();
-        List<String> resolved = new ArrayList<>();
-        if (filter == null || filter.isBlank()) {
-            resolved.addAll(computeMatchingCoordinates(""));
-        } else {
-            for (String singleFilter : filter.split("\\s+")) {
-                if (!singleFilter.isEmpty()) {
-                    resolved.addAll(computeMatchingCoordinates(singleFilter));
-                }
-            }
-        }
+        List<String> resolved = computeMatchingCoordinates(filter == null ? "" : filter);
 
         List<String> deduplicated = resolved.stream().distinct().filter(coord -> !coord.startsWith("samples:")).toList();
         if (deduplicated.isEmpty()) {
@@ -160,7 +171,7 @@ public abstract class AbstractLibraryStatsTask extends CoordinatesAwareTask {
     protected Path getStatsSchemaFile() {
         return getStatsRoot()
                 .resolve("schemas")
-                .resolve("library-stats-schema-v1.0.2.json");
+                .resolve("library-stats-schema-v1.1.0.json");
     }
 
     @Internal
@@ -198,6 +209,13 @@ public abstract class AbstractLibraryStatsTask extends CoordinatesAwareTask {
                 .resolve("dynamic-access");
     }
 
+    protected Path getNativeBuildOutputFile(String coordinates) {
+        return tckExtension.getTestDir(coordinates)
+                .resolve("build")
+                .resolve(NativeBuildOutput.TEST_OUTPUT_DIR)
+                .resolve(NativeBuildOutput.TEST_BINARY + ".json");
+    }
+
     protected Path getDynamicAccessCoverageReport(String coordinates) {
         return tckExtension.getTestDir(coordinates)
                 .resolve("build")
@@ -233,7 +251,7 @@ public abstract class AbstractLibraryStatsTask extends CoordinatesAwareTask {
                     getDynamicAccessDir(coordinates),
                     getJacocoReport(coordinates),
                     LibraryStatsSupport.parseAgentOrigins(originsOutput, getDynamicAccessDir(coordinates))
-            );
+            ).withNativeBuild(LibraryStatsSupport.buildNativeBuildStats(getNativeBuildOutputFile(coordinates)));
         }
         return LibraryStatsSupport.buildVersionStatsWithoutDynamicAccess(
                 coordinates,
@@ -290,25 +308,30 @@ public abstract class AbstractLibraryStatsTask extends CoordinatesAwareTask {
         ByteArrayOutputStream stdout = new ByteArrayOutputStream();
         ByteArrayOutputStream stderr = new ByteArrayOutputStream();
 
-        List<String> command = new ArrayList<>();
-        command.add(tckExtension.getRepoRoot().get().getAsFile().toPath().resolve("gradlew").toString());
-        command.addAll(arguments);
-
-        ExecResult execResult = getExecOperations().exec((ExecSpec spec) -> {
-            spec.commandLine(command);
-            spec.workingDir(tckExtension.getRepoRoot().get().getAsFile());
-            spec.setIgnoreExitValue(true);
-            if (streamOutput) {
-                spec.setStandardOutput(new TeeOutputStream(stdout, System.out));
-                spec.setErrorOutput(new TeeOutputStream(stderr, System.err));
-            } else {
-                spec.setStandardOutput(stdout);
-                spec.setErrorOutput(stderr);
-            }
-        });
+        OutputStream out = streamOutput ? new TeeOutputStream(stdout, System.out) : stdout;
+        OutputStream err = streamOutput ? new TeeOutputStream(stderr, System.err) : stderr;
+        Path repoRoot = tckExtension.getRepoRoot().get().getAsFile().toPath().toAbsolutePath();
+
+        int exitCode;
+        if (GradleConnectionService.isSelected(getSubbuildExecutor().get())) {
+            exitCode = getGradleConnectionService().get().run(repoRoot, arguments, System.getenv(), out, err);
+        } else {
+            List<String> command = new ArrayList<>();
+            command.add(repoRoot.resolve("gradlew").toString());
+            command.addAll(arguments);
+
+            ExecResult execResult = getExecOperations().exec((ExecSpec spec) -> {
+                spec.commandLine(command);
+                spec.workingDir(repoRoot.toFile());
+                spec.setIgnoreExitValue(true);
+                spec.setStandardOutput(out);
+                spec.setErrorOutput(err);
+            });
+            exitCode = execResult.getExitValue();
+        }
 
         return new CommandResult(
-                execResult.getExitValue(),
+                exitCode,
                 stdout.toString(StandardCharsets.UTF_8),
                 stderr.toString(StandardCharsets.UTF_8)
         );
@@ -0,0 +1,87 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness.tasks;
+
+import org.graalvm.internal.tck.utils.BaseLayerUtils;
+import org.graalvm.internal.tck.utils.NativeImageConfigUtils;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.tasks.Internal;
+import org.gradle.process.ExecOperations;
+import org.gradle.work.DisableCachingByDefault;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Builds a Native Image layer on top of the shared layers. Everything the task reads is set while it is configured,
+ * so its actions never touch the project.
+ */
+@DisableCachingByDefault(because = "Reuses a layer by comparing its manifest, which names files of the Gradle cache")
+public abstract class AbstractNativeLayerTask extends DefaultTask {
+
+    @Inject
+    public abstract ExecOperations getExecOperations();
+
+    @Inject
+    public abstract FileSystemOperations getFileSystemOperations();
+
+    /**
+     * Native Image arguments from ci.json shared by every layer, without coordinate placeholders.
+     */
+    @Internal
+    public abstract ListProperty<String> getNativeImageArgs();
+
+    /**
+     * Deletes {@code directory} and creates it again, empty.
+     */
+    protected final void recreateDirectory(File directory, String description) {
+        getFileSystemOperations().delete(spec -> spec.delete(directory));
+        if (!directory.mkdirs()) {
+            throw new GradleException("Failed to create " + description + " directory: " + directory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Runs native-image in the directory of {@code layerFile}, which the caller has prepared, and writes the layer
+     * manifest once the layer exists.
+     */
+    protected final void buildLayer(String description, File layerFile, List<File> classpath, List<String> layerArgs,
+                                    Map<String, Object> manifest) {
+        File layerDir = layerFile.getParentFile();
+        File nativeImageTmpDir = new File(layerDir.getParentFile(), layerDir.getName() + ".tmp");
+        recreateDirectory(nativeImageTmpDir, description + " temporary");
+        String outputStem = layerFile.getName().substring(0, layerFile.getName().length() - ".nil".length());
+        List<String> commandLineArgs = new ArrayList<>();
+        commandLineArgs.add(NativeImageConfigUtils.nativeImageTool("native-image"));
+        commandLineArgs.addAll(getNativeImageArgs().get());
+        commandLineArgs.add("-J-Djava.io.tmpdir=" + nativeImageTmpDir.getAbsolutePath());
+        commandLineArgs.add("-cp");
+        commandLineArgs.add(classpath.stream().map(File::getAbsolutePath).collect(Collectors.joining(File.pathSeparator)));
+        commandLineArgs.add("-o");
+        commandLineArgs.add(new File(layerDir, "lib" + outputStem).getAbsolutePath());
+        commandLineArgs.addAll(layerArgs);
+        try {
+            getExecOperations().exec(spec -> {
+                spec.setWorkingDir(layerDir);
+                spec.commandLine(commandLineArgs);
+            });
+        } finally {
+            getFileSystemOperations().delete(spec -> spec.delete(nativeImageTmpDir));
+        }
+        if (!layerFile.isFile()) {
+            throw new GradleException("Native Image " + description + " build did not create " + layerFile.getAbsolutePath());
+        }
+        BaseLayerUtils.writeManifest(layerFile, manifest);
+    }
+}
@@ -8,104 +8,166 @@ package org.graalvm.internal.tck.harness.tasks;
 
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.provider.ProviderFactory;
+import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Input;
-import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputFile;
-import org.gradle.api.tasks.PathSensitive;
-import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.process.ExecOperations;
+import org.gradle.process.ExecResult;
 import org.gradle.process.ExecSpec;
+import org.graalvm.internal.tck.harness.FileFingerprintService;
 import org.graalvm.internal.tck.harness.TckExtension;
+import org.graalvm.internal.tck.utils.CoordinateRunMetrics;
+import org.graalvm.internal.tck.utils.ProcessTreeSampler;
 
 import javax.inject.Inject;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.MessageDigest;
+import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
-import static org.graalvm.internal.tck.Utils.readIndexFile;
 import static org.graalvm.internal.tck.Utils.splitCoordinates;
 
 /**
  * Abstract task that is used to invoke test subprojects.
+ * <p>
+ * The task is cacheable: its inputs are the Merkle fingerprints of the coordinate's metadata and test project, which
+ * only depend on relative paths and content, and the command line with paths inside the repository made relative to
+ * it. The native-image version and the operating system and architecture are inputs too, because the subproject
+ * builds and runs images with them. Its output, the subproject's log, can therefore be served from a local or remote
+ * Gradle build cache populated by another checkout.
  */
+@CacheableTask
 @SuppressWarnings("unused")
 public abstract class AbstractSubprojectTask extends DefaultTask {
 
+    /**
+     * Directories of a test project that hold tool state or its own build outputs rather than inputs.
+     */
+    static final Set<String> EXCLUDED_TEST_PROJECT_DIRS = Set.of(".gradle", ".mvn", "build");
+
     protected final TckExtension tckExtension;
     private final String coordinates;
+    private final SubprocessOutputLog.Options outputLogOptions;
+    private final Path repoRoot;
+    private final Provider<RegularFile> outputFile;
+    private final boolean metricsEnabled;
+    private final Provider<Directory> metricsDir;
 
     @Inject
     public abstract ExecOperations getExecOperations();
 
-    @Input
+    /**
+     * The command line to run in the test project. Tracked through {@link #getNormalizedCommand()}.
+     */
+    @Internal
     public abstract List<String> getCommand();
 
-    @InputFiles
-    @PathSensitive(PathSensitivity.RELATIVE)
-    public final Set<File> getInputFiles() {
-        var inputFiles = getProject().getObjects().fileCollection();
-        Path metadataDir = tckExtension.getMetadataDir(coordinates);
-        Path testDir = tckExtension.getTestDir(coordinates);
-        try {
-            inputFiles.from(getProject().files(tckExtension.getMetadataFileList(metadataDir)));
-        } catch (IOException e) {
-            throw new GradleException("Failed to list metadata files for " + metadataDir, e);
+    /**
+     * {@link #getCommand()} with the repository root stripped from paths, so checkouts in different locations
+     * share cache entries.
+     */
+    @Input
+    public List<String> getNormalizedCommand() {
+        String prefix = repoRoot + File.separator;
+        return getCommand().stream()
+                .map(argument -> argument.equals(repoRoot.toString()) ? "." : argument.replace(prefix, ""))
+                .toList();
+    }
+
+    @Input
+    public String getCoordinates() {
+        return coordinates;
+    }
+
+    /**
+     * Environment overrides that change what the subproject builds.
+     */
+    @Input
+    public Map<String, String> getEnvironmentInputs() {
+        Map<String, String> inputs = new TreeMap<>();
+        for (String name : List.of("GVM_TCK_LV", "GVM_TCK_NATIVE_IMAGE_MODE")) {
+            String value = System.getenv(name);
+            if (value != null) {
+                inputs.put(name, value);
+            }
         }
-        List<Path> io = inputsFor(testDir);
-        inputFiles.from(getProject().files(io));
-        return inputFiles.getFiles();
+        return inputs;
+    }
+
+    /**
+     * The {@code native-image --version} output; absent when native-image cannot be run.
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getNativeImageVersion();
+
+    @Input
+    public String getOsName() {
+        return System.getProperty("os.name");
+    }
+
+    @Input
+    public String getOsArch() {
+        return System.getProperty("os.arch");
+    }
+
+    @Internal
+    public abstract Property<FileFingerprintService> getFileFingerprintService();
+
+    /**
+     * Merkle fingerprints of the metadata directory and the test project. Unchanged files are not read again, so
+     * checking whether the task is up to date costs a directory walk instead of hashing every file.
+     */
+    @Input
+    public Map<String, String> getInputFingerprints() {
+        FileFingerprintService fingerprints = getFileFingerprintService().get();
+        Map<String, String> inputs = new TreeMap<>();
+        inputs.put("metadata", fingerprints.directory(tckExtension.getMetadataDir(coordinates), Set.of()));
+        inputs.put("tests", fingerprints.directory(tckExtension.getTestDir(coordinates), EXCLUDED_TEST_PROJECT_DIRS));
+        return inputs;
     }
 
     @OutputFile
-    public final File getOutputFile() {
-        String hash = md5(String.join(",", getCommand()));
-        return getProject().getLayout().getBuildDirectory()
-                .file("tests/" + coordinates + "/" + hash + ".out")
-                .get().getAsFile();
+    public final Provider<RegularFile> getOutputFile() {
+        return outputFile;
     }
 
     @Inject
     public AbstractSubprojectTask(String coordinates) {
         this.tckExtension = getProject().getExtensions().findByType(TckExtension.class);
         this.coordinates = coordinates;
+        this.outputLogOptions = SubprocessOutputLog.Options.from(
+                name -> getProject().getProviders().gradleProperty(name).getOrNull());
+        this.repoRoot = tckExtension.getRepoRoot().get().getAsFile().toPath().toAbsolutePath();
+        getFileFingerprintService().convention(tckExtension.getFileFingerprintService());
+        getNativeImageVersion().convention(tckExtension.getNativeImageVersion());
+        usesService(tckExtension.getFileFingerprintService());
+        ProviderFactory providers = getProject().getProviders();
+        ProjectLayout layout = getProject().getLayout();
+        this.outputFile = layout.getBuildDirectory().file(providers.provider(
+                () -> "tests/" + coordinates + "/" + SubprocessOutputLog.fileName(getNormalizedCommand())));
+        this.metricsEnabled = Boolean.parseBoolean(
+                providers.gradleProperty(CoordinateRunMetrics.ENABLED_PROPERTY).getOrElse("true"));
+        this.metricsDir = layout.getBuildDirectory().dir(CoordinateRunMetrics.METRICS_DIR);
     }
 
-    @SuppressWarnings("unchecked")
     protected final void configureSpec(ExecSpec spec) {
         List<String> parts = splitCoordinates(coordinates);
         String groupId = parts.get(0);
         String artifactId = parts.get(1);
         String version = parts.get(2);
         Path metadataDir = tckExtension.getMetadataDir(coordinates);
-        boolean override = false;
-
-        var metadataIndex = readIndexFile(metadataDir.getParent());
-        for (Object entryObj : (Iterable<?>) metadataIndex) {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> entry = (Map<String, Object>) entryObj;
-            List<String> testedVersions = (List<String>) entry.get("tested-versions");
-            if (testedVersions == null) {
-                continue;
-            }
-            if (testedVersions.contains(version)) {
-                if (entry.containsKey("override")) {
-                    Object ov = entry.get("override");
-                    if (ov instanceof Boolean b) {
-                        override |= b;
-                    } else if (ov != null) {
-                        override |= Boolean.parseBoolean(ov.toString());
-                    }
-                }
-                break;
-            }
-        }
+        boolean override = tckExtension.isOverride(coordinates);
 
         Path testDir = tckExtension.getTestDir(coordinates);
 
@@ -132,43 +194,6 @@ public abstract class AbstractSubprojectTask extends DefaultTask {
         spec.setErrorOutput(System.err);
     }
 
-    /**
-     * Given project dir returns a list of inputs.
-     * @return list of input files
-     */
-    protected List<Path> inputsFor(Path projectDir) {
-        List<String> excludedSubdirNames = List.of(".gradle", ".mvn");
-        List<String> excludedSubdirs = excludedSubdirNames.stream()
-                .map(name -> {
-                    try {
-                        return projectDir.resolve(name).toFile().getCanonicalPath() + File.separator;
-                    } catch (IOException e) {
-                        return projectDir.resolve(name).toFile().getAbsolutePath() + File.separator;
-                    }
-                })
-                .collect(Collectors.toList());
-
-        List<Path> inputFiles = new ArrayList<>();
-        try {
-            Files.walk(projectDir)
-                    .filter(Files::isRegularFile)
-                    .filter(p -> {
-                        try {
-                            String canon = p.toFile().getCanonicalPath();
-                            return excludedSubdirs.stream().noneMatch(canon::startsWith);
-                        } catch (IOException e) {
-                            return false;
-                        }
-                    })
-                    .forEach(inputFiles::add);
-        } catch (IOException e) {
-            // If traversal fails treat as no inputs to avoid breaking configuration phase
-            return Collections.emptyList();
-        }
-
-        return Collections.unmodifiableList(inputFiles);
-    }
-
     protected void beforeExecute() {
         // do nothing
     }
@@ -185,51 +210,41 @@ public abstract class AbstractSubprojectTask extends DefaultTask {
     public final void executeTask() {
         beforeExecute();
         getLogger().lifecycle("Command: " + getCommand());
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        ByteArrayOutputStream err = new ByteArrayOutputStream();
-        var execResult = getExecOperations().exec(spec -> {
-            configureSpec(spec);
-            spec.setStandardOutput(new TeeOutputStream(out, System.out));
-            spec.setErrorOutput(new TeeOutputStream(err, System.err));
-        });
-        File of = getOutputFile();
-        File parent = of.getParentFile();
-        if (parent != null && !parent.exists()) {
-            //noinspection ResultOfMethodCallIgnored
-            parent.mkdirs();
-        }
-        String content = "Standard out\n" +
-                "-----\n" +
-                out.toString(StandardCharsets.UTF_8) +
-                "\n-----\n" +
-                "Standard err\n" +
-                "----\n" +
-                err.toString(StandardCharsets.UTF_8) +
-                "\n----\n";
+        File of = getOutputFile().get().getAsFile();
+        ExecResult execResult;
+        String runId = UUID.randomUUID().toString();
+        Instant startedAt = Instant.now();
+        long startNanos = System.nanoTime();
+        long endNanos;
+        ProcessTreeSampler sampler = metricsEnabled ? ProcessTreeSampler.start(runId, ProcessTreeSampler.DEFAULT_INTERVAL) : null;
+        ProcessTreeSampler.Usage usage = ProcessTreeSampler.Usage.UNAVAILABLE;
+        SubprocessOutputLog log = SubprocessOutputLog.open(of.toPath(), outputLogOptions, null);
         try {
-            Files.writeString(of.toPath(), content, StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            throw new GradleException("Failed to write test output to " + of, e);
+            execResult = getExecOperations().exec(spec -> {
+                configureSpec(spec);
+                spec.environment(ProcessTreeSampler.RUN_ID_VARIABLE, runId);
+                spec.setStandardOutput(new TeeOutputStream(log.stdout(), System.out));
+                spec.setErrorOutput(new TeeOutputStream(log.stderr(), System.err));
+            });
+        } finally {
+            endNanos = System.nanoTime();
+            log.close();
+            if (sampler != null) {
+                usage = sampler.stop();
+            }
         }
         int exitCode = execResult.getExitValue();
+        if (metricsEnabled) {
+            try {
+                CoordinateRunMetrics.append(metricsDir.get().getAsFile().toPath(), getName(), coordinates, getCommand(),
+                        exitCode, startedAt, TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos), usage);
+            } catch (GradleException e) {
+                getLogger().warn("Could not record metrics of {}: {}", coordinates, e.getMessage());
+            }
+        }
         if (exitCode != 0) {
             throw new GradleException(getErrorMessage(exitCode));
         }
         afterExecute();
     }
-
-    private static String md5(String s) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] dig = md.digest(s.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder(dig.length * 2);
-            for (byte b : dig) {
-                sb.append(Character.forDigit((b & 0xF0) >> 4, 16));
-                sb.append(Character.forDigit(b & 0x0F, 16));
-            }
-            return sb.toString();
-        } catch (Exception e) {
-            return Integer.toHexString(s.hashCode());
-        }
-    }
 }
@@ -6,38 +6,301 @@
  */
 package org.graalvm.internal.tck.harness.tasks;
 
+import org.gradle.StartParameter;
 import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.process.ExecOperations;
 import org.gradle.process.ExecSpec;
-import org.graalvm.internal.tck.utils.CoordinateUtils;
+import org.graalvm.internal.tck.harness.CoordinateFilter;
+import org.graalvm.internal.tck.harness.FileFingerprintService;
+import org.graalvm.internal.tck.harness.GradleConnectionService;
+import org.graalvm.internal.tck.utils.CoordinateDurationHistory;
+import org.graalvm.internal.tck.utils.CoordinateFlakinessHistory;
+import org.graalvm.internal.tck.utils.CoordinatePeakRssHistory;
+import org.graalvm.internal.tck.utils.CoordinateResultCache;
+import org.graalvm.internal.tck.utils.CoordinateRunMetrics;
+import org.graalvm.internal.tck.utils.FailedTestFilter;
+import org.graalvm.internal.tck.utils.MemoryBudget;
+import org.graalvm.internal.tck.utils.ParallelUtils;
+import org.graalvm.internal.tck.utils.ProcessTreeSampler;
+import org.graalvm.internal.tck.utils.StagePipeline;
 
 import javax.inject.Inject;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.MessageDigest;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-
-import static org.graalvm.internal.tck.Utils.readIndexFile;
-import static org.graalvm.internal.tck.Utils.splitCoordinates;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
 /**
  * Base task that resolves coordinates (via CoordinatesAwareTask) and executes a command for each coordinate.
  * Subclasses implement commandFor(String coordinates) and may override hooks for logging.
+ * <p>
+ * With {@code -Ptck.parallelism=N} up to N coordinates run at the same time. Coordinates sharing a test
+ * directory still run one after another, subprocess output then only goes to the per-coordinate output files,
+ * and failures are reported in coordinate order regardless of completion order. Tasks that build native images
+ * additionally admit a coordinate only when its previously measured peak RSS fits the remaining
+ * {@code -Ptck.memoryBudget}. With {@code -Ptck.pipeline=true}, tasks that define {@link #pipelineStages()} run
+ * each coordinate as a sequence of stages with separate worker pools instead. Tasks that enable
+ * {@link #cachesResults()} skip coordinates that already passed with identical inputs, see
+ * {@link CoordinateResultCache}. With {@code -Ptck.retries=N} a failed coordinate runs again up to N times, if
+ * possible with only its failed tests, and its outcome is recorded in the {@link CoordinateFlakinessHistory}.
  */
 @SuppressWarnings("unused")
 public abstract class AllCoordinatesExecTask extends CoordinatesAwareTask {
+    public static final String PARALLELISM_PROPERTY = "tck.parallelism";
+    public static final String MEMORY_BUDGET_PROPERTY = "tck.memoryBudget";
+    public static final String DEFAULT_PEAK_RSS_PROPERTY = "tck.defaultPeakRss";
+    public static final String PIPELINE_PROPERTY = "tck.pipeline";
+    public static final String PIPELINE_RUN_WORKERS_PROPERTY = "tck.pipeline.runWorkers";
+    public static final String RETRIES_PROPERTY = "tck.retries";
+    public static final String RETRY_FAILED_TESTS_ONLY_PROPERTY = "tck.retryFailedTestsOnly";
+    private static final String DEFAULT_PEAK_RSS = "8g";
+
+    /**
+     * Test filter files of coordinates whose retry runs only their failed tests.
+     */
+    private final Map<String, Path> testFilters = new ConcurrentHashMap<>();
+    private final Set<String> flakyCoordinates = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Marker that {@link ProcessTreeSampler} uses to find the processes of each coordinate's current command.
+     */
+    private final Map<String, String> runIds = new ConcurrentHashMap<>();
+
     @Inject
     public abstract ExecOperations getExecOperations();
 
+    /**
+     * File that receives the wall time of every coordinate run, keyed by this task's name.
+     * It feeds the "duration" shard strategy of later batched runs.
+     */
+    @Internal
+    public abstract RegularFileProperty getDurationHistoryFile();
+
+    /**
+     * Maximum number of coordinates executed at the same time. Defaults to the -Ptck.parallelism Gradle property, or 1.
+     */
+    @Internal
+    public abstract Property<Integer> getParallelism();
+
+    /**
+     * How commands that re-invoke {@code ./gradlew} run: "exec" (default) starts the wrapper, "toolingApi" runs the
+     * build through {@link GradleConnectionService}. Defaults to the -Ptck.subbuildExecutor Gradle property.
+     */
+    @Internal
+    public abstract Property<String> getSubbuildExecutor();
+
+    @Internal
+    public abstract Property<GradleConnectionService> getGradleConnectionService();
+
+    /**
+     * Fingerprints of the test and metadata directories, build logic and test runtime classpath that make up result
+     * cache keys.
+     */
+    @Internal
+    public abstract Property<FileFingerprintService> getFileFingerprintService();
+
+    /**
+     * Root of the local result cache. Defaults to the -Ptck.resultCacheDir Gradle property, or build/tck/result-cache.
+     */
+    @Internal
+    public abstract DirectoryProperty getResultCacheDir();
+
+    /**
+     * The {@code native-image --version} output that result cache keys cover, the same value that
+     * {@link AbstractSubprojectTask#getNativeImageVersion()} tracks; absent when native-image cannot be run.
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getNativeImageVersion();
+
+    /**
+     * Whether tasks that support it reuse passing results from the result cache. Defaults to the -Ptck.resultCache
+     * Gradle property, or true.
+     */
+    @Internal
+    public abstract Property<Boolean> getResultCacheEnabled();
+
+    /**
+     * Whether cached results are ignored and every coordinate runs again; passing runs are still stored.
+     * True when the task is invoked with Gradle's {@code --rerun} option or the build runs with {@code --rerun-tasks}.
+     */
+    @Internal
+    public abstract Property<Boolean> getRerun();
+
+    /**
+     * Whether tasks that support it run their coordinates through {@link #pipelineStages()}. Defaults to the
+     * -Ptck.pipeline Gradle property, or false.
+     */
+    @Internal
+    public abstract Property<Boolean> getPipelined();
+
+    /**
+     * Workers of the pipeline stage that runs the built native images. Defaults to the -Ptck.pipeline.runWorkers
+     * Gradle property, or 2.
+     */
+    @Internal
+    public abstract Property<Integer> getPipelineRunWorkers();
+
+    /**
+     * File that receives the native-image peak RSS of every coordinate run of tasks that build native images.
+     */
+    @Internal
+    public abstract RegularFileProperty getPeakRssHistoryFile();
+
+    /**
+     * Memory shared by concurrent native-image builds, in bytes. Defaults to the -Ptck.memoryBudget Gradle property
+     * (e.g. {@code 24g}), or 80% of the physical memory.
+     */
+    @Internal
+    public abstract Property<Long> getMemoryBudget();
+
+    /**
+     * How many times a failed coordinate runs again before it counts as failed. Defaults to the -Ptck.retries Gradle
+     * property, or 0.
+     */
+    @Internal
+    public abstract Property<Integer> getRetries();
+
+    /**
+     * Whether a retry runs only the tests that failed in the previous attempt when its JUnit reports name them.
+     * Defaults to the -Ptck.retryFailedTestsOnly Gradle property, or true.
+     */
+    @Internal
+    public abstract Property<Boolean> getRetryFailedTestsOnly();
+
+    /**
+     * File that receives the outcome (pass, flaky or fail) of every coordinate run when retries are enabled.
+     */
+    @Internal
+    public abstract RegularFileProperty getFlakinessHistoryFile();
+
+    /**
+     * File rewritten after runs with retries with the libraries that were flaky at least
+     * {@link #getQuarantineThreshold()} times; it can be passed as -Ptck.excludedCoordinatesFile.
+     */
+    @Internal
+    public abstract RegularFileProperty getQuarantineFile();
+
+    /**
+     * Flaky outcomes after which a library is quarantined. Defaults to the -Ptck.quarantineThreshold Gradle property,
+     * or 2.
+     */
+    @Internal
+    public abstract Property<Integer> getQuarantineThreshold();
+
+    /**
+     * Peak RSS assumed for coordinates without a measurement. Defaults to the -Ptck.defaultPeakRss Gradle property,
+     * or 8 GB.
+     */
+    @Internal
+    public abstract Property<Long> getDefaultPeakRss();
+
+    /**
+     * Rotation of the per-coordinate output files. Defaults to the -Ptck.outputLog.* Gradle properties.
+     */
+    @Internal
+    public abstract Property<SubprocessOutputLog.Options> getOutputLogOptions();
+
+    /**
+     * Whether the resources of every coordinate run are sampled and appended to build/tests/metrics/&lt;task&gt;.ndjson.
+     * Defaults to the -Ptck.metrics Gradle property, or true.
+     */
+    @Internal
+    public abstract Property<Boolean> getMetricsEnabled();
+
+    public AllCoordinatesExecTask() {
+        if (tckExtension != null) {
+            getDurationHistoryFile().convention(tckExtension.getDurationHistoryFile());
+            getPeakRssHistoryFile().convention(tckExtension.getPeakRssHistoryFile());
+            getFlakinessHistoryFile().convention(tckExtension.getFlakinessHistoryFile());
+            getQuarantineFile().convention(tckExtension.getQuarantineFile());
+            getGradleConnectionService().convention(tckExtension.getGradleConnectionService());
+            usesService(tckExtension.getGradleConnectionService());
+            getResultCacheDir().convention(tckExtension.getResultCacheDir());
+            getNativeImageVersion().convention(tckExtension.getNativeImageVersion());
+            getFileFingerprintService().convention(tckExtension.getFileFingerprintService());
+            usesService(tckExtension.getFileFingerprintService());
+        }
+        getResultCacheEnabled().convention(projectProperty(CoordinateResultCache.ENABLED_PROPERTY)
+                .map(Boolean::parseBoolean).orElse(true));
+        // Resolved while the task is configured, so the configuration cache stores the value and not the build.
+        StartParameter startParameter = getProject().getGradle().getStartParameter();
+        getRerun().convention(startParameter.isRerunTasks() || startParameter.getTaskRequests().stream().anyMatch(
+                request -> CoordinateResultCache.isRerunRequested(request.getArgs(), getName(), getPath())));
+        getSubbuildExecutor().convention(projectProperty(GradleConnectionService.EXECUTOR_PROPERTY)
+                .orElse(GradleConnectionService.EXEC_EXECUTOR));
+        getParallelism().convention(projectProperty(PARALLELISM_PROPERTY)
+                .map(value -> parsePositive(PARALLELISM_PROPERTY, value)).orElse(1));
+        getPipelined().convention(projectProperty(PIPELINE_PROPERTY).map(Boolean::parseBoolean).orElse(false));
+        getPipelineRunWorkers().convention(projectProperty(PIPELINE_RUN_WORKERS_PROPERTY)
+                .map(value -> parsePositive(PIPELINE_RUN_WORKERS_PROPERTY, value)).orElse(2));
+        getRetries().convention(projectProperty(RETRIES_PROPERTY)
+                .map(value -> parseNonNegative(RETRIES_PROPERTY, value)).orElse(0));
+        getRetryFailedTestsOnly().convention(projectProperty(RETRY_FAILED_TESTS_ONLY_PROPERTY)
+                .map(Boolean::parseBoolean).orElse(true));
+        getQuarantineThreshold().convention(projectProperty(CoordinateFlakinessHistory.QUARANTINE_THRESHOLD_PROPERTY)
+                .map(value -> parsePositive(CoordinateFlakinessHistory.QUARANTINE_THRESHOLD_PROPERTY, value))
+                .orElse(CoordinateFlakinessHistory.DEFAULT_QUARANTINE_THRESHOLD));
+        getMemoryBudget().convention(projectProperty(MEMORY_BUDGET_PROPERTY).map(MemoryBudget::parseBytes)
+                .orElse(getProject().getProviders().provider(MemoryBudget::defaultBudgetBytes)));
+        getDefaultPeakRss().convention(projectProperty(DEFAULT_PEAK_RSS_PROPERTY).orElse(DEFAULT_PEAK_RSS)
+                .map(MemoryBudget::parseBytes));
+        getMetricsEnabled().convention(projectProperty(CoordinateRunMetrics.ENABLED_PROPERTY)
+                .map(Boolean::parseBoolean).orElse(true));
+        getOutputLogOptions().convention(getProject().getProviders().provider(
+                () -> SubprocessOutputLog.Options.from(name -> projectProperty(name).getOrNull())));
+    }
+
+    private static int parsePositive(String property, String value) {
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed >= 1) {
+                return parsed;
+            }
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new GradleException("'" + property + "' must be a positive integer, got '" + value + "'");
+    }
+
+    private static int parseNonNegative(String property, String value) {
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed >= 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new GradleException("'" + property + "' must be a non-negative integer, got '" + value + "'");
+    }
+
     /**
      * Subclasses must return the command line to run for the given coordinates.
      */
@@ -64,6 +327,50 @@ public abstract class AllCoordinatesExecTask extends CoordinatesAwareTask {
         // no-op
     }
 
+    /**
+     * Whether each coordinate run builds native images. Such runs record their peak RSS and, when coordinates run
+     * concurrently, are admitted only while their estimated peak fits the memory budget.
+     */
+    protected boolean buildsNativeImages() {
+        return false;
+    }
+
+    /**
+     * Whether passing coordinate runs are stored in, and restored from, the local result cache.
+     */
+    protected boolean cachesResults() {
+        return false;
+    }
+
+    /**
+     * Adds inputs beyond the coordinate's sources, test runtime classpath, build logic, GraalVM version and
+     * native-image arguments that decide the outcome of a run to its result cache key.
+     */
+    protected void addResultCacheInputs(String coordinates, CoordinateResultCache.KeyBuilder key) {
+        // no-op
+    }
+
+    /**
+     * One stage of the pipelined mode (-Ptck.pipeline=true).
+     *
+     * @param name              stage label used in logs and thread names
+     * @param workers           number of coordinates that may be in this stage at the same time
+     * @param buildsNativeImages whether the stage is admitted into the memory budget when it has several workers
+     * @param commandFor        the command run for a coordinate in this stage
+     */
+    protected record PipelineStage(String name, int workers, boolean buildsNativeImages,
+                                   Function<String, List<String>> commandFor) {
+    }
+
+    /**
+     * Stages that together do what {@link #commandFor(String)} does, for tasks that support the pipelined mode.
+     * Each stage runs after the previous one succeeded for the same coordinate; the last stage's success counts as
+     * the coordinate's success.
+     */
+    protected List<PipelineStage> pipelineStages() {
+        return List.of();
+    }
+
     /**
      * Whether this task should keep running remaining coordinates after a coordinate fails.
      */
@@ -90,9 +397,9 @@ public abstract class AllCoordinatesExecTask extends CoordinatesAwareTask {
             List<String> override = getCoordinatesOverride().getOrNull();
             boolean hasProgrammaticOverride = override != null && !override.isEmpty();
 
-            String filter = Objects.toString(getProject().findProperty("coordinates"), "");
-            boolean userProvidedFilter = filter != null && !filter.isBlank();
-            boolean isBatch = userProvidedFilter && CoordinateUtils.isFractionalBatch(filter);
+            String filter = getCoordinateFilter().get();
+            boolean userProvidedFilter = !filter.isBlank();
+            boolean isBatch = userProvidedFilter && CoordinateFilter.isSharded(filter);
 
             if (!hasProgrammaticOverride && userProvidedFilter && !isBatch) {
                 throw new GradleException("No matching coordinates found for '" + filter + "'. " +
@@ -105,17 +412,55 @@ public abstract class AllCoordinatesExecTask extends CoordinatesAwareTask {
             }
         }
         boolean continueOnCoordinateFailure = continueOnCoordinateFailure();
-        List<CoordinateFailure> failures = new ArrayList<>();
-        for (String c : coords) {
-            CoordinateFailure failure = runSingle(c);
-            if (failure == null) {
-                continue;
-            }
-            if (!continueOnCoordinateFailure) {
-                throw new GradleException(failure.message);
+        int parallelism = getParallelism().get();
+        flakyCoordinates.clear();
+        if (parallelism > 1) {
+            getLogger().lifecycle("Running {} coordinate(s) with parallelism {}.", coords.size(), parallelism);
+        }
+        // Without continueOnCoordinateFailure, coordinates not started yet are skipped after the first failure.
+        AtomicBoolean aborted = new AtomicBoolean();
+        UnaryOperator<CoordinateFailure> report = failure -> {
+            if (isFailure(failure) && continueOnCoordinateFailure) {
+                getLogger().error(failure.message);
+            } else if (isFailure(failure)) {
+                aborted.set(true);
             }
-            failures.add(failure);
-            getLogger().error(failure.message);
+            return failure;
+        };
+        ResultCaching caching = cachesResults() && getResultCacheEnabled().get() ? new ResultCaching(this) : null;
+        List<PipelineStage> pipelineStages = getPipelined().get() ? pipelineStages() : List.of();
+        if (GradleConnectionService.isSelected(getSubbuildExecutor().get())) {
+            int concurrent = pipelineStages.stream().mapToInt(PipelineStage::workers).max().orElse(parallelism);
+            getGradleConnectionService().get().warmUp(coords.stream().limit(concurrent)
+                    .map(c -> tckExtension.getTestDir(c).toAbsolutePath()).distinct().toList());
+        }
+        List<CoordinateFailure> results;
+        if (!pipelineStages.isEmpty()) {
+            results = runPipelined(coords, pipelineStages, c -> aborted.get(), report, caching);
+        } else {
+            MemoryAdmission admission = parallelism > 1 && buildsNativeImages() ? memoryAdmission() : null;
+            results = ParallelUtils.boundedOrderedMap(coords, parallelism, tckExtension::getTestDir, c -> {
+                if (aborted.get()) {
+                    return SKIPPED;
+                }
+                if (caching != null && caching.restore(c)) {
+                    return CACHED;
+                }
+                if (admission == null) {
+                    return report.apply(runSingle(c, parallelism == 1, caching));
+                }
+                MemoryBudget.Reservation reservation = admission.admit(c);
+                try {
+                    return report.apply(aborted.get() ? SKIPPED : runSingle(c, false, caching));
+                } finally {
+                    reservation.close();
+                }
+            });
+        }
+        List<CoordinateFailure> failures = results.stream().filter(AllCoordinatesExecTask::isFailure).toList();
+        reportFlakiness();
+        if (!failures.isEmpty() && !continueOnCoordinateFailure) {
+            throw new GradleException(failures.get(0).message);
         }
         if (!failures.isEmpty()) {
             writeFailureReport(failures);
@@ -124,52 +469,332 @@ public abstract class AllCoordinatesExecTask extends CoordinatesAwareTask {
         }
     }
 
-    private CoordinateFailure runSingle(String coordinates) {
+    private CoordinateFailure runSingle(String coordinates, boolean toConsole, ResultCaching caching) {
         List<String> command = commandFor(coordinates);
         beforeEach(coordinates, command);
+        Attempts attempts = executeWithRetries(coordinates, command, toConsole && streamSubprocessOutput(coordinates));
+        Execution execution = attempts.last();
+        recordDuration(coordinates, attempts.durationMillis());
+        recordOutcome(coordinates, CoordinateFlakinessHistory.Outcome.of(execution.exitCode() == 0, attempts.failedAttempts()));
+        if (execution.exitCode() != 0) {
+            return failed(coordinates, execution.exitCode());
+        }
+        // A flaky pass may not pass again with the same inputs, so it is not cached.
+        if (caching != null && attempts.failedAttempts() == 0) {
+            caching.store(coordinates, List.of(execution.outputFile()));
+        }
+        return succeeded(coordinates);
+    }
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        ByteArrayOutputStream err = new ByteArrayOutputStream();
+    private CoordinateFailure succeeded(String coordinates) {
+        afterEach(coordinates);
+        return null;
+    }
 
-        var execResult = getExecOperations().exec((ExecSpec spec) -> {
-            this.configureSpec(spec, coordinates, command);
-            if (streamSubprocessOutput(coordinates)) {
-                spec.setStandardOutput(new TeeOutputStream(out, System.out));
-                spec.setErrorOutput(new TeeOutputStream(err, System.err));
+    private CoordinateFailure failed(String coordinates, int exitCode) {
+        return new CoordinateFailure(coordinates, exitCode, errorMessageFor(coordinates, exitCode));
+    }
+
+    private record Execution(int exitCode, long durationMillis, Path outputFile) {
+    }
+
+    /**
+     * The last attempt of a command, the number of failed attempts before it and their total wall time.
+     */
+    private record Attempts(Execution last, int failedAttempts, long durationMillis) {
+    }
+
+    /**
+     * Runs a coordinate's command and, while it fails, up to {@link #getRetries()} more times. The output of each
+     * failed attempt is kept next to the output file as {@code <name>.attempt-<n>.out}.
+     */
+    private Attempts executeWithRetries(String coordinates, List<String> command, boolean streamed) {
+        int retries = getRetries().get();
+        long startMillis = System.currentTimeMillis();
+        Execution execution = execute(coordinates, command, streamed);
+        long durationMillis = execution.durationMillis();
+        int failedAttempts = 0;
+        while (execution.exitCode() != 0 && failedAttempts < retries) {
+            failedAttempts++;
+            keepAttemptOutput(execution.outputFile(), failedAttempts);
+            Set<String> failedTests = getRetryFailedTestsOnly().get() ? failedTestsSince(coordinates, startMillis) : Set.of();
+            if (failedTests.isEmpty()) {
+                getLogger().lifecycle("{} failed; running it again (retry {} of {}).", coordinates, failedAttempts, retries);
             } else {
-                spec.setStandardOutput(out);
-                spec.setErrorOutput(err);
+                Path filterFile = execution.outputFile().resolveSibling("retry-tests.txt");
+                FailedTestFilter.write(filterFile, failedTests);
+                testFilters.put(coordinates, filterFile);
+                getLogger().lifecycle("{} failed; running its {} failed test(s) again (retry {} of {}).", coordinates,
+                        failedTests.size(), failedAttempts, retries);
             }
-        });
+            startMillis = System.currentTimeMillis();
+            try {
+                execution = execute(coordinates, command, streamed);
+            } finally {
+                testFilters.remove(coordinates);
+            }
+            durationMillis += execution.durationMillis();
+        }
+        if (execution.exitCode() == 0 && failedAttempts > 0) {
+            getLogger().warn("{} passed after {} failed attempt(s); it is flaky.", coordinates, failedAttempts);
+        }
+        return new Attempts(execution, failedAttempts, durationMillis);
+    }
 
-        // write output file like AbstractSubprojectTask
-        String hash = md5(String.join(",", command));
-        File outputFile = getProject().getLayout().getBuildDirectory().file("tests/" + coordinates + "/" + hash + ".out").get().getAsFile();
-        File parent = outputFile.getParentFile();
-        if (parent != null && !parent.exists()) {
-            //noinspection ResultOfMethodCallIgnored
-            parent.mkdirs();
+    private Set<String> failedTestsSince(String coordinates, long startMillis) {
+        Path resultsDir = tckExtension.getTestDir(coordinates).resolve(FailedTestFilter.TEST_RESULTS_DIR);
+        // Report timestamps may be truncated to whole seconds.
+        return FailedTestFilter.failedTests(resultsDir, startMillis - startMillis % 1000);
+    }
+
+    private static void keepAttemptOutput(Path outputFile, int attempt) {
+        String name = outputFile.getFileName().toString();
+        String stem = name.endsWith(".out") ? name.substring(0, name.length() - ".out".length()) : name;
+        try {
+            Files.move(outputFile, outputFile.resolveSibling(stem + ".attempt-" + attempt + ".out"),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ignored) {
+            // The retry overwrites the output instead.
         }
-        String content = "Standard out\n" +
-                "-----\n" +
-                out.toString(StandardCharsets.UTF_8) +
-                "\n-----\n" +
-                "Standard err\n" +
-                "----\n" +
-                err.toString(StandardCharsets.UTF_8) +
-                "\n----\n";
+    }
+
+    /**
+     * Runs one command for a coordinate and writes its output to the coordinate's output file.
+     */
+    private Execution execute(String coordinates, List<String> command, boolean streamed) {
+        // Output goes straight to the (rotating) output file, like AbstractSubprojectTask; only tails stay in memory.
+        File outputFile = projectLayout().getBuildDirectory()
+                .file("tests/" + coordinates + "/" + SubprocessOutputLog.fileName(command)).get().getAsFile();
+        AtomicLong peakRss = new AtomicLong(-1);
+        Consumer<String> peakRssScanner = buildsNativeImages()
+                ? line -> CoordinatePeakRssHistory.parsePeakRss(line).ifPresent(bytes -> peakRss.accumulateAndGet(bytes, Math::max))
+                : null;
+
+        boolean metrics = getMetricsEnabled().get();
+        String runId = UUID.randomUUID().toString();
+        runIds.put(coordinates, runId);
+        Instant startedAt = Instant.now();
+        long startNanos = System.nanoTime();
+        long endNanos;
+        int exitCode;
+        ProcessTreeSampler sampler = metrics ? ProcessTreeSampler.start(runId, ProcessTreeSampler.DEFAULT_INTERVAL) : null;
+        ProcessTreeSampler.Usage usage = ProcessTreeSampler.Usage.UNAVAILABLE;
+        SubprocessOutputLog log = SubprocessOutputLog.open(outputFile.toPath(), getOutputLogOptions().get(), peakRssScanner);
         try {
-            Files.writeString(outputFile.toPath(), content, StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            throw new GradleException("Failed to write test output to " + outputFile, e);
+            exitCode = runCommand(coordinates, command,
+                    streamed ? new TeeOutputStream(log.stdout(), System.out) : log.stdout(),
+                    streamed ? new TeeOutputStream(log.stderr(), System.err) : log.stderr());
+        } finally {
+            endNanos = System.nanoTime();
+            log.close();
+            runIds.remove(coordinates);
+            if (sampler != null) {
+                usage = sampler.stop();
+            }
+        }
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+        if (metrics) {
+            recordMetrics(coordinates, command, exitCode, startedAt, durationMillis, usage);
+        }
+        if (peakRss.get() >= 0) {
+            recordPeakRss(coordinates, peakRss.get());
+        } else if (buildsNativeImages() && usage.peakRssBytes() > 0) {
+            // No native-image summary (e.g. the build failed early); the sampled peak of the run is the next best
+            // estimate for memory admission.
+            recordPeakRss(coordinates, usage.peakRssBytes());
+        }
+        if (exitCode != 0 && !streamed) {
+            logOutputTail(coordinates, log);
         }
+        return new Execution(exitCode, durationMillis, outputFile.toPath());
+    }
 
-        int exitCode = execResult.getExitValue();
-        if (exitCode != 0) {
-            return new CoordinateFailure(coordinates, exitCode, errorMessageFor(coordinates, exitCode));
+    /**
+     * Runs a command in the coordinate's test directory, through the Tooling API when it was selected for
+     * {@code ./gradlew} commands, and returns its exit code.
+     */
+    private int runCommand(String coordinates, List<String> command, OutputStream stdout, OutputStream stderr) {
+        if (runsThroughToolingApi(command)) {
+            return getGradleConnectionService().get().run(tckExtension.getTestDir(coordinates).toAbsolutePath(),
+                    command.subList(1, command.size()), environmentFor(coordinates), stdout, stderr);
+        }
+        return getExecOperations().exec((ExecSpec spec) -> {
+            this.configureSpec(spec, coordinates, command);
+            spec.setStandardOutput(stdout);
+            spec.setErrorOutput(stderr);
+        }).getExitValue();
+    }
+
+    /**
+     * Runs every coordinate through {@link #pipelineStages()}: each stage has its own worker pool, so the stages of
+     * different coordinates overlap while a coordinate's own stages stay in order.
+     */
+    private List<CoordinateFailure> runPipelined(List<String> coords, List<PipelineStage> pipelineStages,
+                                                 Predicate<String> skip, UnaryOperator<CoordinateFailure> report,
+                                                 ResultCaching caching) {
+        PipelineRuns runs = new PipelineRuns(caching);
+        List<StagePipeline.Stage<String, CoordinateFailure>> stages = new ArrayList<>();
+        for (int i = 0; i < pipelineStages.size(); i++) {
+            PipelineStage stage = pipelineStages.get(i);
+            boolean first = i == 0;
+            boolean last = i == pipelineStages.size() - 1;
+            MemoryAdmission admission = stage.buildsNativeImages() && stage.workers() > 1 ? memoryAdmission() : null;
+            stages.add(new StagePipeline.Stage<>(stage.name(), stage.workers(), c -> {
+                if (skip.test(c)) {
+                    return SKIPPED;
+                }
+                if (first && runs.caching != null && runs.caching.restore(c)) {
+                    return CACHED;
+                }
+                return report.apply(runStage(c, stage, first, last, admission, runs));
+            }));
+        }
+        getLogger().lifecycle("Pipelining {} coordinate(s) through {}.", coords.size(), pipelineStages.stream()
+                .map(stage -> stage.name() + " (" + stage.workers() + " worker(s))")
+                .collect(Collectors.joining(" -> ")));
+        return new StagePipeline<>(stages).run(coords, tckExtension::getTestDir);
+    }
+
+    private CoordinateFailure runStage(String coordinates, PipelineStage stage, boolean first, boolean last,
+                                       MemoryAdmission admission, PipelineRuns runs) {
+        List<String> command = stage.commandFor().apply(coordinates);
+        if (first) {
+            beforeEach(coordinates, command);
+        }
+        getLogger().lifecycle("[{}] {}", stage.name(), coordinates);
+        Attempts attempts;
+        if (admission == null) {
+            attempts = executeWithRetries(coordinates, command, false);
+        } else {
+            MemoryBudget.Reservation reservation = admission.admit(coordinates);
+            try {
+                attempts = executeWithRetries(coordinates, command, false);
+            } finally {
+                reservation.close();
+            }
+        }
+        Execution execution = attempts.last();
+        long duration = runs.durations.merge(coordinates, attempts.durationMillis(), Long::sum);
+        int failedAttempts = runs.failedAttempts.merge(coordinates, attempts.failedAttempts(), Integer::sum);
+        runs.outputFiles.computeIfAbsent(coordinates, ignored -> Collections.synchronizedList(new ArrayList<>()))
+                .add(execution.outputFile());
+        if (execution.exitCode() != 0 || last) {
+            recordDuration(coordinates, duration);
+            recordOutcome(coordinates, CoordinateFlakinessHistory.Outcome.of(execution.exitCode() == 0, failedAttempts));
+        }
+        if (execution.exitCode() != 0) {
+            return failed(coordinates, execution.exitCode());
+        }
+        if (!last) {
+            return null;
+        }
+        if (runs.caching != null && failedAttempts == 0) {
+            runs.caching.store(coordinates, runs.outputFiles.getOrDefault(coordinates, List.of()));
+        }
+        return succeeded(coordinates);
+    }
+
+    /**
+     * Per-coordinate state shared by the stages of one pipelined run.
+     */
+    private static final class PipelineRuns {
+        private final ResultCaching caching;
+        private final Map<String, Long> durations = new ConcurrentHashMap<>();
+        private final Map<String, Integer> failedAttempts = new ConcurrentHashMap<>();
+        private final Map<String, List<Path>> outputFiles = new ConcurrentHashMap<>();
+
+        private PipelineRuns(ResultCaching caching) {
+            this.caching = caching;
+        }
+    }
+
+    private void recordDuration(String coordinates, long durationMillis) {
+        if (!getDurationHistoryFile().isPresent()) {
+            return;
+        }
+        Path historyFile = getDurationHistoryFile().get().getAsFile().toPath();
+        try {
+            CoordinateDurationHistory.record(historyFile, getName(), coordinates, durationMillis);
+        } catch (GradleException e) {
+            // Timing history only steers sharding; never fail a coordinate run because of it.
+            getLogger().warn("Could not record duration of {}: {}", coordinates, e.getMessage());
+        }
+    }
+
+    private void recordMetrics(String coordinates, List<String> command, int exitCode, Instant startedAt,
+                               long durationMillis, ProcessTreeSampler.Usage usage) {
+        Path metricsDir = projectLayout().getBuildDirectory().dir(CoordinateRunMetrics.METRICS_DIR).get().getAsFile().toPath();
+        try {
+            CoordinateRunMetrics.append(metricsDir, getName(), coordinates, command, exitCode, startedAt, durationMillis, usage);
+        } catch (GradleException e) {
+            // Like the histories, metrics are only observations; never fail a coordinate run because of them.
+            getLogger().warn("Could not record metrics of {}: {}", coordinates, e.getMessage());
+        }
+    }
+
+    private void recordOutcome(String coordinates, CoordinateFlakinessHistory.Outcome outcome) {
+        if (outcome == CoordinateFlakinessHistory.Outcome.FLAKY) {
+            flakyCoordinates.add(coordinates);
+        }
+        // Without retries a flaky coordinate cannot be told apart from a failing one.
+        if (getRetries().get() == 0 || !getFlakinessHistoryFile().isPresent()) {
+            return;
+        }
+        Path historyFile = getFlakinessHistoryFile().get().getAsFile().toPath();
+        try {
+            CoordinateFlakinessHistory.record(historyFile, getName(), coordinates, outcome);
+        } catch (GradleException e) {
+            getLogger().warn("Could not record the outcome of {}: {}", coordinates, e.getMessage());
+        }
+    }
+
+    /**
+     * Lists this run's flaky coordinates and rewrites the quarantine file from the flakiness history.
+     */
+    private void reportFlakiness() {
+        if (!flakyCoordinates.isEmpty()) {
+            getLogger().warn("Flaky coordinates ({}): {}", flakyCoordinates.size(),
+                    flakyCoordinates.stream().sorted().collect(Collectors.joining(", ")));
+        }
+        if (getRetries().get() == 0 || !getFlakinessHistoryFile().isPresent() || !getQuarantineFile().isPresent()) {
+            return;
+        }
+        Path quarantineFile = getQuarantineFile().get().getAsFile().toPath();
+        try {
+            CoordinateFlakinessHistory.writeQuarantineFile(getFlakinessHistoryFile().get().getAsFile().toPath(),
+                    quarantineFile, getQuarantineThreshold().get());
+        } catch (GradleException e) {
+            getLogger().warn("Could not write the flaky coordinate list {}: {}", quarantineFile, e.getMessage());
+        }
+    }
+
+    private void logOutputTail(String coordinates, SubprocessOutputLog log) {
+        getLogger().error("Output of {} (full log: {})", coordinates, log.getFile());
+        for (String tail : List.of(log.stdoutTail(), log.stderrTail())) {
+            if (!tail.isBlank()) {
+                getLogger().error(tail.stripTrailing());
+            }
+        }
+    }
+
+    private MemoryAdmission memoryAdmission() {
+        Map<String, Long> estimates = getPeakRssHistoryFile().isPresent()
+                ? CoordinatePeakRssHistory.loadEstimates(getPeakRssHistoryFile().get().getAsFile().toPath(), getName())
+                : Map.of();
+        return new MemoryAdmission(getMemoryBudget().get(), getDefaultPeakRss().get(), estimates, getLogger());
+    }
+
+    private void recordPeakRss(String coordinates, long peakRss) {
+        if (!getPeakRssHistoryFile().isPresent()) {
+            return;
+        }
+        Path historyFile = getPeakRssHistoryFile().get().getAsFile().toPath();
+        try {
+            CoordinatePeakRssHistory.record(historyFile, getName(), coordinates, peakRss);
+        } catch (GradleException e) {
+            // Like the duration history, this only steers scheduling.
+            getLogger().warn("Could not record peak RSS of {}: {}", coordinates, e.getMessage());
         }
-        afterEach(coordinates);
-        return null;
     }
 
     private void writeFailureReport(List<CoordinateFailure> failures) {
@@ -204,6 +829,20 @@ public abstract class AllCoordinatesExecTask extends CoordinatesAwareTask {
         return failures.size() + " coordinate(s) failed. See the coordinate failure summary above.";
     }
 
+    /**
+     * Marks coordinates that were not run because an earlier coordinate failed.
+     */
+    private static final CoordinateFailure SKIPPED = new CoordinateFailure("", 0, "skipped");
+
+    /**
+     * Marks coordinates whose passing result was restored from the result cache.
+     */
+    private static final CoordinateFailure CACHED = new CoordinateFailure("", 0, "cached");
+
+    private static boolean isFailure(CoordinateFailure result) {
+        return result != null && result != SKIPPED && result != CACHED;
+    }
+
     private static final class CoordinateFailure {
         private final String coordinates;
         private final int exitCode;
@@ -216,51 +855,20 @@ public abstract class AllCoordinatesExecTask extends CoordinatesAwareTask {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    protected void configureSpec(ExecSpec spec, String coordinates, List<String> command) {
-        List<String> parts = splitCoordinates(coordinates);
-        String groupId = parts.get(0);
-        String artifactId = parts.get(1);
-        String version = parts.get(2);
-        Path metadataDir = tckExtension.getMetadataDir(coordinates);
-        boolean override = false;
-
-        var metadataIndex = readIndexFile(metadataDir.getParent());
-        for (Object entryObj : (Iterable<?>) metadataIndex) {
-            Map<String, Object> entry = (Map<String, Object>) entryObj;
-            List<String> testedVersions = (List<String>) entry.get("tested-versions");
-            if (testedVersions == null) {
-                continue;
-            }
-            if (testedVersions.contains(version)) {
-                if (entry.containsKey("override")) {
-                    Object ov = entry.get("override");
-                    if (ov instanceof Boolean b) {
-                        override |= b;
-                    } else if (ov != null) {
-                        override |= Boolean.parseBoolean(ov.toString());
-                    }
-                }
-                break;
-            }
+    /**
+     * Whether a command re-invokes the repository's Gradle wrapper and the Tooling API was selected to run it instead.
+     */
+    private boolean runsThroughToolingApi(List<String> command) {
+        if (!GradleConnectionService.isSelected(getSubbuildExecutor().get()) || command.isEmpty()) {
+            return false;
         }
+        String executable = Path.of(command.get(0)).getFileName().toString();
+        return executable.equals("gradlew") || executable.equals("gradlew.bat");
+    }
 
+    protected void configureSpec(ExecSpec spec, String coordinates, List<String> command) {
         Path testDir = tckExtension.getTestDir(coordinates);
-
-        Map<String, String> env = new HashMap<>(System.getenv());
-        env.put("GVM_TCK_LC", coordinates);
-        env.put("GVM_TCK_EXCLUDE", Boolean.toString(override));
-        if (System.getenv("GVM_TCK_LV") == null) {
-            env.put("GVM_TCK_LV", version);
-        }
-        String nativeImageMode = System.getenv("GVM_TCK_NATIVE_IMAGE_MODE");
-        if (nativeImageMode != null) {
-            env.put("GVM_TCK_NATIVE_IMAGE_MODE", nativeImageMode);
-        }
-        env.put("GVM_TCK_MD", metadataDir.toAbsolutePath().toString());
-        env.put("GVM_TCK_TCKDIR", tckExtension.getTckRoot().get().getAsFile().toPath().toAbsolutePath().toString());
-
-        spec.environment(env);
+        spec.environment(environmentFor(coordinates));
         spec.commandLine(command);
         spec.workingDir(testDir.toAbsolutePath().toFile());
         spec.setIgnoreExitValue(true);
@@ -268,6 +876,33 @@ public abstract class AllCoordinatesExecTask extends CoordinatesAwareTask {
         spec.setErrorOutput(System.err);
     }
 
+    /**
+     * Environment of the per-coordinate build: {@link #coordinateEnvironment(String)} plus the run's markers.
+     */
+    protected Map<String, String> environmentFor(String coordinates) {
+        Map<String, String> env = coordinateEnvironment(coordinates);
+        if (cachesResults() && getResultCacheEnabled().get()) {
+            env.put(CoordinateResultCache.CLASSPATH_FILE_VARIABLE, resultCacheClasspathFile(coordinates).toAbsolutePath().toString());
+        }
+        String runId = runIds.get(coordinates);
+        if (runId != null) {
+            env.put(ProcessTreeSampler.RUN_ID_VARIABLE, runId);
+        }
+        Path testFilter = testFilters.get(coordinates);
+        if (testFilter != null) {
+            env.put(FailedTestFilter.ENVIRONMENT_VARIABLE, testFilter.toAbsolutePath().toString());
+        }
+        return env;
+    }
+
+    /**
+     * Where the coordinate's build records its test runtime classpath, next to the coordinate's output files.
+     */
+    Path resultCacheClasspathFile(String coordinates) {
+        return projectLayout().getBuildDirectory().file("tests/" + coordinates + "/" + CoordinateResultCache.CLASSPATH_FILE)
+                .get().getAsFile().toPath();
+    }
+
     protected boolean streamSubprocessOutput(String coordinates) {
         return true;
     }
@@ -279,25 +914,9 @@ public abstract class AllCoordinatesExecTask extends CoordinatesAwareTask {
      * to the inner build. No-op when the property is unset.
      */
     protected void appendProperty(List<String> command, String propertyName) {
-        Object propertyValue = getProject().findProperty(propertyName);
+        String propertyValue = projectProperty(propertyName).getOrNull();
         if (propertyValue != null) {
             command.add("-P" + propertyName + "=" + propertyValue);
         }
     }
-
-    private static String md5(String s) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] dig = md.digest(s.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder(dig.length * 2);
-            for (byte b : dig) {
-                sb.append(Character.forDigit((b & 0xF0) >> 4, 16));
-                sb.append(Character.forDigit(b & 0x0F, 16));
-            }
-            return sb.toString();
-        } catch (Exception e) {
-            // Fallback to hex of hashCode to avoid failing the build because of MD5 unavailability
-            return Integer.toHexString(s.hashCode());
-        }
-    }
 }
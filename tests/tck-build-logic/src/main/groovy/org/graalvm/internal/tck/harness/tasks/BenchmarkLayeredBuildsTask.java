@@ -0,0 +1,266 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness.tasks;
+
+import org.graalvm.internal.tck.utils.BaseLayerUtils;
+import org.graalvm.internal.tck.utils.CoordinatePeakRssHistory;
+import org.graalvm.internal.tck.utils.DedicatedLayerCache;
+import org.graalvm.internal.tck.utils.FrameworkLayerPlanner;
+import org.graalvm.internal.tck.utils.LayeredBuildBenchmark;
+import org.graalvm.internal.tck.utils.NativeBuildOutput;
+import org.graalvm.internal.tck.utils.ProcessTreeSampler;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.ProviderFactory;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.process.ExecOperations;
+import org.gradle.work.DisableCachingByDefault;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Builds the native tests of the matching coordinates monolithically, on the shared layers and on a dedicated layer,
+ * one build at a time, and compares their wall time, peak RSS, image size and native-image phase timings, see
+ * {@link LayeredBuildBenchmark}. Writes {@code results.json}, a Markdown table and the exclusion candidates of both
+ * layered lanes to {@link #getOutputDir()}; with {@code -Ptck.layeredBenchmark.updateExclusions=true} the candidates
+ * are also added to the lanes' exclusion files.
+ * <p>
+ * Implements §TCK-test-harness.3.
+ */
+@DisableCachingByDefault(because = "Measures fresh native builds of the selected coordinates")
+public abstract class BenchmarkLayeredBuildsTask extends CoordinatesAwareTask {
+
+    @Inject
+    public abstract ExecOperations getExecOperations();
+
+    @Inject
+    public abstract ProviderFactory getProviders();
+
+    @Internal
+    public abstract DirectoryProperty getOutputDir();
+
+    @Internal
+    public abstract RegularFileProperty getFrameworkLayerPlanFile();
+
+    @Internal
+    public abstract Property<Double> getMaxSlowdown();
+
+    @Internal
+    public abstract Property<Boolean> getUpdateExclusions();
+
+    public BenchmarkLayeredBuildsTask() {
+        getOutputDir().convention(projectLayout().getBuildDirectory().dir(LayeredBuildBenchmark.OUTPUT_DIR));
+        getMaxSlowdown().convention(projectProperty(LayeredBuildBenchmark.MAX_SLOWDOWN_PROPERTY)
+                .map(Double::parseDouble)
+                .orElse(LayeredBuildBenchmark.DEFAULT_MAX_SLOWDOWN));
+        getUpdateExclusions().convention(projectProperty(LayeredBuildBenchmark.UPDATE_EXCLUSIONS_PROPERTY)
+                .map(Boolean::parseBoolean)
+                .orElse(false));
+        if (tckExtension != null) {
+            getFrameworkLayerPlanFile().convention(tckExtension.getFrameworkLayerPlanFile());
+        }
+    }
+
+    @TaskAction
+    public void benchmark() {
+        List<String> coordinates = resolveCoordinates();
+        Path outputDir = getOutputDir().get().getAsFile().toPath();
+        FrameworkLayerPlanner.Plan plan = getFrameworkLayerPlanFile().isPresent()
+                ? FrameworkLayerPlanner.read(getFrameworkLayerPlanFile().get().getAsFile().toPath())
+                : new FrameworkLayerPlanner.Plan(List.of());
+        List<LayeredBuildBenchmark.Measurement> measurements = new ArrayList<>();
+        // One build at a time, so that the variants of a coordinate compete for the same machine.
+        for (String coordinate : coordinates) {
+            for (LayeredBuildBenchmark.Variant variant : LayeredBuildBenchmark.Variant.values()) {
+                LayeredBuildBenchmark.Measurement measurement = measure(coordinate, variant, plan, outputDir);
+                getLogger().lifecycle("{} ({}): {} in {} ms", coordinate, variant.id(),
+                        measurement.succeeded() ? "built" : "failed with exit code " + measurement.exitCode(),
+                        measurement.wallTimeMillis());
+                measurements.add(measurement);
+            }
+        }
+
+        Map<LayeredBuildBenchmark.Variant, List<LayeredBuildBenchmark.Candidate>> candidates =
+                new EnumMap<>(LayeredBuildBenchmark.Variant.class);
+        for (LayeredBuildBenchmark.Variant variant : List.of(LayeredBuildBenchmark.Variant.SHARED_LAYER,
+                LayeredBuildBenchmark.Variant.DEDICATED_LAYER)) {
+            candidates.put(variant, LayeredBuildBenchmark.exclusionCandidates(measurements, variant,
+                    getMaxSlowdown().get()));
+        }
+        LayeredBuildBenchmark.write(outputDir.resolve("results.json"), measurements, candidates);
+        List<String> table = LayeredBuildBenchmark.table(measurements);
+        writeLines(outputDir.resolve("results.md"), table);
+        table.forEach(line -> getLogger().lifecycle(line));
+        Path repoRoot = tckExtension.getRepoRoot().get().getAsFile().toPath();
+        candidates.forEach((variant, list) -> {
+            Path candidatesFile = outputDir.resolve(variant.id() + "-exclusion-candidates.txt");
+            LayeredBuildBenchmark.writeCandidates(candidatesFile, variant, list);
+            list.forEach(candidate -> getLogger().lifecycle("Exclusion candidate for {}: {} ({})", variant.id(),
+                    candidate.library(), candidate.reason()));
+            if (getUpdateExclusions().get()) {
+                List<String> added = LayeredBuildBenchmark.addExclusions(repoRoot.resolve(variant.exclusionsFile()),
+                        list.stream().map(LayeredBuildBenchmark.Candidate::library).toList());
+                getLogger().lifecycle("Added {} librar(ies) to {}", added.size(), variant.exclusionsFile());
+            }
+        });
+        getLogger().lifecycle("Layered build benchmark written to {}", outputDir);
+    }
+
+    private LayeredBuildBenchmark.Measurement measure(String coordinates, LayeredBuildBenchmark.Variant variant,
+                                                      FrameworkLayerPlanner.Plan plan, Path outputDir) {
+        Path runDir = outputDir.resolve(coordinates.replace(':', '_')).resolve(variant.id());
+        Path buildOutputDir = runDir.resolve("build-output");
+        deleteBuildOutputs(buildOutputDir);
+        Path dedicatedLayerRoot = outputDir.resolve("dedicated-layers");
+        if (variant == LayeredBuildBenchmark.Variant.DEDICATED_LAYER) {
+            // A layer cached by an earlier run would hide the cost of building it.
+            DedicatedLayerCache.deleteEntriesOf(dedicatedLayerRoot, coordinates);
+        }
+        List<String> command = commandFor(coordinates, variant, plan, buildOutputDir, dedicatedLayerRoot);
+
+        String runId = UUID.randomUUID().toString();
+        Map<String, String> env = coordinateEnvironment(coordinates);
+        env.put(ProcessTreeSampler.RUN_ID_VARIABLE, runId);
+        NativeBuildOutput.PhaseTimings phases = new NativeBuildOutput.PhaseTimings();
+        AtomicLong consolePeakRss = new AtomicLong(-1);
+        SubprocessOutputLog log = SubprocessOutputLog.open(runDir.resolve("build.out"),
+                SubprocessOutputLog.Options.from(name -> projectProperty(name).getOrNull()), line -> {
+                    phases.accept(line);
+                    CoordinatePeakRssHistory.parsePeakRss(line)
+                            .ifPresent(bytes -> consolePeakRss.accumulateAndGet(bytes, Math::max));
+                });
+        ProcessTreeSampler sampler = ProcessTreeSampler.start(runId, ProcessTreeSampler.DEFAULT_INTERVAL);
+        ProcessTreeSampler.Usage usage;
+        long startNanos = System.nanoTime();
+        long endNanos;
+        int exitCode;
+        try {
+            exitCode = getExecOperations().exec(spec -> {
+                spec.commandLine(command);
+                spec.environment(env);
+                spec.workingDir(tckExtension.getTestDir(coordinates).toAbsolutePath().toFile());
+                spec.setIgnoreExitValue(true);
+                spec.setStandardOutput(log.stdout());
+                spec.setErrorOutput(log.stderr());
+            }).getExitValue();
+        } finally {
+            endNanos = System.nanoTime();
+            log.close();
+            usage = sampler.stop();
+        }
+        if (exitCode != 0) {
+            getLogger().error("{} ({}) failed, see {}", coordinates, variant.id(), log.getFile());
+        }
+
+        List<NativeBuildOutput.Report> reports = readBuildOutputs(buildOutputDir);
+        long nativeImagePeakRss = Math.max(consolePeakRss.get(), reports.stream()
+                .mapToLong(NativeBuildOutput.Report::peakRssBytes).max().orElse(-1));
+        long imageBytes = reports.isEmpty() || reports.stream().anyMatch(report -> report.imageBytes() < 0)
+                ? -1
+                : reports.stream().mapToLong(NativeBuildOutput.Report::imageBytes).sum();
+        return new LayeredBuildBenchmark.Measurement(coordinates, variant, exitCode,
+                TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos), usage.peakRssBytes(), nativeImagePeakRss,
+                imageBytes, phases.seconds());
+    }
+
+    /**
+     * A cold {@code nativeTestCompile} of the coordinate with the options of the variant's test lane.
+     */
+    private List<String> commandFor(String coordinates, LayeredBuildBenchmark.Variant variant,
+                                    FrameworkLayerPlanner.Plan plan, Path buildOutputDir, Path dedicatedLayerRoot) {
+        List<String> command = new ArrayList<>(List.of(
+                tckExtension.getRepoRoot().get().getAsFile().toPath().resolve("gradlew").toString(),
+                "clean",
+                "nativeTestCompile"
+        ));
+        var installPathsProperty = getProviders().environmentVariable("TCK_JDK_INSTALLATION_PATHS");
+        if (installPathsProperty.isPresent()) {
+            command.add("-Porg.gradle.java.installations.auto-detect=false");
+            command.add("-Porg.gradle.java.installations.paths=" + installPathsProperty.get());
+        }
+        String metadataConfigDirs = projectProperty("metadataConfigDirs").getOrNull();
+        if (metadataConfigDirs != null) {
+            command.add("-PmetadataConfigDirs=" + metadataConfigDirs);
+        }
+        command.add("-P" + NativeBuildOutput.OUTPUT_DIR_PROPERTY + "=" + buildOutputDir.toAbsolutePath());
+        switch (variant) {
+            case MONOLITHIC -> {
+            }
+            case SHARED_LAYER -> {
+                command.add("-Ptck.baseLayerFile=" + BaseLayerUtils.resolveBaseLayerFile(projectLayout(),
+                        name -> projectProperty(name).getOrNull()).getAbsolutePath());
+                if (BaseLayerUtils.isTestRuntimeLayerEnabled(name -> projectProperty(name).getOrNull())) {
+                    command.add("-P" + BaseLayerUtils.TEST_RUNTIME_LAYER_FILE_PROPERTY + "="
+                            + BaseLayerUtils.resolveTestRuntimeLayerFile(projectLayout(),
+                            name -> projectProperty(name).getOrNull()).getAbsolutePath());
+                }
+                plan.layerFor(coordinates)
+                        .map(layer -> BaseLayerUtils.resolveFrameworkLayerFile(projectLayout(),
+                                name -> projectProperty(name).getOrNull(), layer.id()))
+                        .filter(File::isFile)
+                        .ifPresent(layerFile -> command.add("-P" + BaseLayerUtils.FRAMEWORK_LAYER_FILE_PROPERTY
+                                + "=" + layerFile.getAbsolutePath()));
+            }
+            case DEDICATED_LAYER -> {
+                command.add("-Ptck.dedicatedLayer=true");
+                command.add("-P" + BaseLayerUtils.DEDICATED_LAYER_ROOT_PROPERTY + "="
+                        + dedicatedLayerRoot.toAbsolutePath());
+                command.add("-P" + DedicatedLayerCache.MAX_SIZE_PROPERTY + "="
+                        + DedicatedLayerCache.resolveMaxSize(name -> projectProperty(name).getOrNull()));
+            }
+        }
+        return command;
+    }
+
+    private List<NativeBuildOutput.Report> readBuildOutputs(Path buildOutputDir) {
+        try {
+            return NativeBuildOutput.readAll(buildOutputDir);
+        } catch (GradleException e) {
+            // A build that failed may leave a truncated file; the console output still has its phases.
+            getLogger().warn("Could not read native-image build output in {}: {}", buildOutputDir, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static void deleteBuildOutputs(Path buildOutputDir) {
+        if (!Files.isDirectory(buildOutputDir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(buildOutputDir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new GradleException("Failed to clean " + buildOutputDir, e);
+        }
+    }
+
+    private static void writeLines(Path file, List<String> lines) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.write(file, lines, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new GradleException("Failed to write " + file, e);
+        }
+    }
+}
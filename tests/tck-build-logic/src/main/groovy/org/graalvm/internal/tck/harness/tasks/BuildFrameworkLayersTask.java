@@ -0,0 +1,85 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness.tasks;
+
+import org.graalvm.internal.tck.utils.BaseLayerUtils;
+import org.graalvm.internal.tck.utils.FrameworkLayerPlanner;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.DisableCachingByDefault;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Builds one layer per cluster of the framework layer plan, see {@link FrameworkLayerPlanner}, on top of the JUnit
+ * runtime layer when it is enabled and the base layer otherwise. Each layer holds the JARs its members share; their
+ * reachability metadata stays with the coordinate builds. Implements §TCK-test-harness.3.
+ */
+@DisableCachingByDefault(because = "Reuses each layer by comparing its manifest, which names files of the Gradle cache")
+public abstract class BuildFrameworkLayersTask extends AbstractNativeLayerTask {
+
+    @Internal
+    public abstract RegularFileProperty getPlanFile();
+
+    /**
+     * The layers the framework layers are built on, base layer first.
+     */
+    @Internal
+    public abstract ListProperty<File> getParentLayerFiles();
+
+    /**
+     * The JARs of the parent layers, which must precede the framework JARs on the layer classpath.
+     */
+    @Internal
+    public abstract ListProperty<File> getParentJars();
+
+    /**
+     * Holds one directory per layer id; a project property can move it.
+     */
+    @Internal
+    public abstract DirectoryProperty getLayerRoot();
+
+    @TaskAction
+    public void build() {
+        List<File> parentLayers = getParentLayerFiles().get();
+        File parentLayerFile = parentLayers.get(parentLayers.size() - 1);
+        List<File> parentJars = getParentJars().get();
+        FrameworkLayerPlanner.Plan plan = FrameworkLayerPlanner.read(getPlanFile().get().getAsFile().toPath());
+        for (FrameworkLayerPlanner.Layer layer : plan.layers()) {
+            File layerFile = BaseLayerUtils.frameworkLayerFile(getLayerRoot().get().getAsFile(), layer.id());
+            List<File> jars = layer.jars().stream().map(jar -> new File(jar.path())).toList();
+            Optional<String> mismatch = BaseLayerUtils.frameworkLayerMismatch(layerFile, parentLayerFile, jars);
+            if (mismatch.isEmpty()) {
+                getLogger().lifecycle("Reusing Native Image framework layer {} at {}", layer.id(), layerFile.getAbsolutePath());
+                continue;
+            }
+            getLogger().lifecycle("Building Native Image framework layer {} for {} coordinate(s): {}",
+                    layer.id(), layer.members().size(), mismatch.get());
+            Map<String, Object> expectedManifest = BaseLayerUtils.expectedFrameworkLayerManifest(parentLayerFile, jars);
+
+            recreateDirectory(layerFile.getParentFile(), "framework layer");
+            List<File> classpath = new ArrayList<>(parentJars);
+            classpath.addAll(jars);
+            List<String> layerArgs = new ArrayList<>();
+            layerArgs.add("-H:+UnlockExperimentalVMOptions");
+            layerArgs.add("-H:LayerUse=" + parentLayerFile.getAbsolutePath());
+            for (File parent : parentLayers) {
+                layerArgs.add("-H:LinkerRPath=" + parent.getParentFile().getAbsolutePath());
+            }
+            layerArgs.add(BaseLayerUtils.layerCreateArgument(layerFile, jars));
+            layerArgs.add("-H:-UnlockExperimentalVMOptions");
+            buildLayer("framework layer", layerFile, classpath, layerArgs, expectedManifest);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness.tasks;
+
+import org.graalvm.internal.tck.utils.BaseLayerUtils;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.DisableCachingByDefault;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Builds the shared JUnit runtime layer on top of the JDK module base layer, or reuses it while its manifest still
+ * matches the base layer and the JUnit JARs. Implements §TCK-test-harness.3.
+ */
+@DisableCachingByDefault(because = "Reuses the layer by comparing its manifest, which names files of the Gradle cache")
+public abstract class BuildTestRuntimeLayerTask extends AbstractNativeLayerTask {
+
+    @Internal
+    public abstract RegularFileProperty getBaseLayerFile();
+
+    @Internal
+    public abstract RegularFileProperty getLayerFile();
+
+    /**
+     * The JUnit engines, launcher and junit-platform-native JARs that every coordinate build resolves.
+     */
+    @Internal
+    public abstract ListProperty<File> getRuntimeJars();
+
+    @TaskAction
+    public void build() {
+        File baseLayerFile = getBaseLayerFile().get().getAsFile();
+        File layerFile = getLayerFile().get().getAsFile();
+        if (!layerFile.getName().endsWith(".nil")) {
+            throw new GradleException("Native Image test-runtime layer file must end with .nil: " + layerFile.getAbsolutePath());
+        }
+        File layerDir = layerFile.getParentFile();
+        if (layerDir.equals(baseLayerFile.getParentFile())) {
+            throw new GradleException("Native Image test-runtime layer must not share the base-layer directory: "
+                    + layerDir.getAbsolutePath());
+        }
+        List<File> jars = getRuntimeJars().get();
+        Optional<String> mismatch = BaseLayerUtils.testRuntimeLayerMismatch(layerFile, baseLayerFile, jars);
+        if (mismatch.isEmpty()) {
+            getLogger().lifecycle("Reusing Native Image test-runtime layer at {}", layerFile.getAbsolutePath());
+            return;
+        }
+        getLogger().lifecycle("Building Native Image test-runtime layer at {}: {}", layerFile.getAbsolutePath(), mismatch.get());
+        Map<String, Object> expectedManifest = BaseLayerUtils.expectedTestRuntimeLayerManifest(baseLayerFile, jars);
+
+        recreateDirectory(layerDir, "test-runtime layer");
+        File testListDir = new File(layerDir, "junit-test-list");
+        if (!testListDir.mkdirs()) {
+            throw new GradleException("Failed to create test-runtime layer directory: " + layerDir.getAbsolutePath());
+        }
+        // Engine roots only: the layer registers the engines, each coordinate build discovers its own tests.
+        try {
+            Files.writeString(new File(testListDir, "junit-platform-unique-ids-base").toPath(),
+                    String.join(System.lineSeparator(), "[engine:junit-jupiter]", "[engine:junit-vintage]")
+                            + System.lineSeparator(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new GradleException("Failed to write the JUnit test list of the test-runtime layer", e);
+        }
+        buildLayer("test-runtime layer", layerFile, jars, List.of(
+                "--features=org.graalvm.junit.platform.JUnitPlatformFeature",
+                "-Djunit.platform.listeners.uid.tracking.output.dir=" + testListDir.getAbsolutePath(),
+                "-H:+UnlockExperimentalVMOptions",
+                "-H:LayerUse=" + baseLayerFile.getAbsolutePath(),
+                "-H:LinkerRPath=" + baseLayerFile.getParentFile().getAbsolutePath(),
+                BaseLayerUtils.layerCreateArgument(layerFile, jars),
+                "-H:-UnlockExperimentalVMOptions"
+        ), expectedManifest);
+    }
+}
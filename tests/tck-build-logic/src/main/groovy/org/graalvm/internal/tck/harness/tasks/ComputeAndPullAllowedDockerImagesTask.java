@@ -11,7 +11,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.graalvm.internal.tck.DockerUtils;
 import org.graalvm.internal.tck.harness.TckExtension;
 import org.graalvm.internal.tck.model.MetadataVersionsIndexEntry;
-import org.graalvm.internal.tck.utils.CoordinateUtils;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
 import org.gradle.api.provider.Property;
@@ -76,15 +75,7 @@ public abstract class ComputeAndPullAllowedDockerImagesTask extends DefaultTask
         // Resolve coordinates
         String filter = effectiveCoordinateFilter();
 
-        List<String> matching;
-        if (CoordinateUtils.isFractionalBatch(filter)) {
-            int[] frac = CoordinateUtils.parseFraction(filter);
-            assert frac != null : "Already checked";
-            List<String> all = tck.getMatchingCoordinatesStrict("all");
-            matching = CoordinateUtils.computeBatchedCoordinates(all, frac[0], frac[1]);
-        } else {
-            matching = tck.getMatchingCoordinates(filter);
-        }
+        List<String> matching = tck.getMatchingCoordinates(filter);
 
         if (matching == null || matching.isEmpty()) {
             throw new GradleException("No matching coordinates found. Provide --coordinates=<filter> (preferred) or -Pcoordinates=<filter>, or a fractional batch 'k/n'.");
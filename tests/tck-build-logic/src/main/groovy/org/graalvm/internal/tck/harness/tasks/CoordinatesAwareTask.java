@@ -8,23 +8,34 @@ package org.graalvm.internal.tck.harness.tasks;
 
 import org.gradle.api.GradleException;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.plugins.ExtraPropertiesExtension;
 import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.provider.ProviderFactory;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
 import org.graalvm.internal.tck.harness.TckExtension;
-import org.graalvm.internal.tck.utils.CoordinateUtils;
 
 import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
+import static org.graalvm.internal.tck.Utils.splitCoordinates;
+
 /**
  * Base task providing unified coordinate resolution from -Pcoordinates and optional overrides.
  * Supports:
@@ -34,28 +45,109 @@ import java.util.stream.Collectors;
  *  - fractional batches "k/n"
  * Fixture coordinates remain runnable; reporting tasks decide which coordinates
  * are excluded from supported-library outputs. §TCK-test-harness.1
+ * <p>
+ * Gradle properties are read through {@link ProviderFactory} and the project layout is captured at
+ * configuration time, so subclasses must not call {@code getProject()} from their task actions.
+ * This keeps the task compatible with the configuration cache.
  */
 public abstract class CoordinatesAwareTask extends DefaultTask {
     private static final String EXCLUDED_COORDINATES_FILE_PROPERTY = "tck.excludedCoordinatesFile";
 
     protected final TckExtension tckExtension;
+    private final ProviderFactory providers;
+    private final ProjectLayout layout;
+    private final MapProperty<String, String> extraProperties;
 
     @Input
     @Optional
     private final ListProperty<String> coordinatesOverride;
+    private final Property<String> coordinateFilter;
+    private final Property<String> excludedCoordinatesFile;
     private int excludedCoordinateCount;
 
     @Inject
     public CoordinatesAwareTask() {
         this.tckExtension = getProject().getExtensions().findByType(TckExtension.class);
+        this.providers = getProject().getProviders();
+        this.layout = getProject().getLayout();
+        ExtraPropertiesExtension extra = getProject().getExtensions().getExtraProperties();
+        this.extraProperties = getProject().getObjects().mapProperty(String.class, String.class);
+        this.extraProperties.convention(providers.provider(() -> scalarValues(extra.getProperties())));
         this.coordinatesOverride = getProject().getObjects().listProperty(String.class);
         this.coordinatesOverride.convention(Collections.emptyList());
+        this.coordinateFilter = getProject().getObjects().property(String.class);
+        this.coordinateFilter.convention(projectProperty("coordinates").orElse(""));
+        this.excludedCoordinatesFile = getProject().getObjects().property(String.class);
+        this.excludedCoordinatesFile.convention(projectProperty(EXCLUDED_COORDINATES_FILE_PROPERTY));
+        if (tckExtension != null) {
+            usesService(tckExtension.getRepositoryIndexService());
+        }
     }
 
     public ListProperty<String> getCoordinatesOverride() {
         return coordinatesOverride;
     }
 
+    /**
+     * Coordinate filter used when no override is set. Defaults to the -Pcoordinates Gradle property.
+     */
+    @Input
+    public Property<String> getCoordinateFilter() {
+        return coordinateFilter;
+    }
+
+    /**
+     * Path of the coordinate exclusion file. Defaults to the -Ptck.excludedCoordinatesFile Gradle property.
+     */
+    @Internal
+    public Property<String> getExcludedCoordinatesFile() {
+        return excludedCoordinatesFile;
+    }
+
+    /**
+     * Configuration-cache compatible replacement for {@code getProject().findProperty(name)}: Gradle properties
+     * (-P, gradle.properties) are read through {@link ProviderFactory}, extra properties are snapshotted
+     * together with the task graph.
+     */
+    protected Provider<String> projectProperty(String name) {
+        return providers.gradleProperty(name).orElse(extraProperties.getting(name));
+    }
+
+    /**
+     * Resolves a path against the project directory, like {@code Project.file(String)}.
+     */
+    protected File projectFile(String path) {
+        return layout.getProjectDirectory().file(path).getAsFile();
+    }
+
+    protected ProjectLayout projectLayout() {
+        return layout;
+    }
+
+    /**
+     * Environment of a per-coordinate build: the current environment plus the GVM_TCK_* variables.
+     */
+    protected Map<String, String> coordinateEnvironment(String coordinates) {
+        List<String> parts = splitCoordinates(coordinates);
+        String version = parts.get(2);
+        Path metadataDir = tckExtension.getMetadataDir(coordinates);
+        boolean override = tckExtension.isOverride(coordinates);
+
+        Map<String, String> env = new HashMap<>(System.getenv());
+        env.put("GVM_TCK_LC", coordinates);
+        env.put("GVM_TCK_EXCLUDE", Boolean.toString(override));
+        if (System.getenv("GVM_TCK_LV") == null) {
+            env.put("GVM_TCK_LV", version);
+        }
+        String nativeImageMode = System.getenv("GVM_TCK_NATIVE_IMAGE_MODE");
+        if (nativeImageMode != null) {
+            env.put("GVM_TCK_NATIVE_IMAGE_MODE", nativeImageMode);
+        }
+        env.put("GVM_TCK_MD", metadataDir.toAbsolutePath().toString());
+        env.put("GVM_TCK_TCKDIR", tckExtension.getTckRoot().get().getAsFile().toPath().toAbsolutePath().toString());
+        return env;
+    }
+
     public void setCoordinatesOverride(List<String> coords) {
         getCoordinatesOverride().set(coords);
     }
@@ -66,8 +158,7 @@ public abstract class CoordinatesAwareTask extends DefaultTask {
         if (override != null && !override.isEmpty()) {
             coords = override;
         } else {
-            String coordinateFilter = Objects.toString(getProject().findProperty("coordinates"), "");
-            coords = computeMatchingCoordinates(coordinateFilter);
+            coords = computeMatchingCoordinates(getCoordinateFilter().get());
         }
         Set<String> excludedLibraries = excludedLibraries();
         List<String> includedCoordinates = coords.stream()
@@ -86,22 +177,16 @@ public abstract class CoordinatesAwareTask extends DefaultTask {
     }
 
     protected List<String> computeMatchingCoordinates(String filter) {
-        if (CoordinateUtils.isFractionalBatch(filter)) {
-            int[] frac = CoordinateUtils.parseFraction(filter);
-            List<String> all = tckExtension.getMatchingCoordinatesStrict("all");
-            return CoordinateUtils.computeBatchedCoordinates(all, frac[0], frac[1]);
-        } else {
-            return tckExtension.getMatchingCoordinates(filter);
-        }
+        return tckExtension.getMatchingCoordinates(filter);
     }
 
     private Set<String> excludedLibraries() {
-        Object exclusionsPath = getProject().findProperty(EXCLUDED_COORDINATES_FILE_PROPERTY);
-        if (exclusionsPath == null || exclusionsPath.toString().isBlank()) {
+        String exclusionsPath = getExcludedCoordinatesFile().getOrNull();
+        if (exclusionsPath == null || exclusionsPath.isBlank()) {
             return Collections.emptySet();
         }
 
-        File exclusionsFile = getProject().file(exclusionsPath.toString());
+        File exclusionsFile = projectFile(exclusionsPath);
         if (!exclusionsFile.isFile()) {
             throw new GradleException("Coordinate exclusion file does not exist: " + exclusionsFile);
         }
@@ -116,6 +201,16 @@ public abstract class CoordinatesAwareTask extends DefaultTask {
         }
     }
 
+    private static Map<String, String> scalarValues(Map<String, Object> properties) {
+        Map<String, String> values = new TreeMap<>();
+        properties.forEach((name, value) -> {
+            if (value instanceof CharSequence || value instanceof Number || value instanceof Boolean) {
+                values.put(name, value.toString());
+            }
+        });
+        return values;
+    }
+
     private static String libraryKey(String coordinates) {
         String[] parts = coordinates.split(":", -1);
         if (parts.length < 2 || parts[0].isBlank() || parts[1].isBlank()) {
@@ -7,12 +7,15 @@
 package org.graalvm.internal.tck.harness.tasks;
 
 import org.graalvm.internal.tck.utils.BaseLayerUtils;
+import org.graalvm.internal.tck.utils.CoordinateResultCache;
+import org.graalvm.internal.tck.utils.DedicatedLayerCache;
 
 import java.io.File;
 import java.util.List;
 
 /**
- * Runs native tests with a coordinate-specific base layer containing the tested library.
+ * Runs native tests with a coordinate-specific base layer containing the tested library. Each coordinate build
+ * looks the layer up in, or adds it to, the {@link DedicatedLayerCache} under the dedicated-layer root.
  *
  * Implements §TCK-test-harness.3 — the library LayerUse test lane.
  */
@@ -25,12 +28,39 @@ public abstract class DedicatedLayerTestInvocationTask extends SharedLayerTestIn
     public List<String> commandFor(String coordinates) {
         List<String> command = super.commandFor(coordinates);
         command.add("-Ptck.dedicatedLayer=true");
+        command.add("-P" + BaseLayerUtils.DEDICATED_LAYER_ROOT_PROPERTY + "=" + dedicatedLayerRoot().getAbsolutePath());
+        command.add("-P" + DedicatedLayerCache.MAX_SIZE_PROPERTY + "="
+                + DedicatedLayerCache.resolveMaxSize(name -> projectProperty(name).getOrNull()));
         return command;
     }
 
+    /**
+     * The coordinate build keys its layer on the resolved inputs, so the harness cannot name it in advance.
+     */
     @Override
     protected File baseLayerFileFor(String coordinates) {
-        return BaseLayerUtils.resolveDedicatedLayerFile(getProject(), coordinates);
+        return null;
+    }
+
+    /**
+     * The dedicated layer already contains the JUnit runtime.
+     */
+    @Override
+    protected File testRuntimeLayerFileFor(String coordinates) {
+        return null;
+    }
+
+    @Override
+    protected File frameworkLayerFileFor(String coordinates) {
+        return null;
+    }
+
+    /**
+     * The dedicated layer is built by the run itself from the coordinate's inputs, which the key already covers.
+     */
+    @Override
+    protected void addResultCacheInputs(String coordinates, CoordinateResultCache.KeyBuilder key) {
+        // no-op
     }
 
     @Override
@@ -47,11 +77,16 @@ public abstract class DedicatedLayerTestInvocationTask extends SharedLayerTestIn
     }
 
     private void deleteBaseLayerIfRequested(String coordinates) {
-        Object property = getProject().findProperty(DELETE_BASE_LAYER_AFTER_TEST_PROPERTY);
-        if (Boolean.parseBoolean(String.valueOf(property))) {
-            File baseLayerDirectory = baseLayerFileFor(coordinates).getParentFile();
-            getProject().delete(baseLayerDirectory);
-            getLogger().lifecycle("Deleted dedicated layer at {}", baseLayerDirectory);
+        if (Boolean.parseBoolean(projectProperty(DELETE_BASE_LAYER_AFTER_TEST_PROPERTY).getOrNull())) {
+            List<DedicatedLayerCache.Entry> deleted =
+                    DedicatedLayerCache.deleteEntriesOf(dedicatedLayerRoot().toPath(), coordinates);
+            for (DedicatedLayerCache.Entry entry : deleted) {
+                getLogger().lifecycle("Deleted dedicated layer at {}", entry.directory());
+            }
         }
     }
+
+    private File dedicatedLayerRoot() {
+        return BaseLayerUtils.resolveDedicatedLayerRoot(projectLayout(), name -> projectProperty(name).getOrNull());
+    }
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness.tasks;
+
+import org.graalvm.internal.tck.harness.MetadataReverseIndex;
+import org.graalvm.internal.tck.harness.TckExtension;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Answers which metadata in the repository covers a Java class or package.
+ * <p>
+ * Prints one line per match: {@code <group:artifact:metadata-version> <kind> <matched value>}, where kind is
+ * one of {@code type}, {@code type-reached}, {@code package} or {@code allowed-package}.
+ * <p>
+ * Implements §TCK-test-harness.1 — the {@code findMetadata} lookup task.
+ */
+@SuppressWarnings("unused")
+public abstract class FindMetadataTask extends DefaultTask {
+
+    private final TckExtension tckExtension;
+
+    @Input
+    @Optional
+    public abstract Property<@NotNull String> getClassName();
+
+    @Input
+    @Optional
+    public abstract Property<@NotNull String> getPackageName();
+
+    public FindMetadataTask() {
+        tckExtension = Objects.requireNonNull(getProject().getExtensions().findByType(TckExtension.class));
+        usesService(tckExtension.getRepositoryIndexService());
+        getOutputs().upToDateWhen(task -> false);
+    }
+
+    @Option(option = "class", description = "Fully qualified class name, e.g. com.example.Foo or com.example.Foo$Inner")
+    public void setClassOption(String value) {
+        getClassName().set(value);
+    }
+
+    @Option(option = "package", description = "Package name, e.g. com.example")
+    public void setPackageOption(String value) {
+        getPackageName().set(value);
+    }
+
+    @TaskAction
+    public void find() {
+        String className = getClassName().getOrNull();
+        String packageName = getPackageName().getOrNull();
+        if ((className == null) == (packageName == null)) {
+            throw new GradleException("Provide exactly one of --class=<fully.qualified.Name> or --package=<package.name>.");
+        }
+
+        MetadataReverseIndex index = tckExtension.getMetadataReverseIndex();
+        List<MetadataReverseIndex.Match> matches = className != null
+                ? index.findClass(className.trim())
+                : index.findPackage(packageName.trim());
+        if (matches.isEmpty()) {
+            getLogger().lifecycle("No metadata covers {}.", className != null ? className : packageName);
+            return;
+        }
+        for (MetadataReverseIndex.Match match : matches) {
+            getLogger().lifecycle("{} {} {}", match.coordinates(),
+                    match.kind().name().toLowerCase(Locale.ROOT).replace('_', '-'), match.value());
+        }
+    }
+}
@@ -93,8 +93,7 @@ public class GenerateDependencyGraphTask extends CoordinatesAwareTask {
         if (resolved != null && !resolved.isEmpty()) {
             return resolved;
         }
-        Object prop = getProject().findProperty("coordinates");
-        String filter = prop == null ? "" : prop.toString().trim();
+        String filter = getCoordinateFilter().get().trim();
         if (!filter.isEmpty() && !filter.startsWith("samples:")) {
             String[] parts = filter.split(":", -1);
             if (parts.length == 3 && !parts[0].isBlank() && !parts[1].isBlank() && !parts[2].isBlank()) {
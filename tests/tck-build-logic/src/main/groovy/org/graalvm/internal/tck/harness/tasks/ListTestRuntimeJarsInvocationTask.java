@@ -0,0 +1,56 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness.tasks;
+
+import org.graalvm.internal.tck.utils.FrameworkLayerPlanner;
+import org.gradle.api.GradleException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Runs `listTestRuntimeJars` for each matching coordinate and writes the candidate JARs of its test runtime classpath
+ * for the {@link PlanFrameworkLayersTask framework layer planner}.
+ */
+@SuppressWarnings("unused")
+public abstract class ListTestRuntimeJarsInvocationTask extends AllCoordinatesExecTask {
+
+    @Override
+    public List<String> commandFor(String coordinates) {
+        return List.of(
+                tckExtension.getRepoRoot().get().getAsFile().toPath().resolve("gradlew").toString(),
+                "--quiet",
+                "listTestRuntimeJars",
+                "-Ptck.testRuntimeJarsFile=" + classpathFile(coordinates)
+        );
+    }
+
+    /**
+     * A listing left over from an earlier run must not stand in for a failed one.
+     */
+    @Override
+    protected void beforeEach(String coordinates, List<String> command) {
+        super.beforeEach(coordinates, command);
+        try {
+            Files.deleteIfExists(classpathFile(coordinates));
+        } catch (IOException e) {
+            throw new GradleException("Failed to delete " + classpathFile(coordinates), e);
+        }
+    }
+
+    @Override
+    protected String errorMessageFor(String coordinates, int exitCode) {
+        return "Listing test runtime JARs failed for " + coordinates + " with exit code " + exitCode + ".";
+    }
+
+    private Path classpathFile(String coordinates) {
+        return FrameworkLayerPlanner.classpathFile(projectLayout().getBuildDirectory()
+                .dir(FrameworkLayerPlanner.CLASSPATHS_DIR).get().getAsFile().toPath(), coordinates).toAbsolutePath();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness.tasks;
+
+import org.graalvm.internal.tck.utils.MemoryBudget;
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+
+import java.util.Map;
+
+/**
+ * Admits native-image builds into a {@link MemoryBudget} based on each coordinate's recorded peak RSS.
+ */
+final class MemoryAdmission {
+    private final MemoryBudget budget;
+    private final long defaultPeakRss;
+    private final Map<String, Long> estimates;
+    private final Logger logger;
+
+    /**
+     * @param estimates      peak RSS of each measured coordinate, see
+     *                       {@link org.graalvm.internal.tck.utils.CoordinatePeakRssHistory#loadEstimates}
+     * @param defaultPeakRss peak RSS assumed for coordinates without a measurement
+     */
+    MemoryAdmission(long budgetBytes, long defaultPeakRss, Map<String, Long> estimates, Logger logger) {
+        this.budget = new MemoryBudget(budgetBytes);
+        this.defaultPeakRss = defaultPeakRss;
+        this.estimates = estimates;
+        this.logger = logger;
+        logger.lifecycle("Admitting native-image builds within a memory budget of {} ({} per unmeasured coordinate).",
+                MemoryBudget.format(budget.getBudgetBytes()), MemoryBudget.format(defaultPeakRss));
+    }
+
+    /**
+     * Blocks until the coordinate's estimated peak RSS fits the remaining budget.
+     */
+    MemoryBudget.Reservation admit(String coordinates) {
+        long estimate = estimates.getOrDefault(coordinates, defaultPeakRss);
+        if (estimate > budget.getAvailableBytes()) {
+            logger.lifecycle("Waiting for memory: {} needs about {}, {} of {} available.", coordinates,
+                    MemoryBudget.format(estimate), MemoryBudget.format(budget.getAvailableBytes()),
+                    MemoryBudget.format(budget.getBudgetBytes()));
+        }
+        try {
+            return budget.acquire(estimate);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GradleException("Interrupted while waiting for memory to build " + coordinates, e);
+        }
+    }
+}
@@ -26,6 +26,11 @@ public abstract class NativeTestCompileInvocationTask extends AllCoordinatesExec
         return command;
     }
 
+    @Override
+    protected boolean buildsNativeImages() {
+        return true;
+    }
+
     @Override
     protected String errorMessageFor(String coordinates, int exitCode) {
         return "Native test compilation failed";
@@ -27,6 +27,11 @@ public abstract class NativeTraceImageInvocationTask extends AllCoordinatesExecT
         return command;
     }
 
+    @Override
+    protected boolean buildsNativeImages() {
+        return true;
+    }
+
     @Override
     protected String errorMessageFor(String coordinates, int exitCode) {
         return "Native trace image compilation failed for " + coordinates + " with exit code " + exitCode + ".";
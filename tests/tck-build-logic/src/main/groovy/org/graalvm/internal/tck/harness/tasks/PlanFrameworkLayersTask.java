@@ -0,0 +1,123 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness.tasks;
+
+import org.graalvm.internal.tck.harness.FileFingerprintService;
+import org.graalvm.internal.tck.utils.FrameworkLayerPlanner;
+import org.graalvm.internal.tck.utils.JarUtils;
+import org.graalvm.internal.tck.utils.MemoryBudget;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.DisableCachingByDefault;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clusters the matching coordinates by the JARs they share on their test runtime classpaths and writes the resulting
+ * framework layer plan, see {@link FrameworkLayerPlanner}. The expected savings are logged before any layer is built.
+ * <p>
+ * Reads the listings written by {@link ListTestRuntimeJarsInvocationTask}. Coordinates without a listing are left
+ * out of the plan. Implements §TCK-test-harness.3.
+ */
+@DisableCachingByDefault(because = "Reads JAR listings of the selected coordinates and the Gradle cache")
+public abstract class PlanFrameworkLayersTask extends CoordinatesAwareTask {
+
+    @Internal
+    public abstract DirectoryProperty getClasspathsDir();
+
+    @Internal
+    public abstract RegularFileProperty getPlanFile();
+
+    @Internal
+    public abstract Property<Long> getMinSharedBytes();
+
+    @Internal
+    public abstract Property<Integer> getMaxLayers();
+
+    @Internal
+    public abstract Property<FileFingerprintService> getFileFingerprintService();
+
+    public PlanFrameworkLayersTask() {
+        getClasspathsDir().convention(projectLayout().getBuildDirectory().dir(FrameworkLayerPlanner.CLASSPATHS_DIR));
+        getMinSharedBytes().convention(projectProperty(FrameworkLayerPlanner.MIN_SHARED_SIZE_PROPERTY)
+                .orElse(FrameworkLayerPlanner.DEFAULT_MIN_SHARED_SIZE)
+                .map(MemoryBudget::parseBytes));
+        getMaxLayers().convention(projectProperty(FrameworkLayerPlanner.MAX_LAYERS_PROPERTY)
+                .map(Integer::parseInt)
+                .orElse(FrameworkLayerPlanner.DEFAULT_MAX_LAYERS));
+        if (tckExtension != null) {
+            getPlanFile().convention(tckExtension.getFrameworkLayerPlanFile());
+            getFileFingerprintService().convention(tckExtension.getFileFingerprintService());
+            usesService(tckExtension.getFileFingerprintService());
+        }
+    }
+
+    @TaskAction
+    public void plan() {
+        List<String> coordinates = resolveCoordinates();
+        FileFingerprintService fingerprints = getFileFingerprintService().get();
+        Path classpathsDir = getClasspathsDir().get().getAsFile().toPath();
+        Map<Path, FrameworkLayerPlanner.Jar> jars = new HashMap<>();
+        Map<String, List<FrameworkLayerPlanner.Jar>> classpaths = new LinkedHashMap<>();
+        List<String> unlisted = new ArrayList<>();
+        for (String coordinate : coordinates) {
+            Path listing = FrameworkLayerPlanner.classpathFile(classpathsDir, coordinate);
+            if (!Files.isRegularFile(listing)) {
+                unlisted.add(coordinate);
+                continue;
+            }
+            List<FrameworkLayerPlanner.Jar> classpath = new ArrayList<>();
+            for (String line : readLines(listing)) {
+                String[] parts = line.split("\t", 2);
+                if (parts.length == 2 && Files.isRegularFile(Path.of(parts[1]))) {
+                    classpath.add(jars.computeIfAbsent(Path.of(parts[1]), jar -> describe(parts[0], jar, fingerprints)));
+                }
+            }
+            classpaths.put(coordinate, classpath);
+        }
+        if (!unlisted.isEmpty()) {
+            getLogger().warn("No test runtime JAR listing for {} coordinate(s), e.g. {}; they are left out of the plan.",
+                    unlisted.size(), unlisted.get(0));
+        }
+
+        FrameworkLayerPlanner.Plan plan = FrameworkLayerPlanner.plan(classpaths, getMinSharedBytes().get(),
+                getMaxLayers().get());
+        Path planFile = getPlanFile().get().getAsFile().toPath();
+        FrameworkLayerPlanner.write(planFile, plan);
+        FrameworkLayerPlanner.report(plan, coordinates.size()).forEach(line -> getLogger().lifecycle(line));
+        getLogger().lifecycle("Framework layer plan written to {}", planFile);
+    }
+
+    private static FrameworkLayerPlanner.Jar describe(String coordinates, Path jar, FileFingerprintService fingerprints) {
+        try {
+            return new FrameworkLayerPlanner.Jar(coordinates, jar.toAbsolutePath().toString(), fingerprints.file(jar),
+                    Files.size(jar), JarUtils.loadClassNames(List.of(jar)).size());
+        } catch (IOException e) {
+            throw new GradleException("Failed to read " + jar, e);
+        }
+    }
+
+    private static List<String> readLines(Path file) {
+        try {
+            return Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new GradleException("Failed to read " + file, e);
+        }
+    }
+}
@@ -16,7 +16,6 @@ import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.options.Option;
 import org.graalvm.internal.tck.harness.TckExtension;
 import org.graalvm.internal.tck.model.MetadataVersionsIndexEntry;
-import org.graalvm.internal.tck.utils.CoordinateUtils;
 
 import java.io.File;
 import java.io.IOException;
@@ -220,11 +219,6 @@ public class PopulateArtifactURLs extends DefaultTask {
 
     private List<String> resolveStrictCoordinates(String filter) {
         TckExtension tck = Objects.requireNonNull(getProject().getExtensions().findByType(TckExtension.class));
-        if (CoordinateUtils.isFractionalBatch(filter)) {
-            int[] frac = CoordinateUtils.parseFraction(filter);
-            List<String> allStrict = tck.getMatchingCoordinatesStrict("all");
-            return CoordinateUtils.computeBatchedCoordinates(allStrict, frac[0], frac[1]);
-        }
         return tck.getMatchingCoordinatesStrict(filter);
     }
 
@@ -0,0 +1,171 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness.tasks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.graalvm.internal.tck.harness.FileFingerprintService;
+import org.graalvm.internal.tck.harness.TckExtension;
+import org.graalvm.internal.tck.utils.CoordinateResultCache;
+import org.graalvm.internal.tck.utils.NativeImageConfigUtils;
+import org.gradle.api.GradleException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.graalvm.internal.tck.Utils.splitCoordinates;
+
+/**
+ * Looks up and stores passing coordinate runs of an {@link AllCoordinatesExecTask} in the local
+ * {@link CoordinateResultCache}. The key covers the test runtime classpath that the coordinate's build recorded in its
+ * last run, see {@link CoordinateResultCache#CLASSPATH_FILE_VARIABLE}, so a coordinate that has not run yet, or whose
+ * key cannot be computed, simply runs and is stored afterwards.
+ */
+final class ResultCaching {
+    /**
+     * Directories of a test project that its builds write to; they are not part of the result cache key.
+     */
+    private static final Set<String> GENERATED_TEST_DIRECTORIES = Set.of("build", ".gradle", ".kotlin");
+
+    private final AllCoordinatesExecTask task;
+    private final TckExtension tckExtension;
+    private final CoordinateResultCache cache;
+    private final boolean rerun;
+    private final String nativeImageMode;
+    private Map<String, Object> ciJson;
+    private String harnessFingerprint;
+
+    ResultCaching(AllCoordinatesExecTask task) {
+        this.task = task;
+        this.tckExtension = task.tckExtension;
+        this.cache = new CoordinateResultCache(task.getResultCacheDir().get().getAsFile().toPath());
+        this.rerun = task.getRerun().get();
+        this.nativeImageMode = NativeImageConfigUtils.resolveSelectedMode(
+                System.getenv("GVM_TCK_NATIVE_IMAGE_MODE"), task.projectProperty("tck.nativeImageMode").getOrNull());
+        if (rerun) {
+            task.getLogger().lifecycle("Ignoring cached results (--rerun).");
+        }
+    }
+
+    private String keyFor(String coordinates) {
+        Optional<List<Path>> classpath = CoordinateResultCache.readClasspath(task.resultCacheClasspathFile(coordinates));
+        if (classpath.isEmpty()) {
+            return null;
+        }
+        try {
+            FileFingerprintService fingerprints = task.getFileFingerprintService().get();
+            CoordinateResultCache.KeyBuilder key = CoordinateResultCache.newKey()
+                    .put("lane", task.getName())
+                    .put("coordinates", coordinates)
+                    .put("command", task.commandFor(coordinates))
+                    .put("harness", harnessFingerprint())
+                    .put("metadata", fingerprints.directory(tckExtension.getMetadataDir(coordinates), Set.of()))
+                    .put("tests", fingerprints.directory(tckExtension.getTestDir(coordinates), GENERATED_TEST_DIRECTORIES))
+                    .put("nativeImageVersion", nativeImageVersion())
+                    .put("nativeImageMode", nativeImageMode)
+                    .put("nativeImageArgs", NativeImageConfigUtils.resolvedBuildArgs(ciJson(), nativeImageMode, Map.of(
+                            "{{library.version}}", splitCoordinates(coordinates).get(2),
+                            "{{library.coordinates}}", coordinates)));
+            List<String> classpathHashes = new ArrayList<>();
+            for (Path entry : classpath.get()) {
+                classpathHashes.add(entry.getFileName() + "=" + (Files.isDirectory(entry)
+                        ? fingerprints.directory(entry, Set.of())
+                        : fingerprints.file(entry)));
+            }
+            key.put("testRuntimeClasspath", classpathHashes);
+            task.addResultCacheInputs(coordinates, key);
+            return key.build();
+        } catch (GradleException e) {
+            task.getLogger().warn("Not caching the result of {}: {}", coordinates, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Restores the output of an earlier passing run with the same key and returns whether there was one.
+     */
+    boolean restore(String coordinates) {
+        if (rerun) {
+            return false;
+        }
+        String key = keyFor(coordinates);
+        if (key == null) {
+            return false;
+        }
+        return cache.find(key).map(entry -> {
+            Path outputDir = task.projectLayout().getBuildDirectory().dir("tests/" + coordinates).get().getAsFile().toPath();
+            List<Path> restored = cache.restore(entry, outputDir);
+            task.getLogger().lifecycle("{} passed before with identical inputs; skipping it (cached result {}, output: {}).",
+                    coordinates, key.substring(0, 12), restored.stream().map(Path::toString).collect(Collectors.joining(", ")));
+            return true;
+        }).orElse(false);
+    }
+
+    /**
+     * Stores a passing run under the key of the classpath it just recorded.
+     */
+    void store(String coordinates, List<Path> outputFiles) {
+        String key = keyFor(coordinates);
+        if (key == null) {
+            return;
+        }
+        try {
+            cache.store(key, task.getName(), coordinates, outputFiles);
+        } catch (GradleException e) {
+            // A cache that cannot be written only costs a rerun next time.
+            task.getLogger().warn("Could not cache the result of {}: {}", coordinates, e.getMessage());
+        }
+    }
+
+    /**
+     * The build logic that runs the coordinate, including the native-image arguments it derives, and the versions
+     * of JUnit, the native build tools and Gradle that it uses.
+     */
+    private synchronized String harnessFingerprint() {
+        if (harnessFingerprint == null) {
+            FileFingerprintService fingerprints = task.getFileFingerprintService().get();
+            Path repoRoot = tckExtension.getRepoRoot().get().getAsFile().toPath();
+            CoordinateResultCache.KeyBuilder key = CoordinateResultCache.newKey()
+                    .put("buildLogic", fingerprints.directory(repoRoot.resolve("tests/tck-build-logic"),
+                            GENERATED_TEST_DIRECTORIES));
+            for (String file : List.of("gradle/libs.versions.toml", "gradle/wrapper/gradle-wrapper.properties")) {
+                Path path = repoRoot.resolve(file);
+                key.put(file, Files.isRegularFile(path) ? fingerprints.file(path) : "");
+            }
+            harnessFingerprint = key.build();
+        }
+        return harnessFingerprint;
+    }
+
+    private String nativeImageVersion() {
+        String version = task.getNativeImageVersion().getOrNull();
+        if (version == null) {
+            throw new GradleException("'native-image --version' could not be run");
+        }
+        return version;
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized Map<String, Object> ciJson() {
+        if (ciJson == null) {
+            File ciJsonFile = tckExtension.getRepoRoot().file("ci.json").get().getAsFile();
+            try {
+                ciJson = new ObjectMapper().readValue(ciJsonFile, Map.class);
+            } catch (IOException e) {
+                throw new GradleException("Failed to read " + ciJsonFile, e);
+            }
+        }
+        return ciJson;
+    }
+}
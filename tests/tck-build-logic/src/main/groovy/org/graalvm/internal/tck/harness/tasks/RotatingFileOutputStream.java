@@ -0,0 +1,121 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness.tasks;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes to a file that is rotated once it reaches a size limit, like logrotate: the full file becomes
+ * {@code <file>.1} (or {@code <file>.1.gz}), older segments shift up, and segments beyond the configured count are
+ * deleted. The newest output is always in {@code <file>} itself.
+ */
+public class RotatingFileOutputStream extends OutputStream {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final long maxFileBytes;
+    private final int maxRotatedFiles;
+    private final boolean gzip;
+    private OutputStream current;
+    private long currentBytes;
+
+    /**
+     * Opens {@code file}, deleting it and segments left behind by an earlier run.
+     */
+    public RotatingFileOutputStream(Path file, long maxFileBytes, int maxRotatedFiles, boolean gzip) throws IOException {
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.maxRotatedFiles = maxRotatedFiles;
+        this.gzip = gzip;
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        try (var siblings = Files.list(parent)) {
+            for (Path sibling : siblings.filter(this::isSegment).toList()) {
+                Files.deleteIfExists(sibling);
+            }
+        }
+        current = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        rotateIfFull();
+        current.write(b);
+        currentBytes++;
+    }
+
+    @Override
+    public synchronized void write(byte @NotNull [] b, int off, int len) throws IOException {
+        while (len > 0) {
+            rotateIfFull();
+            int chunk = (int) Math.min(len, maxFileBytes - currentBytes);
+            current.write(b, off, chunk);
+            currentBytes += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        current.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        current.close();
+    }
+
+    private void rotateIfFull() throws IOException {
+        if (currentBytes < maxFileBytes) {
+            return;
+        }
+        current.close();
+        Files.deleteIfExists(segment(maxRotatedFiles));
+        for (int i = maxRotatedFiles - 1; i >= 1; i--) {
+            if (Files.exists(segment(i))) {
+                Files.move(segment(i), segment(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxRotatedFiles > 0) {
+            if (gzip) {
+                try (InputStream in = Files.newInputStream(file);
+                     OutputStream out = new GZIPOutputStream(Files.newOutputStream(segment(1)), BUFFER_SIZE)) {
+                    in.transferTo(out);
+                }
+            } else {
+                Files.move(file, segment(1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        current = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE);
+        currentBytes = 0;
+    }
+
+    private Path segment(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index + (gzip ? ".gz" : ""));
+    }
+
+    private boolean isSegment(Path candidate) {
+        String name = candidate.getFileName().toString();
+        String prefix = file.getFileName() + ".";
+        return name.equals(file.getFileName().toString())
+                || name.startsWith(prefix) && name.substring(prefix.length()).matches("[0-9]+(\\.gz)?");
+    }
+}
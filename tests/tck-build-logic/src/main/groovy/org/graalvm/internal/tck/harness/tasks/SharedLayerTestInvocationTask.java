@@ -8,12 +8,17 @@ package org.graalvm.internal.tck.harness.tasks;
 
 import java.io.File;
 import java.util.List;
-import java.util.Objects;
 
 import org.graalvm.internal.tck.utils.BaseLayerUtils;
+import org.graalvm.internal.tck.utils.CoordinateResultCache;
+import org.graalvm.internal.tck.utils.FrameworkLayerPlanner;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.Internal;
 
 /**
- * Task that runs native tests with the shared Native Image base layer.
+ * Task that runs native tests with the shared Native Image base layer and, unless {@code -Ptck.testRuntimeLayer=false},
+ * the JUnit runtime layer stacked on it. Coordinates that belong to a built framework layer of the plan written by
+ * {@link PlanFrameworkLayersTask} stack on that layer as well.
  * <p>
  * Implements §TCK-test-harness.3 — the LayerUse test lane.
  */
@@ -22,15 +27,83 @@ public abstract class SharedLayerTestInvocationTask extends TestInvocationTask {
     private static final String CONTINUE_ON_COORDINATE_FAILURE_PROPERTY = "tck.layered.continueOnCoordinateFailure";
     private static final String COORDINATE_FAILURE_REPORT_PROPERTY = "tck.layered.coordinateFailureReport";
 
+    private FrameworkLayerPlanner.Plan frameworkLayerPlan;
+
+    @Internal
+    public abstract RegularFileProperty getFrameworkLayerPlanFile();
+
+    public SharedLayerTestInvocationTask() {
+        if (tckExtension != null) {
+            getFrameworkLayerPlanFile().convention(tckExtension.getFrameworkLayerPlanFile());
+        }
+    }
+
     @Override
     public List<String> commandFor(String coordinates) {
         List<String> command = super.commandFor(coordinates);
-        command.add("-Ptck.baseLayerFile=" + baseLayerFileFor(coordinates).getAbsolutePath());
+        File baseLayerFile = baseLayerFileFor(coordinates);
+        if (baseLayerFile != null) {
+            command.add("-Ptck.baseLayerFile=" + baseLayerFile.getAbsolutePath());
+        }
+        File testRuntimeLayerFile = testRuntimeLayerFileFor(coordinates);
+        if (testRuntimeLayerFile != null) {
+            command.add("-P" + BaseLayerUtils.TEST_RUNTIME_LAYER_FILE_PROPERTY + "=" + testRuntimeLayerFile.getAbsolutePath());
+        }
+        File frameworkLayerFile = frameworkLayerFileFor(coordinates);
+        if (frameworkLayerFile != null) {
+            command.add("-P" + BaseLayerUtils.FRAMEWORK_LAYER_FILE_PROPERTY + "=" + frameworkLayerFile.getAbsolutePath());
+        }
         return command;
     }
 
+    /**
+     * The base layer to pass to the coordinate build, or null if the build resolves its own.
+     */
     protected File baseLayerFileFor(String coordinates) {
-        return BaseLayerUtils.resolveBaseLayerFile(getProject());
+        return BaseLayerUtils.resolveBaseLayerFile(projectLayout(), name -> projectProperty(name).getOrNull());
+    }
+
+    /**
+     * The JUnit runtime layer to stack the coordinate build on, or null to use the base layer directly.
+     */
+    protected File testRuntimeLayerFileFor(String coordinates) {
+        if (!BaseLayerUtils.isTestRuntimeLayerEnabled(name -> projectProperty(name).getOrNull())) {
+            return null;
+        }
+        return BaseLayerUtils.resolveTestRuntimeLayerFile(projectLayout(), name -> projectProperty(name).getOrNull());
+    }
+
+    /**
+     * The framework layer the coordinate belongs to, or null if the plan has none or it was not built. The coordinate
+     * build still checks that the layer matches its classpath before using it.
+     */
+    protected synchronized File frameworkLayerFileFor(String coordinates) {
+        if (frameworkLayerPlan == null) {
+            frameworkLayerPlan = getFrameworkLayerPlanFile().isPresent()
+                    ? FrameworkLayerPlanner.read(getFrameworkLayerPlanFile().get().getAsFile().toPath())
+                    : new FrameworkLayerPlanner.Plan(List.of());
+        }
+        return frameworkLayerPlan.layerFor(coordinates)
+                .map(layer -> BaseLayerUtils.resolveFrameworkLayerFile(projectLayout(),
+                        name -> projectProperty(name).getOrNull(), layer.id()))
+                .filter(File::isFile)
+                .orElse(null);
+    }
+
+    /**
+     * The layers are rebuilt in place, so their size and modification time identify the layers a run used.
+     */
+    @Override
+    protected void addResultCacheInputs(String coordinates, CoordinateResultCache.KeyBuilder key) {
+        key.putFileStamp("baseLayer", baseLayerFileFor(coordinates).toPath());
+        File testRuntimeLayerFile = testRuntimeLayerFileFor(coordinates);
+        if (testRuntimeLayerFile != null) {
+            key.putFileStamp("testRuntimeLayer", testRuntimeLayerFile.toPath());
+        }
+        File frameworkLayerFile = frameworkLayerFileFor(coordinates);
+        if (frameworkLayerFile != null) {
+            key.putFileStamp("frameworkLayer", frameworkLayerFile.toPath());
+        }
     }
 
     @Override
@@ -40,16 +113,15 @@ public abstract class SharedLayerTestInvocationTask extends TestInvocationTask {
 
     @Override
     protected boolean continueOnCoordinateFailure() {
-        Object continueOnFailure = getProject().findProperty(CONTINUE_ON_COORDINATE_FAILURE_PROPERTY);
-        return Boolean.parseBoolean(Objects.toString(continueOnFailure, "false"));
+        return Boolean.parseBoolean(projectProperty(CONTINUE_ON_COORDINATE_FAILURE_PROPERTY).getOrElse("false"));
     }
 
     @Override
     protected File coordinateFailureReportFile() {
-        Object reportPath = getProject().findProperty(COORDINATE_FAILURE_REPORT_PROPERTY);
+        String reportPath = projectProperty(COORDINATE_FAILURE_REPORT_PROPERTY).getOrNull();
         if (reportPath == null) {
             return null;
         }
-        return getProject().file(reportPath.toString());
+        return projectFile(reportPath);
     }
 }
@@ -120,7 +120,7 @@ public class SplitTestOnlyMetadataTask extends CoordinatesAwareTask {
     }
 
     private Path resolveMetadataDirectory(Coordinates parsedCoordinates) {
-        Path conventional = getProject().file(CoordinateUtils.replace("metadata/$group$/$artifact$/$version$", parsedCoordinates)).toPath();
+        Path conventional = projectFile(CoordinateUtils.replace("metadata/$group$/$artifact$/$version$", parsedCoordinates)).toPath();
         if (Files.isDirectory(conventional)) {
             return conventional;
         }
@@ -128,12 +128,12 @@ public class SplitTestOnlyMetadataTask extends CoordinatesAwareTask {
     }
 
     private Path resolveTestsDirectoryForMetadataVersion(Coordinates parsedCoordinates) throws IOException {
-        Path conventional = getProject().file(CoordinateUtils.replace("tests/src/$group$/$artifact$/$version$", parsedCoordinates)).toPath();
+        Path conventional = projectFile(CoordinateUtils.replace("tests/src/$group$/$artifact$/$version$", parsedCoordinates)).toPath();
         if (Files.isDirectory(conventional)) {
             return conventional;
         }
 
-        Path indexFile = getProject().file(CoordinateUtils.replace("metadata/$group$/$artifact$/index.json", parsedCoordinates)).toPath();
+        Path indexFile = projectFile(CoordinateUtils.replace("metadata/$group$/$artifact$/index.json", parsedCoordinates)).toPath();
         if (!Files.isRegularFile(indexFile)) {
             throw new IllegalArgumentException("Cannot find tests directory for " + parsedCoordinates + ": " + conventional
                     + " does not exist and no index.json is present at " + indexFile);
@@ -160,7 +160,7 @@ public class SplitTestOnlyMetadataTask extends CoordinatesAwareTask {
             throw new IllegalStateException("Index entry for metadata-version " + entry.metadataVersion()
                     + " in " + indexFile + " has no test-version or metadata-version");
         }
-        return getProject().file(CoordinateUtils.replace("tests/src/$group$/$artifact$/" + testVersion, parsedCoordinates)).toPath();
+        return projectFile(CoordinateUtils.replace("tests/src/$group$/$artifact$/" + testVersion, parsedCoordinates)).toPath();
     }
 
     private List<MetadataVersionsIndexEntry> readIndexEntries(Path indexFile) throws IOException {
@@ -0,0 +1,198 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness.tasks;
+
+import org.graalvm.internal.tck.utils.MemoryBudget;
+import org.gradle.api.GradleException;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Streams the output of a coordinate subprocess to its {@code .out} file instead of buffering it in memory.
+ * <p>
+ * The file keeps its usual layout: a "Standard out" section followed by a "Standard err" section. Standard error is
+ * spooled to a temporary sibling file while the process runs and appended on {@link #close()}. The log is rotated
+ * according to {@link Options}, and only a bounded tail of each stream is kept in memory for error messages.
+ */
+public final class SubprocessOutputLog implements Closeable {
+    private static final int TAIL_BYTES = 16 * 1024;
+    private static final int MAX_LINE_BYTES = 8 * 1024;
+
+    /**
+     * Rotation of the log file, read from the {@code tck.outputLog.*} Gradle properties.
+     *
+     * @param maxFileBytes    size at which the log is rotated
+     * @param maxRotatedFiles number of rotated segments kept next to the log
+     * @param gzip            whether rotated segments are gzip-compressed
+     */
+    public record Options(long maxFileBytes, int maxRotatedFiles, boolean gzip) {
+        public static final String MAX_SIZE_PROPERTY = "tck.outputLog.maxSize";
+        public static final String MAX_FILES_PROPERTY = "tck.outputLog.maxFiles";
+        public static final String GZIP_PROPERTY = "tck.outputLog.gzip";
+        public static final Options DEFAULT = new Options(256L << 20, 4, false);
+
+        public static Options from(Function<String, String> properties) {
+            String maxSize = properties.apply(MAX_SIZE_PROPERTY);
+            String maxFiles = properties.apply(MAX_FILES_PROPERTY);
+            String gzip = properties.apply(GZIP_PROPERTY);
+            int rotatedFiles = DEFAULT.maxRotatedFiles;
+            if (maxFiles != null) {
+                try {
+                    rotatedFiles = Integer.parseInt(maxFiles.trim());
+                } catch (NumberFormatException e) {
+                    rotatedFiles = -1;
+                }
+                if (rotatedFiles < 0) {
+                    throw new GradleException("'" + MAX_FILES_PROPERTY + "' must be a non-negative integer, got '" + maxFiles + "'");
+                }
+            }
+            return new Options(
+                    maxSize == null ? DEFAULT.maxFileBytes : MemoryBudget.parseBytes(maxSize),
+                    rotatedFiles,
+                    gzip == null ? DEFAULT.gzip : Boolean.parseBoolean(gzip.trim()));
+        }
+    }
+
+    private final RotatingFileOutputStream log;
+    private final Path stderrSpool;
+    private final OutputStream stderrFile;
+    private final TailOutputStream stdoutTail = new TailOutputStream(TAIL_BYTES);
+    private final TailOutputStream stderrTail = new TailOutputStream(TAIL_BYTES);
+    private final LineOutputStream stdoutLines;
+    private final OutputStream stdout;
+    private final OutputStream stderr;
+
+    private SubprocessOutputLog(Path file, Options options, Consumer<String> stdoutLines) throws IOException {
+        log = new RotatingFileOutputStream(file, options.maxFileBytes(), options.maxRotatedFiles(), options.gzip());
+        stderrSpool = file.resolveSibling(file.getFileName() + ".stderr.tmp");
+        stderrFile = Files.newOutputStream(stderrSpool);
+        log.write("Standard out\n-----\n".getBytes(StandardCharsets.UTF_8));
+        OutputStream stdoutSink = new TeeOutputStream(log, stdoutTail);
+        this.stdoutLines = stdoutLines == null ? null : new LineOutputStream(stdoutLines);
+        stdout = this.stdoutLines == null ? stdoutSink : new TeeOutputStream(stdoutSink, this.stdoutLines);
+        stderr = new TeeOutputStream(stderrFile, stderrTail);
+    }
+
+    /**
+     * Opens the log at {@code file}, replacing an earlier one.
+     *
+     * @param stdoutLines receives every line of standard output, or null
+     */
+    public static SubprocessOutputLog open(Path file, Options options, Consumer<String> stdoutLines) {
+        try {
+            return new SubprocessOutputLog(file, options, stdoutLines);
+        } catch (IOException e) {
+            throw new GradleException("Failed to open test output file " + file, e);
+        }
+    }
+
+    /**
+     * Name of the output file of {@code command} within its coordinate's directory: the MD5 of its arguments, so
+     * every command keeps its own file.
+     */
+    static String fileName(List<String> command) {
+        byte[] arguments = String.join(",", command).getBytes(StandardCharsets.UTF_8);
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(arguments)) + ".out";
+        } catch (NoSuchAlgorithmException e) {
+            // Fall back to the hash code rather than fail the build because MD5 is unavailable
+            return Integer.toHexString(String.join(",", command).hashCode()) + ".out";
+        }
+    }
+
+    public OutputStream stdout() {
+        return stdout;
+    }
+
+    public OutputStream stderr() {
+        return stderr;
+    }
+
+    public Path getFile() {
+        return log.getFile();
+    }
+
+    public String stdoutTail() {
+        return stdoutTail.toString();
+    }
+
+    public String stderrTail() {
+        return stderrTail.toString();
+    }
+
+    /**
+     * Appends the standard error section and closes the log.
+     */
+    @Override
+    public void close() {
+        try {
+            if (stdoutLines != null) {
+                stdoutLines.finish();
+            }
+            stderrFile.close();
+            log.write("\n-----\nStandard err\n----\n".getBytes(StandardCharsets.UTF_8));
+            try (InputStream spooled = Files.newInputStream(stderrSpool)) {
+                spooled.transferTo(log);
+            }
+            log.write("\n----\n".getBytes(StandardCharsets.UTF_8));
+            log.close();
+            Files.deleteIfExists(stderrSpool);
+        } catch (IOException e) {
+            throw new GradleException("Failed to write test output to " + log.getFile(), e);
+        }
+    }
+
+    /**
+     * Splits written bytes into lines; overlong lines are cut at {@link #MAX_LINE_BYTES}.
+     */
+    private static final class LineOutputStream extends OutputStream {
+        private final Consumer<String> lines;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        private LineOutputStream(Consumer<String> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (b == '\n') {
+                lines.accept(line.toString(StandardCharsets.UTF_8));
+                line.reset();
+            } else if (line.size() < MAX_LINE_BYTES) {
+                line.write(b);
+            }
+        }
+
+        @Override
+        public synchronized void write(byte @NotNull [] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        private synchronized void finish() {
+            if (line.size() > 0) {
+                lines.accept(line.toString(StandardCharsets.UTF_8));
+                line.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness.tasks;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keeps only the last bytes written to it, so error messages can quote the end of an arbitrarily long output.
+ */
+public class TailOutputStream extends OutputStream {
+    private final byte[] buffer;
+    private long written;
+
+    public TailOutputStream(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        buffer[(int) (written++ % buffer.length)] = (byte) b;
+    }
+
+    @Override
+    public synchronized void write(byte @NotNull [] b, int off, int len) {
+        if (len >= buffer.length) {
+            off += len - buffer.length;
+            written += len - buffer.length;
+            len = buffer.length;
+        }
+        while (len > 0) {
+            int position = (int) (written % buffer.length);
+            int chunk = Math.min(len, buffer.length - position);
+            System.arraycopy(b, off, buffer, position, chunk);
+            written += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    /**
+     * Whether more was written than the tail holds.
+     */
+    public synchronized boolean isTruncated() {
+        return written > buffer.length;
+    }
+
+    /**
+     * Returns the retained tail. A truncated tail starts at the first complete line.
+     */
+    @Override
+    public synchronized String toString() {
+        int size = (int) Math.min(written, buffer.length);
+        byte[] tail = new byte[size];
+        int start = (int) ((written - size) % buffer.length);
+        int first = Math.min(size, buffer.length - start);
+        System.arraycopy(buffer, start, tail, 0, first);
+        System.arraycopy(buffer, 0, tail, first, size - first);
+        int from = 0;
+        if (isTruncated()) {
+            while (from < size && tail[from] != '\n') {
+                from++;
+            }
+            from = from < size ? from + 1 : 0;
+        }
+        return new String(tail, from, size - from, StandardCharsets.UTF_8);
+    }
+}
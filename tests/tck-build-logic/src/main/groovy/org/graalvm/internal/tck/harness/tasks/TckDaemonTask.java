@@ -0,0 +1,107 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness.tasks;
+
+import org.graalvm.internal.tck.harness.RepositoryIndexWatcher;
+import org.graalvm.internal.tck.harness.TckDaemon;
+import org.graalvm.internal.tck.harness.TckExtension;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps the repository index in memory and serves coordinate queries through a {@link TckDaemon} until it is
+ * stopped or idle.
+ * <p>
+ * The queries are registered with {@link #command(String, TckDaemon.Command)} by the build script that also
+ * registers the equivalent tasks, so both share one implementation. Cached indexes are dropped whenever the
+ * metadata or test directories change.
+ * <p>
+ * Implements §TCK-test-harness.1 — resident TCK daemon.
+ */
+@SuppressWarnings("unused")
+public abstract class TckDaemonTask extends DefaultTask {
+
+    public static final String SOCKET_PROPERTY = "tck.daemon.socket";
+    public static final String IDLE_TIMEOUT_PROPERTY = "tck.daemon.idleTimeout";
+    public static final String DEFAULT_SOCKET = "tck/daemon.sock";
+    private static final int DEFAULT_IDLE_TIMEOUT_MINUTES = 60;
+
+    private final TckExtension tckExtension;
+    private final Map<String, TckDaemon.Command> commands = new LinkedHashMap<>();
+
+    /**
+     * The Unix domain socket to listen on.
+     */
+    @Internal
+    public abstract RegularFileProperty getSocketFile();
+
+    /**
+     * Minutes without requests after which the daemon stops.
+     */
+    @Internal
+    public abstract Property<@NotNull Integer> getIdleTimeoutMinutes();
+
+    public TckDaemonTask() {
+        tckExtension = Objects.requireNonNull(getProject().getExtensions().findByType(TckExtension.class));
+        usesService(tckExtension.getRepositoryIndexService());
+        getSocketFile().convention(getProject().getLayout().getProjectDirectory()
+                .file(getProject().getProviders().gradleProperty(SOCKET_PROPERTY))
+                .orElse(getProject().getLayout().getBuildDirectory().file(DEFAULT_SOCKET)));
+        getIdleTimeoutMinutes().convention(getProject().getProviders().gradleProperty(IDLE_TIMEOUT_PROPERTY)
+                .map(Integer::parseInt)
+                .orElse(DEFAULT_IDLE_TIMEOUT_MINUTES));
+        getOutputs().upToDateWhen(task -> false);
+        notCompatibleWithConfigurationCache("Serves queries that use the project model until stopped");
+    }
+
+    /**
+     * Registers a query, replacing an earlier one with the same name.
+     */
+    public void command(String name, TckDaemon.Command command) {
+        commands.put(name, command);
+    }
+
+    @TaskAction
+    public void serve() throws IOException {
+        int idleTimeout = getIdleTimeoutMinutes().get();
+        if (idleTimeout <= 0) {
+            throw new GradleException("'" + IDLE_TIMEOUT_PROPERTY + "' must be greater than zero");
+        }
+        try (RepositoryIndexWatcher watcher = RepositoryIndexWatcher.start(
+                tckExtension.getMetadataRoot().get().getAsFile().toPath(),
+                tckExtension.getTestRoot().get().getAsFile().toPath())) {
+            if (!watcher.isWatching()) {
+                getLogger().warn("Cannot watch the repository for changes; the index is refreshed before every query.");
+            }
+            TckDaemon daemon = new TckDaemon(
+                    getSocketFile().get().getAsFile().toPath(),
+                    commands,
+                    Duration.ofMinutes(idleTimeout),
+                    () -> {
+                        if (watcher.pollChanged()) {
+                            tckExtension.invalidateRepositoryIndex();
+                        }
+                    },
+                    line -> getLogger().lifecycle(line));
+            getLogger().lifecycle("TCK daemon listening on {} (commands: {}). Query it with "
+                    + "tests/tck-build-logic/scripts/tck-daemon-client.sh.", daemon.getSocketPath(),
+                    String.join(", ", commands.keySet()));
+            daemon.serve();
+        }
+    }
+}
@@ -6,7 +6,7 @@
  */
 package org.graalvm.internal.tck.harness.tasks;
 
-import org.graalvm.internal.tck.utils.CoordinateUtils;
+import org.graalvm.internal.tck.harness.CoordinateFilter;
 import org.graalvm.internal.tck.utils.NativeImageConfigUtils;
 import org.graalvm.internal.tck.utils.TestInfraLoggingUtils;
 import org.gradle.api.provider.ProviderFactory;
@@ -14,7 +14,6 @@ import org.gradle.api.provider.ProviderFactory;
 import javax.inject.Inject;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 
 /**
  * Task that is used to start subproject tests for matching coordinates.
@@ -47,6 +46,35 @@ public abstract class TestInvocationTask extends AllCoordinatesExecTask {
     }
 
 
+    /**
+     * The inner {@code nativeTest} split into its JVM tests, native compilation and native run, so the JVM tests of
+     * one coordinate overlap the native-image build of another. Later stages find the earlier inner tasks up to date.
+     */
+    @Override
+    protected List<PipelineStage> pipelineStages() {
+        int parallelism = getParallelism().get();
+        return List.of(
+                new PipelineStage("javaTest", parallelism, false, c -> commandForStage(c, "test")),
+                new PipelineStage("nativeTestCompile", parallelism, true, c -> commandForStage(c, "nativeTestCompile")),
+                new PipelineStage("nativeTest", getPipelineRunWorkers().get(), false, c -> commandForStage(c, "nativeTest")));
+    }
+
+    private List<String> commandForStage(String coordinates, String innerTask) {
+        List<String> command = new ArrayList<>(commandFor(coordinates));
+        command.set(command.indexOf("nativeTest"), innerTask);
+        return command;
+    }
+
+    @Override
+    protected boolean buildsNativeImages() {
+        return true;
+    }
+
+    @Override
+    protected boolean cachesResults() {
+        return true;
+    }
+
     @Override
     protected String errorMessageFor(String coordinates, int exitCode) {
         return "Test for " + coordinates + " failed with exit code " + exitCode + ".";
@@ -54,11 +82,10 @@ public abstract class TestInvocationTask extends AllCoordinatesExecTask {
 
     @Override
     protected void beforeEach(String coordinates, List<String> command) {
-        String coordinateFilter = Objects.toString(getProject().findProperty("coordinates"), "");
-        if (CoordinateUtils.isFractionalBatch(coordinateFilter)) {
+        if (CoordinateFilter.isSharded(getCoordinateFilter().get())) {
             String nativeImageMode = NativeImageConfigUtils.resolveSelectedMode(
                     System.getenv("GVM_TCK_NATIVE_IMAGE_MODE"),
-                    Objects.toString(getProject().findProperty("tck.nativeImageMode"), null)
+                    projectProperty("tck.nativeImageMode").getOrNull()
             );
             for (String line : TestInfraLoggingUtils.batchReproducerLines("test", nativeImageMode, coordinates, null)) {
                 getLogger().lifecycle(line);
@@ -81,8 +81,7 @@ public abstract class ValidateIndexFilesTask extends CoordinatesAwareTask {
         if (opt != null) {
             return opt;
         }
-        Object prop = getProject().findProperty("coordinates");
-        return prop == null ? "" : prop.toString();
+        return getCoordinateFilter().get();
     }
 
     @TaskAction
@@ -97,16 +96,17 @@ public abstract class ValidateIndexFilesTask extends CoordinatesAwareTask {
             allResolved.addAll(override);
         } else {
             String filter = effectiveCoordinateFilter();
-            // Split by whitespace to support lists passed from GitHub Actions/CLI
-            for (String singleFilter : filter.split("\\s+")) {
-                if (!singleFilter.isEmpty()) {
-                    String directIndexPath = directMetadataIndexPath(singleFilter);
+            // Whitespace separated lists passed from GitHub Actions/CLI are one filter expression, resolved in one pass.
+            // Index files of named artifacts are validated even when no tested version matches.
+            for (String term : filter.trim().split("\\s+")) {
+                if (!term.isEmpty() && !term.startsWith("!")) {
+                    String directIndexPath = directMetadataIndexPath(term);
                     if (directIndexPath != null) {
                         targetFiles.add(directIndexPath);
                     }
-                    allResolved.addAll(computeMatchingCoordinates(singleFilter));
                 }
             }
+            allResolved.addAll(computeMatchingCoordinates(filter));
         }
 
         // 2. Map resolved coordinates back to physical file paths
@@ -129,7 +129,7 @@ public abstract class ValidateIndexFilesTask extends CoordinatesAwareTask {
             return null;
         }
         String filePath = String.format("metadata/%s/%s/index.json", parts[0], parts[1]);
-        return getProject().file(filePath).exists() ? filePath : null;
+        return projectFile(filePath).exists() ? filePath : null;
     }
 
     private void executeValidation(Set<String> targetFiles) {
@@ -139,7 +139,7 @@ public abstract class ValidateIndexFilesTask extends CoordinatesAwareTask {
         List<String> failures = new ArrayList<>();
 
         for (String filePath : targetFiles) {
-            File jsonFile = getProject().file(filePath.replace('\\', '/'));
+            File jsonFile = projectFile(filePath.replace('\\', '/'));
 
             if (!jsonFile.exists()) {
                 getLogger().warn("⚠️ File not found: " + filePath);
@@ -151,7 +151,7 @@ public abstract class ValidateIndexFilesTask extends CoordinatesAwareTask {
 
             try {
                 JsonSchema schema = schemaCache.computeIfAbsent(schemaPath, path ->
-                        factory.getSchema(getProject().file(path).toURI())
+                        factory.getSchema(projectFile(path).toURI())
                 );
 
                 JsonNode json = mapper.readTree(jsonFile);
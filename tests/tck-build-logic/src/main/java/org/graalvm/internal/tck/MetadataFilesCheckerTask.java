@@ -24,6 +24,7 @@ import org.gradle.api.tasks.options.Option;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -55,6 +56,9 @@ public abstract class MetadataFilesCheckerTask extends DefaultTask {
 
     private final Set<String> PREDEFINED_ALLOWED_PACKAGES = new HashSet<>(List.of("java.lang", "java.util"));
 
+    // Globs, version ranges, negation or several terms in -Pcoordinates
+    private static final Pattern FILTER_EXPRESSION = Pattern.compile("[\\s*?!\\[(]");
+
     Coordinates coordinates;
     private List<String> allowedPackages;
     private final ObjectMapper objectMapper = new ObjectMapper();
@@ -69,8 +73,8 @@ public abstract class MetadataFilesCheckerTask extends DefaultTask {
         // Prefer task option, fallback to -Pcoordinates when it looks like a single coordinate (group:artifact:version)
         String prop = (String) getProject().findProperty("coordinates");
         if (prop != null && !getIndexFile().isPresent()) {
-            // Skip when using fractional batches (k/n) or 'all'. Only parse exact group:artifact:version.
-            if (!CoordinateUtils.isFractionalBatch(prop)) {
+            // Skip when using fractional batches (k/n), 'all' or filter expressions. Only parse exact group:artifact:version.
+            if (!CoordinateUtils.isFractionalBatch(prop) && !FILTER_EXPRESSION.matcher(prop).find()) {
                 String[] parts = prop.split(":", -1);
                 if (parts.length == 3) {
                     extractCoordinates(prop);
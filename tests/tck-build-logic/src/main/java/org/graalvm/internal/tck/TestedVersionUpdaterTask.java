@@ -408,7 +408,7 @@ public abstract class TestedVersionUpdaterTask extends DefaultTask {
             LibraryStatsModels.MetadataVersionStats updatedStats = new LibraryStatsModels.MetadataVersionStats(
                     metadataVersionStats.versions().stream()
                             .map(versionStats -> oldVersion.equals(versionStats.version())
-                                    ? new LibraryStatsModels.VersionStats(newVersion, versionStats.dynamicAccess(), versionStats.libraryCoverage())
+                                    ? new LibraryStatsModels.VersionStats(newVersion, versionStats.dynamicAccess(), versionStats.libraryCoverage(), versionStats.nativeBuild())
                                     : versionStats)
                             .toList()
             );
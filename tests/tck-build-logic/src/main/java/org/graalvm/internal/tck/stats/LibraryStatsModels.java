@@ -6,6 +6,7 @@
  */
 package org.graalvm.internal.tck.stats;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
@@ -55,16 +56,42 @@ public final class LibraryStatsModels {
     @JsonPropertyOrder({
             "version",
             "dynamicAccess",
-            "libraryCoverage"
+            "libraryCoverage",
+            "nativeBuild"
     })
     public record VersionStats(
             String version,
             DynamicAccessStatsValue dynamicAccess,
-            LibraryCoverage libraryCoverage
+            LibraryCoverage libraryCoverage,
+            @JsonInclude(JsonInclude.Include.NON_NULL)
+            NativeBuildStats nativeBuild
     ) {
+        public VersionStats(String version, DynamicAccessStatsValue dynamicAccess, LibraryCoverage libraryCoverage) {
+            this(version, dynamicAccess, libraryCoverage, null);
+        }
+
         public VersionStats(String version, DynamicAccessStats dynamicAccess, LibraryCoverage libraryCoverage) {
             this(version, DynamicAccessStatsValue.available(dynamicAccess), libraryCoverage);
         }
+
+        public VersionStats withNativeBuild(NativeBuildStats nativeBuild) {
+            return new VersionStats(version, dynamicAccess, libraryCoverage, nativeBuild);
+        }
+    }
+
+    /**
+     * What building the native test image of a version cost, read from the native-image build output.
+     * Phase times are not recorded: they are only known when the stats run rebuilds the image.
+     */
+    public record NativeBuildStats(
+            long imageBytes,
+            long peakRssBytes,
+            long reachableMethods,
+            long reachableTypes,
+            long reflectionFields,
+            long reflectionMethods,
+            long reflectionTypes
+    ) {
     }
 
     public record DynamicAccessStats(
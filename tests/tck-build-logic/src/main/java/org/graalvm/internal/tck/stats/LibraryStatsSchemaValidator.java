@@ -502,6 +502,23 @@ public final class LibraryStatsSchemaValidator {
         validateCoverageMetric(locationPrefix, "line", versionStats.libraryCoverage().line(), failures);
         validateCoverageMetric(locationPrefix, "instruction", versionStats.libraryCoverage().instruction(), failures);
         validateCoverageMetric(locationPrefix, "method", versionStats.libraryCoverage().method(), failures);
+        validateNativeBuild(locationPrefix, versionStats.nativeBuild(), failures);
+    }
+
+    /// A built image has a size and reachable types.
+    private static void validateNativeBuild(
+            String locationPrefix,
+            LibraryStatsModels.NativeBuildStats nativeBuild,
+            List<String> failures
+    ) {
+        if (nativeBuild == null) {
+            return;
+        }
+        if (nativeBuild.imageBytes() == 0L || nativeBuild.reachableTypes() == 0L) {
+            failures.add("Empty native image at " + locationPrefix + ":nativeBuild: expected imageBytes and "
+                    + "reachableTypes to be positive but found " + nativeBuild.imageBytes() + " and "
+                    + nativeBuild.reachableTypes());
+        }
     }
 
     private static void validateCoverageMetric(
@@ -12,6 +12,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.graalvm.internal.tck.Coordinates;
+import org.graalvm.internal.tck.utils.NativeBuildOutput;
 import org.gradle.api.GradleException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -43,6 +44,7 @@ import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 /**
@@ -369,6 +371,28 @@ public final class LibraryStatsSupport {
         );
     }
 
+    /// Reads the native-image build output of the test image into the `nativeBuild` stats. Returns null when the
+    /// build wrote no build output or one that lacks some of the recorded values.
+    public static LibraryStatsModels.NativeBuildStats buildNativeBuildStats(Path buildOutputFile) {
+        if (!Files.isRegularFile(buildOutputFile)) {
+            return null;
+        }
+        NativeBuildOutput.Report report = NativeBuildOutput.read(buildOutputFile);
+        if (LongStream.of(report.imageBytes(), report.peakRssBytes(), report.reachableMethods(), report.reachableTypes(),
+                report.reflectionFields(), report.reflectionMethods(), report.reflectionTypes()).anyMatch(value -> value < 0)) {
+            return null;
+        }
+        return new LibraryStatsModels.NativeBuildStats(
+                report.imageBytes(),
+                report.peakRssBytes(),
+                report.reachableMethods(),
+                report.reachableTypes(),
+                report.reflectionFields(),
+                report.reflectionMethods(),
+                report.reflectionTypes()
+        );
+    }
+
     public static ExternalDynamicAccessSummary buildExternalDynamicAccessSummary(List<Path> libraryJars, Path dynamicAccessDir) {
         Set<String> libraryClasses = loadLibraryClasses(libraryJars);
         if (libraryClasses.isEmpty()) {
@@ -758,7 +782,26 @@ public final class LibraryStatsSupport {
         return new LibraryStatsModels.VersionStats(
                 versionStats.version(),
                 normalizeDynamicAccessStatsValue(versionStats.dynamicAccess()),
-                normalizeLibraryCoverage(versionStats.libraryCoverage())
+                normalizeLibraryCoverage(versionStats.libraryCoverage()),
+                normalizeNativeBuildStats(versionStats.nativeBuild())
+        );
+    }
+
+    private static LibraryStatsModels.NativeBuildStats normalizeNativeBuildStats(
+            LibraryStatsModels.NativeBuildStats nativeBuild
+    ) {
+        if (nativeBuild == null) {
+            return null;
+        }
+
+        return new LibraryStatsModels.NativeBuildStats(
+                nativeBuild.imageBytes(),
+                nativeBuild.peakRssBytes(),
+                nativeBuild.reachableMethods(),
+                nativeBuild.reachableTypes(),
+                nativeBuild.reflectionFields(),
+                nativeBuild.reflectionMethods(),
+                nativeBuild.reflectionTypes()
         );
     }
 
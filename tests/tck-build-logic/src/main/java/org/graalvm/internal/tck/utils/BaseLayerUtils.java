@@ -6,26 +6,40 @@
  */
 package org.graalvm.internal.tck.utils;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.gradle.api.GradleException;
 import org.gradle.api.Project;
+import org.gradle.api.file.ProjectLayout;
 
 import java.io.File;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.HexFormat;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * Resolves and identifies Native Image base layers. §TCK-test-harness.3
+ * <p>
+ * Shared-layer tests stack two layers: the JDK module base layer and, on top of it, the JUnit runtime layer with the
+ * test-runtime jars that every coordinate build has in common. Coordinates in a {@link FrameworkLayerPlanner} plan
+ * stack a third, framework layer with the jars they share with the other coordinates of their cluster.
  */
 public final class BaseLayerUtils {
     private static final String BASE_LAYER_FILE_PROPERTY = "tck.baseLayerFile";
     private static final String BASE_LAYER_DIR_PROPERTY = "tck.baseLayerDir";
     private static final String BASE_LAYER_DIR_ENVIRONMENT_VARIABLE = "GVM_TCK_BASE_LAYER_DIR";
-    private static final String DEDICATED_LAYER_ROOT_PROPERTY = "tck.dedicatedLayerRoot";
+    public static final String TEST_RUNTIME_LAYER_PROPERTY = "tck.testRuntimeLayer";
+    public static final String TEST_RUNTIME_LAYER_FILE_PROPERTY = "tck.testRuntimeLayerFile";
+    public static final String FRAMEWORK_LAYER_FILE_PROPERTY = "tck.frameworkLayerFile";
+    private static final String FRAMEWORK_LAYER_ROOT_PROPERTY = "tck.frameworkLayerRoot";
+    private static final String MANIFEST_FILE_NAME = "manifest.json";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    public static final String DEDICATED_LAYER_ROOT_PROPERTY = "tck.dedicatedLayerRoot";
     private static final String DEDICATED_LAYER_ROOT_ENVIRONMENT_VARIABLE =
             "GVM_TCK_DEDICATED_LAYER_ROOT";
     private static final List<String> JUNIT_RUNTIME_ARTIFACT_GROUPS = List.of(
@@ -61,31 +75,100 @@ public final class BaseLayerUtils {
     }
 
     public static File resolveBaseLayerFile(Project project) {
-        String explicitFile = Objects.toString(project.findProperty(BASE_LAYER_FILE_PROPERTY), "").trim();
+        return resolveBaseLayerFile(project.getLayout(), name -> Objects.toString(project.findProperty(name), null));
+    }
+
+    /**
+     * Variant of {@link #resolveBaseLayerFile(Project)} for task actions, which must not access the project.
+     *
+     * @param projectProperty returns the value of a project property, or null if it is not set
+     */
+    public static File resolveBaseLayerFile(ProjectLayout layout, Function<String, String> projectProperty) {
+        String explicitFile = Objects.toString(projectProperty.apply(BASE_LAYER_FILE_PROPERTY), "").trim();
         if (!explicitFile.isEmpty()) {
-            return project.file(explicitFile);
+            return layout.getProjectDirectory().file(explicitFile).getAsFile();
         }
 
-        String baseLayerDir = Objects.toString(project.findProperty(BASE_LAYER_DIR_PROPERTY), "").trim();
+        String baseLayerDir = Objects.toString(projectProperty.apply(BASE_LAYER_DIR_PROPERTY), "").trim();
         if (baseLayerDir.isEmpty()) {
             baseLayerDir = Objects.toString(System.getenv(BASE_LAYER_DIR_ENVIRONMENT_VARIABLE), "").trim();
         }
         File directory = baseLayerDir.isEmpty()
-                ? project.getLayout().getBuildDirectory().dir("native-base-layer").get().getAsFile()
-                : project.file(baseLayerDir);
+                ? layout.getBuildDirectory().dir("native-base-layer").get().getAsFile()
+                : layout.getProjectDirectory().dir(baseLayerDir).getAsFile();
         return new File(directory, "base-layer.nil");
     }
 
-    public static File resolveDedicatedLayerFile(Project project, String coordinates) {
-        String baseLayerRoot = Objects.toString(project.findProperty(DEDICATED_LAYER_ROOT_PROPERTY), "").trim();
+    public static boolean isTestRuntimeLayerEnabled(Function<String, String> projectProperty) {
+        return Boolean.parseBoolean(Objects.toString(projectProperty.apply(TEST_RUNTIME_LAYER_PROPERTY), "true").trim());
+    }
+
+    public static File resolveTestRuntimeLayerFile(Project project) {
+        return resolveTestRuntimeLayerFile(project.getLayout(), name -> Objects.toString(project.findProperty(name), null));
+    }
+
+    /**
+     * Variant of {@link #resolveTestRuntimeLayerFile(Project)} for task actions, which must not access the project.
+     *
+     * @param projectProperty returns the value of a project property, or null if it is not set
+     */
+    public static File resolveTestRuntimeLayerFile(ProjectLayout layout, Function<String, String> projectProperty) {
+        String explicitFile = Objects.toString(projectProperty.apply(TEST_RUNTIME_LAYER_FILE_PROPERTY), "").trim();
+        if (!explicitFile.isEmpty()) {
+            return layout.getProjectDirectory().file(explicitFile).getAsFile();
+        }
+        return new File(layout.getBuildDirectory().dir("native-test-runtime-layer").get().getAsFile(),
+                "test-runtime-layer.nil");
+    }
+
+    /**
+     * The file of a planned framework layer; {@code layerId} is the id of a {@link FrameworkLayerPlanner.Layer}.
+     *
+     * @param projectProperty returns the value of a project property, or null if it is not set
+     */
+    public static File resolveFrameworkLayerFile(ProjectLayout layout, Function<String, String> projectProperty,
+                                                 String layerId) {
+        return frameworkLayerFile(resolveFrameworkLayerRoot(layout, projectProperty), layerId);
+    }
+
+    /**
+     * The directory that holds one directory per planned framework layer.
+     *
+     * @param projectProperty returns the value of a project property, or null if it is not set
+     */
+    public static File resolveFrameworkLayerRoot(ProjectLayout layout, Function<String, String> projectProperty) {
+        String root = Objects.toString(projectProperty.apply(FRAMEWORK_LAYER_ROOT_PROPERTY), "").trim();
+        return root.isEmpty()
+                ? layout.getBuildDirectory().dir("native-framework-layers").get().getAsFile()
+                : layout.getProjectDirectory().dir(root).getAsFile();
+    }
+
+    /**
+     * The file of the framework layer {@code layerId} below {@code root}, see {@link #resolveFrameworkLayerRoot}.
+     */
+    public static File frameworkLayerFile(File root, String layerId) {
+        return new File(new File(root, layerId), "framework-layer.nil");
+    }
+
+    public static File resolveDedicatedLayerRoot(Project project) {
+        return resolveDedicatedLayerRoot(project.getLayout(), name -> Objects.toString(project.findProperty(name), null));
+    }
+
+    /**
+     * Variant of {@link #resolveDedicatedLayerRoot(Project)} for task actions, which must not access the project.
+     * The root holds the {@link DedicatedLayerCache}.
+     *
+     * @param projectProperty returns the value of a project property, or null if it is not set
+     */
+    public static File resolveDedicatedLayerRoot(ProjectLayout layout, Function<String, String> projectProperty) {
+        String baseLayerRoot = Objects.toString(projectProperty.apply(DEDICATED_LAYER_ROOT_PROPERTY), "").trim();
         if (baseLayerRoot.isEmpty()) {
             baseLayerRoot = Objects.toString(
                     System.getenv(DEDICATED_LAYER_ROOT_ENVIRONMENT_VARIABLE), "").trim();
         }
-        File root = baseLayerRoot.isEmpty()
-                ? project.getLayout().getBuildDirectory().dir("native-dedicated-layers").get().getAsFile()
-                : project.file(baseLayerRoot);
-        return new File(new File(root, sha256(coordinates)), "libDedicated.nil");
+        return baseLayerRoot.isEmpty()
+                ? layout.getBuildDirectory().dir("native-dedicated-layers").get().getAsFile()
+                : layout.getProjectDirectory().dir(baseLayerRoot).getAsFile();
     }
 
     public static String layerCreateArgument(File baseLayerFile) {
@@ -95,6 +178,16 @@ public final class BaseLayerUtils {
         return "-H:LayerCreate=" + baseLayerFile.getName() + "," + modules;
     }
 
+    /**
+     * The {@code -H:LayerCreate} argument of a layer stacked on another one, which holds every class of the given
+     * jars.
+     */
+    public static String layerCreateArgument(File layerFile, List<File> jars) {
+        StringBuilder argument = new StringBuilder("-H:LayerCreate=").append(layerFile.getName());
+        jars.forEach(jar -> argument.append(",path=").append(jar.getAbsolutePath()));
+        return argument.toString();
+    }
+
     public static List<String> layerModules() {
         return BASE_LAYER_MODULES;
     }
@@ -120,16 +213,109 @@ public final class BaseLayerUtils {
         return manifest;
     }
 
-    private static String sha256(String value) {
-        MessageDigest digest = newSha256Digest();
-        return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+    /**
+     * The manifest of a JUnit runtime layer built on {@code baseLayerFile} from {@code jars}. The jars are identified
+     * by file name, which carries the version of the resolved artifact.
+     */
+    public static Map<String, Object> expectedTestRuntimeLayerManifest(File baseLayerFile, List<File> jars) {
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("baseLayer", readManifest(manifestFile(baseLayerFile)));
+        manifest.put("jars", jars.stream().map(File::getName).sorted().toList());
+        return manifest;
+    }
+
+    /**
+     * Returns why the JUnit runtime layer cannot be used on top of {@code baseLayerFile} by a build with the given
+     * JUnit runtime jars, or empty if it can. A build whose test runtime resolved to other versions (e.g. because the
+     * test project pins a newer JUnit) has to fall back to the base layer.
+     */
+    public static Optional<String> testRuntimeLayerMismatch(File testRuntimeLayerFile, File baseLayerFile, List<File> jars) {
+        if (!testRuntimeLayerFile.isFile()) {
+            return Optional.of("layer " + testRuntimeLayerFile + " does not exist");
+        }
+        File manifestFile = manifestFile(testRuntimeLayerFile);
+        if (!manifestFile.isFile()) {
+            return Optional.of("manifest " + manifestFile + " does not exist");
+        }
+        if (!manifestFile(baseLayerFile).isFile()) {
+            return Optional.of("base-layer manifest " + manifestFile(baseLayerFile) + " does not exist");
+        }
+        Map<String, Object> current = readManifest(manifestFile);
+        Map<String, Object> expected = expectedTestRuntimeLayerManifest(baseLayerFile, jars);
+        if (!Objects.equals(current.get("baseLayer"), expected.get("baseLayer"))) {
+            return Optional.of("it was built on another base layer");
+        }
+        if (!Objects.equals(current.get("jars"), expected.get("jars"))) {
+            return Optional.of("it contains " + current.get("jars") + " but the test runtime is " + expected.get("jars"));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The manifest of a framework layer built on {@code parentLayerFile} from {@code jars}. Unlike the JUnit runtime
+     * layer, the jars are identified by path: dependency jars are resolved from the content-addressed Gradle cache,
+     * and the planner leaves out snapshots.
+     */
+    public static Map<String, Object> expectedFrameworkLayerManifest(File parentLayerFile, List<File> jars) {
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("parentLayer", readManifest(manifestFile(parentLayerFile)));
+        manifest.put("jars", jars.stream().map(File::getAbsolutePath).sorted().toList());
+        return manifest;
     }
 
-    private static MessageDigest newSha256Digest() {
+    /**
+     * Returns why a framework layer cannot be stacked on {@code parentLayerFile} by a build with the given classpath,
+     * or empty if it can: the layer must have been built on that parent and all of its jars must be on the classpath.
+     */
+    public static Optional<String> frameworkLayerMismatch(File frameworkLayerFile, File parentLayerFile,
+                                                          List<File> classpath) {
+        if (!frameworkLayerFile.isFile()) {
+            return Optional.of("layer " + frameworkLayerFile + " does not exist");
+        }
+        File manifestFile = manifestFile(frameworkLayerFile);
+        if (!manifestFile.isFile()) {
+            return Optional.of("manifest " + manifestFile + " does not exist");
+        }
+        Map<String, Object> current = readManifest(manifestFile);
+        if (!Objects.equals(current.get("parentLayer"), readManifest(manifestFile(parentLayerFile)))) {
+            return Optional.of("it was built on another parent layer than " + parentLayerFile);
+        }
+        if (current.get("jars") instanceof List<?> jars) {
+            List<String> paths = classpath.stream().map(File::getAbsolutePath).toList();
+            List<?> missing = jars.stream().filter(jar -> !paths.contains(jar)).toList();
+            if (!missing.isEmpty()) {
+                return Optional.of("the classpath does not contain " + missing);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Writes the manifest of a layer that was just built next to {@code layerFile}.
+     */
+    public static void writeManifest(File layerFile, Map<String, Object> manifest) {
+        File manifestFile = manifestFile(layerFile);
+        try {
+            Files.writeString(manifestFile.toPath(), OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(manifest)
+                    + System.lineSeparator());
+        } catch (IOException e) {
+            throw new GradleException("Failed to write Native Image layer manifest " + manifestFile, e);
+        }
+    }
+
+    private static File manifestFile(File layerFile) {
+        return new File(layerFile.getParentFile(), MANIFEST_FILE_NAME);
+    }
+
+    private static Map<String, Object> readManifest(File manifestFile) {
+        if (!manifestFile.isFile()) {
+            return Map.of();
+        }
         try {
-            return MessageDigest.getInstance("SHA-256");
-        } catch (NoSuchAlgorithmException exception) {
-            throw new IllegalStateException("SHA-256 is unavailable", exception);
+            return OBJECT_MAPPER.readValue(manifestFile, new TypeReference<LinkedHashMap<String, Object>>() {
+            });
+        } catch (IOException e) {
+            throw new GradleException("Failed to read Native Image layer manifest " + manifestFile, e);
         }
     }
 
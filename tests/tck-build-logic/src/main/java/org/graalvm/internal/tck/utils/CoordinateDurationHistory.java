@@ -0,0 +1,47 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Wall-clock durations of previous per-coordinate runs, used for duration-aware sharding.
+ * <p>
+ * The history is a JSON object mapping each coordinate to the last measured duration in milliseconds
+ * for every task (lane) that ran it, for example {@code {"g:a:1.0": {"javaTest": 5400, "test": 81000}}}.
+ * Keys are kept sorted so identical history produces identical files and identical shards.
+ * §TCK-test-harness.1
+ */
+public final class CoordinateDurationHistory {
+    public static final String HISTORY_FILE_PROPERTY = "tck.durationHistoryFile";
+    public static final String DEFAULT_HISTORY_FILE = "tck/coordinate-durations.json";
+
+    private static final String DESCRIPTION = "coordinate duration history";
+
+    private CoordinateDurationHistory() {
+    }
+
+    /**
+     * Returns the estimated cost of each recorded coordinate: the sum of its last durations over all lanes.
+     * A missing history file yields an empty map.
+     */
+    public static Map<String, Long> loadCosts(Path historyFile) {
+        Map<String, Long> costs = new TreeMap<>();
+        CoordinateHistoryFile.read(historyFile, DESCRIPTION).forEach((coordinates, lanes) ->
+                costs.put(coordinates, lanes.values().stream().mapToLong(Long::longValue).sum()));
+        return costs;
+    }
+
+    /**
+     * Records the duration of one coordinate run, replacing the previous value for the same lane.
+     */
+    public static synchronized void record(Path historyFile, String lane, String coordinates, long durationMillis) {
+        CoordinateHistoryFile.record(historyFile, DESCRIPTION, lane, coordinates, durationMillis);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.gradle.api.GradleException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Outcomes of the last per-coordinate runs, used to find flaky libraries.
+ * <p>
+ * Uses the layout of {@link CoordinateDurationHistory} with the last {@value #RECORDED_RUNS} outcomes per lane,
+ * oldest first: {@code {"g:a:1.0": {"test": ["pass", "flaky", "pass"]}}}. A library whose coordinates were
+ * {@link Outcome#FLAKY flaky} at least a threshold number of times is written to a quarantine file in the format of
+ * {@code -Ptck.excludedCoordinatesFile}.
+ */
+public final class CoordinateFlakinessHistory {
+    public static final String HISTORY_FILE_PROPERTY = "tck.flakinessHistoryFile";
+    public static final String DEFAULT_HISTORY_FILE = "tck/coordinate-flakiness.json";
+    public static final String QUARANTINE_FILE_PROPERTY = "tck.quarantineFile";
+    public static final String DEFAULT_QUARANTINE_FILE = "tck/flaky-coordinates.txt";
+    public static final String QUARANTINE_THRESHOLD_PROPERTY = "tck.quarantineThreshold";
+    public static final int DEFAULT_QUARANTINE_THRESHOLD = 2;
+    public static final int RECORDED_RUNS = 10;
+
+    private static final String DESCRIPTION = "coordinate flakiness history";
+    private static final TypeReference<TreeMap<String, TreeMap<String, List<String>>>> HISTORY_TYPE = new TypeReference<>() {
+    };
+
+    /**
+     * Outcome of a coordinate run including its retries.
+     */
+    public enum Outcome {
+        /**
+         * The first attempt passed.
+         */
+        PASS,
+        /**
+         * The first attempt failed and a retry passed.
+         */
+        FLAKY,
+        /**
+         * Every attempt failed.
+         */
+        FAIL;
+
+        public static Outcome of(boolean passed, int failedAttempts) {
+            if (!passed) {
+                return FAIL;
+            }
+            return failedAttempts == 0 ? PASS : FLAKY;
+        }
+
+        public String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private CoordinateFlakinessHistory() {
+    }
+
+    /**
+     * Appends the outcome of one coordinate run for a lane, keeping the last {@value #RECORDED_RUNS}.
+     */
+    public static synchronized void record(Path historyFile, String lane, String coordinates, Outcome outcome) {
+        CoordinateHistoryFile.update(historyFile, DESCRIPTION, HISTORY_TYPE, lane, coordinates, previous -> {
+            List<String> outcomes = new ArrayList<>(previous == null ? List.of() : previous);
+            outcomes.add(outcome.label());
+            return new ArrayList<>(outcomes.subList(Math.max(0, outcomes.size() - RECORDED_RUNS), outcomes.size()));
+        });
+    }
+
+    /**
+     * Returns the {@code group:artifact} keys of libraries with at least {@code threshold} flaky outcomes over all
+     * their recorded versions and lanes.
+     */
+    public static Set<String> flakyLibraries(Path historyFile, int threshold) {
+        Map<String, Integer> flakyRuns = new TreeMap<>();
+        CoordinateHistoryFile.read(historyFile, DESCRIPTION, HISTORY_TYPE).forEach((coordinates, lanes) -> {
+            String[] parts = coordinates.split(":", 3);
+            if (parts.length < 2) {
+                return;
+            }
+            String library = parts[0] + ":" + parts[1];
+            lanes.values().forEach(outcomes -> outcomes.stream()
+                    .filter(Outcome.FLAKY.label()::equals)
+                    .forEach(ignored -> flakyRuns.merge(library, 1, Integer::sum)));
+        });
+        Set<String> libraries = new TreeSet<>();
+        flakyRuns.forEach((library, count) -> {
+            if (count >= threshold) {
+                libraries.add(library);
+            }
+        });
+        return libraries;
+    }
+
+    /**
+     * Rewrites {@code quarantineFile} with the {@link #flakyLibraries(Path, int) flaky libraries}, one
+     * {@code group:artifact} per line, so it can be passed as {@code -Ptck.excludedCoordinatesFile}.
+     */
+    public static synchronized void writeQuarantineFile(Path historyFile, Path quarantineFile, int threshold) {
+        List<String> lines = new ArrayList<>();
+        lines.add("# Libraries with at least " + threshold + " flaky outcome(s) in " + historyFile.getFileName() + ".");
+        lines.add("# Generated by the TCK harness; usable as -Ptck.excludedCoordinatesFile.");
+        lines.addAll(flakyLibraries(historyFile, threshold));
+        Path temporary = null;
+        try {
+            Files.createDirectories(quarantineFile.toAbsolutePath().getParent());
+            temporary = Files.createTempFile(quarantineFile.toAbsolutePath().getParent(),
+                    quarantineFile.getFileName().toString(), ".tmp");
+            Files.write(temporary, lines, StandardCharsets.UTF_8);
+            try {
+                Files.move(temporary, quarantineFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, quarantineFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new GradleException("Failed to write flaky coordinate list " + quarantineFile, e);
+        } finally {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    // best effort
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.gradle.api.GradleException;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Reads and atomically rewrites the per-coordinate measurement files of previous runs: a JSON object mapping
+ * each coordinate to one value per task (lane), for example {@code {"g:a:1.0": {"javaTest": 5400}}}. Values are
+ * numbers unless a caller passes its own value type.
+ * Keys are kept sorted so identical history produces identical files.
+ */
+final class CoordinateHistoryFile {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final TypeReference<TreeMap<String, TreeMap<String, Long>>> HISTORY_TYPE = new TypeReference<>() {
+    };
+
+    private CoordinateHistoryFile() {
+    }
+
+    /**
+     * Returns the recorded values by coordinate and lane. A missing file yields an empty map.
+     */
+    static TreeMap<String, TreeMap<String, Long>> read(Path historyFile, String description) {
+        return read(historyFile, description, HISTORY_TYPE);
+    }
+
+    /**
+     * Replaces the value recorded for one coordinate and lane. Callers serialize concurrent updates of one file.
+     */
+    static void record(Path historyFile, String description, String lane, String coordinates, long value) {
+        update(historyFile, description, HISTORY_TYPE, lane, coordinates, ignored -> Math.max(0, value));
+    }
+
+    /**
+     * Like {@link #read(Path, String)}, for histories whose values per lane are of another type.
+     */
+    static <T> TreeMap<String, TreeMap<String, T>> read(Path historyFile, String description,
+                                                       TypeReference<TreeMap<String, TreeMap<String, T>>> type) {
+        if (!Files.isRegularFile(historyFile)) {
+            return new TreeMap<>();
+        }
+        try {
+            TreeMap<String, TreeMap<String, T>> history = OBJECT_MAPPER.readValue(historyFile.toFile(), type);
+            return history == null ? new TreeMap<>() : history;
+        } catch (IOException e) {
+            throw new GradleException("Failed to read " + description + " " + historyFile, e);
+        }
+    }
+
+    /**
+     * Replaces the value recorded for one coordinate and lane with {@code update} applied to the previous value
+     * (null if there is none). Callers serialize concurrent updates of one file.
+     */
+    static <T> void update(Path historyFile, String description, TypeReference<TreeMap<String, TreeMap<String, T>>> type,
+                           String lane, String coordinates, UnaryOperator<T> update) {
+        TreeMap<String, TreeMap<String, T>> history = read(historyFile, description, type);
+        TreeMap<String, T> lanes = history.computeIfAbsent(coordinates, ignored -> new TreeMap<>());
+        lanes.put(lane, update.apply(lanes.get(lane)));
+        Path temporary = null;
+        try {
+            Files.createDirectories(historyFile.toAbsolutePath().getParent());
+            temporary = Files.createTempFile(historyFile.toAbsolutePath().getParent(),
+                    historyFile.getFileName().toString(), ".tmp");
+            OBJECT_MAPPER.writeValue(temporary.toFile(), history);
+            try {
+                Files.move(temporary, historyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, historyFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new GradleException("Failed to write " + description + " " + historyFile, e);
+        } finally {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    // best effort
+                }
+            }
+        }
+    }
+}
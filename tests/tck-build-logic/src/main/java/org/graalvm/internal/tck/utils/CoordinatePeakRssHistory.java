@@ -0,0 +1,69 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Peak resident set sizes of previous native-image builds per coordinate, used to admit concurrent builds into a
+ * {@link MemoryBudget}.
+ * <p>
+ * Values are read from the {@code Peak RSS} that native-image prints in its build summary and stored in bytes,
+ * with the same layout as {@link CoordinateDurationHistory}: {@code {"g:a:1.0": {"nativeTestCompile": 4294967296}}}.
+ * §TCK-test-harness.3
+ */
+public final class CoordinatePeakRssHistory {
+    public static final String HISTORY_FILE_PROPERTY = "tck.peakRssHistoryFile";
+    public static final String DEFAULT_HISTORY_FILE = "tck/coordinate-peak-rss.json";
+
+    private static final String DESCRIPTION = "coordinate peak RSS history";
+    private static final Pattern PEAK_RSS = Pattern.compile("Peak RSS:\\s*([0-9]+(?:\\.[0-9]+)?)\\s*([KMGT]?)i?B");
+
+    private CoordinatePeakRssHistory() {
+    }
+
+    /**
+     * Returns the estimated peak RSS of every recorded coordinate for a lane. A coordinate measured only by other
+     * lanes gets the largest of those values, since every lane builds a comparable image.
+     */
+    public static Map<String, Long> loadEstimates(Path historyFile, String lane) {
+        Map<String, Long> estimates = new TreeMap<>();
+        CoordinateHistoryFile.read(historyFile, DESCRIPTION).forEach((coordinates, lanes) -> {
+            Long measured = lanes.get(lane);
+            estimates.put(coordinates, measured != null ? measured
+                    : lanes.values().stream().mapToLong(Long::longValue).max().orElse(0));
+        });
+        return estimates;
+    }
+
+    /**
+     * Records the peak RSS of one coordinate run, replacing the previous value for the same lane.
+     */
+    public static synchronized void record(Path historyFile, String lane, String coordinates, long peakRssBytes) {
+        CoordinateHistoryFile.record(historyFile, DESCRIPTION, lane, coordinates, peakRssBytes);
+    }
+
+    /**
+     * Returns the largest {@code Peak RSS} reported in native-image output, e.g. {@code Peak RSS: 2.61GB}.
+     * A run that builds several images (a base layer and the test image) reports one value per image.
+     */
+    public static OptionalLong parsePeakRss(String output) {
+        Matcher matcher = PEAK_RSS.matcher(output);
+        long peak = -1;
+        while (matcher.find()) {
+            double value = Double.parseDouble(matcher.group(1));
+            long bytes = (long) (value * MemoryBudget.unitMultiplier(matcher.group(2)));
+            peak = Math.max(peak, bytes);
+        }
+        return peak < 0 ? OptionalLong.empty() : OptionalLong.of(peak);
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.gradle.api.GradleException;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Local store of passing per-coordinate lane runs, addressed by a hash of everything that decides their outcome.
+ * <p>
+ * A {@link KeyBuilder key} covers the fingerprints of the metadata and test sources, of the build logic and of the
+ * resolved test runtime classpath, the GraalVM version and the native-image arguments of a run. When a lane already
+ * passed with the same key, its output files are restored instead of running it again. Only passing runs are stored,
+ * so failures are always retried.
+ * <p>
+ * The per-coordinate build writes its test runtime classpath to the file named by {@value #CLASSPATH_FILE_VARIABLE},
+ * one absolute path per line. The harness keys a lookup by the classpath recorded in the previous run, so it never
+ * resolves dependencies just to find a hit, and stores a passing run under the classpath that run recorded.
+ * <p>
+ * Entries live in {@code <root>/<first two key characters>/<key>/} and are published with a directory rename, so
+ * concurrent lanes and interrupted runs never leave partial entries behind.
+ */
+public final class CoordinateResultCache {
+
+    public static final String ENABLED_PROPERTY = "tck.resultCache";
+    public static final String CACHE_DIR_PROPERTY = "tck.resultCacheDir";
+    public static final String DEFAULT_CACHE_DIR = "tck/result-cache";
+    public static final String RERUN_OPTION = "--rerun";
+    public static final String CLASSPATH_FILE_VARIABLE = "GVM_TCK_CLASSPATH_FILE";
+    public static final String CLASSPATH_FILE = "test-runtime-classpath.txt";
+
+    private static final String RESULT_FILE = "result.json";
+    private static final String LOGS_DIR = "logs";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /**
+     * A passing run found in the cache.
+     *
+     * @param logs output files of the run, stored under {@code logs/} of the entry
+     */
+    public record Entry(String key, Path directory, String lane, String coordinates, List<String> logs) {
+    }
+
+    private final Path root;
+
+    public CoordinateResultCache(Path root) {
+        this.root = root;
+    }
+
+    public static KeyBuilder newKey() {
+        return new KeyBuilder();
+    }
+
+    /**
+     * Returns the entry stored for a key, if any.
+     */
+    public Optional<Entry> find(String key) {
+        Path directory = entryDirectory(key);
+        Path resultFile = directory.resolve(RESULT_FILE);
+        if (!Files.isRegularFile(resultFile)) {
+            return Optional.empty();
+        }
+        try {
+            Map<?, ?> result = OBJECT_MAPPER.readValue(resultFile.toFile(), Map.class);
+            List<String> logs = new ArrayList<>();
+            if (result.get("logs") instanceof List<?> names) {
+                names.forEach(name -> logs.add(String.valueOf(name)));
+            }
+            return Optional.of(new Entry(key, directory, String.valueOf(result.get("lane")),
+                    String.valueOf(result.get("coordinates")), List.copyOf(logs)));
+        } catch (IOException e) {
+            // An unreadable entry behaves like a missing one; the next passing run replaces it.
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Copies the output files of an entry into {@code targetDirectory}, replacing files with the same name, and
+     * returns the restored files.
+     */
+    public List<Path> restore(Entry entry, Path targetDirectory) {
+        List<Path> restored = new ArrayList<>();
+        try {
+            Files.createDirectories(targetDirectory);
+            for (String log : entry.logs()) {
+                Path target = targetDirectory.resolve(log);
+                Files.copy(entry.directory().resolve(LOGS_DIR).resolve(log), target, StandardCopyOption.REPLACE_EXISTING);
+                restored.add(target);
+            }
+        } catch (IOException e) {
+            throw new GradleException("Failed to restore cached result " + entry.key() + " of " + entry.coordinates(), e);
+        }
+        return restored;
+    }
+
+    /**
+     * Stores a passing run with its output files. An existing entry for the same key is kept.
+     */
+    public void store(String key, String lane, String coordinates, List<Path> logs) {
+        Path directory = entryDirectory(key);
+        if (Files.isDirectory(directory)) {
+            return;
+        }
+        Path temporary = directory.resolveSibling(".tmp-" + key + "-" + UUID.randomUUID());
+        try {
+            Files.createDirectories(temporary.resolve(LOGS_DIR));
+            List<String> names = new ArrayList<>();
+            for (Path log : logs) {
+                if (Files.isRegularFile(log)) {
+                    String name = log.getFileName().toString();
+                    Files.copy(log, temporary.resolve(LOGS_DIR).resolve(name), StandardCopyOption.REPLACE_EXISTING);
+                    names.add(name);
+                }
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("lane", lane);
+            result.put("coordinates", coordinates);
+            result.put("storedAt", Instant.now().toString());
+            result.put("logs", names);
+            OBJECT_MAPPER.writeValue(temporary.resolve(RESULT_FILE).toFile(), result);
+            try {
+                Files.move(temporary, directory, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                if (!Files.isDirectory(directory)) {
+                    throw e;
+                }
+                // Another run stored the same key first; both entries describe the same inputs.
+            }
+        } catch (IOException e) {
+            throw new GradleException("Failed to store result of " + coordinates + " in " + root, e);
+        } finally {
+            deleteRecursively(temporary);
+        }
+    }
+
+    /**
+     * Reads a recorded test runtime classpath. It is empty when the file is missing or lists an entry that no longer
+     * exists, since the key of such a classpath cannot describe the next run.
+     */
+    public static Optional<List<Path>> readClasspath(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        List<Path> entries = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                Path entry = Path.of(line.strip());
+                if (!Files.exists(entry)) {
+                    return Optional.empty();
+                }
+                entries.add(entry);
+            }
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+        return Optional.of(List.copyOf(entries));
+    }
+
+    private Path entryDirectory(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    private static void deleteRecursively(Path path) {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path candidate : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(candidate);
+            }
+        } catch (IOException | UncheckedIOException ignored) {
+            // best effort
+        }
+    }
+
+    /**
+     * Whether {@code taskArguments} (one command-line task request) pass Gradle's built-in {@code --rerun} option to
+     * the task with the given name or path, i.e. {@code --rerun} follows it before the next task name.
+     */
+    public static boolean isRerunRequested(List<String> taskArguments, String taskName, String taskPath) {
+        boolean selected = false;
+        String previous = null;
+        for (String argument : taskArguments) {
+            if (argument.equals(RERUN_OPTION)) {
+                if (selected) {
+                    return true;
+                }
+            } else if (!argument.startsWith("-")) {
+                boolean optionValue = previous != null && previous.startsWith("-") && !previous.contains("=");
+                if (argument.equals(taskName) || argument.equals(taskPath) || argument.endsWith(":" + taskName)) {
+                    selected = true;
+                } else if (!optionValue) {
+                    selected = false;
+                }
+            }
+            previous = argument;
+        }
+        return false;
+    }
+
+    /**
+     * Accumulates named inputs into a SHA-256 key. Names and values are length-prefixed, so different inputs never
+     * produce the same byte stream.
+     */
+    public static final class KeyBuilder {
+        private final MessageDigest digest;
+        private final DataOutputStream data;
+
+        private KeyBuilder() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new GradleException("SHA-256 is not available", e);
+            }
+            data = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+        }
+
+        public KeyBuilder put(String name, String value) {
+            writeString(name);
+            writeString(value == null ? "" : value);
+            return this;
+        }
+
+        public KeyBuilder put(String name, List<String> values) {
+            writeString(name);
+            writeInt(values.size());
+            values.forEach(this::writeString);
+            return this;
+        }
+
+        /**
+         * Adds the size and modification time of a file whose content is too large to hash on every run.
+         */
+        public KeyBuilder putFileStamp(String name, Path file) {
+            writeString(name);
+            try {
+                if (Files.isRegularFile(file)) {
+                    data.writeLong(Files.size(file));
+                    data.writeLong(Files.getLastModifiedTime(file).toMillis());
+                } else {
+                    data.writeLong(-1);
+                }
+            } catch (IOException e) {
+                throw new GradleException("Failed to read attributes of " + file, e);
+            }
+            return this;
+        }
+
+        public String build() {
+            return HexFormat.of().formatHex(digest.digest());
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            try {
+                data.write(bytes);
+            } catch (IOException e) {
+                throw new GradleException("Failed to compute result cache key", e);
+            }
+        }
+
+        private void writeInt(int value) {
+            try {
+                data.writeInt(value);
+            } catch (IOException e) {
+                throw new GradleException("Failed to compute result cache key", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.gradle.api.GradleException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resource usage of per-coordinate runs, appended as one JSON object per line (NDJSON) to
+ * {@code build/tests/metrics/<lane>.ndjson}, for example
+ * {@code {"lane":"test","coordinates":"g:a:1","exitCode":0,"wallTimeMillis":81000,"userCpuMillis":95000,...}}.
+ * <p>
+ * Values that could not be measured (see {@link ProcessTreeSampler}) are -1.
+ */
+public final class CoordinateRunMetrics {
+    public static final String ENABLED_PROPERTY = "tck.metrics";
+    public static final String METRICS_DIR = "tests/metrics";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private CoordinateRunMetrics() {
+    }
+
+    /**
+     * Appends the record of one run to the lane's file.
+     */
+    public static synchronized void append(Path metricsDir, String lane, String coordinates, List<String> command,
+                                           int exitCode, Instant startedAt, long wallTimeMillis,
+                                           ProcessTreeSampler.Usage usage) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("lane", lane);
+        record.put("coordinates", coordinates);
+        record.put("command", command);
+        record.put("exitCode", exitCode);
+        record.put("startedAt", startedAt.toString());
+        record.put("wallTimeMillis", wallTimeMillis);
+        record.put("userCpuMillis", usage.userCpuMillis());
+        record.put("systemCpuMillis", usage.systemCpuMillis());
+        record.put("peakRssBytes", usage.peakRssBytes());
+        record.put("bytesWritten", usage.bytesWritten());
+        record.put("processes", usage.processes());
+        Path file = metricsDir.resolve(lane + ".ndjson");
+        try {
+            Files.createDirectories(metricsDir);
+            Files.writeString(file, OBJECT_MAPPER.writeValueAsString(record) + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new GradleException("Failed to write run metrics to " + file, e);
+        }
+    }
+}
@@ -11,7 +11,10 @@ import org.gradle.api.GradleException;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -40,6 +43,10 @@ public abstract class CoordinateUtils {
 
     // Fractional batching utilities moved from CoordinateUtils
 
+    public static final String SHARD_STRATEGY_PROPERTY = "tck.shardStrategy";
+    public static final String ROUND_ROBIN_SHARD_STRATEGY = "roundRobin";
+    public static final String DURATION_SHARD_STRATEGY = "duration";
+
     private static final Pattern FRACTIONAL = Pattern.compile("(\\d+)/(\\d+)");
 
     /**
@@ -98,4 +105,82 @@ public abstract class CoordinateUtils {
         }
         return result;
     }
+
+    /**
+     * Returns the k-th batch (1-based) out of n batches using the given shard strategy.
+     * The duration strategy reads costs lazily, so the history is only loaded when it is used.
+     */
+    public static List<String> computeBatchedCoordinates(List<String> coordinates, int index, int batches,
+                                                         String strategy, Supplier<Map<String, Long>> durations) {
+        if (strategy == null || strategy.isEmpty() || ROUND_ROBIN_SHARD_STRATEGY.equals(strategy)) {
+            return computeBatchedCoordinates(coordinates, index, batches);
+        }
+        if (DURATION_SHARD_STRATEGY.equals(strategy)) {
+            return computeDurationBatchedCoordinates(coordinates, index, batches, durations.get());
+        }
+        throw new GradleException("Unknown " + SHARD_STRATEGY_PROPERTY + " '" + strategy + "'. Expected '"
+                + ROUND_ROBIN_SHARD_STRATEGY + "' or '" + DURATION_SHARD_STRATEGY + "'.");
+    }
+
+    /**
+     * Given a list of coordinates and their historical durations, returns the k-th batch (1-based) out of n
+     * cost-balanced batches.
+     * <p>
+     * Uses longest-processing-time-first packing: coordinates are ordered by descending cost (ties broken by
+     * name) and each one goes to the batch with the lowest total so far (ties broken by batch number).
+     * Coordinates without history are assumed to cost the median of the known durations, so with no history at
+     * all the result is the same as {@link #computeBatchedCoordinates(List, int, int)}.
+     * The returned batch is sorted; identical input always yields identical batches.
+     */
+    public static List<String> computeDurationBatchedCoordinates(List<String> coordinates, int index, int batches,
+                                                                 Map<String, Long> durations) {
+        if (batches <= 0) {
+            throw new GradleException("Invalid batches denominator: " + batches);
+        }
+        if (index < 1 || index > batches) {
+            throw new GradleException("Invalid batch index: " + index + "/" + batches);
+        }
+        List<String> sorted = new ArrayList<>(coordinates);
+        Collections.sort(sorted);
+        long unknownCost = medianCost(sorted, durations);
+        sorted.sort(Comparator.comparingLong((String c) -> costOf(c, durations, unknownCost)).reversed()
+                .thenComparing(Comparator.naturalOrder()));
+
+        long[] loads = new long[batches];
+        List<String> result = new ArrayList<>();
+        for (String c : sorted) {
+            int target = 0;
+            for (int b = 1; b < batches; b++) {
+                if (loads[b] < loads[target]) {
+                    target = b;
+                }
+            }
+            loads[target] += costOf(c, durations, unknownCost);
+            if (target == index - 1) {
+                result.add(c);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    private static long costOf(String coordinates, Map<String, Long> durations, long unknownCost) {
+        Long cost = durations.get(coordinates);
+        return cost == null ? unknownCost : Math.max(cost, 1L);
+    }
+
+    private static long medianCost(List<String> coordinates, Map<String, Long> durations) {
+        List<Long> known = new ArrayList<>();
+        for (String c : coordinates) {
+            Long cost = durations.get(c);
+            if (cost != null) {
+                known.add(Math.max(cost, 1L));
+            }
+        }
+        if (known.isEmpty()) {
+            return 1L;
+        }
+        Collections.sort(known);
+        return known.get(known.size() / 2);
+    }
 }
@@ -0,0 +1,383 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.gradle.api.GradleException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store of dedicated Native Image layers, shared by all coordinate builds that use the same root.
+ * §TCK-test-harness.3
+ * <p>
+ * An entry {@code <root>/<key>/} holds {@value #LAYER_FILE_NAME} and a manifest of the inputs its key was computed
+ * from: the content of the analysis classpath jars, the jars and modules of the layer, the {@code native-image
+ * --version}, the native-image mode and the build arguments. Directories named in the arguments are replaced by the
+ * hash of their content, so identical inputs of different coordinate builds share one entry.
+ * <p>
+ * Builds write a layer into a staging directory and publish it with an atomic rename, so other builds see either no
+ * entry or a complete one. The modification time of an entry's manifest is its last use. Once the entries exceed the
+ * disk budget, the least recently used ones are evicted, except those used within {@link #IN_USE_GRACE}, which
+ * another build may still be linking against.
+ */
+public final class DedicatedLayerCache {
+    public static final String LAYER_FILE_NAME = "libDedicated.nil";
+    public static final String MAX_SIZE_PROPERTY = "tck.dedicatedLayerCache.maxSize";
+    public static final String MAX_SIZE_ENVIRONMENT_VARIABLE = "GVM_TCK_DEDICATED_LAYER_CACHE_SIZE";
+    public static final String DEFAULT_MAX_SIZE = "20g";
+    public static final Duration IN_USE_GRACE = Duration.ofHours(1);
+
+    private static final String MANIFEST_FILE_NAME = "manifest.json";
+    private static final String STAGING_DIR = ".staging";
+    private static final String TRASH_DIR = ".trash";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /**
+     * A published entry.
+     *
+     * @param lastUsed time of the last lookup or publish of the entry
+     */
+    public record Entry(String key, Path directory, long bytes, Instant lastUsed, String coordinates) {
+        public Path layerFile() {
+            return directory.resolve(LAYER_FILE_NAME);
+        }
+    }
+
+    private DedicatedLayerCache() {
+    }
+
+    /**
+     * The disk budget of the cache: {@code -Ptck.dedicatedLayerCache.maxSize}, then
+     * {@code GVM_TCK_DEDICATED_LAYER_CACHE_SIZE}, then {@value #DEFAULT_MAX_SIZE}.
+     *
+     * @param projectProperty returns the value of a project property, or null if it is not set
+     */
+    public static String resolveMaxSize(Function<String, String> projectProperty) {
+        String maxSize = Objects.toString(projectProperty.apply(MAX_SIZE_PROPERTY), "").trim();
+        if (maxSize.isEmpty()) {
+            maxSize = Objects.toString(System.getenv(MAX_SIZE_ENVIRONMENT_VARIABLE), "").trim();
+        }
+        return maxSize.isEmpty() ? DEFAULT_MAX_SIZE : maxSize;
+    }
+
+    /**
+     * The inputs of a dedicated layer. Their hash is the key of its entry, see {@link #key(Map)}.
+     *
+     * @param classpath       analysis classpath of the layer build
+     * @param layerJars       jars whose classes the layer holds
+     * @param arguments       native-image arguments of the layer build
+     * @param inputDirectories directories named in {@code arguments} whose content is part of the key
+     */
+    public static Map<String, Object> expectedManifest(List<File> classpath, List<File> layerJars,
+                                                       List<String> modules, String nativeImageVersion,
+                                                       String nativeImageMode, List<String> arguments,
+                                                       List<File> inputDirectories) {
+        // (name, hash) pairs rather than a map by name: JARs of different modules may share a file name.
+        List<List<String>> classpathHashes = classpath.stream()
+                .sorted(Comparator.comparing(File::getAbsolutePath))
+                .map(jar -> List.of(jar.getName(), fileHash(jar.toPath())))
+                .toList();
+        List<String> normalizedArguments = new ArrayList<>(arguments);
+        // Longest first, so a directory is not replaced inside the path of one of its subdirectories.
+        List<File> directories = inputDirectories.stream()
+                .sorted(Comparator.comparingInt((File directory) -> directory.getAbsolutePath().length()).reversed())
+                .toList();
+        for (File directory : directories) {
+            String replacement = "dir:" + directoryHash(directory.toPath());
+            normalizedArguments.replaceAll(argument -> argument.replace(directory.getAbsolutePath(), replacement));
+        }
+
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("nativeImageVersion", nativeImageVersion);
+        manifest.put("nativeImageMode", nativeImageMode);
+        manifest.put("osName", System.getProperty("os.name"));
+        manifest.put("osArch", System.getProperty("os.arch"));
+        manifest.put("modules", List.copyOf(modules));
+        manifest.put("layerJars", layerJars.stream().map(File::getName).sorted().toList());
+        manifest.put("classpath", classpathHashes);
+        manifest.put("nativeImageArgs", normalizedArguments);
+        return manifest;
+    }
+
+    public static String key(Map<String, Object> manifest) {
+        try {
+            return sha256(OBJECT_MAPPER.writeValueAsBytes(manifest));
+        } catch (IOException e) {
+            throw new GradleException("Failed to serialize dedicated layer manifest", e);
+        }
+    }
+
+    /**
+     * Returns the published entry of a key and marks it as used, or empty if there is none.
+     */
+    public static Optional<Entry> lookup(Path root, String key) {
+        Path directory = root.resolve(key);
+        if (!Files.isRegularFile(directory.resolve(MANIFEST_FILE_NAME))
+                || !Files.isRegularFile(directory.resolve(LAYER_FILE_NAME))) {
+            return Optional.empty();
+        }
+        touch(directory);
+        return Optional.ofNullable(readEntry(directory));
+    }
+
+    /**
+     * A new, empty directory for a build to write a layer into before {@link #publish}.
+     */
+    public static Path newStagingDirectory(Path root) {
+        return createStagingDirectory(stagingDirectory(root));
+    }
+
+    /**
+     * A fresh staging directory path below {@code root}, which is only created by {@link #createStagingDirectory}, so
+     * that a build that finds its layer in the cache leaves nothing behind.
+     */
+    public static Path stagingDirectory(Path root) {
+        return root.resolve(STAGING_DIR).resolve(UUID.randomUUID().toString());
+    }
+
+    public static Path createStagingDirectory(Path staging) {
+        try {
+            return Files.createDirectories(staging);
+        } catch (IOException e) {
+            throw new GradleException("Failed to create dedicated layer staging directory " + staging, e);
+        }
+    }
+
+    /**
+     * Publishes the layer built in {@code staging} under {@code key}. If another build published the key first, its
+     * entry is kept and {@code staging} is deleted.
+     *
+     * @param coordinates the coordinates whose build created the layer, recorded for {@link #deleteEntriesOf}
+     */
+    public static Entry publish(Path root, String key, Path staging, Map<String, Object> manifest, String coordinates) {
+        if (!Files.isRegularFile(staging.resolve(LAYER_FILE_NAME))) {
+            throw new GradleException("Dedicated layer build did not create " + staging.resolve(LAYER_FILE_NAME));
+        }
+        Path directory = root.resolve(key);
+        Map<String, Object> entryManifest = new LinkedHashMap<>();
+        entryManifest.put("key", key);
+        entryManifest.put("coordinates", coordinates);
+        entryManifest.put("inputs", manifest);
+        try {
+            OBJECT_MAPPER.writeValue(staging.resolve(MANIFEST_FILE_NAME).toFile(), entryManifest);
+            Files.move(staging, directory, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (!Files.isRegularFile(directory.resolve(MANIFEST_FILE_NAME))) {
+                throw new GradleException("Failed to publish dedicated layer " + directory, e);
+            }
+            // Another build published the same layer first.
+            deleteRecursively(staging);
+        }
+        return lookup(root, key).orElseThrow(() ->
+                new GradleException("Dedicated layer " + directory + " disappeared after publishing"));
+    }
+
+    /**
+     * Published entries, least recently used first.
+     */
+    public static List<Entry> entries(Path root) {
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        try (Stream<Path> children = Files.list(root)) {
+            return children
+                    .filter(child -> !child.getFileName().toString().startsWith("."))
+                    .filter(child -> Files.isRegularFile(child.resolve(MANIFEST_FILE_NAME)))
+                    .map(DedicatedLayerCache::readEntry)
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparing(Entry::lastUsed).thenComparing(Entry::key))
+                    .toList();
+        } catch (IOException e) {
+            throw new GradleException("Failed to list dedicated layers in " + root, e);
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache fits into {@code maxBytes}, and removes staging
+     * directories of builds that stopped before publishing. Entries used since {@code now - IN_USE_GRACE} are kept
+     * even when the cache stays over budget.
+     *
+     * @return the evicted entries
+     */
+    public static List<Entry> evict(Path root, long maxBytes, Instant now) {
+        Instant graceStart = now.minus(IN_USE_GRACE);
+        deleteAbandoned(root.resolve(STAGING_DIR), graceStart);
+        deleteAbandoned(root.resolve(TRASH_DIR), graceStart);
+        List<Entry> entries = entries(root);
+        long bytes = entries.stream().mapToLong(Entry::bytes).sum();
+        List<Entry> evicted = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (bytes <= maxBytes || !entry.lastUsed().isBefore(graceStart)) {
+                break;
+            }
+            if (delete(root, entry.directory())) {
+                evicted.add(entry);
+            }
+            bytes -= entry.bytes();
+        }
+        return evicted;
+    }
+
+    /**
+     * Deletes the entries created by the build of {@code coordinates}.
+     */
+    public static List<Entry> deleteEntriesOf(Path root, String coordinates) {
+        List<Entry> deleted = new ArrayList<>();
+        for (Entry entry : entries(root)) {
+            if (coordinates.equals(entry.coordinates()) && delete(root, entry.directory())) {
+                deleted.add(entry);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Moves an entry out of the cache atomically, so no build finds it half deleted, then deletes it.
+     */
+    private static boolean delete(Path root, Path directory) {
+        Path trash = root.resolve(TRASH_DIR).resolve(directory.getFileName() + "-" + UUID.randomUUID());
+        try {
+            Files.createDirectories(trash.getParent());
+            Files.move(directory, trash, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            // Evicted by another build.
+            return false;
+        } catch (IOException e) {
+            throw new GradleException("Failed to evict dedicated layer " + directory, e);
+        }
+        deleteRecursively(trash);
+        return true;
+    }
+
+    private static void deleteAbandoned(Path directory, Instant graceStart) {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> children = Files.list(directory)) {
+            for (Path child : children.toList()) {
+                if (Files.getLastModifiedTime(child).toInstant().isBefore(graceStart)) {
+                    deleteRecursively(child);
+                }
+            }
+        } catch (IOException e) {
+            throw new GradleException("Failed to clean up " + directory, e);
+        }
+    }
+
+    private static Entry readEntry(Path directory) {
+        Path manifestFile = directory.resolve(MANIFEST_FILE_NAME);
+        try {
+            Map<String, Object> manifest = OBJECT_MAPPER.readValue(manifestFile.toFile(),
+                    new TypeReference<LinkedHashMap<String, Object>>() {
+                    });
+            return new Entry(directory.getFileName().toString(), directory, size(directory),
+                    Files.getLastModifiedTime(manifestFile).toInstant(),
+                    Objects.toString(manifest.get("coordinates"), ""));
+        } catch (NoSuchFileException e) {
+            // Evicted by another build.
+            return null;
+        } catch (IOException e) {
+            throw new GradleException("Failed to read dedicated layer manifest " + manifestFile, e);
+        }
+    }
+
+    private static void touch(Path directory) {
+        try {
+            Files.setLastModifiedTime(directory.resolve(MANIFEST_FILE_NAME), FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            // Evicted by another build; lookup reports it missing.
+        }
+    }
+
+    private static long size(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (NoSuchFileException e) {
+            // Already gone.
+        } catch (IOException e) {
+            throw new GradleException("Failed to delete " + directory, e);
+        }
+    }
+
+    private static String fileHash(Path file) {
+        MessageDigest digest = newSha256Digest();
+        try (InputStream input = Files.newInputStream(file)) {
+            byte[] buffer = new byte[1 << 16];
+            for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new GradleException("Failed to hash " + file, e);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hash of the relative paths and content hashes of all files below {@code directory}.
+     */
+    private static String directoryHash(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return "missing";
+        }
+        StringBuilder listing = new StringBuilder();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.filter(Files::isRegularFile).sorted().toList()) {
+                String relativePath = directory.relativize(file).toString().replace(File.separatorChar, '/');
+                listing.append(relativePath).append('\t').append(fileHash(file)).append('\n');
+            }
+        } catch (IOException e) {
+            throw new GradleException("Failed to hash " + directory, e);
+        }
+        return sha256(listing.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(byte[] bytes) {
+        return HexFormat.of().formatHex(newSha256Digest().digest(bytes));
+    }
+
+    private static MessageDigest newSha256Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is unavailable", exception);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import org.gradle.api.GradleException;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Test filter for retrying only the tests that failed in a coordinate's previous attempt.
+ * <p>
+ * Failed tests are read from the JUnit XML reports under the test project's {@code build/test-results}, which both
+ * the JVM {@code test} task and {@code nativeTest} write. The filter file holds one {@code class.method} pattern per
+ * line; the per-coordinate build reads it from {@value #ENVIRONMENT_VARIABLE} and applies it to its {@code Test}
+ * tasks, and the native test image is built from the tests that the filtered JVM run discovered.
+ */
+public final class FailedTestFilter {
+    public static final String ENVIRONMENT_VARIABLE = "GVM_TCK_TEST_FILTER_FILE";
+    public static final String TEST_RESULTS_DIR = "build/test-results";
+
+    private FailedTestFilter() {
+    }
+
+    /**
+     * Returns filter patterns for the failed test cases in reports under {@code resultsDir} written at or after
+     * {@code sinceMillis}, so reports of earlier runs are ignored. Tests whose name is not a plain method name (e.g.
+     * parameterized or dynamic tests) select their whole class.
+     */
+    public static Set<String> failedTests(Path resultsDir, long sinceMillis) {
+        Set<String> patterns = new TreeSet<>();
+        if (!Files.isDirectory(resultsDir)) {
+            return patterns;
+        }
+        List<Path> reports;
+        try (Stream<Path> paths = Files.walk(resultsDir)) {
+            reports = paths.filter(path -> path.getFileName().toString().endsWith(".xml"))
+                    .filter(path -> modifiedSince(path, sinceMillis))
+                    .sorted()
+                    .toList();
+        } catch (IOException | UncheckedIOException e) {
+            throw new GradleException("Failed to list test reports in " + resultsDir, e);
+        }
+        for (Path report : reports) {
+            addFailedTests(report, patterns);
+        }
+        return patterns;
+    }
+
+    /**
+     * Writes the patterns to {@code filterFile}, one per line.
+     */
+    public static void write(Path filterFile, Set<String> patterns) {
+        try {
+            Files.createDirectories(filterFile.toAbsolutePath().getParent());
+            Files.write(filterFile, patterns, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new GradleException("Failed to write test filter " + filterFile, e);
+        }
+    }
+
+    private static void addFailedTests(Path report, Set<String> patterns) {
+        NodeList testCases;
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            factory.setXIncludeAware(false);
+            factory.setExpandEntityReferences(false);
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            // Report problems through the exception below instead of printing them.
+            builder.setErrorHandler(new DefaultHandler());
+            testCases = builder.parse(report.toFile()).getElementsByTagName("testcase");
+        } catch (ParserConfigurationException | SAXException | IOException e) {
+            // Not a JUnit report, or one that was cut off by the failure; it cannot narrow the retry.
+            return;
+        }
+        for (int i = 0; i < testCases.getLength(); i++) {
+            Element testCase = (Element) testCases.item(i);
+            if (testCase.getElementsByTagName("failure").getLength() == 0
+                    && testCase.getElementsByTagName("error").getLength() == 0) {
+                continue;
+            }
+            String className = testCase.getAttribute("classname");
+            if (className.isBlank()) {
+                continue;
+            }
+            String method = methodName(testCase.getAttribute("name"));
+            patterns.add(method == null ? className : className + "." + method);
+        }
+    }
+
+    /**
+     * Returns the method of a JUnit test case name such as {@code parses()} or {@code parses}, or null if the name
+     * does not identify a single method.
+     */
+    static String methodName(String testName) {
+        int end = testName.indexOf('(');
+        String method = end < 0 ? testName : testName.substring(0, end);
+        if (method.isEmpty() || !Character.isJavaIdentifierStart(method.charAt(0))
+                || !method.chars().allMatch(Character::isJavaIdentifierPart)) {
+            return null;
+        }
+        return method;
+    }
+
+    private static boolean modifiedSince(Path path, long sinceMillis) {
+        try {
+            return Files.isRegularFile(path) && Files.getLastModifiedTime(path).toMillis() >= sinceMillis;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
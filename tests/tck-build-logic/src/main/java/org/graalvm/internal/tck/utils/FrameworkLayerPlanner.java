@@ -0,0 +1,285 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.gradle.api.GradleException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Groups coordinates whose test runtime classpaths share large sets of JARs into framework layers. §TCK-test-harness.3
+ * <p>
+ * A framework layer holds the JARs that all of its member coordinates have in common and is built once on top of
+ * the shared layers, so each member only analyzes its own JARs. Every member analyzes the shared JARs once less, so a
+ * layer with {@code m} members saves {@code (m - 1)} times its size. Clusters are formed greedily: starting from one
+ * cluster per coordinate, the two clusters whose merge saves the most are merged until no merge saves anything or
+ * the shared JARs of a merge would fall below the minimum layer size.
+ */
+public final class FrameworkLayerPlanner {
+    public static final String PLAN_FILE_PROPERTY = "tck.frameworkLayerPlanFile";
+    public static final String DEFAULT_PLAN_FILE = "tck/framework-layers/plan.json";
+    public static final String CLASSPATHS_DIR = "tck/framework-layers/classpaths";
+    public static final String MIN_SHARED_SIZE_PROPERTY = "tck.frameworkLayers.minSharedSize";
+    public static final String DEFAULT_MIN_SHARED_SIZE = "16m";
+    public static final String MAX_LAYERS_PROPERTY = "tck.frameworkLayers.maxLayers";
+    public static final int DEFAULT_MAX_LAYERS = 32;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    /**
+     * A JAR on the test runtime classpath of a coordinate.
+     *
+     * @param coordinates the resolved module of the JAR
+     * @param classes     number of classes in the JAR, the unit of work of the analysis
+     */
+    public record Jar(String coordinates, String path, String sha256, long bytes, int classes) {
+    }
+
+    /**
+     * A planned framework layer. Its id is derived from its JARs, so an unchanged layer keeps its id across plans.
+     */
+    public record Layer(String id, List<String> members, List<Jar> jars) {
+        public long sharedBytes() {
+            return jars.stream().mapToLong(Jar::bytes).sum();
+        }
+
+        public long sharedClasses() {
+            return jars.stream().mapToLong(Jar::classes).sum();
+        }
+
+        public long savedBytes() {
+            return (members.size() - 1) * sharedBytes();
+        }
+
+        public long savedClasses() {
+            return (members.size() - 1) * sharedClasses();
+        }
+    }
+
+    public record Plan(List<Layer> layers) {
+        public long savedBytes() {
+            return layers.stream().mapToLong(Layer::savedBytes).sum();
+        }
+
+        public long savedClasses() {
+            return layers.stream().mapToLong(Layer::savedClasses).sum();
+        }
+
+        public Optional<Layer> layerFor(String coordinates) {
+            return layers.stream().filter(layer -> layer.members().contains(coordinates)).findFirst();
+        }
+    }
+
+    private static final class Cluster {
+        private final int id;
+        private final TreeSet<String> members;
+        private final Map<String, Jar> jars;
+        private final long bytes;
+        private boolean merged;
+
+        private Cluster(int id, TreeSet<String> members, Map<String, Jar> jars) {
+            this.id = id;
+            this.members = members;
+            this.jars = jars;
+            this.bytes = jars.values().stream().mapToLong(Jar::bytes).sum();
+        }
+
+        private long saving() {
+            return (members.size() - 1) * bytes;
+        }
+    }
+
+    private record Merge(Cluster first, Cluster second, long gain) {
+    }
+
+    private FrameworkLayerPlanner() {
+    }
+
+    /**
+     * Plans framework layers for coordinates and the JARs on their test runtime classpaths.
+     *
+     * @param minSharedBytes smallest total size of the JARs of a layer
+     * @param maxLayers      number of layers to keep, those with the largest savings first
+     */
+    public static Plan plan(Map<String, List<Jar>> classpaths, long minSharedBytes, int maxLayers) {
+        List<Cluster> clusters = new ArrayList<>();
+        Map<String, List<Cluster>> clustersByJar = new HashMap<>();
+        new TreeMap<>(classpaths).forEach((coordinates, jars) -> {
+            Map<String, Jar> bySha = new TreeMap<>();
+            jars.forEach(jar -> bySha.putIfAbsent(jar.sha256(), jar));
+            Cluster cluster = new Cluster(clusters.size(), new TreeSet<>(List.of(coordinates)), bySha);
+            clusters.add(cluster);
+            bySha.keySet().forEach(sha -> clustersByJar.computeIfAbsent(sha, ignored -> new ArrayList<>()).add(cluster));
+        });
+
+        PriorityQueue<Merge> merges = new PriorityQueue<>(Comparator.comparingLong(Merge::gain).reversed()
+                .thenComparingInt(merge -> merge.first().id)
+                .thenComparingInt(merge -> merge.second().id));
+        clusters.forEach(cluster -> addMerges(cluster, clustersByJar, minSharedBytes, merges));
+        while (!merges.isEmpty()) {
+            Merge merge = merges.poll();
+            if (merge.first().merged || merge.second().merged) {
+                continue;
+            }
+            merge.first().merged = true;
+            merge.second().merged = true;
+            TreeSet<String> members = new TreeSet<>(merge.first().members);
+            members.addAll(merge.second().members);
+            Cluster cluster = new Cluster(clusters.size(), members, shared(merge.first(), merge.second()));
+            clusters.add(cluster);
+            cluster.jars.keySet().forEach(sha -> clustersByJar.get(sha).add(cluster));
+            addMerges(cluster, clustersByJar, minSharedBytes, merges);
+        }
+
+        return new Plan(clusters.stream()
+                .filter(cluster -> !cluster.merged && cluster.members.size() > 1)
+                .map(cluster -> new Layer(layerId(cluster.jars.keySet()), List.copyOf(cluster.members),
+                        cluster.jars.values().stream().sorted(Comparator.comparing(Jar::path)).toList()))
+                .sorted(Comparator.comparingLong(Layer::savedBytes).reversed().thenComparing(Layer::id))
+                .limit(maxLayers)
+                .toList());
+    }
+
+    private static void addMerges(Cluster cluster, Map<String, List<Cluster>> clustersByJar, long minSharedBytes,
+                                  PriorityQueue<Merge> merges) {
+        // Pairs are added by their later cluster, which is always the new one after a merge.
+        Map<Integer, Cluster> candidates = new TreeMap<>();
+        cluster.jars.keySet().forEach(sha -> clustersByJar.get(sha).forEach(other -> {
+            if (other.id < cluster.id && !other.merged) {
+                candidates.putIfAbsent(other.id, other);
+            }
+        }));
+        for (Cluster other : candidates.values()) {
+            long sharedBytes = shared(cluster, other).values().stream().mapToLong(Jar::bytes).sum();
+            if (sharedBytes < minSharedBytes) {
+                continue;
+            }
+            long gain = (cluster.members.size() + other.members.size() - 1) * sharedBytes
+                    - cluster.saving() - other.saving();
+            if (gain > 0) {
+                merges.add(new Merge(other, cluster, gain));
+            }
+        }
+    }
+
+    private static Map<String, Jar> shared(Cluster first, Cluster second) {
+        Map<String, Jar> shared = new TreeMap<>(first.jars);
+        shared.keySet().retainAll(second.jars.keySet());
+        return shared;
+    }
+
+    private static String layerId(Iterable<String> jarHashes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            jarHashes.forEach(sha -> digest.update((sha + "\n").getBytes(StandardCharsets.UTF_8)));
+            return HexFormat.of().formatHex(digest.digest()).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is unavailable", e);
+        }
+    }
+
+    /**
+     * The file under {@code classpathsDir} that lists a coordinate's candidate JARs, one
+     * {@code group:artifact:version<TAB>path} line each.
+     */
+    public static Path classpathFile(Path classpathsDir, String coordinates) {
+        return classpathsDir.resolve(coordinates.replace(':', '_') + ".txt");
+    }
+
+    /**
+     * Describes the layers and their expected savings, one line each.
+     */
+    public static List<String> report(Plan plan, int coordinates) {
+        List<String> lines = new ArrayList<>();
+        long members = plan.layers().stream().mapToLong(layer -> layer.members().size()).sum();
+        lines.add(String.format(Locale.ROOT, "%d framework layer(s) for %d of %d coordinate(s); expected saving: "
+                        + "%s and %,d classes of analysis.", plan.layers().size(), members, coordinates,
+                megabytes(plan.savedBytes()), plan.savedClasses()));
+        for (Layer layer : plan.layers()) {
+            lines.add(String.format(Locale.ROOT, "  %s: %d JAR(s), %s, %,d classes shared by %d coordinate(s) "
+                            + "(saves %s, %,d classes), e.g. %s", layer.id(), layer.jars().size(),
+                    megabytes(layer.sharedBytes()), layer.sharedClasses(), layer.members().size(),
+                    megabytes(layer.savedBytes()), layer.savedClasses(), layer.members().get(0)));
+        }
+        return lines;
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (double) (1L << 20));
+    }
+
+    public static void write(Path planFile, Plan plan) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("savedBytes", plan.savedBytes());
+        json.put("savedClasses", plan.savedClasses());
+        List<Map<String, Object>> layers = new ArrayList<>();
+        for (Layer layer : plan.layers()) {
+            Map<String, Object> layerJson = new LinkedHashMap<>();
+            layerJson.put("id", layer.id());
+            layerJson.put("sharedBytes", layer.sharedBytes());
+            layerJson.put("sharedClasses", layer.sharedClasses());
+            layerJson.put("savedBytes", layer.savedBytes());
+            layerJson.put("savedClasses", layer.savedClasses());
+            layerJson.put("members", layer.members());
+            layerJson.put("jars", layer.jars());
+            layers.add(layerJson);
+        }
+        json.put("layers", layers);
+        try {
+            Files.createDirectories(planFile.toAbsolutePath().getParent());
+            OBJECT_MAPPER.writeValue(planFile.toFile(), json);
+        } catch (IOException e) {
+            throw new GradleException("Failed to write framework layer plan " + planFile, e);
+        }
+    }
+
+    /**
+     * Reads a plan written by {@link #write(Path, Plan)}. A missing file is an empty plan.
+     */
+    public static Plan read(Path planFile) {
+        if (!Files.isRegularFile(planFile)) {
+            return new Plan(List.of());
+        }
+        JsonNode json;
+        try {
+            json = OBJECT_MAPPER.readTree(planFile.toFile());
+        } catch (IOException e) {
+            throw new GradleException("Failed to read framework layer plan " + planFile, e);
+        }
+        List<Layer> layers = new ArrayList<>();
+        for (JsonNode layer : json.path("layers")) {
+            List<String> members = new ArrayList<>();
+            layer.path("members").forEach(member -> members.add(member.asText()));
+            List<Jar> jars = new ArrayList<>();
+            layer.path("jars").forEach(jar -> jars.add(new Jar(jar.path("coordinates").asText(),
+                    jar.path("path").asText(), jar.path("sha256").asText(), jar.path("bytes").asLong(),
+                    jar.path("classes").asInt())));
+            layers.add(new Layer(layer.path("id").asText(), List.copyOf(members), List.copyOf(jars)));
+        }
+        return new Plan(List.copyOf(layers));
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.gradle.api.GradleException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Compares the monolithic, shared-layer and dedicated-layer native builds of coordinates. §TCK-test-harness.3
+ * <p>
+ * Each variant is measured by a cold {@code nativeTestCompile} of the coordinate, so a dedicated layer is built by
+ * its own run while the shared layers are built beforehand and used as they are by the {@code testSharedLayer} lane.
+ * A layered variant that fails where the monolithic build passes, or that is more than the allowed factor slower, is
+ * a candidate for the exclusion file of its lane.
+ */
+public final class LayeredBuildBenchmark {
+    public static final String OUTPUT_DIR = "tck/benchmarks/layered-builds";
+    public static final String MAX_SLOWDOWN_PROPERTY = "tck.layeredBenchmark.maxSlowdown";
+    public static final double DEFAULT_MAX_SLOWDOWN = 1.1;
+    public static final String UPDATE_EXCLUSIONS_PROPERTY = "tck.layeredBenchmark.updateExclusions";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final String EXCLUSIONS_DIR = "tests/tck-build-logic/src/main/resources/";
+
+    public enum Variant {
+        MONOLITHIC("monolithic", null),
+        SHARED_LAYER("sharedLayer", EXCLUSIONS_DIR + "shared-layered-test-exclusions.txt"),
+        DEDICATED_LAYER("dedicatedLayer", EXCLUSIONS_DIR + "dedicated-layer-test-exclusions.txt");
+
+        private final String id;
+        private final String exclusionsFile;
+
+        Variant(String id, String exclusionsFile) {
+            this.id = id;
+            this.exclusionsFile = exclusionsFile;
+        }
+
+        public String id() {
+            return id;
+        }
+
+        /**
+         * The exclusion file of the variant's lane, relative to the repository root, or null for the monolithic build.
+         */
+        public String exclusionsFile() {
+            return exclusionsFile;
+        }
+    }
+
+    /**
+     * One build of a coordinate. Values that could not be measured are -1.
+     *
+     * @param peakRssBytes            sampled peak RSS of the whole build, see {@link ProcessTreeSampler}
+     * @param nativeImagePeakRssBytes largest peak RSS reported by the run's native-image builds
+     * @param imageBytes              total size of the images and layers the run built
+     * @param phaseSeconds            wall time of each native-image phase, added up over the run's builds
+     */
+    public record Measurement(String coordinates, Variant variant, int exitCode, long wallTimeMillis,
+                              long peakRssBytes, long nativeImagePeakRssBytes, long imageBytes,
+                              Map<String, Double> phaseSeconds) {
+        public boolean succeeded() {
+            return exitCode == 0;
+        }
+    }
+
+    /**
+     * A library whose layered build should be excluded from its lane, and why.
+     */
+    public record Candidate(String library, String reason) {
+    }
+
+    private LayeredBuildBenchmark() {
+    }
+
+    /**
+     * Libraries whose {@code variant} build failed or was more than {@code maxSlowdown} times slower than their
+     * monolithic build. Coordinates without a passing monolithic build are not compared.
+     */
+    public static List<Candidate> exclusionCandidates(List<Measurement> measurements, Variant variant,
+                                                      double maxSlowdown) {
+        Map<String, Candidate> candidates = new TreeMap<>();
+        for (Measurement measurement : measurements) {
+            if (measurement.variant() != variant) {
+                continue;
+            }
+            Optional<Measurement> monolithic = find(measurements, measurement.coordinates(), Variant.MONOLITHIC)
+                    .filter(Measurement::succeeded);
+            if (monolithic.isEmpty()) {
+                continue;
+            }
+            String library = library(measurement.coordinates());
+            if (!measurement.succeeded()) {
+                candidates.putIfAbsent(library, new Candidate(library, measurement.coordinates()
+                        + " fails with exit code " + measurement.exitCode() + " but passes monolithically"));
+                continue;
+            }
+            double slowdown = slowdown(measurement, monolithic.get());
+            if (slowdown > maxSlowdown) {
+                candidates.putIfAbsent(library, new Candidate(library, String.format(Locale.ROOT,
+                        "%s builds %.2fx as long as monolithically", measurement.coordinates(), slowdown)));
+            }
+        }
+        return List.copyOf(candidates.values());
+    }
+
+    private static double slowdown(Measurement measurement, Measurement monolithic) {
+        return measurement.wallTimeMillis() / (double) Math.max(1, monolithic.wallTimeMillis());
+    }
+
+    private static Optional<Measurement> find(List<Measurement> measurements, String coordinates, Variant variant) {
+        return measurements.stream()
+                .filter(measurement -> measurement.variant() == variant
+                        && measurement.coordinates().equals(coordinates))
+                .findFirst();
+    }
+
+    private static String library(String coordinates) {
+        String[] parts = coordinates.split(":");
+        return parts[0] + ":" + parts[1];
+    }
+
+    /**
+     * A Markdown table of the measurements, one row per build, with the wall time relative to the monolithic build.
+     */
+    public static List<String> table(List<Measurement> measurements) {
+        List<String> lines = new ArrayList<>();
+        lines.add("| Coordinates | Build | Result | Wall time | vs. monolithic | Peak RSS | Image size | Analysis "
+                + "| Compile |");
+        lines.add("|---|---|---|---:|---:|---:|---:|---:|---:|");
+        for (Measurement measurement : measurements) {
+            String relative = find(measurements, measurement.coordinates(), Variant.MONOLITHIC)
+                    .filter(monolithic -> monolithic.succeeded() && measurement.succeeded())
+                    .map(monolithic -> String.format(Locale.ROOT, "%.2fx", slowdown(measurement, monolithic)))
+                    .orElse("-");
+            lines.add(String.format(Locale.ROOT, "| %s | %s | %s | %s | %s | %s | %s | %s | %s |",
+                    measurement.coordinates(), measurement.variant().id(),
+                    measurement.succeeded() ? "passed" : "exit " + measurement.exitCode(),
+                    seconds(measurement.wallTimeMillis() / 1000.0), relative,
+                    gigabytes(Math.max(measurement.peakRssBytes(), measurement.nativeImagePeakRssBytes())),
+                    megabytes(measurement.imageBytes()),
+                    seconds(measurement.phaseSeconds().getOrDefault(NativeBuildOutput.ANALYSIS_PHASE, -1.0)),
+                    seconds(measurement.phaseSeconds().getOrDefault(NativeBuildOutput.COMPILE_PHASE, -1.0))));
+        }
+        return lines;
+    }
+
+    private static String seconds(double seconds) {
+        return seconds < 0 ? "-" : String.format(Locale.ROOT, "%.1fs", seconds);
+    }
+
+    private static String gigabytes(long bytes) {
+        return bytes < 0 ? "-" : String.format(Locale.ROOT, "%.2f GB", bytes / (double) (1L << 30));
+    }
+
+    private static String megabytes(long bytes) {
+        return bytes < 0 ? "-" : String.format(Locale.ROOT, "%.1f MB", bytes / (double) (1L << 20));
+    }
+
+    public static void write(Path file, List<Measurement> measurements, Map<Variant, List<Candidate>> candidates) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        List<Map<String, Object>> builds = new ArrayList<>();
+        for (Measurement measurement : measurements) {
+            Map<String, Object> build = new LinkedHashMap<>();
+            build.put("coordinates", measurement.coordinates());
+            build.put("variant", measurement.variant().id());
+            build.put("exitCode", measurement.exitCode());
+            build.put("wallTimeMillis", measurement.wallTimeMillis());
+            build.put("peakRssBytes", measurement.peakRssBytes());
+            build.put("nativeImagePeakRssBytes", measurement.nativeImagePeakRssBytes());
+            build.put("imageBytes", measurement.imageBytes());
+            build.put("phaseSeconds", measurement.phaseSeconds());
+            builds.add(build);
+        }
+        json.put("builds", builds);
+        Map<String, Object> exclusionCandidates = new LinkedHashMap<>();
+        candidates.forEach((variant, list) -> exclusionCandidates.put(variant.id(), list));
+        json.put("exclusionCandidates", exclusionCandidates);
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            OBJECT_MAPPER.writeValue(file.toFile(), json);
+        } catch (IOException e) {
+            throw new GradleException("Failed to write layered build benchmark " + file, e);
+        }
+    }
+
+    /**
+     * Writes the candidates of a lane one {@code group:artifact} per line, so the file can be passed as
+     * {@code -Ptck.excludedCoordinatesFile} or merged into the lane's exclusion file.
+     */
+    public static void writeCandidates(Path file, Variant variant, List<Candidate> candidates) {
+        List<String> lines = new ArrayList<>();
+        lines.add("# Exclusion candidates for the " + variant.id() + " build, see " + variant.exclusionsFile() + ".");
+        for (Candidate candidate : candidates) {
+            lines.add("# " + candidate.reason());
+            lines.add(candidate.library());
+        }
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.write(file, lines, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new GradleException("Failed to write exclusion candidates " + file, e);
+        }
+    }
+
+    /**
+     * Adds libraries to an exclusion file, which stays sorted, and returns those that were not listed yet.
+     */
+    public static List<String> addExclusions(Path exclusionsFile, List<String> libraries) {
+        try {
+            List<String> comments = new ArrayList<>();
+            TreeSet<String> excluded = new TreeSet<>();
+            if (Files.isRegularFile(exclusionsFile)) {
+                for (String line : Files.readAllLines(exclusionsFile, StandardCharsets.UTF_8)) {
+                    String trimmed = line.trim();
+                    if (trimmed.startsWith("#")) {
+                        comments.add(line);
+                    } else if (!trimmed.isEmpty()) {
+                        excluded.add(trimmed);
+                    }
+                }
+            }
+            List<String> added = libraries.stream().filter(excluded::add).sorted().toList();
+            if (!added.isEmpty()) {
+                List<String> lines = new ArrayList<>(comments);
+                lines.addAll(excluded);
+                Files.write(exclusionsFile, lines, StandardCharsets.UTF_8);
+            }
+            return added;
+        } catch (IOException e) {
+            throw new GradleException("Failed to update exclusion file " + exclusionsFile, e);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import org.gradle.api.GradleException;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Admits memory-hungry work only while the sum of the estimated peaks fits a fixed budget.
+ * <p>
+ * Requests are admitted in arrival order, so a large build is not starved by a stream of smaller ones. A request
+ * larger than the whole budget is admitted once nothing else holds memory, so it runs alone instead of never.
+ * §TCK-test-harness.3
+ */
+public final class MemoryBudget {
+
+    /**
+     * Share of the physical memory used as the default budget; the rest is left to Gradle and the system.
+     */
+    private static final double DEFAULT_BUDGET_FRACTION = 0.8;
+    private static final Pattern SIZE = Pattern.compile("([0-9]+(?:\\.[0-9]+)?)\\s*([KMGTkmgt]?)(?:i?[Bb])?");
+
+    private final long budgetBytes;
+    private final Deque<Object> waiting = new ArrayDeque<>();
+    private long reservedBytes;
+
+    public MemoryBudget(long budgetBytes) {
+        if (budgetBytes <= 0) {
+            throw new GradleException("Memory budget must be positive, got " + budgetBytes + " bytes");
+        }
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Held memory that is given back on {@link #close()}.
+     */
+    public interface Reservation extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized long getAvailableBytes() {
+        return Math.max(0, budgetBytes - reservedBytes);
+    }
+
+    /**
+     * Blocks until {@code bytes} fit the budget and all earlier requests were admitted, then reserves them.
+     */
+    public Reservation acquire(long bytes) throws InterruptedException {
+        long requested = Math.max(0, bytes);
+        synchronized (this) {
+            Object ticket = new Object();
+            waiting.addLast(ticket);
+            try {
+                while (waiting.peekFirst() != ticket || (reservedBytes > 0 && reservedBytes + requested > budgetBytes)) {
+                    wait();
+                }
+                reservedBytes += requested;
+            } finally {
+                waiting.remove(ticket);
+                notifyAll();
+            }
+        }
+        return new Reservation() {
+            private boolean released;
+
+            @Override
+            public void close() {
+                synchronized (MemoryBudget.this) {
+                    if (!released) {
+                        released = true;
+                        reservedBytes -= requested;
+                        MemoryBudget.this.notifyAll();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Default budget: a fixed share of the physical memory of this machine.
+     */
+    public static long defaultBudgetBytes() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        long total = os instanceof com.sun.management.OperatingSystemMXBean sunOs ? sunOs.getTotalMemorySize() : 0;
+        if (total <= 0) {
+            total = Runtime.getRuntime().maxMemory();
+        }
+        return (long) (total * DEFAULT_BUDGET_FRACTION);
+    }
+
+    /**
+     * Parses a size such as {@code 12g}, {@code 512m}, {@code 6GB} or a plain number of bytes.
+     */
+    public static long parseBytes(String value) {
+        Matcher matcher = SIZE.matcher(value.trim());
+        if (matcher.matches()) {
+            long bytes = (long) (Double.parseDouble(matcher.group(1)) * unitMultiplier(matcher.group(2)));
+            if (bytes > 0) {
+                return bytes;
+            }
+        }
+        throw new GradleException("Invalid memory size '" + value + "'. Expected e.g. 12g, 512m or a number of bytes.");
+    }
+
+    /**
+     * Bytes per binary unit: "" for bytes, then K, M, G and T.
+     */
+    static long unitMultiplier(String unit) {
+        return switch (unit.toUpperCase(Locale.ROOT)) {
+            case "" -> 1L;
+            case "K" -> 1L << 10;
+            case "M" -> 1L << 20;
+            case "G" -> 1L << 30;
+            case "T" -> 1L << 40;
+            default -> throw new GradleException("Unknown memory unit '" + unit + "'");
+        };
+    }
+
+    public static String format(long bytes) {
+        return String.format(Locale.ROOT, "%.1f GB", bytes / (double) (1L << 30));
+    }
+}
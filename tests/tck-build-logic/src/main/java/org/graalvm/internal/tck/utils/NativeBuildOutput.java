@@ -0,0 +1,157 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.gradle.api.GradleException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Reads what native-image reports about a build: the machine-readable build output written with
+ * {@code -H:BuildOutputJSONFile} and the phase lines of its console output, for example
+ * {@code [6/8] Compiling methods...    [****]    (21.4s @ 2.31GB)}.
+ */
+public final class NativeBuildOutput {
+    /**
+     * Directory the coordinate build writes one build output JSON file per native-image build into.
+     */
+    public static final String OUTPUT_DIR_PROPERTY = "tck.buildOutputDir";
+    /**
+     * Where the test image writes its build output when {@link #OUTPUT_DIR_PROPERTY} is not set, relative to the
+     * build directory of the coordinate. It is inside the output of {@code nativeTestCompile}, so it stays in sync
+     * with the image when the task is up to date or restored from the build cache.
+     */
+    public static final String TEST_OUTPUT_DIR = "native/nativeTestCompile/build-output";
+    public static final String TEST_BINARY = "test";
+    public static final String ANALYSIS_PHASE = "Performing analysis";
+    public static final String COMPILE_PHASE = "Compiling methods";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Pattern PHASE = Pattern.compile(
+            "^\\[(\\d+)/(\\d+)]\\s+(.+?)\\.\\.\\..*"
+                    + "\\((?:(\\d+)m\\s*)?(\\d+(?:\\.\\d+)?)s @ \\d+(?:\\.\\d+)?GB\\)\\s*$");
+
+    /**
+     * A build phase of the console output and its wall time.
+     */
+    public record Phase(String name, double seconds) {
+    }
+
+    /**
+     * The parts of one build output JSON file that the harness uses. Values missing from the file are -1.
+     *
+     * @param imageBytes        total size of the image, or of the layer for layer builds
+     * @param peakRssBytes      peak RSS of the native-image builder
+     * @param totalSeconds      wall time of the build
+     * @param reachableTypes    types the analysis found reachable
+     * @param reachableMethods  methods the analysis found reachable
+     * @param reflectionTypes   types registered for reflection
+     * @param reflectionMethods methods registered for reflection
+     * @param reflectionFields  fields registered for reflection
+     */
+    public record Report(long imageBytes, long peakRssBytes, double totalSeconds,
+                         long reachableTypes, long reachableMethods,
+                         long reflectionTypes, long reflectionMethods, long reflectionFields) {
+    }
+
+    private NativeBuildOutput() {
+    }
+
+    /**
+     * The native-image arguments that write the build output of the binary {@code binaryName} to {@code directory}.
+     */
+    public static List<String> buildArgs(File directory, String binaryName) {
+        return List.of(
+                "-H:+UnlockExperimentalVMOptions",
+                "-H:BuildOutputJSONFile=" + new File(directory, binaryName + ".json").getAbsolutePath(),
+                "-H:-UnlockExperimentalVMOptions"
+        );
+    }
+
+    /**
+     * Parses a phase line of the native-image console output.
+     */
+    public static Optional<Phase> parsePhase(String line) {
+        Matcher matcher = PHASE.matcher(line.strip());
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        double seconds = Double.parseDouble(matcher.group(5));
+        if (matcher.group(4) != null) {
+            seconds += 60 * Long.parseLong(matcher.group(4));
+        }
+        return Optional.of(new Phase(matcher.group(3).strip(), seconds));
+    }
+
+    /**
+     * Adds up the phase lines of one or more native-image builds, e.g. of a layer and the image on top of it.
+     */
+    public static final class PhaseTimings {
+        private final Map<String, Double> seconds = new LinkedHashMap<>();
+
+        public synchronized void accept(String line) {
+            parsePhase(line).ifPresent(phase -> seconds.merge(phase.name(), phase.seconds(), Double::sum));
+        }
+
+        public synchronized Map<String, Double> seconds() {
+            return new LinkedHashMap<>(seconds);
+        }
+    }
+
+    public static Report read(Path file) {
+        JsonNode json;
+        try {
+            json = OBJECT_MAPPER.readTree(file.toFile());
+        } catch (IOException e) {
+            throw new GradleException("Failed to read native-image build output " + file, e);
+        }
+        JsonNode analysis = json.path("analysis_results");
+        // Older GraalVM releases report the types as "classes".
+        JsonNode types = analysis.has("types") ? analysis.path("types") : analysis.path("classes");
+        return new Report(
+                json.path("image_details").path("total_bytes").asLong(-1),
+                json.path("resource_usage").path("memory").path("peak_rss_bytes").asLong(-1),
+                json.path("resource_usage").path("total_secs").asDouble(-1),
+                types.path("reachable").asLong(-1),
+                analysis.path("methods").path("reachable").asLong(-1),
+                types.path("reflection").asLong(-1),
+                analysis.path("methods").path("reflection").asLong(-1),
+                analysis.path("fields").path("reflection").asLong(-1)
+        );
+    }
+
+    /**
+     * Reads every build output JSON file in {@code directory}, ordered by file name. A missing directory has none.
+     */
+    public static List<Report> readAll(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<Report> reports = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(path -> path.getFileName().toString().endsWith(".json")).sorted().toList()) {
+                reports.add(read(file));
+            }
+        } catch (IOException e) {
+            throw new GradleException("Failed to list native-image build outputs in " + directory, e);
+        }
+        return reports;
+    }
+}
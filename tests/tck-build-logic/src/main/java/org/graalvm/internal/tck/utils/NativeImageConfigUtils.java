@@ -8,6 +8,7 @@ package org.graalvm.internal.tck.utils;
 
 import org.gradle.api.GradleException;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -37,6 +38,26 @@ public final class NativeImageConfigUtils {
         return DEFAULT_MODE;
     }
 
+    /**
+     * Returns the path of a GraalVM tool such as {@code native-image} from GRAALVM_HOME or JAVA_HOME, or the bare
+     * tool name to look it up on the PATH.
+     */
+    public static String nativeImageTool(String toolName) {
+        for (String toolHomeVariable : List.of("GRAALVM_HOME", "JAVA_HOME")) {
+            String toolHome = System.getenv(toolHomeVariable);
+            if (toolHome != null && !toolHome.trim().isEmpty()) {
+                for (File candidate : List.of(
+                        new File(new File(toolHome, "bin"), toolName),
+                        new File(new File(new File(toolHome, "lib"), "svm/bin"), toolName))) {
+                    if (candidate.isFile()) {
+                        return candidate.getAbsolutePath();
+                    }
+                }
+            }
+        }
+        return toolName;
+    }
+
     /**
      * Returns the ordered common native-image build arguments.
      */
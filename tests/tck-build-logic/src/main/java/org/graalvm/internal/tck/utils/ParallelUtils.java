@@ -0,0 +1,189 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import org.gradle.api.GradleException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs independent work items in parallel: IO-bound work (listing directories, reading and parsing index or
+ * metadata files) on a small shared pool, and long-running work such as coordinate subprocesses on a bounded
+ * pool of its own.
+ * <p>
+ * Results are returned in input order, so callers stay deterministic. If items fail, all items are still
+ * awaited and the first failure in input order is rethrown with the others attached as suppressed exceptions.
+ */
+public abstract class ParallelUtils {
+
+    /**
+     * Upper bound of concurrent file system operations. The work is IO-bound, so it is allowed to exceed the
+     * number of processors slightly, but stays small enough not to overwhelm network file systems.
+     */
+    public static final int IO_PARALLELISM = Math.min(16, Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+    private static final int SEQUENTIAL_THRESHOLD = 32;
+
+    private static volatile ForkJoinPool pool;
+
+    /**
+     * Applies {@code function} to every item, in parallel for larger inputs, and returns the results in input order.
+     */
+    public static <T, R> List<R> orderedMap(List<T> items, Function<? super T, ? extends R> function) {
+        // Nested calls from a pool worker run inline instead of waiting on the pool they occupy.
+        if (items.size() < SEQUENTIAL_THRESHOLD
+                || Thread.currentThread() instanceof ForkJoinWorkerThread worker && worker.getPool() == pool) {
+            List<R> results = new ArrayList<>(items.size());
+            for (T item : items) {
+                results.add(function.apply(item));
+            }
+            return results;
+        }
+        List<Callable<R>> tasks = new ArrayList<>(items.size());
+        for (T item : items) {
+            tasks.add(() -> function.apply(item));
+        }
+        List<Future<R>> futures = ioPool().invokeAll(tasks);
+
+        List<R> results = new ArrayList<>(items.size());
+        RuntimeException failure = null;
+        for (Future<R> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GradleException("Interrupted while waiting for parallel file system work", e);
+            } catch (ExecutionException e) {
+                RuntimeException cause = e.getCause() instanceof RuntimeException runtime
+                        ? runtime
+                        : new GradleException(String.valueOf(e.getCause().getMessage()), e.getCause());
+                if (failure == null) {
+                    failure = cause;
+                } else if (failure != cause) {
+                    failure.addSuppressed(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * Applies {@code function} to every item on at most {@code parallelism} dedicated threads and returns the
+     * results in input order.
+     * <p>
+     * Items with equal {@code lane} keys never run concurrently; they run one after another in input order, e.g.
+     * coordinates that share a test project directory. With a parallelism of 1 everything runs on the calling
+     * thread.
+     */
+    public static <T, R> List<R> boundedOrderedMap(List<T> items, int parallelism, Function<? super T, ?> lane,
+                                                   Function<? super T, ? extends R> function) {
+        if (parallelism < 1) {
+            throw new GradleException("Parallelism must be at least 1, got " + parallelism);
+        }
+        Map<Object, List<Integer>> lanes = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            lanes.computeIfAbsent(lane.apply(items.get(i)), key -> new ArrayList<>()).add(i);
+        }
+        Object[] results = new Object[items.size()];
+        RuntimeException[] failures = new RuntimeException[items.size()];
+        int threads = Math.min(parallelism, lanes.size());
+        if (threads <= 1) {
+            for (int i = 0; i < items.size(); i++) {
+                runItem(items, function, i, results, failures);
+            }
+            return collect(results, failures);
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "tck-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(lanes.size());
+            for (List<Integer> positions : lanes.values()) {
+                futures.add(executor.submit(() -> {
+                    for (int i : positions) {
+                        runItem(items, function, i, results, failures);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GradleException("Interrupted while waiting for parallel work", e);
+        } catch (ExecutionException e) {
+            // runItem records every failure, so this is unexpected.
+            throw new GradleException(String.valueOf(e.getCause().getMessage()), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return collect(results, failures);
+    }
+
+    private static <T, R> void runItem(List<T> items, Function<? super T, ? extends R> function, int index,
+                                       Object[] results, RuntimeException[] failures) {
+        try {
+            results[index] = function.apply(items.get(index));
+        } catch (RuntimeException e) {
+            failures[index] = e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> List<R> collect(Object[] results, RuntimeException[] failures) {
+        RuntimeException failure = null;
+        for (RuntimeException candidate : failures) {
+            if (candidate == null) {
+                continue;
+            }
+            if (failure == null) {
+                failure = candidate;
+            } else if (failure != candidate) {
+                failure.addSuppressed(candidate);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return (List<R>) Arrays.asList(results);
+    }
+
+    private static ForkJoinPool ioPool() {
+        ForkJoinPool current = pool;
+        if (current == null) {
+            synchronized (ParallelUtils.class) {
+                current = pool;
+                if (current == null) {
+                    // Worker threads of a ForkJoinPool are daemon threads, so the pool never blocks JVM exit.
+                    current = new ForkJoinPool(IO_PARALLELISM);
+                    pool = current;
+                }
+            }
+        }
+        return current;
+    }
+}
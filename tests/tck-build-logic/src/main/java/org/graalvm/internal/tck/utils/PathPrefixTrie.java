@@ -0,0 +1,72 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps directories to values and answers which values belong to directories containing a given path.
+ * <p>
+ * Lookups walk the name elements of the path once, so matching changed files against all coordinate
+ * directories costs O(changed files × path depth) instead of O(changed files × coordinates).
+ */
+public final class PathPrefixTrie<V> {
+
+    private final Node<V> root = new Node<>();
+
+    /**
+     * Associates {@code value} with {@code directory}; a directory may hold several values.
+     */
+    public void put(Path directory, V value) {
+        Node<V> node = root;
+        for (String element : elements(directory)) {
+            node = node.children.computeIfAbsent(element, ignored -> new Node<>());
+        }
+        node.values.add(value);
+    }
+
+    /**
+     * Returns the values of every registered directory that equals or contains {@code path},
+     * matching whole name elements like {@link Path#startsWith(Path)}.
+     */
+    public Set<V> valuesContaining(Path path) {
+        Set<V> result = new LinkedHashSet<>();
+        Node<V> node = root;
+        result.addAll(node.values);
+        for (String element : elements(path)) {
+            node = node.children.get(element);
+            if (node == null) {
+                break;
+            }
+            result.addAll(node.values);
+        }
+        return result;
+    }
+
+    private static List<String> elements(Path path) {
+        Path normalized = path.toAbsolutePath().normalize();
+        List<String> elements = new ArrayList<>(normalized.getNameCount() + 1);
+        if (normalized.getRoot() != null) {
+            elements.add(normalized.getRoot().toString());
+        }
+        for (Path element : normalized) {
+            elements.add(element.toString());
+        }
+        return elements;
+    }
+
+    private static final class Node<V> {
+        private final Map<String, Node<V>> children = new HashMap<>();
+        private final List<V> values = new ArrayList<>(1);
+    }
+}
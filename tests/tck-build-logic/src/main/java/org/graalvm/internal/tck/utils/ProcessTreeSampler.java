@@ -0,0 +1,245 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the CPU time, resident memory and bytes written of every process that belongs to one coordinate run.
+ * <p>
+ * A run is identified by the value of {@value #RUN_ID_VARIABLE} in its environment. Gradle passes the build's
+ * environment on to the processes it forks, so this also finds test workers and native-image drivers started by a
+ * shared Gradle daemon. Children of such processes (e.g. the native-image builder, which gets a reduced environment)
+ * belong to the run as well. The daemon itself is shared by many runs and is not counted.
+ * <p>
+ * Values come from {@code /proc}, so they are only available on Linux. Processes that start and exit between two
+ * samples are missed, and the last interval of a process before it exits is lost, so CPU time and bytes written are
+ * lower bounds.
+ */
+public final class ProcessTreeSampler implements AutoCloseable {
+    public static final String RUN_ID_VARIABLE = "GVM_TCK_RUN_ID";
+    public static final Duration DEFAULT_INTERVAL = Duration.ofMillis(500);
+
+    /**
+     * Length of a {@code /proc/<pid>/stat} clock tick; USER_HZ is 100 on every supported Linux architecture.
+     */
+    private static final long CLOCK_TICK_MILLIS = 10;
+
+    /**
+     * Resources used by a run. Values that could not be measured are -1.
+     *
+     * @param processes number of distinct processes seen
+     */
+    public record Usage(long userCpuMillis, long systemCpuMillis, long peakRssBytes, long bytesWritten, int processes) {
+        public static final Usage UNAVAILABLE = new Usage(-1, -1, -1, -1, 0);
+    }
+
+    private record ProcessSample(String key, int parentPid, long userTicks, long systemTicks) {
+    }
+
+    private static final class ProcessUsage {
+        private long userTicks;
+        private long systemTicks;
+        private long highWaterMarkKb;
+        private long bytesWritten;
+    }
+
+    private final Path procRoot;
+    private final String marker;
+    private final Map<String, Boolean> belongsToRun = new HashMap<>();
+    private final Map<String, ProcessUsage> usage = new HashMap<>();
+    private ScheduledExecutorService executor;
+    private long peakRssKb;
+    private Usage result;
+
+    ProcessTreeSampler(Path procRoot, String runId) {
+        this.procRoot = procRoot;
+        this.marker = RUN_ID_VARIABLE + "=" + runId;
+    }
+
+    /**
+     * Whether this system exposes the process information the sampler needs.
+     */
+    public static boolean isSupported() {
+        return Files.isRegularFile(Path.of("/proc/self/stat"));
+    }
+
+    /**
+     * Starts sampling the processes of a run every {@code interval} until {@link #stop()}. On systems without
+     * {@code /proc} the sampler does nothing and reports {@link Usage#UNAVAILABLE}.
+     */
+    public static ProcessTreeSampler start(String runId, Duration interval) {
+        ProcessTreeSampler sampler = new ProcessTreeSampler(Path.of("/proc"), runId);
+        if (isSupported()) {
+            sampler.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "tck-process-sampler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sampler.executor.scheduleWithFixedDelay(sampler::sample, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return sampler;
+    }
+
+    /**
+     * Takes a last sample and returns the usage of the run.
+     */
+    public synchronized Usage stop() {
+        if (result == null) {
+            if (executor == null) {
+                result = Usage.UNAVAILABLE;
+            } else {
+                executor.shutdownNow();
+                sample();
+                result = usage();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    synchronized void sample() {
+        if (result != null) {
+            return;
+        }
+        Map<Integer, ProcessSample> processes = new HashMap<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(procRoot, entry -> isPid(entry.getFileName().toString()))) {
+            for (Path entry : entries) {
+                int pid = Integer.parseInt(entry.getFileName().toString());
+                ProcessSample sample = readStat(entry, pid);
+                if (sample != null) {
+                    processes.put(pid, sample);
+                }
+            }
+        } catch (IOException e) {
+            return;
+        }
+        long rssKb = 0;
+        for (Map.Entry<Integer, ProcessSample> process : processes.entrySet()) {
+            if (!belongsToRun(process.getKey(), processes)) {
+                continue;
+            }
+            Path dir = procRoot.resolve(String.valueOf(process.getKey()));
+            ProcessSample sample = process.getValue();
+            ProcessUsage processUsage = usage.computeIfAbsent(sample.key(), ignored -> new ProcessUsage());
+            processUsage.userTicks = Math.max(processUsage.userTicks, sample.userTicks());
+            processUsage.systemTicks = Math.max(processUsage.systemTicks, sample.systemTicks());
+            Map<String, Long> status = readFields(dir.resolve("status"));
+            rssKb += status.getOrDefault("VmRSS", 0L);
+            processUsage.highWaterMarkKb = Math.max(processUsage.highWaterMarkKb, status.getOrDefault("VmHWM", 0L));
+            processUsage.bytesWritten = Math.max(processUsage.bytesWritten,
+                    readFields(dir.resolve("io")).getOrDefault("write_bytes", 0L));
+        }
+        peakRssKb = Math.max(peakRssKb, rssKb);
+    }
+
+    synchronized Usage usage() {
+        long userTicks = 0;
+        long systemTicks = 0;
+        long bytesWritten = 0;
+        long highWaterMarkKb = 0;
+        for (ProcessUsage processUsage : usage.values()) {
+            userTicks += processUsage.userTicks;
+            systemTicks += processUsage.systemTicks;
+            bytesWritten += processUsage.bytesWritten;
+            highWaterMarkKb = Math.max(highWaterMarkKb, processUsage.highWaterMarkKb);
+        }
+        // Processes peak at different times, so the largest single peak may exceed every sampled sum.
+        long peakKb = Math.max(peakRssKb, highWaterMarkKb);
+        return new Usage(userTicks * CLOCK_TICK_MILLIS, systemTicks * CLOCK_TICK_MILLIS, peakKb * 1024,
+                bytesWritten, usage.size());
+    }
+
+    private boolean belongsToRun(int pid, Map<Integer, ProcessSample> processes) {
+        ProcessSample sample = processes.get(pid);
+        if (sample == null) {
+            return false;
+        }
+        Boolean known = belongsToRun.get(sample.key());
+        if (known != null) {
+            return known;
+        }
+        // Decided before the parent, so a cycle in a racy snapshot cannot recurse forever.
+        belongsToRun.put(sample.key(), false);
+        boolean belongs = hasMarker(procRoot.resolve(String.valueOf(pid)).resolve("environ"))
+                || (sample.parentPid() != pid && belongsToRun(sample.parentPid(), processes));
+        belongsToRun.put(sample.key(), belongs);
+        return belongs;
+    }
+
+    private boolean hasMarker(Path environ) {
+        try {
+            for (String variable : new String(Files.readAllBytes(environ), StandardCharsets.UTF_8).split("\0")) {
+                if (variable.equals(marker)) {
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            // Gone, or a process of another user.
+        }
+        return false;
+    }
+
+    /**
+     * Reads the parent, CPU times and start time of a process. The command name may contain spaces and parentheses,
+     * so fields are counted from the last closing parenthesis.
+     */
+    private static ProcessSample readStat(Path dir, int pid) {
+        try {
+            String stat = Files.readString(dir.resolve("stat"), StandardCharsets.UTF_8);
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).trim().split("\\s+");
+            // fields[0] is field 3 (state) of proc(5): ppid is 4, utime 14, stime 15, starttime 22.
+            return new ProcessSample(pid + ":" + fields[19], Integer.parseInt(fields[1]),
+                    Long.parseLong(fields[11]), Long.parseLong(fields[12]));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the numeric {@code name: value} lines of {@code /proc/<pid>/status} (in kB) or {@code /proc/<pid>/io}.
+     */
+    private static Map<String, Long> readFields(Path file) {
+        Map<String, Long> fields = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String value = line.substring(colon + 1).trim();
+                int space = value.indexOf(' ');
+                try {
+                    fields.put(line.substring(0, colon), Long.parseLong(space < 0 ? value : value.substring(0, space)));
+                } catch (NumberFormatException ignored) {
+                    // not a numeric field
+                }
+            }
+        } catch (IOException e) {
+            // Gone, or a process of another user.
+        }
+        return fields;
+    }
+
+    private static boolean isPid(String name) {
+        return !name.isEmpty() && name.chars().allMatch(Character::isDigit);
+    }
+}
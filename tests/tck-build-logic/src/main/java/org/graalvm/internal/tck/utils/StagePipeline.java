@@ -0,0 +1,178 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import org.gradle.api.GradleException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Passes items through a fixed sequence of stages, each with its own bounded worker pool, so different items can be
+ * in different stages at the same time (e.g. one coordinate runs its JVM tests while the previous one builds its
+ * native image).
+ * <p>
+ * An item moves to the next stage when a stage returns null, and stops at the first stage that returns a result
+ * (e.g. a failure). Items with equal lane keys never overlap: the next item of a lane enters the first stage only
+ * after the previous one left the pipeline. Every stage queue is first in, first out.
+ * <p>
+ * Like {@link ParallelUtils}, results are returned in input order and the first exception in input order is rethrown
+ * after all items finished, with the others attached as suppressed exceptions.
+ */
+public final class StagePipeline<T, R> {
+
+    /**
+     * Work done on an item in one stage; returns null to pass the item on, or a result that ends its pipeline.
+     */
+    @FunctionalInterface
+    public interface Action<T, R> {
+        R run(T item);
+    }
+
+    /**
+     * @param name    label used for worker thread names
+     * @param workers maximum number of items in this stage at the same time
+     */
+    public record Stage<T, R>(String name, int workers, Action<T, R> action) {
+        public Stage {
+            if (workers < 1) {
+                throw new GradleException("Stage '" + name + "' needs at least one worker, got " + workers);
+            }
+        }
+    }
+
+    private final List<Stage<T, R>> stages;
+
+    public StagePipeline(List<Stage<T, R>> stages) {
+        if (stages.isEmpty()) {
+            throw new GradleException("A pipeline needs at least one stage");
+        }
+        this.stages = List.copyOf(stages);
+    }
+
+    /**
+     * Runs all items through the stages and returns, in input order, the result that ended each item's pipeline, or
+     * null for items that passed every stage.
+     */
+    public List<R> run(List<T> items, Function<? super T, ?> lane) {
+        Map<Object, Deque<Integer>> lanes = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            lanes.computeIfAbsent(lane.apply(items.get(i)), key -> new ArrayDeque<>()).add(i);
+        }
+        Execution execution = new Execution(items, lanes);
+        try {
+            execution.start();
+            execution.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GradleException("Interrupted while waiting for pipelined work", e);
+        } finally {
+            execution.shutdown();
+        }
+        return execution.collect();
+    }
+
+    private final class Execution {
+        private final List<T> items;
+        private final Map<Object, Deque<Integer>> lanes;
+        private final List<ExecutorService> executors = new ArrayList<>();
+        private final Object[] results;
+        private final Throwable[] failures;
+        private final CountDownLatch done;
+
+        private Execution(List<T> items, Map<Object, Deque<Integer>> lanes) {
+            this.items = items;
+            this.lanes = lanes;
+            this.results = new Object[items.size()];
+            this.failures = new Throwable[items.size()];
+            this.done = new CountDownLatch(items.size());
+            for (Stage<T, R> stage : stages) {
+                AtomicInteger threadCount = new AtomicInteger();
+                executors.add(Executors.newFixedThreadPool(stage.workers(), runnable -> {
+                    Thread thread = new Thread(runnable, "tck-" + stage.name() + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+            }
+        }
+
+        private void start() {
+            for (Deque<Integer> positions : lanes.values()) {
+                submit(0, positions.peekFirst(), positions);
+            }
+        }
+
+        private void submit(int stageIndex, int item, Deque<Integer> lane) {
+            executors.get(stageIndex).execute(() -> runStage(stageIndex, item, lane));
+        }
+
+        private void runStage(int stageIndex, int item, Deque<Integer> lane) {
+            R result;
+            try {
+                result = stages.get(stageIndex).action().run(items.get(item));
+            } catch (RuntimeException | Error e) {
+                failures[item] = e;
+                finish(item, lane);
+                return;
+            }
+            if (result == null && stageIndex + 1 < stages.size()) {
+                submit(stageIndex + 1, item, lane);
+                return;
+            }
+            results[item] = result;
+            finish(item, lane);
+        }
+
+        private void finish(int item, Deque<Integer> lane) {
+            Integer next;
+            synchronized (lane) {
+                lane.pollFirst();
+                next = lane.peekFirst();
+            }
+            if (next != null) {
+                submit(0, next, lane);
+            }
+            done.countDown();
+        }
+
+        private void shutdown() {
+            executors.forEach(ExecutorService::shutdownNow);
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<R> collect() {
+            Throwable failure = null;
+            for (Throwable candidate : failures) {
+                if (candidate == null) {
+                    continue;
+                }
+                if (failure == null) {
+                    failure = candidate;
+                } else if (failure != candidate) {
+                    failure.addSuppressed(candidate);
+                }
+            }
+            if (failure instanceof Error error) {
+                throw error;
+            }
+            if (failure != null) {
+                throw (RuntimeException) failure;
+            }
+            return (List<R>) Arrays.asList(results);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * File system fixtures shared by the harness tests.
+ */
+public final class TckFixtures {
+
+    public static final String COORDINATES = "com.example:demo:1.0.0";
+
+    private TckFixtures() {
+    }
+
+    /**
+     * Writes {@code content} to {@code file}, creating missing parent directories.
+     */
+    public static Path write(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, content);
+    }
+
+    /**
+     * Creates a minimal test project with a build script and a single test source.
+     */
+    public static Path createTestProject(Path dir) throws IOException {
+        write(dir.resolve("build.gradle"), "plugins { id 'java' }");
+        write(dir.resolve("src/test/java/DemoTest.java"), "class DemoTest {}");
+        return dir;
+    }
+
+    /**
+     * Creates a repository checkout holding metadata and a test project for {@link #COORDINATES},
+     * including build outputs that inputs are expected to ignore.
+     *
+     * @return the real path of the repository root
+     */
+    public static Path createRepository(Path repoRoot) throws IOException {
+        write(repoRoot.resolve("metadata/com.example/demo/index.json"), """
+                [
+                  {
+                    "metadata-version": "1.0.0",
+                    "tested-versions": ["1.0.0"]
+                  }
+                ]
+                """);
+        write(repoRoot.resolve("metadata/com.example/demo/1.0.0/reachability-metadata.json"), "{}");
+        write(repoRoot.resolve("metadata/com.example/demo/1.0.0/README.md"), "notes");
+        Path testDir = createTestProject(repoRoot.resolve("tests/src/com.example/demo/1.0.0"));
+        write(testDir.resolve("build/test-results/test/TEST-DemoTest.xml"), "<testsuite/>");
+        write(testDir.resolve(".gradle/file-system.probe"), "probe");
+        Files.createDirectories(repoRoot.resolve("tests/tck-build-logic"));
+        write(repoRoot.resolve("LICENSE"), "test");
+        return repoRoot.toRealPath();
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChangedCoordinatesSourceTests {
+
+    private static final Path REPO = Path.of("/repo");
+    private static final RepositoryIndex INDEX = new RepositoryIndex(REPO.resolve("metadata"), REPO.resolve("tests/src"),
+            List.of(new RepositoryIndex.ArtifactIndex("com.example", "demo", List.of(
+                    new RepositoryIndex.IndexEntry("1.0.0", null, List.of("1.0.0"), false, false, null,
+                            List.of(), List.of(), false),
+                    new RepositoryIndex.IndexEntry("2.0.0", "2.x", List.of("2.0.0"), true, false, null,
+                            List.of(), List.of(), false)
+            ), Set.of("1.0.0", "2.0.0"), Set.of("1.0.0", "2.x"))));
+
+    @Test
+    void selectsCoordinatesWhoseMetadataOrTestsChanged() {
+        assertThat(changed("metadata/com.example/demo/2.0.0/reachability-metadata.json"))
+                .containsExactly("com.example:demo:2.0.0");
+        assertThat(changed("tests/src/com.example/demo/2.x/build.gradle", "metadata/com.example/demo/1.0.0/x.json"))
+                .containsExactly("com.example:demo:1.0.0", "com.example:demo:2.0.0");
+    }
+
+    @Test
+    void otherChangesSelectNothing() {
+        assertThat(changed("README.md")).isEmpty();
+        assertThat(changed("tests/tck-build-logic/build.gradle")).isEmpty();
+    }
+
+    private static List<String> changed(String... files) {
+        return ChangedCoordinatesSource.changedCoordinates(INDEX, REPO.resolve("tests/tck-build-logic"),
+                REPO.resolve(".github/workflows"), List.of(files).stream().map(REPO::resolve).toList());
+    }
+}
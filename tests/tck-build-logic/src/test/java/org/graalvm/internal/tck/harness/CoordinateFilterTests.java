@@ -0,0 +1,125 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.graalvm.internal.tck.utils.CoordinateUtils;
+import org.gradle.api.GradleException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CoordinateFilterTests {
+
+    private static final List<RepositoryIndex.ArtifactIndex> ARTIFACTS = List.of(
+            artifact("io.netty", "netty-buffer", "4.1.100", "4.1.110"),
+            artifact("io.netty", "netty-codec", "4.1.100"),
+            artifact("org.hibernate.orm", "hibernate-core", "5.6.15", "6.2.0", "6.4.1"),
+            artifact("org.hibernate.validator", "hibernate-validator", "6.0.0", "8.0.1")
+    );
+
+    private final List<String[]> lookups = new ArrayList<>();
+
+    @Test
+    void plainFiltersKeepTheirMeaning() {
+        assertThat(resolve("")).hasSize(8);
+        assertThat(resolve("all")).hasSize(8);
+        assertThat(resolve("io.netty")).containsExactly(
+                "io.netty:netty-buffer:4.1.100", "io.netty:netty-buffer:4.1.110", "io.netty:netty-codec:4.1.100");
+        assertThat(resolve("io.netty:netty-buffer:4.1.110")).containsExactly("io.netty:netty-buffer:4.1.110");
+        assertThat(resolve("io.netty:netty-buffer:4.1.111")).isEmpty();
+    }
+
+    @Test
+    void globsMatchEveryPart() {
+        assertThat(resolve("io.netty:*")).hasSize(3);
+        assertThat(resolve("org.hibernate*:*:6.*")).containsExactly(
+                "org.hibernate.orm:hibernate-core:6.2.0",
+                "org.hibernate.orm:hibernate-core:6.4.1",
+                "org.hibernate.validator:hibernate-validator:6.0.0");
+        assertThat(resolve("*:netty-?odec")).containsExactly("io.netty:netty-codec:4.1.100");
+    }
+
+    @Test
+    void negatedTermsAreRemovedFromTheSelection() {
+        assertThat(resolve("io.netty !io.netty:netty-codec")).containsExactly(
+                "io.netty:netty-buffer:4.1.100", "io.netty:netty-buffer:4.1.110");
+        assertThat(resolve("!org.hibernate*")).hasSize(3);
+    }
+
+    @Test
+    void versionRangesCompareVersionNumbers() {
+        assertThat(resolve("org.hibernate.orm:hibernate-core:[6.0,6.4)"))
+                .containsExactly("org.hibernate.orm:hibernate-core:6.2.0");
+        assertThat(resolve("org.hibernate.orm:hibernate-core:(,6.2.0]")).containsExactly(
+                "org.hibernate.orm:hibernate-core:5.6.15", "org.hibernate.orm:hibernate-core:6.2.0");
+        assertThat(resolve("*:*:[8.0,)")).containsExactly("org.hibernate.validator:hibernate-validator:8.0.1");
+    }
+
+    @Test
+    void termsAreUnitedInIndexOrderAndLiteralGroupsAreLookedUpDirectly() {
+        assertThat(resolve("org.hibernate.orm:hibernate-core:6.2.0 io.netty:netty-codec")).containsExactly(
+                "io.netty:netty-codec:4.1.100", "org.hibernate.orm:hibernate-core:6.2.0");
+        assertThat(lookups).extracting(lookup -> lookup[0] + ":" + lookup[1])
+                .containsExactly("org.hibernate.orm:hibernate-core", "io.netty:netty-codec");
+    }
+
+    @Test
+    void shardsAreCutFromTheSelection() {
+        List<String> selected = resolve("org.hibernate* !*:*:5.*");
+        List<String> first = resolve("org.hibernate* !*:*:5.* 1/2");
+        List<String> second = resolve("2/2 org.hibernate* !*:*:5.*");
+
+        assertThat(first).isEqualTo(CoordinateUtils.computeBatchedCoordinates(selected, 1, 2));
+        assertThat(second).isEqualTo(CoordinateUtils.computeBatchedCoordinates(selected, 2, 2));
+        assertThat(CoordinateFilter.isSharded("io.netty 1/2")).isTrue();
+        assertThat(CoordinateFilter.isSharded("io.netty")).isFalse();
+    }
+
+    @Test
+    void shardsKeepTheRequestedStrictness() {
+        RepositoryIndex.ArtifactIndex shared = new RepositoryIndex.ArtifactIndex("org.example", "library", List.of(
+                new RepositoryIndex.IndexEntry("1.0", null, List.of("1.0", "1.1", "1.2"), false, false, null,
+                        List.of("org.example"), List.of(), false)), Set.of("1.0"), Set.of());
+        CoordinateFilter filter = CoordinateFilter.compile("1/1");
+
+        assertThat(filter.resolve((groupId, artifactId) -> List.of(shared), false, CoordinateUtils::computeBatchedCoordinates))
+                .containsExactly("org.example:library:1.0", "org.example:library:1.1", "org.example:library:1.2");
+        assertThat(filter.resolve((groupId, artifactId) -> List.of(shared), true, CoordinateUtils::computeBatchedCoordinates))
+                .containsExactly("org.example:library:1.0");
+    }
+
+    @Test
+    void invalidExpressionsAreRejected() {
+        assertThatThrownBy(() -> CoordinateFilter.compile("1/2 2/2")).isInstanceOf(GradleException.class);
+        assertThatThrownBy(() -> CoordinateFilter.compile("a:b:c:d")).isInstanceOf(GradleException.class);
+        assertThatThrownBy(() -> CoordinateFilter.compile("a:b:[1.0")).isInstanceOf(GradleException.class);
+    }
+
+    private List<String> resolve(String expression) {
+        return CoordinateFilter.compile(expression).resolve((groupId, artifactId) -> {
+            lookups.add(new String[]{groupId, artifactId});
+            return ARTIFACTS.stream()
+                    .filter(artifact -> groupId == null || groupId.equals(artifact.groupId()))
+                    .filter(artifact -> artifactId == null || artifactId.equals(artifact.artifactId()))
+                    .toList();
+        }, false, CoordinateUtils::computeBatchedCoordinates);
+    }
+
+    private static RepositoryIndex.ArtifactIndex artifact(String groupId, String artifactId, String... versions) {
+        List<RepositoryIndex.IndexEntry> entries = new ArrayList<>();
+        for (String version : versions) {
+            entries.add(new RepositoryIndex.IndexEntry(version, null, List.of(version), false, false, null,
+                    List.of(groupId), List.of(), false));
+        }
+        return new RepositoryIndex.ArtifactIndex(groupId, artifactId, entries, Set.of(versions), Set.of());
+    }
+}
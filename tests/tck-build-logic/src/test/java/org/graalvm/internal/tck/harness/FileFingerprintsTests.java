@@ -0,0 +1,95 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.graalvm.internal.tck.TckFixtures.createTestProject;
+import static org.graalvm.internal.tck.TckFixtures.write;
+
+class FileFingerprintsTests {
+
+    private static final Set<String> GENERATED = Set.of("build", ".gradle");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void directoryFingerprintDependsOnRelativePathsAndContentOnly() throws IOException {
+        FileFingerprints fingerprints = FileFingerprints.load(tempDir.resolve("fingerprints.bin"));
+        Path first = createTestProject(tempDir.resolve("first"));
+        Path second = createTestProject(tempDir.resolve("second"));
+        String initial = fingerprints.directory(first, GENERATED);
+        assertThat(initial).hasSize(64).isEqualTo(fingerprints.directory(second, GENERATED));
+
+        write(first.resolve("build/native/nativeTestCompile/native-tests"), "binary");
+        write(first.resolve(".gradle/file-system.probe"), "probe");
+        Files.createDirectories(first.resolve("src/main/java"));
+        assertThat(fingerprints.directory(first, GENERATED)).isEqualTo(initial);
+
+        write(first.resolve("src/test/java/DemoTest.java"), "class DemoTest { }");
+        assertThat(fingerprints.directory(first, GENERATED)).isNotEqualTo(initial);
+
+        Files.move(second.resolve("src/test/java/DemoTest.java"), second.resolve("src/test/java/OtherTest.java"));
+        assertThat(fingerprints.directory(second, GENERATED)).isNotEqualTo(initial);
+        assertThat(fingerprints.directory(tempDir.resolve("missing"), GENERATED))
+                .isEqualTo(fingerprints.directory(Files.createDirectories(tempDir.resolve("empty")), GENERATED));
+    }
+
+    @Test
+    void unchangedFilesAreNotReadAgainAfterReload() throws IOException {
+        Path cacheFile = tempDir.resolve("build/tck/file-fingerprints.bin");
+        Path file = write(tempDir.resolve("library.jar"), "content-1");
+        FileTime past = FileTime.from(Instant.now().minus(10, ChronoUnit.MINUTES));
+        Files.setLastModifiedTime(file, past);
+        FileFingerprints cold = FileFingerprints.load(cacheFile);
+        String hash = cold.file(file);
+        cold.save();
+        assertThat(cacheFile).isRegularFile();
+
+        // Same size and timestamp: the cached hash is trusted without reading the file.
+        Files.writeString(file, "content-2");
+        Files.setLastModifiedTime(file, past);
+        assertThat(FileFingerprints.load(cacheFile).file(file)).isEqualTo(hash);
+
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(5, ChronoUnit.MINUTES)));
+        assertThat(FileFingerprints.load(cacheFile).file(file)).isNotEqualTo(hash);
+    }
+
+    @Test
+    void recentlyModifiedFilesAreRehashed() throws IOException {
+        Path cacheFile = tempDir.resolve("fingerprints.bin");
+        Path file = write(tempDir.resolve("Test.java"), "class A {}");
+        FileFingerprints fingerprints = FileFingerprints.load(cacheFile);
+        String hash = fingerprints.file(file);
+
+        // Rewritten within the same timestamp tick: only a racy-window entry would hide the change.
+        FileTime modified = Files.getLastModifiedTime(file);
+        Files.writeString(file, "class B {}");
+        Files.setLastModifiedTime(file, modified);
+        assertThat(fingerprints.file(file)).isNotEqualTo(hash);
+    }
+
+    @Test
+    void corruptCacheFileStartsEmpty() throws IOException {
+        Path cacheFile = write(tempDir.resolve("fingerprints.bin"), "not a cache");
+        Path file = write(tempDir.resolve("Test.java"), "class A {}");
+
+        assertThat(FileFingerprints.load(cacheFile).file(file))
+                .isEqualTo(FileFingerprints.load(tempDir.resolve("other.bin")).file(file));
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.gradle.api.GradleException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GitCatFileBatchTests {
+
+    @Test
+    void parsesBlobsAndMissingObjectsInRequestOrder() {
+        String output = """
+                1111111111111111111111111111111111111111 blob 4
+                [1]
+
+                base:added.json missing
+                2222222222222222222222222222222222222222 blob 11
+                [1,
+                 "é"]
+
+                """;
+
+        var blobs = GitCatFileBatch.parse(
+                List.of("base:index.json", "base:added.json", "head:index.json"),
+                output.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(blobs).containsExactly(
+                entry("base:index.json", "[1]\n"),
+                entry("base:added.json", null),
+                entry("head:index.json", "[1,\n \"é\"]\n"));
+    }
+
+    @Test
+    void rejectsTruncatedOutput() {
+        assertThatThrownBy(() -> GitCatFileBatch.parse(
+                List.of("head:index.json"),
+                "1111111111111111111111111111111111111111 blob 40\n[1]\n".getBytes(StandardCharsets.UTF_8)))
+                .isInstanceOf(GradleException.class);
+    }
+
+    private static Map.Entry<String, String> entry(String key, String value) {
+        return new AbstractMap.SimpleEntry<>(key, value);
+    }
+}
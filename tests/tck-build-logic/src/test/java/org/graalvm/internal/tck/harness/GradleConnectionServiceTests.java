@@ -0,0 +1,42 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.gradle.api.GradleException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GradleConnectionServiceTests {
+
+    @Test
+    void execIsTheDefaultExecutor() {
+        assertThat(GradleConnectionService.isSelected(null)).isFalse();
+        assertThat(GradleConnectionService.isSelected("")).isFalse();
+        assertThat(GradleConnectionService.isSelected("exec")).isFalse();
+        assertThat(GradleConnectionService.isSelected("toolingApi")).isTrue();
+    }
+
+    @Test
+    void rejectsUnknownExecutors() {
+        assertThatThrownBy(() -> GradleConnectionService.isSelected("tooling"))
+                .isInstanceOf(GradleException.class)
+                .hasMessageContaining("'tooling'");
+    }
+
+    @Test
+    void splitsGradlewCommandLineIntoTasksAndArguments() {
+        GradleConnectionService.Invocation invocation = GradleConnectionService.Invocation.of(List.of(
+                "clean", "javaTest", "-Pcoordinates=org.example:library:1.0.0", "--stacktrace", "nativeTest"));
+
+        assertThat(invocation.tasks()).containsExactly("clean", "javaTest", "nativeTest");
+        assertThat(invocation.arguments()).containsExactly("-Pcoordinates=org.example:library:1.0.0", "--stacktrace");
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.graalvm.internal.tck.harness.MetadataReverseIndex.Match;
+import org.graalvm.internal.tck.harness.MetadataReverseIndex.MatchKind;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetadataReverseIndexTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void findsRegisteredTypesTypeReachedAndAllowedPackages() throws IOException {
+        RepositoryIndex repositoryIndex = writeFixture();
+
+        MetadataReverseIndex index = MetadataReverseIndex.build(repositoryIndex);
+
+        assertThat(index.getCoordinates()).containsExactly("com.example:demo:1.0.0");
+        assertThat(index.findClass("com.example.demo.Bar")).containsExactly(
+                new Match("com.example:demo:1.0.0", MatchKind.TYPE, "com.example.demo.Bar"),
+                new Match("com.example:demo:1.0.0", MatchKind.ALLOWED_PACKAGE, "com.example"));
+        assertThat(index.findClass("com.example.demo.Foo")).containsExactly(
+                new Match("com.example:demo:1.0.0", MatchKind.TYPE_REACHED, "com.example.demo.Foo"),
+                new Match("com.example:demo:1.0.0", MatchKind.ALLOWED_PACKAGE, "com.example"));
+        assertThat(index.findClass("java.io.Closeable")).containsExactly(
+                new Match("com.example:demo:1.0.0", MatchKind.TYPE, "java.io.Closeable"));
+        assertThat(index.findPackage("com.example.demo")).containsExactly(
+                new Match("com.example:demo:1.0.0", MatchKind.PACKAGE, "com.example.demo"),
+                new Match("com.example:demo:1.0.0", MatchKind.ALLOWED_PACKAGE, "com.example"));
+        assertThat(index.findPackage("com.examples")).isEmpty();
+    }
+
+    @Test
+    void cachedIndexAnswersTheSameQueries() throws IOException {
+        RepositoryIndex repositoryIndex = writeFixture();
+        Path cacheFile = tempDir.resolve("build/tck/metadata-reverse-index.bin");
+
+        MetadataReverseIndex cold = MetadataReverseIndex.load(repositoryIndex, cacheFile);
+        assertThat(cacheFile).isRegularFile();
+        MetadataReverseIndex warm = MetadataReverseIndex.load(repositoryIndex, cacheFile);
+
+        assertThat(warm.findClass("com.example.demo.Bar")).isEqualTo(cold.findClass("com.example.demo.Bar"));
+        assertThat(warm.findPackage("com.example.demo")).isEqualTo(cold.findPackage("com.example.demo"));
+    }
+
+    private RepositoryIndex writeFixture() throws IOException {
+        Path metadataRoot = tempDir.resolve("metadata");
+        Path artifactDir = metadataRoot.resolve("com.example/demo");
+        Files.createDirectories(artifactDir.resolve("1.0.0"));
+        Files.writeString(artifactDir.resolve("index.json"), """
+                [
+                  {
+                    "metadata-version": "1.0.0",
+                    "tested-versions": ["1.0.0"],
+                    "allowed-packages": ["com.example"]
+                  }
+                ]
+                """);
+        Path metadataFile = artifactDir.resolve("1.0.0/reachability-metadata.json");
+        Files.writeString(metadataFile, """
+                {
+                  "reflection": [
+                    {
+                      "condition": { "typeReached": "com.example.demo.Foo" },
+                      "type": "com.example.demo.Bar"
+                    },
+                    {
+                      "condition": { "typeReached": "com.example.demo.Foo" },
+                      "type": { "proxy": ["java.io.Closeable"] }
+                    }
+                  ],
+                  "resources": [
+                    {
+                      "condition": { "typeReached": "com.example.demo.Foo" },
+                      "glob": "demo.properties"
+                    }
+                  ]
+                }
+                """);
+        // Files modified within the racy window are never cached, so age the fixture.
+        Files.setLastModifiedTime(metadataFile, FileTime.from(Instant.now().minus(10, ChronoUnit.MINUTES)));
+        return RepositoryIndex.load(metadataRoot, tempDir.resolve("tests/src"));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.graalvm.internal.tck.harness.MetadataVersionResolver.Kind;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MetadataVersionResolverTests {
+
+    private static final RepositoryIndex.ArtifactIndex ARTIFACT = new RepositoryIndex.ArtifactIndex(
+            "com.example",
+            "demo",
+            List.of(
+                    entry("2.0.0", List.of("2.0.0", "2.1.0"), true, null),
+                    entry("1.5.0", List.of("1.5.0", "1.6.0"), false, null),
+                    entry("1.0.0", List.of("1.0.0"), false, "1\\.[0-4]\\..*"),
+                    entry("0.9.0", List.of("0.9.0"), false, null)
+            ),
+            // 0.9.0 has no metadata directory and must never be selected
+            Set.of("2.0.0", "1.5.0", "1.0.0"),
+            Set.of()
+    );
+
+    private final MetadataVersionResolver resolver = MetadataVersionResolver.of(ARTIFACT);
+
+    @Test
+    void testedVersionsResolveToTheirEntry() {
+        assertResolves("1.6.0", "1.5.0", Kind.TESTED);
+        assertResolves("2.1.0", "2.0.0", Kind.TESTED);
+    }
+
+    @Test
+    void defaultForPatternsWinOverClosestVersion() {
+        assertResolves("1.4.7", "1.0.0", Kind.DEFAULT_FOR);
+    }
+
+    @Test
+    void newerVersionsResolveToLatestEntry() {
+        assertResolves("3.0.0", "2.0.0", Kind.LATEST);
+    }
+
+    @Test
+    void untestedVersionsResolveToClosestLowerTestedVersion() {
+        assertResolves("1.7.3", "1.5.0", Kind.CLOSEST);
+        assertResolves("2.0.5", "2.0.0", Kind.CLOSEST);
+        assertResolves("0.9.0", "1.0.0", Kind.CLOSEST);
+    }
+
+    @Test
+    void latestEntryFallsBackToTheHighestMetadataVersion() {
+        assertThat(ARTIFACT.latestEntry()).hasValue(ARTIFACT.entries().get(0));
+        RepositoryIndex.ArtifactIndex unmarked = new RepositoryIndex.ArtifactIndex("com.example", "demo", List.of(
+                entry("1.10.0", List.of("1.10.0"), false, null),
+                entry("1.9.0", List.of("1.9.0"), false, null)
+        ), Set.of("1.10.0", "1.9.0"), Set.of());
+        assertThat(unmarked.latestEntry()).hasValue(unmarked.entries().get(0));
+    }
+
+    private void assertResolves(String version, String metadataVersion, Kind kind) {
+        assertThat(resolver.resolve(version)).hasValueSatisfying(resolution -> {
+            assertThat(resolution.entry().metadataVersion()).isEqualTo(metadataVersion);
+            assertThat(resolution.kind()).isEqualTo(kind);
+        });
+    }
+
+    private static RepositoryIndex.IndexEntry entry(String metadataVersion, List<String> testedVersions, boolean latest,
+                                                    String defaultFor) {
+        return new RepositoryIndex.IndexEntry(metadataVersion, null, testedVersions, latest, false, defaultFor,
+                List.of("com.example"), List.of(), false);
+    }
+}
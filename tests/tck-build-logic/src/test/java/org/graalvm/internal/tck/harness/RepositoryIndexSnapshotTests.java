@@ -0,0 +1,79 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RepositoryIndexSnapshotTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void warmLoadMatchesJsonIndexAndPicksUpChangedIndexFiles() throws IOException {
+        Path metadataRoot = tempDir.resolve("metadata");
+        Path testRoot = tempDir.resolve("tests/src");
+        Path snapshotFile = tempDir.resolve("build/tck/repository-index.bin");
+        Files.createDirectories(metadataRoot.resolve("com.example/demo/1.0.0"));
+        Files.createDirectories(testRoot.resolve("com.example/demo/1.0.0"));
+        writeIndex(metadataRoot, "[\"1.0.0\"]", 10);
+
+        RepositoryIndex cold = RepositoryIndexSnapshot.load(metadataRoot, testRoot, snapshotFile);
+        assertThat(snapshotFile).isRegularFile();
+        assertThat(cold.getArtifacts()).isEqualTo(RepositoryIndex.load(metadataRoot, testRoot).getArtifacts());
+
+        RepositoryIndex warm = RepositoryIndexSnapshot.load(metadataRoot, testRoot, snapshotFile);
+        assertThat(warm.getArtifacts()).isEqualTo(cold.getArtifacts());
+
+        writeIndex(metadataRoot, "[\"1.0.0\", \"1.0.1\"]", 5);
+        RepositoryIndex updated = RepositoryIndexSnapshot.load(metadataRoot, testRoot, snapshotFile);
+        assertThat(updated.findArtifact("com.example", "demo").orElseThrow()
+                .entryForTestedVersion("1.0.1")).isPresent();
+    }
+
+    @Test
+    void corruptSnapshotIsRebuilt() throws IOException {
+        Path metadataRoot = tempDir.resolve("metadata");
+        Path testRoot = tempDir.resolve("tests/src");
+        Path snapshotFile = tempDir.resolve("build/tck/repository-index.bin");
+        Files.createDirectories(metadataRoot.resolve("com.example/demo/1.0.0"));
+        writeIndex(metadataRoot, "[\"1.0.0\"]", 10);
+        Files.createDirectories(snapshotFile.getParent());
+        Files.writeString(snapshotFile, "not a snapshot");
+
+        RepositoryIndex index = RepositoryIndexSnapshot.load(metadataRoot, testRoot, snapshotFile);
+
+        assertThat(index.getArtifacts()).isEqualTo(RepositoryIndex.load(metadataRoot, testRoot).getArtifacts());
+    }
+
+    private static void writeIndex(Path metadataRoot, String testedVersions, int minutesAgo) throws IOException {
+        Path artifactDir = metadataRoot.resolve("com.example/demo");
+        Path indexFile = artifactDir.resolve("index.json");
+        Files.writeString(indexFile, """
+                [
+                  {
+                    "metadata-version": "1.0.0",
+                    "tested-versions": %s
+                  }
+                ]
+                """.formatted(testedVersions));
+        // Timestamps inside the racy window are never trusted, so age them explicitly.
+        FileTime past = FileTime.from(Instant.now().minus(minutesAgo, ChronoUnit.MINUTES));
+        Files.setLastModifiedTime(indexFile, past);
+        Files.setLastModifiedTime(artifactDir, past);
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RepositoryIndexWatcherTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void reportsChangesToIndexFilesAndVersionDirectories() throws Exception {
+        Path artifactDir = Files.createDirectories(tempDir.resolve("metadata/com.example/demo"));
+        Files.writeString(artifactDir.resolve("index.json"), "[]");
+
+        try (RepositoryIndexWatcher watcher = RepositoryIndexWatcher.start(tempDir.resolve("metadata"))) {
+            assertThat(watcher.isWatching()).isTrue();
+            assertThat(watcher.pollChanged()).isFalse();
+
+            Files.writeString(artifactDir.resolve("index.json"), "[ ]");
+            assertThat(awaitChange(watcher)).isTrue();
+            assertThat(watcher.pollChanged()).isFalse();
+
+            // Directories created later are watched as well.
+            Path newArtifact = Files.createDirectories(tempDir.resolve("metadata/org.example/other"));
+            assertThat(awaitChange(watcher)).isTrue();
+            Files.createDirectory(newArtifact.resolve("1.0.0"));
+            assertThat(awaitChange(watcher)).isTrue();
+        }
+    }
+
+    @Test
+    void closedWatcherAlwaysReportsChanges() {
+        RepositoryIndexWatcher watcher = RepositoryIndexWatcher.start(tempDir);
+        watcher.close();
+
+        assertThat(watcher.pollChanged()).isTrue();
+    }
+
+    private static boolean awaitChange(RepositoryIndexWatcher watcher) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            if (watcher.pollChanged()) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TckDaemonTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void servesCommandsUntilStopped() throws Exception {
+        Path socket = tempDir.resolve("daemon.sock");
+        AtomicInteger refreshes = new AtomicInteger();
+        TckDaemon daemon = new TckDaemon(socket, Map.of(
+                "listCoordinates", (arguments, output) -> {
+                    output.println(arguments.get("coordinates"));
+                    output.githubOutput("coordinates", arguments.get("coordinates"));
+                },
+                "fail", (arguments, output) -> {
+                    throw new IllegalStateException("broken");
+                }),
+                Duration.ofMinutes(1), refreshes::incrementAndGet, line -> {
+        });
+        CompletableFuture<Void> served = CompletableFuture.runAsync(() -> {
+            try {
+                daemon.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        awaitSocket(socket);
+
+        assertThat(request(socket, "ping")).containsExactly("out pong", "exit 0");
+        assertThat(request(socket, "listCoordinates\tcoordinates=io.netty:* !io.netty:netty-codec")).containsExactly(
+                "out io.netty:* !io.netty:netty-codec",
+                "github-output coordinates=io.netty:* !io.netty:netty-codec",
+                "exit 0");
+        assertThat(request(socket, "fail")).containsExactly("error broken", "exit 1");
+        assertThat(request(socket, "unknown")).last().isEqualTo("exit 1");
+        assertThat(refreshes).hasValue(2);
+
+        assertThat(request(socket, "stop")).last().isEqualTo("exit 0");
+        served.get(10, TimeUnit.SECONDS);
+        assertThat(socket).doesNotExist();
+    }
+
+    @Test
+    void stopsWhenIdle() throws Exception {
+        TckDaemon daemon = new TckDaemon(tempDir.resolve("daemon.sock"), Map.of(), Duration.ofMillis(100), () -> {
+        }, line -> {
+        });
+
+        daemon.serve();
+
+        assertThat(tempDir.resolve("daemon.sock")).doesNotExist();
+    }
+
+    private static List<String> request(Path socket, String line) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            channel.write(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            return reader.lines().toList();
+        }
+    }
+
+    private static void awaitSocket(Path socket) throws InterruptedException {
+        // The socket file appears before the daemon listens, so wait for a connection to succeed.
+        for (int i = 0; i < 200; i++) {
+            if (Files.exists(socket)) {
+                try (SocketChannel ignored = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+                    return;
+                } catch (IOException notYetListening) {
+                    // retry
+                }
+            }
+            Thread.sleep(25);
+        }
+    }
+}
@@ -7,6 +7,7 @@
 package org.graalvm.internal.tck.harness;
 
 import org.gradle.api.Project;
+import org.gradle.api.provider.Provider;
 import org.gradle.testfixtures.ProjectBuilder;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -17,8 +18,10 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class TckExtensionTests {
 
@@ -79,6 +82,33 @@ class TckExtensionTests {
                 .isEmpty();
     }
 
+    @Test
+    void matchingCoordinatesProviderResolvesFilterWhenRead() throws IOException {
+        TckExtension extension = createExtension(
+                """
+                [
+                  {
+                    "metadata-version": "1.0.0",
+                    "tested-versions": [
+                      "1.0.0",
+                      "1.0.1"
+                    ]
+                  }
+                ]
+                """
+        );
+        AtomicReference<String> filter = new AtomicReference<>("com.example:demo:1.0.1");
+        Provider<List<String>> coordinates = extension.matchingCoordinates(
+                extension.getProviders().provider(filter::get), false);
+        Provider<List<String>> strictCoordinates = extension.matchingCoordinates(
+                extension.getProviders().provider(filter::get), true);
+
+        filter.set("1/1");
+
+        assertThat(coordinates.get()).containsExactly("com.example:demo:1.0.0", "com.example:demo:1.0.1");
+        assertThat(strictCoordinates.get()).containsExactly("com.example:demo:1.0.0");
+    }
+
     @Test
     void getMatchingCoordinatesSkipsNotForNativeImageMarker() throws IOException {
         TckExtension extension = createExtension(
@@ -121,6 +151,73 @@ class TckExtensionTests {
                 .isEqualTo(tempDir.resolve("tests/src/com.example/demo/0.9.0").toRealPath());
     }
 
+    @Test
+    void resolveCoordinateServesIndexEntryDataFromRepositoryIndex() throws IOException {
+        TckExtension extension = createExtension(
+                """
+                [
+                  {
+                    "latest": true,
+                    "override": true,
+                    "allowed-packages": [
+                      "com.example"
+                    ],
+                    "requires": [
+                      "com.example:base"
+                    ],
+                    "metadata-version": "1.0.0",
+                    "test-version": "0.9.0",
+                    "tested-versions": [
+                      "1.0.0",
+                      "1.0.1"
+                    ]
+                  }
+                ]
+                """
+        );
+
+        RepositoryIndex.ResolvedCoordinate resolved = extension.resolveCoordinate("com.example:demo:1.0.1");
+
+        assertThat(resolved.metadataDir()).isEqualTo(extension.getMetadataDir("com.example:demo:1.0.1"));
+        assertThat(resolved.testDir()).isEqualTo(extension.getTestDir("com.example:demo:1.0.1"));
+        assertThat(resolved.override()).isTrue();
+        assertThat(resolved.allowedPackages()).containsExactly("com.example");
+        assertThat(resolved.requires()).containsExactly("com.example:base");
+        assertThat(extension.getRepositoryIndexService().get().getIndex().getArtifacts())
+                .extracting(RepositoryIndex.ArtifactIndex::key)
+                .containsExactly("com.example:demo");
+    }
+
+    @Test
+    void getMetadataDirWithClosestMatchResolvesUntestedVersions() throws IOException {
+        TckExtension extension = createExtension(
+                """
+                [
+                  {
+                    "latest": true,
+                    "metadata-version": "1.0.0",
+                    "tested-versions": [
+                      "1.0.0"
+                    ]
+                  },
+                  {
+                    "metadata-version": "0.5.0",
+                    "tested-versions": [
+                      "0.5.0"
+                    ]
+                  }
+                ]
+                """
+        );
+
+        Path metadataDir = tempDir.resolve("metadata/com.example/demo/1.0.0").toRealPath();
+        assertThat(extension.getMetadataDir("com.example:demo:1.2.0", true)).isEqualTo(metadataDir);
+        // The entry without a metadata directory is never picked by a closest match.
+        assertThat(extension.getMetadataDir("com.example:demo:0.5.0", true)).isEqualTo(metadataDir);
+        assertThatThrownBy(() -> extension.getMetadataDir("com.example:demo:0.5.0"))
+                .hasMessageContaining("maps version 0.5.0 to missing dir");
+    }
+
     @Test
     void testedVersionBatchesSplitsVersionsIntoConfiguredBatchSize() throws IOException {
         List<String> testedVersions = new ArrayList<>();
@@ -0,0 +1,104 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness.tasks;
+
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.graalvm.internal.tck.harness.TckExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.graalvm.internal.tck.TckFixtures.COORDINATES;
+import static org.graalvm.internal.tck.TckFixtures.createRepository;
+import static org.graalvm.internal.tck.TckFixtures.write;
+
+class AbstractSubprojectTaskTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void inputsAreRelativeToTheRepositoryAndSkipGeneratedDirectories() throws IOException {
+        Path repoRoot = createRepository(tempDir.resolve("checkout"));
+        SubprojectTask task = createTask(repoRoot);
+
+        Map<String, String> initial = task.getInputFingerprints();
+
+        assertThat(task.getNormalizedCommand())
+                .containsExactly("gradlew", "nativeTest", "-PmetadataDir=metadata/com.example/demo/1.0.0");
+
+        Path testDir = repoRoot.resolve("tests/src/com.example/demo/1.0.0");
+        write(testDir.resolve("build/classes/java/test/DemoTest.class"), "bytecode");
+        write(testDir.resolve(".gradle/8.14/checksums/checksums.lock"), "lock");
+        assertThat(createTask(repoRoot).getInputFingerprints()).isEqualTo(initial);
+
+        write(testDir.resolve("src/test/java/DemoTest.java"), "class DemoTest { void test() {} }");
+        Map<String, String> changed = createTask(repoRoot).getInputFingerprints();
+        assertThat(changed.get("metadata")).isEqualTo(initial.get("metadata"));
+        assertThat(changed.get("tests")).isNotEqualTo(initial.get("tests"));
+    }
+
+    @Test
+    void inputFingerprintsFollowContentAcrossCheckouts() throws IOException {
+        Path first = createRepository(tempDir.resolve("first"));
+        Path second = createRepository(tempDir.resolve("second"));
+        Map<String, String> initial = createTask(first).getInputFingerprints();
+
+        assertThat(initial).containsOnlyKeys("metadata", "tests");
+        assertThat(createTask(second).getInputFingerprints()).isEqualTo(initial);
+
+        write(first.resolve("tests/src/com.example/demo/1.0.0/build/native/native-tests"), "binary");
+        assertThat(createTask(first).getInputFingerprints()).isEqualTo(initial);
+
+        write(first.resolve("metadata/com.example/demo/1.0.0/reachability-metadata.json"), "{\"reflection\": []}");
+        Map<String, String> changed = createTask(first).getInputFingerprints();
+        assertThat(changed.get("tests")).isEqualTo(initial.get("tests"));
+        assertThat(changed.get("metadata")).isNotEqualTo(initial.get("metadata"));
+    }
+
+    @Test
+    void outputFileDoesNotDependOnTheCheckoutLocation() throws IOException {
+        Path first = createRepository(tempDir.resolve("first"));
+        Path second = createRepository(tempDir.resolve("second"));
+
+        Path firstOutput = createTask(first).getOutputFile().get().getAsFile().toPath();
+        Path secondOutput = createTask(second).getOutputFile().get().getAsFile().toPath();
+
+        assertThat(first.relativize(firstOutput)).isEqualTo(second.relativize(secondOutput));
+        assertThat(first.relativize(firstOutput).toString()).startsWith("build/tests/" + COORDINATES + "/");
+    }
+
+    private static SubprojectTask createTask(Path repoRoot) {
+        Project project = ProjectBuilder.builder()
+                .withProjectDir(repoRoot.toFile())
+                .build();
+        project.getExtensions().create("tck", TckExtension.class, project);
+        return project.getTasks().create("nativeTestDemo", SubprojectTask.class, COORDINATES);
+    }
+
+    abstract static class SubprojectTask extends AbstractSubprojectTask {
+
+        @Inject
+        public SubprojectTask(String coordinates) {
+            super(coordinates);
+        }
+
+        @Override
+        public List<String> getCommand() {
+            Path repoRoot = tckExtension.getRepoRoot().get().getAsFile().toPath().toAbsolutePath();
+            return List.of(repoRoot.resolve("gradlew").toString(), "nativeTest",
+                    "-PmetadataDir=" + repoRoot.resolve("metadata/com.example/demo/1.0.0"));
+        }
+    }
+}
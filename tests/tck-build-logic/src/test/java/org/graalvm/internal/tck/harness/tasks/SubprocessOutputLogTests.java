@@ -0,0 +1,96 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.harness.tasks;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SubprocessOutputLogTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writesStandardOutAndErrSections() throws IOException {
+        Path file = tempDir.resolve("tests/g:a:1/hash.out");
+        List<String> lines = new ArrayList<>();
+
+        try (SubprocessOutputLog log = SubprocessOutputLog.open(file, SubprocessOutputLog.Options.DEFAULT, lines::add)) {
+            log.stdout().write("compiling\nPeak RSS: 1.2GB\n".getBytes(StandardCharsets.UTF_8));
+            log.stderr().write("warning".getBytes(StandardCharsets.UTF_8));
+            log.stdout().write("done".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(Files.readString(file)).isEqualTo("Standard out\n-----\ncompiling\nPeak RSS: 1.2GB\ndone"
+                + "\n-----\nStandard err\n----\nwarning\n----\n");
+        assertThat(lines).containsExactly("compiling", "Peak RSS: 1.2GB", "done");
+        assertThat(file.resolveSibling("hash.out.stderr.tmp")).doesNotExist();
+    }
+
+    @Test
+    void keepsOnlyABoundedTailInMemory() throws IOException {
+        Path file = tempDir.resolve("hash.out");
+        try (SubprocessOutputLog log = SubprocessOutputLog.open(file, SubprocessOutputLog.Options.DEFAULT, null)) {
+            for (int i = 0; i < 100_000; i++) {
+                log.stdout().write(("line " + i + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            log.stderr().write("BUILD FAILED\n".getBytes(StandardCharsets.UTF_8));
+
+            assertThat(log.stdoutTail()).startsWith("line ").endsWith("line 99999\n").hasSizeLessThan(16 * 1024);
+            assertThat(log.stderrTail()).isEqualTo("BUILD FAILED\n");
+        }
+        assertThat(Files.readString(file)).contains("line 0\n", "line 99999\n");
+    }
+
+    @Test
+    void rotatesIntoGzipSegmentsAndDropsTheOldest() throws IOException {
+        Path file = tempDir.resolve("hash.out");
+        Files.writeString(tempDir.resolve("hash.out.7.gz"), "from an earlier run");
+        SubprocessOutputLog.Options options = new SubprocessOutputLog.Options(100, 2, true);
+
+        try (SubprocessOutputLog log = SubprocessOutputLog.open(file, options, null)) {
+            for (int i = 0; i < 5; i++) {
+                log.stdout().write(String.valueOf(i).repeat(100).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        assertThat(tempDir.resolve("hash.out.7.gz")).doesNotExist();
+        assertThat(tempDir.resolve("hash.out.3.gz")).doesNotExist();
+        assertThat(gunzip(tempDir.resolve("hash.out.2.gz"))).startsWith("2").endsWith("3");
+        assertThat(gunzip(tempDir.resolve("hash.out.1.gz"))).startsWith("3").endsWith("4");
+        assertThat(Files.readString(file)).startsWith("4").endsWith("\n----\n");
+    }
+
+    @Test
+    void readsOptionsFromProperties() {
+        SubprocessOutputLog.Options options = SubprocessOutputLog.Options.from(Map.of(
+                SubprocessOutputLog.Options.MAX_SIZE_PROPERTY, "64m",
+                SubprocessOutputLog.Options.MAX_FILES_PROPERTY, "1",
+                SubprocessOutputLog.Options.GZIP_PROPERTY, "true")::get);
+
+        assertThat(options).isEqualTo(new SubprocessOutputLog.Options(64L << 20, 1, true));
+        assertThat(SubprocessOutputLog.Options.from(name -> null)).isEqualTo(SubprocessOutputLog.Options.DEFAULT);
+    }
+
+    private static String gunzip(Path file) throws IOException {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
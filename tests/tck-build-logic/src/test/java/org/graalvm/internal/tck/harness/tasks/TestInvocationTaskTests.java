@@ -9,15 +9,15 @@ package org.graalvm.internal.tck.harness.tasks;
 import org.gradle.api.Project;
 import org.gradle.testfixtures.ProjectBuilder;
 import org.graalvm.internal.tck.harness.TckExtension;
-import org.graalvm.internal.tck.utils.BaseLayerUtils;
+import org.graalvm.internal.tck.utils.DedicatedLayerCache;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -53,19 +53,37 @@ class TestInvocationTaskTests {
     }
 
     @Test
-    void dedicatedLayerCommandUsesCoordinateSpecificLayer() throws IOException {
+    void sharedLayerCommandStacksOnTestRuntimeLayerUnlessDisabled() throws IOException {
+        Project project = createProject();
+        SharedLayerTestInvocationTask task = project.getTasks().create(
+                "sharedLayerTest", SharedLayerTestInvocationTask.class);
+
+        assertThat(task.commandFor("com.example:demo:1.0.0"))
+                .anyMatch(argument -> argument.startsWith("-Ptck.baseLayerFile="))
+                .contains("-Ptck.testRuntimeLayerFile=" + tempDir.resolve(
+                        "build/native-test-runtime-layer/test-runtime-layer.nil").toAbsolutePath());
+
+        project.getExtensions().getExtraProperties().set("tck.testRuntimeLayer", "false");
+        assertThat(task.commandFor("com.example:demo:1.0.0"))
+                .noneMatch(argument -> argument.startsWith("-Ptck.testRuntimeLayerFile="));
+    }
+
+    @Test
+    void dedicatedLayerCommandPassesTheLayerCache() throws IOException {
         Project project = createProject();
         Path layerRoot = tempDir.resolve("library-layers");
         project.getExtensions().getExtraProperties().set("tck.dedicatedLayerRoot", layerRoot.toString());
+        project.getExtensions().getExtraProperties().set("tck.dedicatedLayerCache.maxSize", "8g");
         DedicatedLayerTestInvocationTask task = project.getTasks().create(
                 "dedicatedLayerTest", DedicatedLayerTestInvocationTask.class);
 
         List<String> command = task.commandFor("com.example:demo:1.0.0");
 
         assertThat(command).contains("-Ptck.dedicatedLayer=true");
-        assertThat(command).anyMatch(argument -> argument.startsWith(
-                "-Ptck.baseLayerFile=" + layerRoot.toAbsolutePath()));
-        assertThat(command).anyMatch(argument -> argument.endsWith("/libDedicated.nil"));
+        assertThat(command).contains("-Ptck.dedicatedLayerRoot=" + layerRoot.toAbsolutePath());
+        assertThat(command).contains("-Ptck.dedicatedLayerCache.maxSize=8g");
+        assertThat(command).noneMatch(argument -> argument.startsWith("-Ptck.baseLayerFile="));
+        assertThat(command).noneMatch(argument -> argument.startsWith("-Ptck.testRuntimeLayerFile="));
     }
 
     @Test
@@ -76,14 +94,19 @@ class TestInvocationTaskTests {
         project.getExtensions().getExtraProperties().set("tck.layered.deleteDedicatedLayerAfterTest", "true");
         DedicatedLayerTestInvocationTask task = project.getTasks().create(
                 "dedicatedLayerTest", DedicatedLayerTestInvocationTask.class);
-        File baseLayerFile = BaseLayerUtils.resolveDedicatedLayerFile(
-                project, "com.example:demo:1.0.0");
-        Files.createDirectories(baseLayerFile.toPath().getParent());
-        Files.writeString(baseLayerFile.toPath(), "layer");
+        Path demoLayer = publish(layerRoot, "demo", "com.example:demo:1.0.0");
+        Path otherLayer = publish(layerRoot, "other", "com.example:other:1.0.0");
 
         task.afterEach("com.example:demo:1.0.0");
 
-        assertThat(baseLayerFile.getParentFile()).doesNotExist();
+        assertThat(demoLayer.toFile()).doesNotExist();
+        assertThat(Files.isDirectory(otherLayer)).isTrue();
+    }
+
+    private static Path publish(Path layerRoot, String key, String coordinates) throws IOException {
+        Path staging = DedicatedLayerCache.newStagingDirectory(layerRoot);
+        Files.writeString(staging.resolve(DedicatedLayerCache.LAYER_FILE_NAME), "layer");
+        return DedicatedLayerCache.publish(layerRoot, key, staging, Map.of(), coordinates).directory();
     }
 
     private Project createProject() throws IOException {
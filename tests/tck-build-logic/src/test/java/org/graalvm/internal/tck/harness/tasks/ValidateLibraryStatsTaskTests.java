@@ -643,6 +643,68 @@ class ValidateLibraryStatsTaskTests {
         assertThatCode(task::validate).doesNotThrowAnyException();
     }
 
+    @Test
+    void validateAcceptsNativeBuildStatsWithoutPhaseTimes() throws IOException {
+        Project project = createProjectSkeleton();
+        createMetadataVersion("com.example", "demo", "1.0.0");
+        writeStatsFile("com.example", "demo", "1.0.0", statsWithNativeBuild("""
+                {
+                  "imageBytes": 31457280,
+                  "peakRssBytes": 2845415424,
+                  "reachableMethods": 61234,
+                  "reachableTypes": 12045,
+                  "reflectionFields": 120,
+                  "reflectionMethods": 845,
+                  "reflectionTypes": 1320
+                }"""));
+        Path statsFile = LibraryStatsSupport.repositoryStatsFile(tempDir.resolve("stats"), "com.example", "demo", "1.0.0");
+        LibraryStatsSupport.writeMetadataVersionStats(statsFile, LibraryStatsSupport.loadMetadataVersionStats(statsFile));
+
+        TestValidateLibraryStatsTask task = project.getTasks().register("validateLibraryStats", TestValidateLibraryStatsTask.class).get();
+        assertThatCode(task::validate).doesNotThrowAnyException();
+    }
+
+    @Test
+    void validateRejectsEmptyNativeBuildStats() throws IOException {
+        Project project = createProjectSkeleton();
+        createMetadataVersion("com.example", "demo", "1.0.0");
+        writeStatsFile("com.example", "demo", "1.0.0", statsWithNativeBuild("""
+                {
+                  "imageBytes": 0,
+                  "peakRssBytes": 2845415424,
+                  "reachableMethods": 61234,
+                  "reachableTypes": 12045,
+                  "reflectionFields": 120,
+                  "reflectionMethods": 845,
+                  "reflectionTypes": 1320
+                }"""));
+        Path statsFile = LibraryStatsSupport.repositoryStatsFile(tempDir.resolve("stats"), "com.example", "demo", "1.0.0");
+        LibraryStatsSupport.writeMetadataVersionStats(statsFile, LibraryStatsSupport.loadMetadataVersionStats(statsFile));
+
+        TestValidateLibraryStatsTask task = project.getTasks().register("validateLibraryStats", TestValidateLibraryStatsTask.class).get();
+        assertThatThrownBy(task::validate)
+                .hasMessageContaining("Empty native image at com.example:demo:1.0.0:1.0.0:nativeBuild");
+    }
+
+    private static String statsWithNativeBuild(String nativeBuild) {
+        return """
+                {
+                  "versions": [
+                    {
+                      "dynamicAccess": "N/A",
+                      "libraryCoverage": {
+                        "instruction": "N/A",
+                        "line": "N/A",
+                        "method": "N/A"
+                      },
+                      "nativeBuild": %s,
+                      "version": "1.0.0"
+                    }
+                  ]
+                }
+                """.formatted(nativeBuild);
+    }
+
     private Project createProjectSkeleton() throws IOException {
         Files.createDirectories(tempDir.resolve("metadata"));
         Files.createDirectories(tempDir.resolve("tests"));
@@ -650,9 +712,9 @@ class ValidateLibraryStatsTaskTests {
         Files.createDirectories(tempDir.resolve("stats/schemas"));
         Files.writeString(tempDir.resolve("LICENSE"), "test", StandardCharsets.UTF_8);
         Files.writeString(
-                tempDir.resolve("stats/schemas/library-stats-schema-v1.0.2.json"),
+                tempDir.resolve("stats/schemas/library-stats-schema-v1.1.0.json"),
                 Files.readString(
-                        locateRepoFile("stats/schemas/library-stats-schema-v1.0.2.json"),
+                        locateRepoFile("stats/schemas/library-stats-schema-v1.1.0.json"),
                         StandardCharsets.UTF_8
                 ),
                 StandardCharsets.UTF_8
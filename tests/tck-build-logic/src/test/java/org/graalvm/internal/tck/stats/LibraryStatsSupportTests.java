@@ -649,9 +649,9 @@ class LibraryStatsSupportTests {
 
     @Test
     void writeMetadataVersionStatsProducesPayloadValidAgainstSchema() throws IOException {
-        Path schemaFile = tempDir.resolve("library-stats-schema-v1.0.2.json");
+        Path schemaFile = tempDir.resolve("library-stats-schema-v1.1.0.json");
         Files.copy(
-                locateRepoFile("stats/schemas/library-stats-schema-v1.0.2.json"),
+                locateRepoFile("stats/schemas/library-stats-schema-v1.1.0.json"),
                 schemaFile
         );
 
@@ -667,6 +667,58 @@ class LibraryStatsSupportTests {
         )).doesNotThrowAnyException();
     }
 
+    @Test
+    void buildNativeBuildStatsReadsBuildOutput() throws IOException {
+        Path schemaFile = tempDir.resolve("library-stats-schema-v1.1.0.json");
+        Files.copy(
+                locateRepoFile("stats/schemas/library-stats-schema-v1.1.0.json"),
+                schemaFile
+        );
+        Path buildOutputFile = tempDir.resolve("build-output/test.json");
+        Files.createDirectories(buildOutputFile.getParent());
+        Files.writeString(buildOutputFile, """
+                {"analysis_results": {"types": {"total": 20000, "reachable": 12045, "reflection": 1320, "jni": 60},
+                                      "methods": {"total": 150000, "reachable": 61234, "reflection": 845, "jni": 55},
+                                      "fields": {"total": 40000, "reachable": 18000, "reflection": 120, "jni": 70}},
+                 "image_details": {"total_bytes": 31457280},
+                 "resource_usage": {"memory": {"peak_rss_bytes": 2845415424}, "total_secs": 48.2}}
+                """, StandardCharsets.UTF_8);
+
+        LibraryStatsModels.NativeBuildStats nativeBuild = LibraryStatsSupport.buildNativeBuildStats(buildOutputFile);
+
+        assertThat(nativeBuild).isEqualTo(new LibraryStatsModels.NativeBuildStats(
+                31_457_280L,
+                2_845_415_424L,
+                61_234L,
+                12_045L,
+                120L,
+                845L,
+                1_320L
+        ));
+        assertThat(LibraryStatsSupport.buildNativeBuildStats(tempDir.resolve("missing.json"))).isNull();
+
+        Path statsFile = tempDir.resolve("stats.json");
+        LibraryStatsSupport.writeMetadataVersionStats(statsFile, new LibraryStatsModels.MetadataVersionStats(
+                List.of(createVersionStats("1.0.0", 1, 1).withNativeBuild(nativeBuild))
+        ));
+        assertThatCode(() -> LibraryStatsSchemaValidator.validateOrThrow(
+                statsFile,
+                schemaFile
+        )).doesNotThrowAnyException();
+        assertThat(LibraryStatsSupport.loadMetadataVersionStats(statsFile).versions().get(0).nativeBuild())
+                .isEqualTo(nativeBuild);
+    }
+
+    @Test
+    void writeMetadataVersionStatsOmitsMissingNativeBuild() throws IOException {
+        Path statsFile = tempDir.resolve("stats.json");
+        LibraryStatsSupport.writeMetadataVersionStats(statsFile, new LibraryStatsModels.MetadataVersionStats(
+                List.of(createVersionStats("1.0.0", 1, 1))
+        ));
+
+        assertThat(Files.readString(statsFile, StandardCharsets.UTF_8)).doesNotContain("nativeBuild");
+    }
+
     @Test
     void writeMetadataVersionStatsSerializesVersionBeforeOtherVersionFields() throws IOException {
         LibraryStatsModels.MetadataVersionStats metadataVersionStats = new LibraryStatsModels.MetadataVersionStats(
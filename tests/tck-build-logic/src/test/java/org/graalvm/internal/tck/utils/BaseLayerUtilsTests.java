@@ -6,33 +6,93 @@
  */
 package org.graalvm.internal.tck.utils;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.gradle.api.Project;
 import org.gradle.testfixtures.ProjectBuilder;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.graalvm.internal.tck.TckFixtures.write;
 
 class BaseLayerUtilsTests {
     @TempDir
     Path tempDir;
 
     @Test
-    void dedicatedLayerPathIsStableAndCoordinateSpecific() {
+    void dedicatedLayerRootDefaultsToTheBuildDirectory() {
         Project project = ProjectBuilder.builder().withProjectDir(tempDir.toFile()).build();
-        project.getExtensions().getExtraProperties().set("tck.dedicatedLayerRoot", tempDir.toString());
 
-        File first = BaseLayerUtils.resolveDedicatedLayerFile(project, "com.example:demo:1.0");
-        File repeated = BaseLayerUtils.resolveDedicatedLayerFile(project, "com.example:demo:1.0");
-        File other = BaseLayerUtils.resolveDedicatedLayerFile(project, "com.example:demo:2.0");
+        assertThat(BaseLayerUtils.resolveDedicatedLayerRoot(project))
+                .isEqualTo(tempDir.resolve("build/native-dedicated-layers").toFile());
 
-        assertThat(first).isEqualTo(repeated);
-        assertThat(first).isNotEqualTo(other);
-        assertThat(first.getName()).isEqualTo("libDedicated.nil");
-        assertThat(first.getParentFile().getName()).hasSize(64);
+        project.getExtensions().getExtraProperties().set("tck.dedicatedLayerRoot", "layers");
+        assertThat(BaseLayerUtils.resolveDedicatedLayerRoot(project)).isEqualTo(tempDir.resolve("layers").toFile());
+    }
+
+    @Test
+    void testRuntimeLayerHasItsOwnDirectory() {
+        Project project = ProjectBuilder.builder().withProjectDir(tempDir.toFile()).build();
+
+        File layerFile = BaseLayerUtils.resolveTestRuntimeLayerFile(project);
+        assertThat(layerFile.getName()).isEqualTo("test-runtime-layer.nil");
+        assertThat(layerFile.getParentFile()).isNotEqualTo(BaseLayerUtils.resolveBaseLayerFile(project).getParentFile());
+
+        project.getExtensions().getExtraProperties().set("tck.testRuntimeLayerFile", "layers/junit.nil");
+        assertThat(BaseLayerUtils.resolveTestRuntimeLayerFile(project))
+                .isEqualTo(tempDir.resolve("layers/junit.nil").toFile());
+        assertThat(BaseLayerUtils.layerCreateArgument(new File("/layers/junit.nil"),
+                List.of(new File("/cache/junit-jupiter-api-5.9.2.jar"), new File("/cache/opentest4j-1.2.0.jar"))))
+                .isEqualTo("-H:LayerCreate=junit.nil,path=/cache/junit-jupiter-api-5.9.2.jar,path=/cache/opentest4j-1.2.0.jar");
+    }
+
+    @Test
+    void testRuntimeLayerIsOnlyUsableWithTheSameBaseLayerAndJars() throws IOException {
+        File baseLayerFile = write(tempDir.resolve("base/base-layer.nil"), "base").toFile();
+        write(tempDir.resolve("base/manifest.json"), "{\"nativeImageVersion\":\"25\",\"nativeImageArgs\":[]}");
+        File layerFile = tempDir.resolve("junit/test-runtime-layer.nil").toFile();
+        List<File> jars = List.of(new File("/cache/opentest4j-1.2.0.jar"), new File("/cache/junit-jupiter-api-5.9.2.jar"));
+
+        assertThat(BaseLayerUtils.testRuntimeLayerMismatch(layerFile, baseLayerFile, jars)).isPresent();
+
+        write(layerFile.toPath(), "layer");
+        write(tempDir.resolve("junit/manifest.json"), new ObjectMapper().writeValueAsString(
+                BaseLayerUtils.expectedTestRuntimeLayerManifest(baseLayerFile, jars)));
+        assertThat(BaseLayerUtils.testRuntimeLayerMismatch(layerFile, baseLayerFile, List.of(jars.get(1), jars.get(0)))).isEmpty();
+        assertThat(BaseLayerUtils.testRuntimeLayerMismatch(layerFile, baseLayerFile,
+                List.of(new File("/cache/opentest4j-1.2.0.jar"), new File("/cache/junit-jupiter-api-5.10.0.jar"))))
+                .hasValueSatisfying(reason -> assertThat(reason).contains("junit-jupiter-api-5.10.0.jar"));
+
+        write(tempDir.resolve("base/manifest.json"), "{\"nativeImageVersion\":\"26\",\"nativeImageArgs\":[]}");
+        assertThat(BaseLayerUtils.testRuntimeLayerMismatch(layerFile, baseLayerFile, jars))
+                .hasValue("it was built on another base layer");
+    }
+
+    @Test
+    void frameworkLayerIsOnlyUsableOnItsParentWithAllOfItsJars() throws IOException {
+        File parentLayerFile = write(tempDir.resolve("junit/test-runtime-layer.nil"), "junit").toFile();
+        write(tempDir.resolve("junit/manifest.json"), "{\"jars\":[\"junit-jupiter-api-5.9.2.jar\"]}");
+        File layerFile = tempDir.resolve("framework/0123456789abcdef/framework-layer.nil").toFile();
+        List<File> jars = List.of(new File("/cache/spring-core-6.1.0.jar"), new File("/cache/spring-beans-6.1.0.jar"));
+        List<File> classpath = List.of(new File("/cache/demo-1.0.jar"), jars.get(0), jars.get(1));
+
+        assertThat(BaseLayerUtils.frameworkLayerMismatch(layerFile, parentLayerFile, classpath)).isPresent();
+
+        write(layerFile.toPath(), "layer");
+        write(layerFile.toPath().resolveSibling("manifest.json"), new ObjectMapper().writeValueAsString(
+                BaseLayerUtils.expectedFrameworkLayerManifest(parentLayerFile, jars)));
+        assertThat(BaseLayerUtils.frameworkLayerMismatch(layerFile, parentLayerFile, classpath)).isEmpty();
+        assertThat(BaseLayerUtils.frameworkLayerMismatch(layerFile, parentLayerFile, classpath.subList(0, 2)))
+                .hasValueSatisfying(reason -> assertThat(reason).contains("spring-beans-6.1.0.jar"));
+
+        write(tempDir.resolve("junit/manifest.json"), "{\"jars\":[\"junit-jupiter-api-5.10.0.jar\"]}");
+        assertThat(BaseLayerUtils.frameworkLayerMismatch(layerFile, parentLayerFile, classpath))
+                .hasValueSatisfying(reason -> assertThat(reason).contains("another parent layer"));
     }
 
     @Test
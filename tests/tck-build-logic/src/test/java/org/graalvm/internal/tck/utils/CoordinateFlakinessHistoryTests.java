@@ -0,0 +1,61 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import org.graalvm.internal.tck.utils.CoordinateFlakinessHistory.Outcome;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoordinateFlakinessHistoryTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void classifiesOutcomesByFailedAttempts() {
+        assertThat(Outcome.of(true, 0)).isEqualTo(Outcome.PASS);
+        assertThat(Outcome.of(true, 2)).isEqualTo(Outcome.FLAKY);
+        assertThat(Outcome.of(false, 2)).isEqualTo(Outcome.FAIL);
+    }
+
+    @Test
+    void keepsTheLastOutcomesPerLane() throws IOException {
+        Path history = tempDir.resolve("tck/coordinate-flakiness.json");
+        CoordinateFlakinessHistory.record(history, "test", "g:a:1", Outcome.FLAKY);
+        for (int i = 0; i < CoordinateFlakinessHistory.RECORDED_RUNS; i++) {
+            CoordinateFlakinessHistory.record(history, "test", "g:a:1", Outcome.PASS);
+        }
+        CoordinateFlakinessHistory.record(history, "javaTest", "g:a:1", Outcome.FLAKY);
+
+        assertThat(Files.readString(history)).doesNotContain("\"test\" : [ \"flaky\"");
+        assertThat(CoordinateFlakinessHistory.flakyLibraries(history, 1)).containsExactly("g:a");
+        assertThat(CoordinateFlakinessHistory.flakyLibraries(history, 2)).isEmpty();
+    }
+
+    @Test
+    void quarantinesLibrariesFlakyAcrossVersionsAndLanes() throws IOException {
+        Path history = tempDir.resolve("tck/coordinate-flakiness.json");
+        CoordinateFlakinessHistory.record(history, "test", "g:a:1", Outcome.FLAKY);
+        CoordinateFlakinessHistory.record(history, "test", "g:a:2", Outcome.FLAKY);
+        CoordinateFlakinessHistory.record(history, "test", "g:b:1", Outcome.FLAKY);
+        CoordinateFlakinessHistory.record(history, "test", "g:b:1", Outcome.FAIL);
+        CoordinateFlakinessHistory.record(history, "test", "g:c:1", Outcome.PASS);
+        Path quarantine = tempDir.resolve("tck/flaky-coordinates.txt");
+
+        CoordinateFlakinessHistory.writeQuarantineFile(history, quarantine, 2);
+
+        assertThat(Files.readAllLines(quarantine))
+                .filteredOn(line -> !line.startsWith("#"))
+                .containsExactly("g:a");
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoordinatePeakRssHistoryTests {
+
+    private static final long GB = 1L << 30;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void parsesLargestPeakRssFromNativeImageOutput() {
+        String output = """
+                ------------------------------------------------------------------------------------------
+                   3.1s (6.2% of total time) in 41 GCs | Peak RSS: 1.75GB | CPU load: 7.12
+                ------------------------------------------------------------------------------------------
+                Finished generating 'base-layer' in 48.2s.
+                   9.8s (8.7% of total time) in 95 GCs | Peak RSS: 3.50GB | CPU load: 9.47
+                Finished generating 'native-tests' in 1m 51s.
+                """;
+
+        assertThat(CoordinatePeakRssHistory.parsePeakRss(output)).hasValue((long) (3.5 * GB));
+        assertThat(CoordinatePeakRssHistory.parsePeakRss("BUILD SUCCESSFUL")).isEmpty();
+        assertThat(CoordinatePeakRssHistory.parsePeakRss("Peak RSS: 812.40MB")).hasValue((long) (812.40 * (1L << 20)));
+    }
+
+    @Test
+    void estimatesPreferTheLaneAndFallBackToOtherLanes() {
+        Path history = tempDir.resolve("tck/coordinate-peak-rss.json");
+        CoordinatePeakRssHistory.record(history, "nativeTestCompile", "g:a:1", 3 * GB);
+        CoordinatePeakRssHistory.record(history, "test", "g:a:1", 4 * GB);
+        CoordinatePeakRssHistory.record(history, "nativeTestCompile", "g:b:1", 2 * GB);
+        CoordinatePeakRssHistory.record(history, "nativeTraceImage", "g:b:1", 5 * GB);
+
+        assertThat(CoordinatePeakRssHistory.loadEstimates(history, "test"))
+                .containsEntry("g:a:1", 4 * GB)
+                .containsEntry("g:b:1", 5 * GB);
+        assertThat(CoordinatePeakRssHistory.loadEstimates(history, "nativeTestCompile"))
+                .containsEntry("g:a:1", 3 * GB)
+                .containsEntry("g:b:1", 2 * GB);
+        assertThat(CoordinatePeakRssHistory.loadEstimates(tempDir.resolve("missing.json"), "test")).isEmpty();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.graalvm.internal.tck.TckFixtures.write;
+
+class CoordinateResultCacheTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void keyDistinguishesNamesFromValues() {
+        String first = CoordinateResultCache.newKey().put("a", "bc").put("d", List.of("e")).build();
+        String second = CoordinateResultCache.newKey().put("ab", "c").put("d", List.of("e")).build();
+        String third = CoordinateResultCache.newKey().put("a", "bc").put("d", List.of("e", "")).build();
+
+        assertThat(first).hasSize(64).isNotEqualTo(second).isNotEqualTo(third);
+        assertThat(CoordinateResultCache.newKey().put("a", "bc").put("d", List.of("e")).build()).isEqualTo(first);
+    }
+
+    @Test
+    void storesAndRestoresPassingRuns() throws IOException {
+        CoordinateResultCache cache = new CoordinateResultCache(tempDir.resolve("cache"));
+        Path log = write(tempDir.resolve("build/tests/g:a:1/0123.out"), "Standard out\n-----\nBUILD SUCCESSFUL\n");
+        String key = CoordinateResultCache.newKey().put("coordinates", "g:a:1").build();
+
+        assertThat(cache.find(key)).isEmpty();
+        cache.store(key, "test", "g:a:1", List.of(log, tempDir.resolve("missing.out")));
+        Files.delete(log);
+
+        CoordinateResultCache.Entry entry = cache.find(key).orElseThrow();
+        assertThat(entry.lane()).isEqualTo("test");
+        assertThat(entry.coordinates()).isEqualTo("g:a:1");
+        assertThat(cache.restore(entry, log.getParent())).containsExactly(log);
+        assertThat(log).hasContent("Standard out\n-----\nBUILD SUCCESSFUL\n");
+        try (var children = Files.list(tempDir.resolve("cache").resolve(key.substring(0, 2)))) {
+            assertThat(children).containsExactly(entry.directory());
+        }
+    }
+
+    @Test
+    void readsTheRecordedClasspathOnlyWhileAllEntriesExist() throws IOException {
+        Path jar = write(tempDir.resolve("repo/core-1.0.jar"), "jar");
+        Path classes = Files.createDirectories(tempDir.resolve("repo/classes"));
+        Path classpathFile = write(tempDir.resolve("build/tests/g:a:1/" + CoordinateResultCache.CLASSPATH_FILE),
+                jar + "\n" + classes + "\n\n");
+
+        assertThat(CoordinateResultCache.readClasspath(classpathFile)).hasValue(List.of(jar, classes));
+        assertThat(CoordinateResultCache.readClasspath(tempDir.resolve("missing.txt"))).isEmpty();
+
+        Files.delete(jar);
+        assertThat(CoordinateResultCache.readClasspath(classpathFile)).isEmpty();
+    }
+
+    @Test
+    void rerunAppliesToTheTaskItFollows() {
+        assertThat(CoordinateResultCache.isRerunRequested(List.of("test", "--rerun"), "test", ":test")).isTrue();
+        assertThat(CoordinateResultCache.isRerunRequested(List.of(":test", "--rerun"), "test", ":test")).isTrue();
+        assertThat(CoordinateResultCache.isRerunRequested(List.of("test", "--coordinates", "g:a", "--rerun"), "test", ":test"))
+                .isTrue();
+        assertThat(CoordinateResultCache.isRerunRequested(List.of("test"), "test", ":test")).isFalse();
+        assertThat(CoordinateResultCache.isRerunRequested(List.of("clean", "--rerun", "test"), "test", ":test")).isFalse();
+        assertThat(CoordinateResultCache.isRerunRequested(List.of("test", "javaTest", "--rerun"), "test", ":test")).isFalse();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import org.gradle.api.GradleException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CoordinateUtilsTests {
+
+    private static final List<String> COORDINATES = List.of("g:a:1", "g:b:1", "g:c:1", "g:d:1", "g:e:1");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void durationShardsAreBalancedByHistoricalCost() {
+        Map<String, Long> durations = Map.of(
+                "g:a:1", 100L,
+                "g:b:1", 60L,
+                "g:c:1", 50L,
+                "g:d:1", 30L,
+                "g:e:1", 20L);
+
+        assertThat(CoordinateUtils.computeDurationBatchedCoordinates(COORDINATES, 1, 2, durations))
+                .containsExactly("g:a:1", "g:d:1");
+        assertThat(CoordinateUtils.computeDurationBatchedCoordinates(COORDINATES, 2, 2, durations))
+                .containsExactly("g:b:1", "g:c:1", "g:e:1");
+    }
+
+    @Test
+    void durationShardsWithoutHistoryMatchRoundRobin() {
+        for (int k = 1; k <= 3; k++) {
+            assertThat(CoordinateUtils.computeDurationBatchedCoordinates(COORDINATES, k, 3, Map.of()))
+                    .isEqualTo(CoordinateUtils.computeBatchedCoordinates(COORDINATES, k, 3));
+        }
+    }
+
+    @Test
+    void durationShardsAreDeterministicAndIndependentOfInputOrder() {
+        Map<String, Long> durations = Map.of("g:a:1", 10L, "g:b:1", 10L, "g:c:1", 10L);
+        List<String> reversed = List.of("g:e:1", "g:d:1", "g:c:1", "g:b:1", "g:a:1");
+
+        for (int k = 1; k <= 2; k++) {
+            assertThat(CoordinateUtils.computeDurationBatchedCoordinates(reversed, k, 2, durations))
+                    .isEqualTo(CoordinateUtils.computeDurationBatchedCoordinates(COORDINATES, k, 2, durations));
+        }
+    }
+
+    @Test
+    void recordedHistoryIsSummedAcrossLanes() {
+        Path historyFile = tempDir.resolve("tck/coordinate-durations.json");
+        CoordinateDurationHistory.record(historyFile, "javaTest", "g:a:1", 40);
+        CoordinateDurationHistory.record(historyFile, "test", "g:a:1", 100);
+        CoordinateDurationHistory.record(historyFile, "test", "g:a:1", 200);
+
+        assertThat(CoordinateDurationHistory.loadCosts(historyFile)).containsExactly(Map.entry("g:a:1", 240L));
+        assertThat(CoordinateDurationHistory.loadCosts(tempDir.resolve("missing.json"))).isEmpty();
+    }
+
+    @Test
+    void unknownShardStrategyIsRejected() {
+        assertThatThrownBy(() -> CoordinateUtils.computeBatchedCoordinates(COORDINATES, 1, 2, "random", Map::of))
+                .isInstanceOf(GradleException.class)
+                .hasMessageContaining("tck.shardStrategy");
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.graalvm.internal.tck.TckFixtures.write;
+
+class DedicatedLayerCacheTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void keyDependsOnContentNotOnPaths() throws IOException {
+        String first = key(tempDir.resolve("first"), "demo-1.0.jar", "classes", "-O1");
+        String second = key(tempDir.resolve("second"), "demo-1.0.jar", "classes", "-O1");
+
+        assertThat(second).isEqualTo(first);
+        assertThat(key(tempDir.resolve("jar"), "demo-1.0.jar", "other classes", "-O1")).isNotEqualTo(first);
+        assertThat(key(tempDir.resolve("args"), "demo-1.0.jar", "classes", "-Ob")).isNotEqualTo(first);
+    }
+
+    @Test
+    void keyCoversEverySameNamedJar() throws IOException {
+        Path second = write(tempDir.resolve("b/core.jar"), "second");
+        String first = classpathKey(write(tempDir.resolve("a/core.jar"), "first"), second);
+        String changed = classpathKey(write(tempDir.resolve("a/core.jar"), "changed"), second);
+
+        assertThat(changed).isNotEqualTo(first);
+    }
+
+    @Test
+    void publishedLayerIsFoundAndConcurrentPublishKeepsTheFirstEntry() throws IOException {
+        Path root = tempDir.resolve("layers");
+        assertThat(DedicatedLayerCache.lookup(root, "key")).isEmpty();
+
+        Path first = stage(root, "first");
+        Path second = stage(root, "second");
+        DedicatedLayerCache.Entry published = DedicatedLayerCache.publish(root, "key", first, Map.of(), "g:a:1");
+        DedicatedLayerCache.Entry raced = DedicatedLayerCache.publish(root, "key", second, Map.of(), "g:a:1");
+
+        assertThat(published.directory()).isEqualTo(root.resolve("key"));
+        assertThat(Files.readString(raced.layerFile())).isEqualTo("first");
+        assertThat(first.toFile()).doesNotExist();
+        assertThat(second.toFile()).doesNotExist();
+        assertThat(DedicatedLayerCache.lookup(root, "key")).hasValueSatisfying(entry ->
+                assertThat(entry.coordinates()).isEqualTo("g:a:1"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntriesOutsideTheGracePeriod() throws IOException {
+        Path root = tempDir.resolve("layers");
+        Instant now = Instant.now();
+        publish(root, "oldest", 1000, now.minus(Duration.ofDays(3)));
+        publish(root, "older", 1000, now.minus(Duration.ofDays(2)));
+        publish(root, "recent", 1000, now.minus(Duration.ofMinutes(5)));
+        Path abandoned = Files.createDirectories(root.resolve(".staging/crashed"));
+        Files.setLastModifiedTime(abandoned, FileTime.from(now.minus(Duration.ofDays(1))));
+
+        List<DedicatedLayerCache.Entry> evicted = DedicatedLayerCache.evict(root, 2500, now);
+
+        assertThat(evicted.stream().map(DedicatedLayerCache.Entry::key).toList()).isEqualTo(List.of("oldest"));
+        assertThat(DedicatedLayerCache.entries(root).stream().map(DedicatedLayerCache.Entry::key).toList())
+                .isEqualTo(List.of("older", "recent"));
+        assertThat(abandoned.toFile()).doesNotExist();
+
+        // Entries in use by another build stay even when the cache is over budget.
+        DedicatedLayerCache.evict(root, 1, now);
+        assertThat(DedicatedLayerCache.entries(root).stream().map(DedicatedLayerCache.Entry::key).toList())
+                .isEqualTo(List.of("recent"));
+    }
+
+    @Test
+    void deletesTheEntriesOfACoordinate() throws IOException {
+        Path root = tempDir.resolve("layers");
+        DedicatedLayerCache.publish(root, "a", stage(root, "a"), Map.of(), "g:a:1");
+        DedicatedLayerCache.publish(root, "b", stage(root, "b"), Map.of(), "g:b:1");
+
+        assertThat(DedicatedLayerCache.deleteEntriesOf(root, "g:a:1")).hasSize(1);
+        assertThat(DedicatedLayerCache.entries(root).stream().map(DedicatedLayerCache.Entry::key).toList())
+                .isEqualTo(List.of("b"));
+    }
+
+    private static String key(Path buildDir, String jarName, String jarContent, String optimization) throws IOException {
+        Path jar = write(buildDir.resolve("libs").resolve(jarName), jarContent);
+        Path configuration = write(buildDir.resolve("generated/config/reflect-config.json"), "[]").getParent();
+        return DedicatedLayerCache.key(DedicatedLayerCache.expectedManifest(
+                List.of(jar.toFile()),
+                List.of(jar.toFile()),
+                List.of("java.base"),
+                "native-image 25",
+                "current-defaults",
+                List.of(optimization, "-H:ConfigurationFileDirectories=" + configuration.toAbsolutePath()),
+                List.of(configuration.toFile())
+        ));
+    }
+
+    private static String classpathKey(Path... jars) {
+        List<File> classpath = Stream.of(jars).map(Path::toFile).toList();
+        return DedicatedLayerCache.key(DedicatedLayerCache.expectedManifest(classpath, classpath, List.of("java.base"),
+                "native-image 25", "current-defaults", List.of(), List.of()));
+    }
+
+    private static Path stage(Path root, String content) throws IOException {
+        Path staging = DedicatedLayerCache.newStagingDirectory(root);
+        write(staging.resolve(DedicatedLayerCache.LAYER_FILE_NAME), content);
+        return staging;
+    }
+
+    private static void publish(Path root, String key, int bytes, Instant lastUsed) throws IOException {
+        DedicatedLayerCache.Entry entry = DedicatedLayerCache.publish(root, key, stage(root, "x".repeat(bytes)),
+                Map.of(), "g:" + key + ":1");
+        Files.setLastModifiedTime(entry.directory().resolve("manifest.json"), FileTime.from(lastUsed));
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.graalvm.internal.tck.TckFixtures.write;
+
+class FailedTestFilterTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void collectsFailedTestsFromRecentReports() throws IOException {
+        Path results = tempDir.resolve("build/test-results");
+        write(results.resolve("test/TEST-com.example.ClientTest.xml"), """
+                <testsuite name="com.example.ClientTest" tests="3" failures="1" errors="1">
+                  <testcase name="connects()" classname="com.example.ClientTest"/>
+                  <testcase name="retriesOnTimeout()" classname="com.example.ClientTest">
+                    <failure message="timeout">java.util.concurrent.TimeoutException</failure>
+                  </testcase>
+                  <testcase name="[1] https://example.com" classname="com.example.ClientTest">
+                    <error message="boom">java.io.IOException</error>
+                  </testcase>
+                </testsuite>
+                """);
+        Path old = write(results.resolve("test/TEST-com.example.OldTest.xml"), """
+                <testsuite name="com.example.OldTest" tests="1" failures="1">
+                  <testcase name="fails()" classname="com.example.OldTest"><failure/></testcase>
+                </testsuite>
+                """);
+        write(results.resolve("test-native/TEST-junit-jupiter.xml"), "<testsuite");
+        Files.setLastModifiedTime(old, FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS)));
+
+        long since = Instant.now().minus(10, ChronoUnit.MINUTES).toEpochMilli();
+        assertThat(FailedTestFilter.failedTests(results, since))
+                .containsExactly("com.example.ClientTest", "com.example.ClientTest.retriesOnTimeout");
+        assertThat(FailedTestFilter.failedTests(tempDir.resolve("missing"), since)).isEmpty();
+    }
+
+    @Test
+    void onlyPlainMethodNamesNarrowTheFilter() {
+        assertThat(FailedTestFilter.methodName("parses()")).isEqualTo("parses");
+        assertThat(FailedTestFilter.methodName("parses")).isEqualTo("parses");
+        assertThat(FailedTestFilter.methodName("parses(String)[2]")).isEqualTo("parses");
+        assertThat(FailedTestFilter.methodName("[1] input=a")).isNull();
+        assertThat(FailedTestFilter.methodName("Parses a value")).isNull();
+    }
+}
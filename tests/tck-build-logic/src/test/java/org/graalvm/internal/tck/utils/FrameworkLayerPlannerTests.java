@@ -0,0 +1,106 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FrameworkLayerPlannerTests {
+
+    private static final long MB = 1L << 20;
+
+    private static final FrameworkLayerPlanner.Jar SPRING_CORE = jar("spring-core", 40 * MB, 4000);
+    private static final FrameworkLayerPlanner.Jar SPRING_BEANS = jar("spring-beans", 20 * MB, 1500);
+    private static final FrameworkLayerPlanner.Jar NETTY = jar("netty-common", 30 * MB, 2500);
+    private static final FrameworkLayerPlanner.Jar SLF4J = jar("slf4j-api", MB, 60);
+    private static final FrameworkLayerPlanner.Jar JACKSON = jar("jackson-databind", 5 * MB, 900);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void clustersCoordinatesBySharedJars() {
+        FrameworkLayerPlanner.Plan plan = FrameworkLayerPlanner.plan(Map.of(
+                "g:spring-a:1", List.of(SPRING_CORE, SPRING_BEANS, SLF4J),
+                "g:spring-b:1", List.of(SPRING_CORE, SPRING_BEANS, SLF4J, JACKSON),
+                "g:spring-c:1", List.of(SPRING_CORE, SPRING_BEANS),
+                "g:netty-a:1", List.of(NETTY, SLF4J),
+                "g:netty-b:1", List.of(NETTY, SLF4J),
+                "g:alone:1", List.of(JACKSON)
+        ), 16 * MB, 32);
+
+        assertThat(plan.layers()).hasSize(2);
+        FrameworkLayerPlanner.Layer spring = plan.layers().get(0);
+        assertThat(spring.members()).isEqualTo(List.of("g:spring-a:1", "g:spring-b:1", "g:spring-c:1"));
+        assertThat(spring.jars()).isEqualTo(List.of(SPRING_BEANS, SPRING_CORE));
+        assertThat(spring.savedBytes()).isEqualTo(2 * 60 * MB);
+        assertThat(spring.savedClasses()).isEqualTo(2 * 5500L);
+        FrameworkLayerPlanner.Layer netty = plan.layers().get(1);
+        assertThat(netty.members()).isEqualTo(List.of("g:netty-a:1", "g:netty-b:1"));
+        assertThat(netty.jars()).isEqualTo(List.of(NETTY, SLF4J));
+        assertThat(plan.savedBytes()).isEqualTo(2 * 60 * MB + 31 * MB);
+        assertThat(plan.layerFor("g:spring-b:1")).hasValue(spring);
+        assertThat(plan.layerFor("g:alone:1")).isEmpty();
+    }
+
+    @Test
+    void skipsLayersBelowTheMinimumSizeAndKeepsTheLargestSavings() {
+        Map<String, List<FrameworkLayerPlanner.Jar>> classpaths = Map.of(
+                "g:spring-a:1", List.of(SPRING_CORE),
+                "g:spring-b:1", List.of(SPRING_CORE),
+                "g:jackson-a:1", List.of(JACKSON),
+                "g:jackson-b:1", List.of(JACKSON)
+        );
+
+        assertThat(FrameworkLayerPlanner.plan(classpaths, 16 * MB, 32).layers()).hasSize(1);
+        assertThat(FrameworkLayerPlanner.plan(classpaths, MB, 32).layers()).hasSize(2);
+        assertThat(FrameworkLayerPlanner.plan(classpaths, MB, 1).layers().get(0).jars())
+                .isEqualTo(List.of(SPRING_CORE));
+    }
+
+    @Test
+    void layerIdDependsOnlyOnItsJars() {
+        String id = FrameworkLayerPlanner.plan(Map.of(
+                "g:a:1", List.of(SPRING_CORE, SPRING_BEANS),
+                "g:b:1", List.of(SPRING_BEANS, SPRING_CORE)
+        ), MB, 32).layers().get(0).id();
+        String sameJars = FrameworkLayerPlanner.plan(Map.of(
+                "g:c:1", List.of(SPRING_CORE, SPRING_BEANS, NETTY),
+                "g:d:1", List.of(SPRING_CORE, SPRING_BEANS)
+        ), MB, 32).layers().get(0).id();
+
+        assertThat(id).hasSize(16);
+        assertThat(sameJars).isEqualTo(id);
+    }
+
+    @Test
+    void planIsWrittenAndReadBack() {
+        FrameworkLayerPlanner.Plan plan = FrameworkLayerPlanner.plan(Map.of(
+                "g:a:1", List.of(SPRING_CORE, SLF4J),
+                "g:b:1", List.of(SPRING_CORE, SLF4J)
+        ), MB, 32);
+        Path planFile = tempDir.resolve("tck/framework-layers/plan.json");
+
+        FrameworkLayerPlanner.write(planFile, plan);
+
+        assertThat(FrameworkLayerPlanner.read(planFile)).isEqualTo(plan);
+        assertThat(FrameworkLayerPlanner.read(tempDir.resolve("missing.json")).layers()).isEmpty();
+        assertThat(FrameworkLayerPlanner.report(plan, 3).get(0))
+                .isEqualTo("1 framework layer(s) for 2 of 3 coordinate(s); expected saving: 41.0 MB and 4,060 classes of analysis.");
+    }
+
+    private static FrameworkLayerPlanner.Jar jar(String artifact, long bytes, int classes) {
+        return new FrameworkLayerPlanner.Jar("g:" + artifact + ":1", "/cache/" + artifact + "-1.jar",
+                Integer.toHexString(artifact.hashCode()), bytes, classes);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LayeredBuildBenchmarkTests {
+
+    private static final LayeredBuildBenchmark.Variant MONOLITHIC = LayeredBuildBenchmark.Variant.MONOLITHIC;
+    private static final LayeredBuildBenchmark.Variant SHARED = LayeredBuildBenchmark.Variant.SHARED_LAYER;
+    private static final LayeredBuildBenchmark.Variant DEDICATED = LayeredBuildBenchmark.Variant.DEDICATED_LAYER;
+
+    private static final List<LayeredBuildBenchmark.Measurement> MEASUREMENTS = List.of(
+            build("g:fast:1", MONOLITHIC, 0, 100_000),
+            build("g:fast:1", SHARED, 0, 60_000),
+            build("g:fast:1", DEDICATED, 0, 105_000),
+            build("g:slow:2", MONOLITHIC, 0, 50_000),
+            build("g:slow:2", SHARED, 0, 80_000),
+            build("g:slow:2", DEDICATED, 1, 20_000),
+            build("g:broken:1", MONOLITHIC, 1, 10_000),
+            build("g:broken:1", SHARED, 1, 10_000),
+            build("g:broken:1", DEDICATED, 1, 10_000)
+    );
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void layeredBuildsThatFailOrAreSlowerAreExclusionCandidates() {
+        List<LayeredBuildBenchmark.Candidate> shared =
+                LayeredBuildBenchmark.exclusionCandidates(MEASUREMENTS, SHARED, 1.1);
+        assertThat(shared).extracting(LayeredBuildBenchmark.Candidate::library).isEqualTo(List.of("g:slow"));
+        assertThat(shared.get(0).reason()).isEqualTo("g:slow:2 builds 1.60x as long as monolithically");
+
+        List<LayeredBuildBenchmark.Candidate> dedicated =
+                LayeredBuildBenchmark.exclusionCandidates(MEASUREMENTS, DEDICATED, 1.1);
+        // 5% slower is within the allowed slowdown; g:broken fails monolithically as well.
+        assertThat(dedicated).extracting(LayeredBuildBenchmark.Candidate::library).isEqualTo(List.of("g:slow"));
+        assertThat(dedicated.get(0).reason()).contains("fails with exit code 1");
+        assertThat(LayeredBuildBenchmark.exclusionCandidates(MEASUREMENTS, DEDICATED, 1.0))
+                .extracting(LayeredBuildBenchmark.Candidate::library).isEqualTo(List.of("g:fast", "g:slow"));
+    }
+
+    @Test
+    void tableComparesEachBuildWithTheMonolithicOne() {
+        List<String> table = LayeredBuildBenchmark.table(MEASUREMENTS);
+
+        assertThat(table).hasSize(2 + MEASUREMENTS.size());
+        assertThat(table.get(3)).isEqualTo(
+                "| g:fast:1 | sharedLayer | passed | 60.0s | 0.60x | 2.00 GB | 24.0 MB | 12.5s | - |");
+        assertThat(table.get(7)).startsWith("| g:slow:2 | dedicatedLayer | exit 1 | 20.0s | - |");
+    }
+
+    @Test
+    void writesResultsAndCandidates() throws IOException {
+        Path resultsFile = tempDir.resolve("results.json");
+        List<LayeredBuildBenchmark.Candidate> candidates =
+                LayeredBuildBenchmark.exclusionCandidates(MEASUREMENTS, SHARED, 1.1);
+        LayeredBuildBenchmark.write(resultsFile, MEASUREMENTS, Map.of(SHARED, candidates));
+
+        JsonNode json = new ObjectMapper().readTree(resultsFile.toFile());
+        assertThat(json.path("builds")).hasSize(MEASUREMENTS.size());
+        assertThat(json.path("builds").get(1).path("variant").asText()).isEqualTo("sharedLayer");
+        assertThat(json.path("builds").get(1).path("phaseSeconds").path("Performing analysis").asDouble())
+                .isEqualTo(12.5);
+        assertThat(json.path("exclusionCandidates").path("sharedLayer").get(0).path("library").asText())
+                .isEqualTo("g:slow");
+
+        Path candidatesFile = tempDir.resolve("sharedLayer-exclusion-candidates.txt");
+        LayeredBuildBenchmark.writeCandidates(candidatesFile, SHARED, candidates);
+        assertThat(Files.readAllLines(candidatesFile).stream().filter(line -> !line.startsWith("#")).toList())
+                .isEqualTo(List.of("g:slow"));
+    }
+
+    @Test
+    void addsCandidatesToTheSortedExclusionFile() throws IOException {
+        Path exclusionsFile = tempDir.resolve("shared-layered-test-exclusions.txt");
+        Files.write(exclusionsFile, List.of("a:first", "z:last"));
+
+        assertThat(LayeredBuildBenchmark.addExclusions(exclusionsFile, List.of("m:middle", "z:last")))
+                .isEqualTo(List.of("m:middle"));
+        assertThat(Files.readAllLines(exclusionsFile)).isEqualTo(List.of("a:first", "m:middle", "z:last"));
+        assertThat(LayeredBuildBenchmark.addExclusions(exclusionsFile, List.of("a:first"))).isEmpty();
+    }
+
+    private static LayeredBuildBenchmark.Measurement build(String coordinates, LayeredBuildBenchmark.Variant variant,
+                                                           int exitCode, long wallTimeMillis) {
+        return new LayeredBuildBenchmark.Measurement(coordinates, variant, exitCode, wallTimeMillis,
+                2L << 30, 1L << 30, 24L << 20, Map.of("Performing analysis", wallTimeMillis / 1000.0 / 4.8));
+    }
+}
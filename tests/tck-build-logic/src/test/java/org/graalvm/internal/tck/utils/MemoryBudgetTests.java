@@ -0,0 +1,113 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import org.gradle.api.GradleException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemoryBudgetTests {
+
+    private static final long GB = 1L << 30;
+
+    @Test
+    void admitsWhileEstimatesFitTheBudget() throws Exception {
+        MemoryBudget budget = new MemoryBudget(10 * GB);
+
+        try (MemoryBudget.Reservation first = budget.acquire(4 * GB);
+             MemoryBudget.Reservation second = budget.acquire(6 * GB)) {
+            assertThat(budget.getAvailableBytes()).isZero();
+        }
+        assertThat(budget.getAvailableBytes()).isEqualTo(10 * GB);
+    }
+
+    @Test
+    void waitsUntilEnoughMemoryIsReleased() throws Exception {
+        MemoryBudget budget = new MemoryBudget(10 * GB);
+        MemoryBudget.Reservation running = budget.acquire(8 * GB);
+        CountDownLatch admitted = new CountDownLatch(1);
+
+        Thread waiter = new Thread(() -> {
+            try (MemoryBudget.Reservation ignored = budget.acquire(4 * GB)) {
+                admitted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+
+        assertThat(admitted.await(200, TimeUnit.MILLISECONDS)).isFalse();
+        running.close();
+        assertThat(admitted.await(10, TimeUnit.SECONDS)).isTrue();
+        waiter.join();
+    }
+
+    @Test
+    void admitsOversizedRequestsAlone() throws Exception {
+        MemoryBudget budget = new MemoryBudget(4 * GB);
+
+        try (MemoryBudget.Reservation ignored = budget.acquire(16 * GB)) {
+            assertThat(budget.getAvailableBytes()).isZero();
+        }
+    }
+
+    @Test
+    void admitsInArrivalOrder() throws Exception {
+        MemoryBudget budget = new MemoryBudget(10 * GB);
+        MemoryBudget.Reservation running = budget.acquire(6 * GB);
+        List<String> admissions = new CopyOnWriteArrayList<>();
+
+        Thread large = startAcquire(budget, 8 * GB, "large", admissions);
+        awaitWaiting(large);
+        // The small request would fit next to the running one, but must not overtake the large request.
+        Thread small = startAcquire(budget, 4 * GB, "small", admissions);
+        awaitWaiting(small);
+
+        assertThat(admissions).isEmpty();
+        running.close();
+        large.join(10_000);
+        small.join(10_000);
+        assertThat(admissions).containsExactly("large", "small");
+    }
+
+    @Test
+    void parsesSizes() {
+        assertThat(MemoryBudget.parseBytes("12g")).isEqualTo(12 * GB);
+        assertThat(MemoryBudget.parseBytes("512M")).isEqualTo(512L << 20);
+        assertThat(MemoryBudget.parseBytes("1.5GB")).isEqualTo(3 * GB / 2);
+        assertThat(MemoryBudget.parseBytes("2048")).isEqualTo(2048);
+        assertThatThrownBy(() -> MemoryBudget.parseBytes("lots"))
+                .isInstanceOf(GradleException.class)
+                .hasMessageContaining("Invalid memory size 'lots'");
+    }
+
+    private static Thread startAcquire(MemoryBudget budget, long bytes, String name, List<String> admissions) {
+        Thread thread = new Thread(() -> {
+            try (MemoryBudget.Reservation ignored = budget.acquire(bytes)) {
+                admissions.add(name);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        for (int i = 0; i < 1000 && thread.getState() != Thread.State.WAITING; i++) {
+            Thread.sleep(5);
+        }
+        assertThat(thread.getState()).isEqualTo(Thread.State.WAITING);
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NativeBuildOutputTests {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void parsesPhaseLines() {
+        assertThat(NativeBuildOutput.parsePhase(
+                "[2/8] Performing analysis...  [******]                                  (21.4s @ 1.27GB)"))
+                .hasValue(new NativeBuildOutput.Phase("Performing analysis", 21.4));
+        assertThat(NativeBuildOutput.parsePhase("[6/8] Compiling methods...    [****]    (1m 2.5s @ 2.31GB)"))
+                .hasValue(new NativeBuildOutput.Phase("Compiling methods", 62.5));
+        assertThat(NativeBuildOutput.parsePhase("[1/8] Initializing...")).isEmpty();
+        assertThat(NativeBuildOutput.parsePhase("> Task :nativeTestCompile")).isEmpty();
+    }
+
+    @Test
+    void addsUpThePhasesOfSeveralBuilds() {
+        NativeBuildOutput.PhaseTimings timings = new NativeBuildOutput.PhaseTimings();
+        timings.accept("[2/8] Performing analysis...  [******]   (30.0s @ 1.90GB)");
+        timings.accept("   4.2s (5.1% of total time) in 32 GCs | Peak RSS: 2.65GB | CPU load: 7.21");
+        timings.accept("[2/8] Performing analysis...  [******]   (2.5s @ 0.80GB)");
+        timings.accept("[7/8] Creating image...       [***]      (1.5s @ 0.90GB)");
+
+        assertThat(timings.seconds()).isEqualTo(Map.of("Performing analysis", 32.5, "Creating image", 1.5));
+    }
+
+    @Test
+    void readsTheBuildOutputJsonFiles() throws IOException {
+        Path directory = tempDir.resolve("build-output");
+        Files.createDirectories(directory);
+        Files.writeString(directory.resolve("test.json"), """
+                {"general_info": {"name": "tests"},
+                 "analysis_results": {"types": {"total": 20000, "reachable": 12045, "reflection": 1320},
+                                      "methods": {"total": 150000, "reachable": 61234, "reflection": 845},
+                                      "fields": {"total": 40000, "reachable": 18000, "reflection": 120}},
+                 "image_details": {"total_bytes": 31457280, "code_area": {"bytes": 15728640}},
+                 "resource_usage": {"memory": {"system_total": 17179869184, "peak_rss_bytes": 2845415424},
+                                    "total_secs": 48.2}}
+                """);
+        Files.writeString(directory.resolve("libDedicated.json"), "{\"image_details\": {\"total_bytes\": 104857600}}");
+        Files.writeString(directory.resolve("notes.txt"), "not a build output");
+
+        List<NativeBuildOutput.Report> reports = NativeBuildOutput.readAll(directory);
+
+        assertThat(reports).isEqualTo(List.of(
+                new NativeBuildOutput.Report(104_857_600L, -1, -1, -1, -1, -1, -1, -1),
+                new NativeBuildOutput.Report(31_457_280L, 2_845_415_424L, 48.2, 12_045L, 61_234L, 1_320L, 845L, 120L)));
+        assertThat(NativeBuildOutput.readAll(tempDir.resolve("missing"))).isEmpty();
+    }
+}
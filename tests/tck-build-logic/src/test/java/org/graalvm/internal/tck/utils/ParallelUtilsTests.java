@@ -0,0 +1,117 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParallelUtilsTests {
+
+    private static final List<Integer> ITEMS = IntStream.range(0, 200).boxed().toList();
+
+    @Test
+    void resultsKeepInputOrder() {
+        List<String> results = ParallelUtils.orderedMap(ITEMS, item -> {
+            if (item % 3 == 0) {
+                Thread.yield();
+            }
+            return "item-" + item;
+        });
+
+        assertThat(results).isEqualTo(ITEMS.stream().map(item -> "item-" + item).toList());
+    }
+
+    @Test
+    void firstFailureInInputOrderIsRethrownWithTheOthersSuppressed() {
+        assertThatThrownBy(() -> ParallelUtils.orderedMap(ITEMS, item -> {
+            if (item == 150 || item == 40 || item == 41) {
+                throw new IllegalStateException("Failed to read item " + item);
+            }
+            return item;
+        }))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Failed to read item 40")
+                .satisfies(e -> assertThat(e.getSuppressed()).hasSize(2));
+    }
+
+    @Test
+    void boundedMapNeverExceedsParallelismAndKeepsInputOrder() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Integer> items = ITEMS.subList(0, 40);
+
+        List<Integer> results = ParallelUtils.boundedOrderedMap(items, 3, item -> item, item -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(5);
+            running.decrementAndGet();
+            return item * 2;
+        });
+
+        assertThat(results).isEqualTo(items.stream().map(item -> item * 2).toList());
+        assertThat(maxRunning.get()).isBetween(1, 3);
+    }
+
+    @Test
+    void boundedMapRunsItemsOfOneLaneSequentiallyInInputOrder() {
+        Map<Integer, AtomicInteger> runningPerLane = new ConcurrentHashMap<>();
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+
+        ParallelUtils.boundedOrderedMap(ITEMS.subList(0, 30), 4, item -> item % 2, item -> {
+            AtomicInteger running = runningPerLane.computeIfAbsent(item % 2, lane -> new AtomicInteger());
+            assertThat(running.incrementAndGet()).isEqualTo(1);
+            order.add(item);
+            sleep(1);
+            running.decrementAndGet();
+            return item;
+        });
+
+        assertThat(order.stream().filter(item -> item % 2 == 0).toList()).isSorted();
+        assertThat(order.stream().filter(item -> item % 2 == 1).toList()).isSorted();
+    }
+
+    @Test
+    void boundedMapRethrowsFirstFailureInInputOrderAfterAllItemsRan() {
+        AtomicInteger ran = new AtomicInteger();
+
+        assertThatThrownBy(() -> ParallelUtils.boundedOrderedMap(ITEMS.subList(0, 20), 4, item -> item, item -> {
+            ran.incrementAndGet();
+            if (item == 3 || item == 17) {
+                sleep(item == 3 ? 20 : 0);
+                throw new IllegalStateException("Coordinate " + item + " failed");
+            }
+            return item;
+        }))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Coordinate 3 failed")
+                .satisfies(e -> assertThat(e.getSuppressed()).hasSize(1));
+        assertThat(ran.get()).isEqualTo(20);
+    }
+
+    @Test
+    void boundedMapRejectsNonPositiveParallelism() {
+        assertThatThrownBy(() -> ParallelUtils.boundedOrderedMap(ITEMS, 0, item -> item, item -> item))
+                .hasMessageContaining("at least 1");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PathPrefixTrieTests {
+
+    @Test
+    void matchesWholeNameElementsLikeStartsWith() {
+        PathPrefixTrie<String> trie = new PathPrefixTrie<>();
+        trie.put(Path.of("/repo/metadata/com.example/demo/1.0"), "com.example:demo:1.0");
+        trie.put(Path.of("/repo/metadata/com.example/demo/1.0"), "com.example:demo:1.0.1");
+        trie.put(Path.of("/repo/metadata/com.example/demo/2.0"), "com.example:demo:2.0");
+
+        assertThat(trie.valuesContaining(Path.of("/repo/metadata/com.example/demo/1.0/reflect-config.json")))
+                .containsExactly("com.example:demo:1.0", "com.example:demo:1.0.1");
+        assertThat(trie.valuesContaining(Path.of("/repo/metadata/com.example/demo/1.0.1/reflect-config.json")))
+                .isEmpty();
+        assertThat(trie.valuesContaining(Path.of("/repo/metadata/com.example/demo/index.json")))
+                .isEmpty();
+    }
+
+    @Test
+    void normalizesPathsBeforeMatching() {
+        PathPrefixTrie<String> trie = new PathPrefixTrie<>();
+        trie.put(Path.of("/repo/tests/tck-build-logic/../src/com.example/demo/2.0"), "com.example:demo:2.0");
+
+        assertThat(trie.valuesContaining(Path.of("/repo/tests/src/com.example/demo/2.0/build.gradle")))
+                .containsExactly("com.example:demo:2.0");
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProcessTreeSamplerTests {
+
+    private static final String RUN_ID = "run-1";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void countsMarkedProcessesAndTheirChildren() throws IOException {
+        Path proc = tempDir.resolve("proc");
+        // Gradle daemon, shared by runs: not counted.
+        process(proc, 100, 1, "java", 5000, 500, null, 900_000, 1_000_000, 1 << 20);
+        // Test worker forked with the run's environment, and a native-image builder it started.
+        process(proc, 200, 100, "java (worker)", 300, 20, RUN_ID, 200_000, 250_000, 4096);
+        process(proc, 300, 200, "native-image", 1200, 80, null, 500_000, 800_000, 8192);
+        // Worker of another run.
+        process(proc, 400, 100, "java", 900, 90, "run-2", 300_000, 300_000, 1 << 16);
+        Files.writeString(proc.resolve("self"), "not a pid");
+
+        ProcessTreeSampler sampler = new ProcessTreeSampler(proc, RUN_ID);
+        sampler.sample();
+        ProcessTreeSampler.Usage usage = sampler.usage();
+
+        assertThat(usage.processes()).isEqualTo(2);
+        assertThat(usage.userCpuMillis()).isEqualTo((300 + 1200) * 10L);
+        assertThat(usage.systemCpuMillis()).isEqualTo((20 + 80) * 10L);
+        assertThat(usage.bytesWritten()).isEqualTo(4096 + 8192);
+        // The native-image high-water mark exceeds the sampled sum of 700 MB.
+        assertThat(usage.peakRssBytes()).isEqualTo(800_000L * 1024);
+    }
+
+    @Test
+    void keepsTheUsageOfProcessesThatExited() throws IOException {
+        Path proc = tempDir.resolve("proc");
+        process(proc, 200, 1, "java", 300, 20, RUN_ID, 400_000, 400_000, 4096);
+        process(proc, 300, 200, "native-image", 1200, 80, null, 500_000, 500_000, 8192);
+        ProcessTreeSampler sampler = new ProcessTreeSampler(proc, RUN_ID);
+        sampler.sample();
+
+        deleteProcess(proc, 300);
+        process(proc, 200, 1, "java", 400, 30, RUN_ID, 100_000, 400_000, 16384);
+        sampler.sample();
+        ProcessTreeSampler.Usage usage = sampler.usage();
+
+        assertThat(usage.processes()).isEqualTo(2);
+        assertThat(usage.userCpuMillis()).isEqualTo((400 + 1200) * 10L);
+        assertThat(usage.bytesWritten()).isEqualTo(16384 + 8192);
+        assertThat(usage.peakRssBytes()).isEqualTo(900_000L * 1024);
+    }
+
+    @Test
+    void unsampledRunIsUnavailable() {
+        ProcessTreeSampler sampler = new ProcessTreeSampler(tempDir.resolve("missing"), RUN_ID);
+        sampler.sample();
+
+        assertThat(sampler.stop()).isEqualTo(ProcessTreeSampler.Usage.UNAVAILABLE);
+    }
+
+    @Test
+    void metricsAreAppendedAsOneJsonObjectPerLine() throws IOException {
+        Path metricsDir = tempDir.resolve("build/tests/metrics");
+        ProcessTreeSampler.Usage usage = new ProcessTreeSampler.Usage(1500, 100, 716_800_000L, 12288, 2);
+        CoordinateRunMetrics.append(metricsDir, "test", "g:a:1", List.of("./gradlew", "test"), 0,
+                Instant.parse("2026-01-01T00:00:00Z"), 81_000, usage);
+        CoordinateRunMetrics.append(metricsDir, "test", "g:b:1", List.of("./gradlew", "test"), 1,
+                Instant.parse("2026-01-01T00:01:00Z"), 5_000, ProcessTreeSampler.Usage.UNAVAILABLE);
+
+        List<String> lines = Files.readAllLines(metricsDir.resolve("test.ndjson"));
+        assertThat(lines).hasSize(2);
+        JsonNode first = new ObjectMapper().readTree(lines.get(0));
+        assertThat(first.get("coordinates").asText()).isEqualTo("g:a:1");
+        assertThat(first.get("wallTimeMillis").asLong()).isEqualTo(81_000);
+        assertThat(first.get("userCpuMillis").asLong()).isEqualTo(1500);
+        assertThat(first.get("peakRssBytes").asLong()).isEqualTo(716_800_000L);
+        assertThat(first.get("bytesWritten").asLong()).isEqualTo(12288);
+        JsonNode second = new ObjectMapper().readTree(lines.get(1));
+        assertThat(second.get("exitCode").asInt()).isEqualTo(1);
+        assertThat(second.get("peakRssBytes").asLong()).isEqualTo(-1);
+    }
+
+    private static void process(Path proc, int pid, int parentPid, String name, long userTicks, long systemTicks,
+                                String runId, long rssKb, long highWaterMarkKb, long bytesWritten) throws IOException {
+        Path dir = Files.createDirectories(proc.resolve(String.valueOf(pid)));
+        StringBuilder stat = new StringBuilder(pid + " (" + name + ") S " + parentPid);
+        for (int field = 5; field <= 52; field++) {
+            stat.append(' ').append(switch (field) {
+                case 14 -> userTicks;
+                case 15 -> systemTicks;
+                case 22 -> 1000L + pid;
+                default -> 0L;
+            });
+        }
+        Files.writeString(dir.resolve("stat"), stat + "\n");
+        String environ = "PATH=/usr/bin\0" + (runId == null ? "" : ProcessTreeSampler.RUN_ID_VARIABLE + "=" + runId + "\0");
+        Files.writeString(dir.resolve("environ"), environ);
+        Files.writeString(dir.resolve("status"), "Name:\t" + name + "\nVmHWM:\t" + highWaterMarkKb + " kB\nVmRSS:\t"
+                + rssKb + " kB\nThreads:\t12\n");
+        Files.writeString(dir.resolve("io"), "rchar: 1\nwchar: 2\nread_bytes: 0\nwrite_bytes: " + bytesWritten + "\n");
+    }
+
+    private static void deleteProcess(Path proc, int pid) throws IOException {
+        Path dir = proc.resolve(String.valueOf(pid));
+        for (String file : List.of("stat", "environ", "status", "io")) {
+            Files.delete(dir.resolve(file));
+        }
+        Files.delete(dir);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright and related rights waived via CC0
+ *
+ * You should have received a copy of the CC0 legalcode along with this
+ * work. If not, see <http://creativecommons.org/publicdomain/zero/1.0/>.
+ */
+package org.graalvm.internal.tck.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StagePipelineTests {
+
+    @Test
+    void itemsPassEveryStageInOrderAndStopAtTheFirstResult() {
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        StagePipeline<Integer, String> pipeline = new StagePipeline<>(List.of(
+                stage("jvm", 2, item -> record(events, "jvm", item, null)),
+                stage("compile", 1, item -> record(events, "compile", item, item == 2 ? "compile failed: 2" : null)),
+                stage("run", 2, item -> record(events, "run", item, null))));
+
+        List<String> results = pipeline.run(List.of(1, 2, 3), item -> item);
+
+        assertThat(results).containsExactly(null, "compile failed: 2", null);
+        assertThat(events).contains("jvm 1", "compile 1", "run 1", "jvm 2", "compile 2", "jvm 3", "compile 3", "run 3")
+                .doesNotContain("run 2");
+        for (int item : List.of(1, 3)) {
+            assertThat(events.indexOf("jvm " + item)).isLessThan(events.indexOf("compile " + item));
+            assertThat(events.indexOf("compile " + item)).isLessThan(events.indexOf("run " + item));
+        }
+    }
+
+    @Test
+    void laterItemsEnterTheFirstStageWhileEarlierOnesAreStillInTheSecond() throws InterruptedException {
+        CountDownLatch secondItemInFirstStage = new CountDownLatch(1);
+        StagePipeline<Integer, String> pipeline = new StagePipeline<>(List.of(
+                stage("jvm", 1, item -> {
+                    if (item == 2) {
+                        secondItemInFirstStage.countDown();
+                    }
+                    return null;
+                }),
+                stage("compile", 1, item -> {
+                    if (item == 1) {
+                        // Only returns once item 2 overlapped with this stage.
+                        await(secondItemInFirstStage);
+                    }
+                    return null;
+                })));
+
+        assertThat(pipeline.run(List.of(1, 2), item -> item)).containsExactly(null, null);
+        assertThat(secondItemInFirstStage.await(0, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void itemsOfOneLaneNeverOverlapAndStagesRespectTheirWorkerCount() {
+        Map<Integer, AtomicInteger> inFlightPerLane = new ConcurrentHashMap<>();
+        AtomicInteger compiling = new AtomicInteger();
+        AtomicInteger maxCompiling = new AtomicInteger();
+        List<Integer> items = IntStream.range(0, 24).boxed().toList();
+        StagePipeline<Integer, String> pipeline = new StagePipeline<>(List.of(
+                stage("jvm", 4, item -> {
+                    assertThat(inFlightPerLane.computeIfAbsent(item % 3, lane -> new AtomicInteger()).incrementAndGet())
+                            .isEqualTo(1);
+                    return null;
+                }),
+                stage("compile", 2, item -> {
+                    maxCompiling.accumulateAndGet(compiling.incrementAndGet(), Math::max);
+                    sleep(2);
+                    compiling.decrementAndGet();
+                    return null;
+                }),
+                stage("run", 1, item -> {
+                    inFlightPerLane.get(item % 3).decrementAndGet();
+                    return null;
+                })));
+
+        assertThat(pipeline.run(items, item -> item % 3)).hasSize(24).containsOnlyNulls();
+        assertThat(maxCompiling.get()).isBetween(1, 2);
+    }
+
+    @Test
+    void rethrowsTheFirstExceptionInInputOrderAfterAllItemsFinished() {
+        AtomicInteger finished = new AtomicInteger();
+        StagePipeline<Integer, String> pipeline = new StagePipeline<>(List.of(
+                stage("jvm", 2, item -> {
+                    if (item == 1 || item == 4) {
+                        throw new IllegalStateException("Stage failed for " + item);
+                    }
+                    return null;
+                }),
+                stage("run", 1, item -> {
+                    finished.incrementAndGet();
+                    return null;
+                })));
+
+        assertThatThrownBy(() -> pipeline.run(List.of(0, 1, 2, 3, 4), item -> item))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Stage failed for 1")
+                .satisfies(e -> assertThat(e.getSuppressed()).hasSize(1));
+        assertThat(finished.get()).isEqualTo(3);
+    }
+
+    private static StagePipeline.Stage<Integer, String> stage(String name, int workers,
+                                                               StagePipeline.Action<Integer, String> action) {
+        return new StagePipeline.Stage<>(name, workers, action);
+    }
+
+    private static String record(List<String> events, String stage, int item, String result) {
+        events.add(stage + " " + item);
+        return result;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}